@@ -0,0 +1,79 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.CoordinateHeuristic;
+import main.MapGraph;
+
+/*
+ * MapGraph.shortestPath with and without CoordinateHeuristic.EUCLIDEAN on road grids whose distances are
+ * between 1 and 1.3 times the straight line between their nodes, over long queries from the west edge of the
+ * grid to the east edge. The nodes settled are reported next to the time, see SearchCounters.
+ *
+ * The gain depends on how close the straight line is to the real distance : it is large here, and shrinks
+ * for diagonal queries on a grid, whose shortest paths are much longer than the diagonal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AStarBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 256;
+
+	@Param({"32", "128", "512"})
+	public int side;
+
+	private MapGraph graph;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42, 1., 1.3));
+		Graphs.placeOnGrid(this.graph, this.side);
+		this.graph.compile();
+		Random random = new Random(7);
+		int band = Math.max(1, this.side / 8);
+		for (int i = 0; i < PAIRS; i++) {
+			int row = this.side / 2 - band / 2 + random.nextInt(band);
+			this.starts[i] = Graphs.gridNode(row, random.nextInt(band));
+			this.ends[i] = Graphs.gridNode(row - band / 2 + random.nextInt(band), this.side - 1 - random.nextInt(band));
+		}
+	}
+
+	@Benchmark
+	public MapGraph.MapPath dijkstra(SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.graph.shortestPath(this.starts[i], this.ends[i]);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+
+	@Benchmark
+	public MapGraph.MapPath aStar(SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.graph.shortestPath(this.starts[i], this.ends[i], CoordinateHeuristic.EUCLIDEAN);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+}
@@ -0,0 +1,90 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+
+/*
+ * The observers of ConcreteGraph : listChildren, listParents and getEdgeLabels on random nodes and edges of
+ * graphs of every shape and size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AdjacencyBenchmark {
+
+	// a power of two
+	private static final int SAMPLES = 1024;
+
+	@Param({"GRID", "GEOMETRIC", "SCALE_FREE"})
+	public Shape shape;
+
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int edges;
+
+	private ConcreteGraph<String, Double> graph;
+
+	// SAMPLES random edges of graph, from parents[i] to children[i]
+	private String[] parents = new String[SAMPLES];
+	private String[] children = new String[SAMPLES];
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = this.shape.build(this.edges, 42);
+		List<String> nodes = new ArrayList<String>(this.graph.listNodes());
+		Random random = new Random(7);
+		for (int i = 0; i < SAMPLES; ) {
+			String parent = nodes.get(random.nextInt(nodes.size()));
+			Set<String> children = this.graph.listChildren(parent).keySet();
+			if (!children.isEmpty()) {
+				this.parents[i] = parent;
+				this.children[i] = new ArrayList<String>(children).get(random.nextInt(children.size()));
+				i++;
+			}
+		}
+	}
+
+	private int next() {
+		int i = this.next;
+		this.next = (i + 1) & (SAMPLES - 1);
+		return i;
+	}
+
+	@Benchmark
+	public HashMap<String, Set<Double>> listChildren() {
+		return this.graph.listChildren(this.parents[this.next()]);
+	}
+
+	@Benchmark
+	public HashMap<String, Set<Double>> listParents() {
+		return this.graph.listParents(this.children[this.next()]);
+	}
+
+	@Benchmark
+	public HashSet<Double> getEdgeLabels() {
+		int i = this.next();
+		return this.graph.getEdgeLabels(this.children[i], this.parents[i]);
+	}
+}
@@ -0,0 +1,67 @@
+package benchmarks.jmh;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.ConcreteGraph;
+
+/*
+ * A traversal reading every edge of a road grid three ways : with the copying observers listNodes and
+ * listChildren, with the read-only views nodes and children, and with the visitors forEachNode and
+ * forEachChild. The bytes allocated per sweep are reported by the GC profiler of BenchmarkMain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AdjacencyViewBenchmark {
+
+	@Param({"300"})
+	public int side;
+
+	private ConcreteGraph<String, Double> graph;
+
+	@Setup
+	public void build() {
+		this.graph = Graphs.roadGrid(this.side, 42);
+	}
+
+	@Benchmark
+	public void copies(Blackhole blackhole) {
+		for (String node : this.graph.listNodes()) {
+			for (Map.Entry<String, Set<Double>> child : this.graph.listChildren(node).entrySet()) {
+				blackhole.consume(child.getValue().size());
+			}
+		}
+	}
+
+	@Benchmark
+	public void views(Blackhole blackhole) {
+		for (String node : this.graph.nodes()) {
+			for (Map.Entry<String, Set<Double>> child : this.graph.children(node).entrySet()) {
+				blackhole.consume(child.getValue().size());
+			}
+		}
+	}
+
+	@Benchmark
+	public void visitors(Blackhole blackhole) {
+		this.graph.forEachNode(node -> this.graph.forEachChild(node, (child, labels) -> blackhole.consume(labels.size())));
+	}
+}
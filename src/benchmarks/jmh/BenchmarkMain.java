@@ -0,0 +1,45 @@
+package benchmarks.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/*
+ * Runs the JMH benchmarks of this package, with the usual JMH command line, but with the GC profiler on, so that
+ * allocation rates are reported, and results written as JSON to jmh-result.json unless told otherwise with -rf
+ * and -rff. Results of two commits can then be compared with any JMH result viewer.
+ *
+ * build with : mvn -P bench package
+ * run with : java -jar target/benchmarks.jar [JMH options]
+ * e.g. java -jar target/benchmarks.jar AdjacencyBenchmark -p edges=1000,100000 -rff before.json
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions command = new CommandLineOptions(args);
+		if (command.shouldHelp()) {
+			command.showHelp();
+			return;
+		}
+		if (command.shouldList()) {
+			new Runner(command).list();
+			return;
+		}
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(command);
+		// -prof gc already given on the command line, by name or by class ?
+		boolean profilingGc = false;
+		for (ProfilerConfig profiler : command.getProfilers()) {
+			profilingGc |= profiler.getKlass().equals(GCProfiler.class.getName()) || profiler.getKlass().equals("gc");
+		}
+		if (!profilingGc) {
+			options.addProfiler(GCProfiler.class);
+		}
+		options.resultFormat(command.getResultFormat().orElse(ResultFormatType.JSON));
+		options.result(command.getResult().orElse("jmh-result.json"));
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,71 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.MapGraph;
+
+/*
+ * MapGraph.shortestPath against MapGraph.bidirectionalShortestPath between the same random nodes of road grids
+ * of growing size. The nodes settled are reported next to the time, see SearchCounters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BidirectionalBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 256;
+
+	@Param({"32", "128", "512"})
+	public int side;
+
+	private MapGraph graph;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.graph.compile();
+		Random random = new Random(7);
+		for (int i = 0; i < PAIRS; i++) {
+			this.starts[i] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+			this.ends[i] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+		}
+	}
+
+	@Benchmark
+	public MapGraph.MapPath unidirectional(SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.graph.shortestPath(this.starts[i], this.ends[i]);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+
+	@Benchmark
+	public MapGraph.MapPath bidirectional(SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.graph.bidirectionalShortestPath(this.starts[i], this.ends[i]);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+}
@@ -0,0 +1,107 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import main.ConcreteGraph;
+
+/*
+ * Writer throughput of ConcreteGraph : writer threads add random edges among the same nodes, each with its own
+ * labels, and remove them WINDOW edges later, first straight on the graph, then on the graph behind a single
+ * global lock, which is what callers had to do before the mutators were thread safe. An operation is one
+ * addEdge and one removeEdge.
+ *
+ * There is a writer per core, set -t to see how writers behave with fewer cores or under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Threads(Threads.MAX)
+public class ConcurrentWriteBenchmark {
+
+	private static final int NODES = 10000;
+	// the edges each writer keeps in the graph, a power of two
+	private static final int WINDOW = 1024;
+
+	private ConcreteGraph<String, Long> graph;
+	private String[] nodes = new String[NODES];
+	private final Object lock = new Object();
+
+	/*
+	 * A writer thread, and the edges it added that are still in the graph.
+	 */
+	@State(Scope.Thread)
+	public static class Writer {
+
+		private Random random;
+		// labels are unique to the writer and the edge, so that no addEdge is refused
+		private long label;
+		private int[] parents = new int[WINDOW];
+		private int[] children = new int[WINDOW];
+		private long[] labels = new long[WINDOW];
+
+		@Setup
+		public void start(ThreadParams thread) {
+			this.random = new Random(thread.getThreadIndex());
+			this.label = (long) thread.getThreadIndex() << 40;
+		}
+	}
+
+	@Setup
+	public void build() {
+		this.graph = new ConcreteGraph<String, Long>();
+		for (int i = 0; i < NODES; i++) {
+			this.nodes[i] = "n" + i;
+			this.graph.addNode(this.nodes[i]);
+		}
+	}
+
+	@Benchmark
+	public void striped(Writer writer) {
+		int slot = (int) writer.label & (WINDOW - 1);
+		if (writer.labels[slot] != 0) {
+			this.graph.removeEdge(this.nodes[writer.children[slot]], this.nodes[writer.parents[slot]], writer.labels[slot]);
+		}
+		this.add(writer, slot);
+		this.graph.addEdge(this.nodes[writer.children[slot]], this.nodes[writer.parents[slot]], writer.labels[slot]);
+	}
+
+	@Benchmark
+	public void globalLock(Writer writer) {
+		int slot = (int) writer.label & (WINDOW - 1);
+		if (writer.labels[slot] != 0) {
+			synchronized (this.lock) {
+				this.graph.removeEdge(this.nodes[writer.children[slot]], this.nodes[writer.parents[slot]], writer.labels[slot]);
+			}
+		}
+		this.add(writer, slot);
+		synchronized (this.lock) {
+			this.graph.addEdge(this.nodes[writer.children[slot]], this.nodes[writer.parents[slot]], writer.labels[slot]);
+		}
+	}
+
+	/*
+	 * @spec.effects picks the next edge of writer, and keeps it in slot.
+	 */
+	private void add(Writer writer, int slot) {
+		writer.parents[slot] = writer.random.nextInt(NODES);
+		writer.children[slot] = writer.random.nextInt(NODES);
+		writer.labels[slot] = ++writer.label;
+	}
+}
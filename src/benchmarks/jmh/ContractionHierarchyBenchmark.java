@@ -0,0 +1,83 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.CompiledGraph;
+import main.ContractionHierarchy;
+import main.MapGraph;
+
+/*
+ * Contraction hierarchies of road grids of growing size : the time to preprocess a grid on pools of a few
+ * sizes, see WorkerPool, and random queries in the hierarchy against MapGraph.shortestPath between the same
+ * nodes. The nodes settled are reported next to the time of the queries, see SearchCounters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ContractionHierarchyBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 512;
+
+	@Param({"32", "64", "128"})
+	public int side;
+
+	private MapGraph graph;
+	private CompiledGraph compiled;
+	private ContractionHierarchy hierarchy;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.compiled = this.graph.compile();
+		this.hierarchy = ContractionHierarchy.build(this.compiled);
+		Random random = new Random(7);
+		for (int i = 0; i < PAIRS; i++) {
+			this.starts[i] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+			this.ends[i] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ContractionHierarchy preprocess(WorkerPool workers) {
+		return ContractionHierarchy.build(this.compiled, workers.pool);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath hierarchy(SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.hierarchy.shortestPath(this.starts[i], this.ends[i]);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+
+	@Benchmark
+	public MapGraph.MapPath dijkstra(SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.graph.shortestPath(this.starts[i], this.ends[i]);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.CompiledGraph;
+import main.DeltaStepping;
+import main.DistanceMatrix;
+import main.MapGraph;
+
+/*
+ * Single source shortest paths to every node of road grids : sequential Dijkstra, run as a DistanceMatrix with
+ * a single source and every node as target, against DeltaStepping on pools of a few sizes, see WorkerPool,
+ * with the delta suggested for the graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DeltaSteppingBenchmark {
+
+	@Param({"300", "700"})
+	public int side;
+
+	private CompiledGraph graph;
+	private List<String> source;
+	private List<String> nodes;
+	private double delta;
+	private ForkJoinPool single;
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42)).compile();
+		this.source = Collections.singletonList(Graphs.gridNode(0, 0));
+		this.nodes = new ArrayList<String>();
+		for (int node = 0; node < this.graph.nodeCount(); node++) {
+			this.nodes.add(this.graph.nodeName(node));
+		}
+		this.delta = DeltaStepping.suggestDelta(this.graph);
+		this.single = new ForkJoinPool(1);
+	}
+
+	@TearDown
+	public void stop() {
+		this.single.shutdown();
+	}
+
+	@Benchmark
+	public DistanceMatrix dijkstra() {
+		return DistanceMatrix.compute(this.graph, this.source, this.nodes, this.single);
+	}
+
+	@Benchmark
+	public DeltaStepping deltaStepping(WorkerPool workers) {
+		return DeltaStepping.compute(this.graph, this.source.get(0), this.delta, workers.pool);
+	}
+}
@@ -0,0 +1,74 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.CompiledGraph;
+import main.DistanceMatrix;
+import main.MapGraph;
+
+/*
+ * A depots x customers distance matrix on a road grid : one MapGraph.shortestPath call per pair, against
+ * DistanceMatrix on pools of a few sizes, see WorkerPool, to check that it scales with them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DistanceMatrixBenchmark {
+
+	private static final int DEPOTS = 64;
+	private static final int CUSTOMERS = 64;
+
+	@Param({"128"})
+	public int side;
+
+	private MapGraph graph;
+	private CompiledGraph compiled;
+	private List<String> depots = new ArrayList<String>();
+	private List<String> customers = new ArrayList<String>();
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.compiled = this.graph.compile();
+		Random random = new Random(7);
+		for (int i = 0; i < DEPOTS; i++) {
+			this.depots.add(Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side)));
+		}
+		for (int i = 0; i < CUSTOMERS; i++) {
+			this.customers.add(Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side)));
+		}
+	}
+
+	@Benchmark
+	public void pairByPair(Blackhole blackhole) {
+		for (String depot : this.depots) {
+			for (String customer : this.customers) {
+				blackhole.consume(this.graph.shortestPath(depot, customer));
+			}
+		}
+	}
+
+	@Benchmark
+	public DistanceMatrix matrix(WorkerPool workers) {
+		return DistanceMatrix.compute(this.compiled, this.depots, this.customers, workers.pool);
+	}
+}
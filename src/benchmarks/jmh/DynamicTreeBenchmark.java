@@ -0,0 +1,79 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+import main.DynamicShortestPathTree;
+
+/*
+ * Keeps the shortest path tree of a hub in the middle of a road grid up to date while a random road is closed
+ * then reopened, which are two updates, against building the tree again from scratch. The nodes settled are
+ * reported next to the time, see SearchCounters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DynamicTreeBenchmark {
+
+	@Param({"128"})
+	public int side;
+
+	private ConcreteGraph<String, Double> roads;
+	private String hub;
+	private DynamicShortestPathTree tree;
+	private Random random;
+
+	@Setup
+	public void build() {
+		this.roads = Graphs.roadGrid(this.side, 42);
+		this.hub = Graphs.gridNode(this.side / 2, this.side / 2);
+		this.tree = new DynamicShortestPathTree(this.roads, this.hub);
+		this.random = new Random(7);
+	}
+
+	@TearDown
+	public void close() {
+		this.tree.close();
+	}
+
+	@Benchmark
+	public double rebuild(SearchCounters counters) {
+		DynamicShortestPathTree tree = new DynamicShortestPathTree(this.roads, this.hub);
+		counters.count(tree.lastUpdateStats());
+		double distance = tree.distance(Graphs.gridNode(0, 0));
+		tree.close();
+		return distance;
+	}
+
+	@Benchmark
+	public double closeAndReopen(SearchCounters counters) {
+		int row = this.random.nextInt(this.side);
+		int column = this.random.nextInt(this.side - 1);
+		String from = Graphs.gridNode(row, column);
+		String to = Graphs.gridNode(row, column + 1);
+		for (Double distance : this.roads.getEdgeLabels(to, from)) {
+			this.roads.removeEdge(to, from, distance);
+			counters.count(this.tree.lastUpdateStats());
+			this.roads.addEdge(to, from, distance);
+			counters.count(this.tree.lastUpdateStats());
+		}
+		return this.tree.distance(Graphs.gridNode(0, 0));
+	}
+}
@@ -0,0 +1,85 @@
+package benchmarks.jmh;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.CompiledGraph;
+import main.ConcreteGraph;
+import main.MapGraph;
+
+/*
+ * Reading the weight of every edge of a road grid where each pair of nodes has several labels : through
+ * listChildren and the smallest label of each copied set, as searches did, and through forEachChildWeight,
+ * which reads the smallest label kept by the graph without copying anything. Then the time MapGraph takes to
+ * compile the grid, which reads every edge that way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class EdgeWeightBenchmark {
+
+	// labels added to each edge of the grid, on top of its own
+	private static final int EXTRA_LABELS = 2;
+
+	@Param({"300"})
+	public int side;
+
+	private ConcreteGraph<String, Double> graph;
+	private String[] nodes;
+	private MapGraph map;
+
+	@Setup
+	public void build() {
+		this.graph = Graphs.roadGrid(this.side, 42);
+		Random random = new Random(7);
+		for (String parent : this.graph.listNodes()) {
+			for (String child : this.graph.listChildren(parent).keySet()) {
+				for (int extra = 0; extra < EXTRA_LABELS; extra++) {
+					this.graph.addEdge(child, parent, 1. + 9. * random.nextDouble());
+				}
+			}
+		}
+		this.nodes = this.graph.listNodes().toArray(new String[0]);
+		this.map = new MapGraph(this.graph);
+	}
+
+	@Benchmark
+	public void listChildrenMin(Blackhole blackhole) {
+		for (String node : this.nodes) {
+			for (Map.Entry<String, Set<Double>> child : this.graph.listChildren(node).entrySet()) {
+				blackhole.consume(Collections.min(child.getValue()));
+			}
+		}
+	}
+
+	@Benchmark
+	public void forEachChildWeight(Blackhole blackhole) {
+		for (String node : this.nodes) {
+			this.graph.forEachChildWeight(node, (child, weight) -> blackhole.consume(weight));
+		}
+	}
+
+	@Benchmark
+	public CompiledGraph compile() {
+		return this.map.compile();
+	}
+}
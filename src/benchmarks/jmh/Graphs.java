@@ -0,0 +1,176 @@
+package benchmarks.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import main.ConcreteGraph;
+import main.MapGraph;
+
+/*
+ * Synthetic graphs for the benchmarks.
+ */
+public class Graphs {
+
+	private Graphs() {
+	}
+
+	/*
+	 * @return the name of the node at row, column in the graphs built by roadGrid.
+	 */
+	public static String gridNode(int row, int column) {
+		return row + ":" + column;
+	}
+
+	/*
+	 * @return a side x side grid loosely shaped like a road network : every node is connected both ways to its
+	 * right and bottom neighbours, with a random distance between 1 and 10 in each direction.
+	 */
+	public static ConcreteGraph<String, Double> roadGrid(int side, long seed) {
+		return roadGrid(side, seed, 1., 10.);
+	}
+
+	/*
+	 * @return the same grid as roadGrid(side, seed), with random distances between minDistance and maxDistance.
+	 */
+	public static ConcreteGraph<String, Double> roadGrid(int side, long seed, double minDistance, double maxDistance) {
+		Random random = new Random(seed);
+		double spread = maxDistance - minDistance;
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		for (int row = 0; row < side; row++) {
+			for (int column = 0; column < side; column++) {
+				String node = gridNode(row, column);
+				if (column + 1 < side) {
+					String right = gridNode(row, column + 1);
+					graph.addEdge(right, node, minDistance + spread * random.nextDouble());
+					graph.addEdge(node, right, minDistance + spread * random.nextDouble());
+				}
+				if (row + 1 < side) {
+					String below = gridNode(row + 1, column);
+					graph.addEdge(below, node, minDistance + spread * random.nextDouble());
+					graph.addEdge(node, below, minDistance + spread * random.nextDouble());
+				}
+			}
+		}
+		return graph;
+	}
+
+	/*
+	 * @spec.effects gives the nodes of a grid built by roadGrid the coordinates (column, row).
+	 */
+	public static void placeOnGrid(MapGraph graph, int side) {
+		for (int row = 0; row < side; row++) {
+			for (int column = 0; column < side; column++) {
+				graph.setCoordinates(gridNode(row, column), column, row);
+			}
+		}
+	}
+
+	/*
+	 * @return nodeCount points thrown at random in the unit square, named "0", "1", ..., where every two points
+	 * closer than the radius that gives each of them about degree neighbours are connected both ways by an edge
+	 * as long as the distance between them. Such graphs look like road networks without their regularity.
+	 */
+	public static ConcreteGraph<String, Double> randomGeometric(int nodeCount, double degree, long seed) {
+		Random random = new Random(seed);
+		double[] xs = new double[nodeCount];
+		double[] ys = new double[nodeCount];
+		double radius = Math.sqrt(degree / (Math.PI * nodeCount));
+		// points are bucketed in square cells as wide as the radius, so that only neighbouring cells are compared
+		int cells = Math.max(1, (int) (1. / radius));
+		List<List<Integer>> buckets = new ArrayList<List<Integer>>();
+		for (int cell = 0; cell < cells * cells; cell++) {
+			buckets.add(new ArrayList<Integer>());
+		}
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		for (int node = 0; node < nodeCount; node++) {
+			xs[node] = random.nextDouble();
+			ys[node] = random.nextDouble();
+			buckets.get(cell(xs[node], cells) * cells + cell(ys[node], cells)).add(node);
+			graph.addNode(String.valueOf(node));
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			int column = cell(xs[node], cells);
+			int row = cell(ys[node], cells);
+			for (int x = Math.max(0, column - 1); x <= Math.min(cells - 1, column + 1); x++) {
+				for (int y = Math.max(0, row - 1); y <= Math.min(cells - 1, row + 1); y++) {
+					for (int other : buckets.get(x * cells + y)) {
+						double distance = Math.hypot(xs[node] - xs[other], ys[node] - ys[other]);
+						if (other != node && distance < radius) { // the other way round is added from other
+							graph.addEdge(String.valueOf(other), String.valueOf(node), distance);
+						}
+					}
+				}
+			}
+		}
+		return graph;
+	}
+
+	private static int cell(double coordinate, int cells) {
+		return Math.min(cells - 1, (int) (coordinate * cells));
+	}
+
+	/*
+	 * @return a graph of nodeCount nodes named "0", "1", ..., grown by preferential attachment (Barabasi-Albert) :
+	 * each new node is connected both ways to attachments distinct earlier nodes, picked with a probability
+	 * proportional to their degree, by edges with a random distance between 1 and 10. A few hubs end up with
+	 * most of the edges, as in social or flight networks.
+	 */
+	public static ConcreteGraph<String, Double> scaleFree(int nodeCount, int attachments, long seed) {
+		Random random = new Random(seed);
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		// every node appears once per edge it has, so that a uniform pick in it is proportional to degrees
+		int[] ends = new int[2 * attachments * nodeCount];
+		int endCount = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			String name = String.valueOf(node);
+			graph.addNode(name);
+			int[] targets = new int[Math.min(attachments, node)];
+			for (int k = 0; k < targets.length; k++) {
+				int target;
+				do {
+					target = endCount == 0 ? random.nextInt(node) : ends[random.nextInt(endCount)];
+				} while (contains(targets, k, target));
+				targets[k] = target;
+			}
+			for (int target : targets) {
+				graph.addEdge(String.valueOf(target), name, 1. + 9. * random.nextDouble());
+				graph.addEdge(name, String.valueOf(target), 1. + 9. * random.nextDouble());
+				ends[endCount++] = target;
+				ends[endCount++] = node;
+			}
+		}
+		return graph;
+	}
+
+	private static boolean contains(int[] values, int length, int value) {
+		for (int i = 0; i < length; i++) {
+			if (values[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * @spec.effects writes graph to file as a YAML map that the MapGraph constructor reads. Names are quoted,
+	 * since YAML 1.1 reads names like 1:2 as numbers.
+	 */
+	public static void writeYaml(ConcreteGraph<String, Double> graph, File file) throws IOException {
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			for (String parent : graph.listNodes()) {
+				out.println("'" + parent + "':");
+				for (Map.Entry<String, Set<Double>> child : graph.listChildren(parent).entrySet()) {
+					for (Double distance : child.getValue()) {
+						out.println("  '" + child.getKey() + "': " + distance);
+					}
+				}
+			}
+		}
+	}
+}
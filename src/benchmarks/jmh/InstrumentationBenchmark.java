@@ -0,0 +1,81 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.MapGraph;
+import main.PathCache;
+
+/*
+ * The cost of instrumenting MapGraph.shortestPath : short queries on a road grid, and the same queries answered
+ * by a PathCache, where the instrumentation is the largest share of the work.
+ *
+ * Run it three times and compare :
+ * java -jar target/benchmarks.jar InstrumentationBenchmark                                              (nothing collected)
+ * java -jar target/benchmarks.jar InstrumentationBenchmark -jvmArgsAppend -Dshinygraph.metrics=true     (metrics)
+ * java -jar target/benchmarks.jar InstrumentationBenchmark -jvmArgsAppend -XX:StartFlightRecording      (JFR events)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class InstrumentationBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 1024;
+	// how far apart, in grid cells, the two ends of a short query are at most
+	private static final int REACH = 4;
+
+	@Param({"256"})
+	public int side;
+
+	private MapGraph graph;
+	private MapGraph cached;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.graph.compile();
+		this.cached = new MapGraph(this.graph.concreteGraphMap);
+		this.cached.setPathCache(new PathCache(PAIRS));
+		Random random = new Random(7);
+		for (int i = 0; i < PAIRS; i++) {
+			int row = random.nextInt(this.side - REACH);
+			int column = random.nextInt(this.side - REACH);
+			this.starts[i] = Graphs.gridNode(row, column);
+			this.ends[i] = Graphs.gridNode(row + random.nextInt(REACH + 1), column + random.nextInt(REACH + 1));
+			this.cached.shortestPath(this.starts[i], this.ends[i]);
+		}
+	}
+
+	@Benchmark
+	public MapGraph.MapPath search() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		return this.graph.shortestPath(this.starts[i], this.ends[i]);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath cacheHit() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		return this.cached.shortestPath(this.starts[i], this.ends[i]);
+	}
+}
@@ -0,0 +1,80 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.MapGraph;
+
+/*
+ * Alternative routes on a city-sized road grid : kShortestPaths between random nodes for a few values of k,
+ * against a single shortestPath between the same nodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class KShortestPathsBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 64;
+
+	@Param({"200"})
+	public int side;
+
+	private MapGraph graph;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	/*
+	 * The number of paths asked for.
+	 */
+	@State(Scope.Benchmark)
+	public static class Routes {
+
+		@Param({"1", "3", "10"})
+		public int k;
+	}
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.graph.compile();
+		List<String> nodes = new ArrayList<String>(this.graph.concreteGraphMap.listNodes());
+		Random random = new Random(7);
+		for (int i = 0; i < PAIRS; i++) {
+			this.starts[i] = nodes.get(random.nextInt(nodes.size()));
+			this.ends[i] = nodes.get(random.nextInt(nodes.size()));
+		}
+	}
+
+	@Benchmark
+	public MapGraph.MapPath shortestPath() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		return this.graph.shortestPath(this.starts[i], this.ends[i]);
+	}
+
+	@Benchmark
+	public List<MapGraph.MapPath> kShortestPaths(Routes routes) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		return this.graph.kShortestPaths(this.starts[i], this.ends[i], routes.k);
+	}
+}
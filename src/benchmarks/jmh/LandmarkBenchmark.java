@@ -0,0 +1,113 @@
+package benchmarks.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.LandmarkHeuristic;
+import main.MapGraph;
+
+/*
+ * MapGraph.shortestPath with and without a LandmarkHeuristic on road grids, which have no coordinates here,
+ * between random nodes, for a growing number of landmarks. The nodes settled are reported next to the time,
+ * see SearchCounters. Also the time to compute the landmark distances, and to load them back from a file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LandmarkBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 256;
+
+	@Param({"64", "128", "256"})
+	public int side;
+
+	private MapGraph graph;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	/*
+	 * The landmarks of the graph, and the file they are saved to.
+	 */
+	@State(Scope.Benchmark)
+	public static class Landmarks {
+
+		@Param({"4", "8", "16"})
+		public int landmarkCount;
+
+		private LandmarkHeuristic heuristic;
+		private File file;
+
+		@Setup
+		public void build(LandmarkBenchmark benchmark) throws IOException {
+			this.heuristic = benchmark.graph.landmarkHeuristic(this.landmarkCount);
+			this.file = File.createTempFile("landmarks", ".alt");
+			this.heuristic.save(this.file);
+		}
+
+		@TearDown
+		public void delete() {
+			this.file.delete();
+		}
+	}
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.graph.compile();
+		Random random = new Random(7);
+		for (int i = 0; i < PAIRS; i++) {
+			this.starts[i] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+			this.ends[i] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+		}
+	}
+
+	@Benchmark
+	public MapGraph.MapPath dijkstra(SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.graph.shortestPath(this.starts[i], this.ends[i]);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+
+	@Benchmark
+	public MapGraph.MapPath alt(Landmarks landmarks, SearchCounters counters) {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		MapGraph.MapPath path = this.graph.shortestPath(this.starts[i], this.ends[i], landmarks.heuristic);
+		counters.count(this.graph.lastSearchStats());
+		return path;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public LandmarkHeuristic buildLandmarks(Landmarks landmarks) {
+		return this.graph.landmarkHeuristic(landmarks.landmarkCount);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public LandmarkHeuristic loadLandmarks(Landmarks landmarks) throws IOException {
+		return LandmarkHeuristic.load(landmarks.file);
+	}
+}
@@ -0,0 +1,105 @@
+package benchmarks.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+import main.GraphSnapshot;
+import main.MapGraph;
+
+/*
+ * Route queries on a road grid while roads are closed and reopened : the cost of ConcreteGraph.snapshot()
+ * itself, closures with no query running, closures on one thread next to MapGraph.shortestPath queries between
+ * random nodes on another, which snapshot the graph again whenever it changed, and a closure followed by a
+ * query near it, which only patches the snapshot with the closed road.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LiveUpdateBenchmark {
+
+	@Param({"128"})
+	public int side;
+
+	private MapGraph graph;
+	private ConcreteGraph<String, Double> roads;
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.roads = this.graph.concreteGraphMap;
+		this.graph.compile();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public long snapshot() {
+		try (GraphSnapshot<String, Double> snapshot = this.roads.snapshot()) {
+			return snapshot.version();
+		}
+	}
+
+	@Benchmark
+	public String closures() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return this.closeAndReopen(random.nextInt(this.side), random.nextInt(this.side - 1));
+	}
+
+	@Benchmark
+	@Group("live")
+	@GroupThreads(1)
+	public String closuresNextToQueries() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return this.closeAndReopen(random.nextInt(this.side), random.nextInt(this.side - 1));
+	}
+
+	@Benchmark
+	@Group("live")
+	@GroupThreads(1)
+	public MapGraph.MapPath queriesNextToClosures() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String from = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+		String to = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+		return this.graph.shortestPath(from, to);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath closureThenQuery() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int row = random.nextInt(this.side - 5);
+		int column = random.nextInt(this.side - 5);
+		String from = this.closeAndReopen(row, column);
+		return this.graph.shortestPath(from, Graphs.gridNode(row + 5, column + 5));
+	}
+
+	/*
+	 * @spec.effects closes the road from the node at row, column to its east neighbour, then reopens it.
+	 * @return the node the road starts from.
+	 */
+	private String closeAndReopen(int row, int column) {
+		String from = Graphs.gridNode(row, column);
+		String to = Graphs.gridNode(row, column + 1);
+		for (Double distance : this.roads.getEdgeLabels(to, from)) {
+			this.roads.removeEdge(to, from, distance);
+			this.roads.addEdge(to, from, distance);
+		}
+		return from;
+	}
+}
@@ -0,0 +1,84 @@
+package benchmarks.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+import main.MapGraph;
+
+/*
+ * MapGraph end to end : loading a YAML map with the MapGraph constructor, and shortestPath between random
+ * nodes once the graph is compiled, on graphs of every shape and size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MapGraphBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 256;
+
+	@Param({"GRID", "GEOMETRIC", "SCALE_FREE"})
+	public Shape shape;
+
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int edges;
+
+	private File yaml;
+	private MapGraph graph;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	@Setup
+	public void build() throws IOException {
+		ConcreteGraph<String, Double> graph = this.shape.build(this.edges, 42);
+		this.yaml = File.createTempFile("map", ".yaml");
+		Graphs.writeYaml(graph, this.yaml);
+		this.graph = new MapGraph(graph);
+		this.graph.compile();
+		List<String> nodes = new ArrayList<String>(graph.listNodes());
+		Random random = new Random(7);
+		for (int i = 0; i < PAIRS; i++) {
+			this.starts[i] = nodes.get(random.nextInt(nodes.size()));
+			this.ends[i] = nodes.get(random.nextInt(nodes.size()));
+		}
+	}
+
+	@TearDown
+	public void delete() {
+		this.yaml.delete();
+	}
+
+	@Benchmark
+	public MapGraph loadYaml() {
+		return new MapGraph(this.yaml.getPath());
+	}
+
+	@Benchmark
+	public MapGraph.MapPath shortestPath() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		return this.graph.shortestPath(this.starts[i], this.ends[i]);
+	}
+}
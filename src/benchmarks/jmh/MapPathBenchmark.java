@@ -0,0 +1,72 @@
+package benchmarks.jmh;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.MapGraph.MapEdge;
+import main.MapGraph.MapPath;
+
+/*
+ * Path handling alone, the way a search that keeps a MapPath per queued node would do it : a path of a few
+ * lengths is grown one edge at a time, reading the end node and the total distance after each edge, then
+ * copied once and listed with pathSteps. Then the time to put the edges of a path in a HashSet and look them up
+ * again. The bytes allocated per path are reported by the GC profiler of BenchmarkMain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MapPathBenchmark {
+
+	@Param({"10", "100", "1000"})
+	public int length;
+
+	private MapEdge[] edges;
+	private MapPath path;
+
+	@Setup
+	public void build() {
+		this.edges = new MapEdge[this.length];
+		this.path = new MapPath();
+		for (int i = 0; i < this.length; i++) {
+			this.edges[i] = new MapEdge(String.valueOf(i), String.valueOf(i + 1), 1. + i % 7);
+			this.path.addEdge(this.edges[i]);
+		}
+	}
+
+	@Benchmark
+	public int grow(Blackhole blackhole) {
+		MapPath grown = new MapPath();
+		for (MapEdge edge : this.edges) {
+			grown.addEdge(edge);
+			blackhole.consume(grown.endNode());
+			blackhole.consume(grown.totalDistance());
+		}
+		return new MapPath(grown).pathSteps().size();
+	}
+
+	@Benchmark
+	public int hashEdges() {
+		HashSet<MapEdge> set = new HashSet<MapEdge>(this.path.edges());
+		int found = 0;
+		for (MapEdge edge : this.edges) {
+			found += set.contains(edge) ? 1 : 0;
+		}
+		return found;
+	}
+}
@@ -0,0 +1,77 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+
+/*
+ * The mutators of ConcreteGraph : addEdge between random nodes, and removeNode of random nodes, on graphs of
+ * every shape and size.
+ *
+ * Both change the graph they run on, so each iteration runs a fixed batch of calls on a graph built again
+ * for it, and reports the average time of one call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = MutationBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = MutationBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MutationBenchmark {
+
+	// no more than the nodes of the smallest graph, which removeNode removes one by one
+	static final int BATCH = 100;
+
+	@Param({"GRID", "GEOMETRIC", "SCALE_FREE"})
+	public Shape shape;
+
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int edges;
+
+	private ConcreteGraph<String, Double> graph;
+
+	// the nodes of graph, in random order
+	private String[] nodes;
+	private int removed;
+	private Random random;
+	// larger than any distance of the generated graphs, so that addEdge never finds the edge already there
+	private double label;
+
+	@Setup(Level.Iteration)
+	public void build() {
+		this.graph = this.shape.build(this.edges, 42);
+		List<String> nodes = new ArrayList<String>(this.graph.listNodes());
+		Collections.shuffle(nodes, new Random(7));
+		this.nodes = nodes.toArray(new String[0]);
+		this.removed = 0;
+		this.random = new Random(7);
+		this.label = 1000.;
+	}
+
+	@Benchmark
+	public void addEdge() {
+		this.graph.addEdge(this.nodes[this.random.nextInt(this.nodes.length)], this.nodes[this.random.nextInt(this.nodes.length)], this.label++);
+	}
+
+	@Benchmark
+	public void removeNode() {
+		this.graph.removeNode(this.nodes[this.removed++]);
+	}
+}
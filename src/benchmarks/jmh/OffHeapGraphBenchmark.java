@@ -0,0 +1,90 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+import main.MapGraph;
+import main.OffHeapGraph;
+
+/*
+ * shortestPath between random nodes of a road grid stored in a ConcreteGraph, searched through its compiled
+ * snapshot, and of the same grid stored in an OffHeapGraph, searched as it is. The memory each of them takes
+ * is not measured here : OffHeapGraph.offHeapBytes tells what an OffHeapGraph takes off heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class OffHeapGraphBenchmark {
+
+	// a power of two
+	private static final int PAIRS = 64;
+
+	@Param({"400"})
+	public int side;
+
+	private MapGraph onHeap;
+	private MapGraph offHeap;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int next;
+
+	@Setup
+	public void build() {
+		ConcreteGraph<String, Double> concrete = Graphs.roadGrid(this.side, 42);
+		OffHeapGraph offHeap = new OffHeapGraph();
+		for (String node : concrete.listNodes()) {
+			offHeap.addNode(node);
+		}
+		for (String node : concrete.listNodes()) {
+			for (Map.Entry<String, Set<Double>> child : concrete.listChildren(node).entrySet()) {
+				for (Double label : child.getValue()) {
+					offHeap.addEdge(child.getKey(), node, label);
+				}
+			}
+		}
+		this.onHeap = new MapGraph(concrete);
+		this.onHeap.compile();
+		this.offHeap = new MapGraph(offHeap);
+
+		List<String> nodes = new ArrayList<String>(concrete.listNodes());
+		Random random = new Random(7);
+		for (int i = 0; i < PAIRS; i++) {
+			this.starts[i] = nodes.get(random.nextInt(nodes.size()));
+			this.ends[i] = nodes.get(random.nextInt(nodes.size()));
+		}
+	}
+
+	@Benchmark
+	public MapGraph.MapPath concreteGraph() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		return this.onHeap.shortestPath(this.starts[i], this.ends[i]);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath offHeapGraph() {
+		int i = this.next;
+		this.next = (i + 1) & (PAIRS - 1);
+		return this.offHeap.shortestPath(this.starts[i], this.ends[i]);
+	}
+}
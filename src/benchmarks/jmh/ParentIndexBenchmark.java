@@ -0,0 +1,91 @@
+package benchmarks.jmh;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+
+/*
+ * ConcreteGraph.listParents on square grid graphs of growing size, next to a full scan of the graph that finds
+ * the same parents the way listParents used to. With the parents index, listParents stays flat as the grid
+ * grows while the scan grows linearly. For removeNode, which also finds the parents of the node it removes,
+ * see MutationBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ParentIndexBenchmark {
+
+	@Param({"64", "256", "1024"})
+	public int side;
+
+	private ConcreteGraph<Integer, Double> graph;
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = grid(this.side);
+	}
+
+	@Benchmark
+	public Map<Integer, Set<Double>> listParents() {
+		this.next = (this.next + 7919) % (this.side * this.side);
+		return this.graph.listParents(this.next);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Map<Integer, Set<Double>> fullScan() {
+		this.next = (this.next + 7919) % (this.side * this.side);
+		Map<Integer, Set<Double>> parents = new HashMap<Integer, Set<Double>>();
+		for (Integer node : this.graph.listNodes()) {
+			Set<Double> labels = this.graph.listChildren(node).get(this.next);
+			if (labels != null) {
+				parents.put(node, new HashSet<Double>(labels));
+			}
+		}
+		return parents;
+	}
+
+	/*
+	 * @return a side x side grid where every node is connected both ways to its right and bottom neighbours.
+	 */
+	static ConcreteGraph<Integer, Double> grid(int side) {
+		ConcreteGraph<Integer, Double> graph = new ConcreteGraph<Integer, Double>();
+		for (int node = 0; node < side * side; node++) {
+			graph.addNode(node);
+		}
+		for (int row = 0; row < side; row++) {
+			for (int column = 0; column < side; column++) {
+				int node = row * side + column;
+				if (column + 1 < side) {
+					graph.addEdge(node + 1, node, 1.);
+					graph.addEdge(node, node + 1, 1.);
+				}
+				if (row + 1 < side) {
+					graph.addEdge(node + side, node, 1.);
+					graph.addEdge(node, node + side, 1.);
+				}
+			}
+		}
+		return graph;
+	}
+}
@@ -0,0 +1,112 @@
+package benchmarks.jmh;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.MapGraph;
+import main.PathCache;
+
+/*
+ * A skewed stream of queries on a road grid, where a few origin / destination pairs make most of the traffic,
+ * with a PathCache of a few sizes, 0 for none. The hits and misses of the cache are reported next to the time.
+ *
+ * Pairs are drawn from a pool of distinct pairs, the k-th most popular one with probability proportional to
+ * 1 / k (Zipf's law).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class PathCacheBenchmark {
+
+	private static final int PAIRS = 10000;
+	// a power of two
+	private static final int QUERIES = 1 << 15;
+
+	@Param({"128"})
+	public int side;
+
+	@Param({"0", "100", "1000", "10000"})
+	public int capacity;
+
+	private MapGraph graph;
+	private PathCache cache;
+	private String[] starts = new String[PAIRS];
+	private String[] ends = new String[PAIRS];
+	private int[] stream = new int[QUERIES];
+	private int next;
+
+	/*
+	 * The lookups of the cache over each iteration.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class CacheCounters {
+
+		public long hits;
+		public long misses;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.hits = 0;
+			this.misses = 0;
+		}
+	}
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.graph.compile();
+		if (this.capacity > 0) {
+			this.cache = new PathCache(this.capacity);
+			this.graph.setPathCache(this.cache);
+		}
+		Random random = new Random(7);
+		for (int k = 0; k < PAIRS; k++) {
+			this.starts[k] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+			this.ends[k] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+		}
+		double[] cumulative = new double[PAIRS];
+		for (int k = 0; k < PAIRS; k++) {
+			cumulative[k] = (k == 0 ? 0. : cumulative[k - 1]) + 1. / (k + 1);
+		}
+		for (int q = 0; q < QUERIES; q++) {
+			int k = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[PAIRS - 1]);
+			this.stream[q] = k >= 0 ? k : -k - 1;
+		}
+	}
+
+	@Benchmark
+	public MapGraph.MapPath query(CacheCounters counters) {
+		int k = this.stream[this.next];
+		this.next = (this.next + 1) & (QUERIES - 1);
+		if (this.cache == null) {
+			return this.graph.shortestPath(this.starts[k], this.ends[k]);
+		}
+		long hits = this.cache.hitCount();
+		MapGraph.MapPath path = this.graph.shortestPath(this.starts[k], this.ends[k]);
+		if (this.cache.hitCount() > hits) {
+			counters.hits++;
+		} else {
+			counters.misses++;
+		}
+		return path;
+	}
+}
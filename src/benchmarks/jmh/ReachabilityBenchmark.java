@@ -0,0 +1,121 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+import main.MapGraph;
+import main.ReachabilityIndex;
+
+/*
+ * Two road grids of the same size, the second one reachable from the first through a single one way edge, so
+ * that no node of the second grid can reach the first. shortestPath between random nodes of the second and of
+ * the first grid searches the whole second grid before giving up unless a ReachabilityIndex tells it not to
+ * start, and between random nodes of the first and of the second grid the index only slows it down. Also the
+ * time to build the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ReachabilityBenchmark {
+
+	// a power of two
+	private static final int QUERIES = 32;
+
+	@Param({"100", "300", "500"})
+	public int side;
+
+	private ConcreteGraph<String, Double> graph;
+	private MapGraph plain;
+	private MapGraph indexed;
+	private ReachabilityIndex index;
+	private String[] first = new String[QUERIES];
+	private String[] second = new String[QUERIES];
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = Graphs.roadGrid(this.side, 42);
+		ConcreteGraph<String, Double> other = Graphs.roadGrid(this.side, 43);
+		for (String node : other.listNodes()) {
+			this.graph.addNode("b" + node);
+		}
+		for (String parent : other.listNodes()) {
+			for (String child : other.listChildren(parent).keySet()) {
+				for (Double label : other.getEdgeLabels(child, parent)) {
+					this.graph.addEdge("b" + child, "b" + parent, label);
+				}
+			}
+		}
+		this.graph.addEdge("b" + Graphs.gridNode(0, 0), Graphs.gridNode(this.side - 1, this.side - 1), 1.);
+		this.plain = new MapGraph(this.graph);
+		this.plain.compile();
+		this.indexed = new MapGraph(this.graph);
+		this.indexed.compile();
+		this.index = new ReachabilityIndex(this.graph);
+		this.indexed.setReachabilityIndex(this.index);
+		Random random = new Random(7);
+		for (int i = 0; i < QUERIES; i++) {
+			this.first[i] = Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+			this.second[i] = "b" + Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side));
+		}
+	}
+
+	@TearDown
+	public void close() {
+		this.index.close();
+	}
+
+	@Benchmark
+	public MapGraph.MapPath impossible() {
+		int i = this.next;
+		this.next = (i + 1) & (QUERIES - 1);
+		return this.plain.shortestPath(this.second[i], this.first[i]);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath impossibleIndexed() {
+		int i = this.next;
+		this.next = (i + 1) & (QUERIES - 1);
+		return this.indexed.shortestPath(this.second[i], this.first[i]);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath possible() {
+		int i = this.next;
+		this.next = (i + 1) & (QUERIES - 1);
+		return this.plain.shortestPath(this.first[i], this.second[i]);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath possibleIndexed() {
+		int i = this.next;
+		this.next = (i + 1) & (QUERIES - 1);
+		return this.indexed.shortestPath(this.first[i], this.second[i]);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int buildIndex() {
+		ReachabilityIndex index = new ReachabilityIndex(this.graph);
+		int components = index.componentCount();
+		index.close();
+		return components;
+	}
+}
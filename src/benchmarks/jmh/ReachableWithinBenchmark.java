@@ -0,0 +1,79 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.MapGraph;
+
+/*
+ * Service areas on road grids of growing size with the same budget : reachableWithin from a random source,
+ * against one shortestPath from the source to each node of its area, and the batch reachableWithin over
+ * SOURCES sources at once. The time of reachableWithin should stay the same whatever the size of the grid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ReachableWithinBenchmark {
+
+	private static final double BUDGET = 60.;
+	// a power of two
+	private static final int SOURCES = 64;
+
+	@Param({"100", "300", "700"})
+	public int side;
+
+	private MapGraph graph;
+	private List<String> sources = new ArrayList<String>();
+	private int next;
+
+	@Setup
+	public void build() {
+		this.graph = new MapGraph(Graphs.roadGrid(this.side, 42));
+		this.graph.compile();
+		Random random = new Random(7);
+		for (int i = 0; i < SOURCES; i++) {
+			this.sources.add(Graphs.gridNode(random.nextInt(this.side), random.nextInt(this.side)));
+		}
+	}
+
+	@Benchmark
+	public Map<String, Double> reachableWithin() {
+		int i = this.next;
+		this.next = (i + 1) & (SOURCES - 1);
+		return this.graph.reachableWithin(this.sources.get(i), BUDGET);
+	}
+
+	@Benchmark
+	public void shortestPaths(Blackhole blackhole) {
+		int i = this.next;
+		this.next = (i + 1) & (SOURCES - 1);
+		String source = this.sources.get(i);
+		for (String node : this.graph.reachableWithin(source, BUDGET).keySet()) {
+			blackhole.consume(this.graph.shortestPath(source, node));
+		}
+	}
+
+	@Benchmark
+	public List<Map<String, Double>> batch() {
+		return this.graph.reachableWithin(this.sources, BUDGET);
+	}
+}
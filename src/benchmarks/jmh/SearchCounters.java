@@ -0,0 +1,36 @@
+package benchmarks.jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import main.SearchStats;
+
+/*
+ * The work done by the searches of a benchmark, reported by JMH next to its time : the number of searches and
+ * of nodes they settled over each iteration, whose ratio is the number of nodes settled per search.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class SearchCounters {
+
+	public long searches;
+	public long settledNodes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		this.searches = 0;
+		this.settledNodes = 0;
+	}
+
+	/*
+	 * @param stats the work of a search, e.g. MapGraph.lastSearchStats()
+	 * @spec.effects counts that search.
+	 */
+	void count(SearchStats stats) {
+		this.searches++;
+		this.settledNodes += stats.settledNodes();
+	}
+}
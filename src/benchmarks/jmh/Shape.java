@@ -0,0 +1,38 @@
+package benchmarks.jmh;
+
+import main.ConcreteGraph;
+
+/*
+ * The kinds of synthetic graphs the JMH benchmarks run on, each built with about a given number of edges.
+ */
+public enum Shape {
+
+	// a road grid, see Graphs.roadGrid : 4 edges per node, all of them short range
+	GRID {
+		@Override
+		public ConcreteGraph<String, Double> build(int edgeCount, long seed) {
+			return Graphs.roadGrid(Math.max(2, (int) Math.round(Math.sqrt(edgeCount / 4.))), seed);
+		}
+	},
+
+	// points in the unit square linked to their neighbours, see Graphs.randomGeometric : about 8 edges per node
+	GEOMETRIC {
+		@Override
+		public ConcreteGraph<String, Double> build(int edgeCount, long seed) {
+			return Graphs.randomGeometric(Math.max(2, edgeCount / 8), 8., seed);
+		}
+	},
+
+	// preferential attachment, see Graphs.scaleFree : 8 edges per node on average, but hubs with thousands
+	SCALE_FREE {
+		@Override
+		public ConcreteGraph<String, Double> build(int edgeCount, long seed) {
+			return Graphs.scaleFree(Math.max(5, edgeCount / 8), 4, seed);
+		}
+	};
+
+	/*
+	 * @return a graph of this shape with about edgeCount edges, the same for the same seed.
+	 */
+	public abstract ConcreteGraph<String, Double> build(int edgeCount, long seed);
+}
@@ -0,0 +1,76 @@
+package benchmarks.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ConcreteGraph;
+import main.MapGraph;
+
+/*
+ * Startup time of a map stored as YAML against the same map stored as a binary snapshot : for road grids of
+ * growing size, loading the YAML file with the MapGraph constructor and answering one query, against opening
+ * the snapshot with MapGraph.openSnapshot and answering the same query, with and without verifying its
+ * checksum.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SnapshotBenchmark {
+
+	@Param({"64", "128", "256"})
+	public int side;
+
+	private File yaml;
+	private File snapshot;
+	private String start;
+	private String end;
+
+	@Setup
+	public void build() throws IOException {
+		ConcreteGraph<String, Double> grid = Graphs.roadGrid(this.side, 42);
+		this.yaml = File.createTempFile("map", ".yaml");
+		this.snapshot = File.createTempFile("map", ".sgrf");
+		Graphs.writeYaml(grid, this.yaml);
+		new MapGraph(grid).exportSnapshot(this.snapshot);
+		this.start = Graphs.gridNode(0, 0);
+		this.end = Graphs.gridNode(this.side - 1, this.side - 1);
+	}
+
+	@TearDown
+	public void delete() {
+		this.yaml.delete();
+		this.snapshot.delete();
+	}
+
+	@Benchmark
+	public MapGraph.MapPath yaml() {
+		return new MapGraph(this.yaml.getPath()).shortestPath(this.start, this.end);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath snapshot() throws IOException {
+		return MapGraph.openSnapshot(this.snapshot).shortestPath(this.start, this.end);
+	}
+
+	@Benchmark
+	public MapGraph.MapPath snapshotUnchecked() throws IOException {
+		return MapGraph.openSnapshot(this.snapshot, false).shortestPath(this.start, this.end);
+	}
+}
@@ -0,0 +1,32 @@
+package benchmarks.jmh;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/*
+ * A pool of worker threads for the benchmarks of parallel algorithms, run with each of the pool sizes of
+ * threads, e.g. -p threads=1,2,4,8 to see how they scale with the cores of the machine.
+ */
+@State(Scope.Benchmark)
+public class WorkerPool {
+
+	@Param({"1", "4"})
+	public int threads;
+
+	ForkJoinPool pool;
+
+	@Setup
+	public void start() {
+		this.pool = new ForkJoinPool(this.threads);
+	}
+
+	@TearDown
+	public void stop() {
+		this.pool.shutdown();
+	}
+}
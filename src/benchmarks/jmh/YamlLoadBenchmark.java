@@ -0,0 +1,82 @@
+package benchmarks.jmh;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yaml.snakeyaml.Yaml;
+
+import main.ConcreteGraph;
+import main.MapGraph;
+
+/*
+ * Loading road grids of growing size written as YAML maps : with the MapGraph constructor, which streams parser
+ * events into the graph, against the former loader, which loaded the whole document into maps first and copied
+ * the set of nodes for every entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class YamlLoadBenchmark {
+
+	@Param({"32", "64", "128"})
+	public int side;
+
+	private File file;
+
+	@Setup
+	public void build() throws IOException {
+		this.file = File.createTempFile("map", ".yaml");
+		Graphs.writeYaml(Graphs.roadGrid(this.side, 42), this.file);
+	}
+
+	@TearDown
+	public void delete() {
+		this.file.delete();
+	}
+
+	@Benchmark
+	public MapGraph streaming() {
+		return new MapGraph(this.file.getPath());
+	}
+
+	/*
+	 * the loader of MapGraph before it streamed the document.
+	 */
+	@Benchmark
+	public ConcreteGraph<String, Double> loadAndCopy() throws IOException {
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		try (InputStream inputStream = new FileInputStream(this.file)) {
+			Map<String, Map<String, Object>> obj = new Yaml().load(inputStream);
+			for (Map.Entry<String, Map<String, Object>> node : obj.entrySet()) {
+				if (!graph.listNodes().contains(node.getKey())) {
+					graph.addNode(node.getKey());
+				}
+				if (node.getValue() != null) {
+					for (Map.Entry<String, Object> path : node.getValue().entrySet()) {
+						graph.addEdge(path.getKey(), node.getKey(), ((Number) path.getValue()).doubleValue());
+					}
+				}
+			}
+		}
+		return graph;
+	}
+}
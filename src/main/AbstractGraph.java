@@ -1,8 +1,11 @@
 package main;
 
 
+import java.util.Collections;
 import java.util.Set;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /*
  * An AbstractGraph is a collection of nodes and edges. Nodes and edges are abstractions that are useful to model
@@ -142,4 +145,124 @@ public interface AbstractGraph<K,V> {
 	 * parent and child.
 	 */
 	Set<V> getEdgeLabels(K child, K parent);
+	
+	/*
+	 * views
+	 * 
+	 * The list observers above return copies the caller may modify. The views below are read-only, and 
+	 * implementations return them without copying g where they can : use them to read g, and the list 
+	 * observers only to get a copy. Whether a view follows later mutations of g depends on the implementation, 
+	 * see ConcreteGraph and GraphSnapshot. Iterating a view never throws ConcurrentModificationException. 
+	 * 
+	 * By default, the views are read-only copies, made by the list observers. 
+	 */
+	
+	/*
+	 * @return a read-only view of g.nodes.
+	 */
+	default Set<K> nodes() {
+		return Collections.unmodifiableSet(this.listNodes());
+	}
+	
+	/*
+	 * @param parent the parent node of which to view the children
+	 * @return a read-only view of the mapping from children to labels returned by listChildren(parent).
+	 * 
+	 * @throws IllegalArgumentException if parent does not belong to g.nodes. 
+	 */
+	default Map<K, Set<V>> children(K parent) {
+		return Collections.unmodifiableMap(this.listChildren(parent));
+	}
+	
+	/*
+	 * @param child the child node of which to view the parents
+	 * @return a read-only view of the mapping from parents to labels returned by listParents(child).
+	 * 
+	 * @throws IllegalArgumentException if child does not belong to g.nodes. 
+	 */
+	default Map<K, Set<V>> parents(K child) {
+		return Collections.unmodifiableMap(this.listParents(child));
+	}
+	
+	/*
+	 * @return a read-only view of the labels returned by getEdgeLabels(child, parent).
+	 * 
+	 * @throws IllegalArgumentException in the same cases as getEdgeLabels(child, parent).
+	 */
+	default Set<V> edgeLabels(K child, K parent) {
+		return Collections.unmodifiableSet(this.getEdgeLabels(child, parent));
+	}
+	
+	/*
+	 * @spec.effects calls action once for each node of g.
+	 */
+	default void forEachNode(Consumer<? super K> action) {
+		this.nodes().forEach(action);
+	}
+	
+	/*
+	 * @param parent the parent node of which to visit the children
+	 * @spec.effects calls action once for each child of parent, with the labels of the edges to it, which 
+	 * action must not modify. 
+	 * 
+	 * @throws IllegalArgumentException if parent does not belong to g.nodes. 
+	 */
+	default void forEachChild(K parent, BiConsumer<? super K, ? super Set<V>> action) {
+		this.children(parent).forEach(action);
+	}
+	
+	/*
+	 * @param child the child node of which to visit the parents
+	 * @spec.effects calls action once for each parent of child, with the labels of the edges from it, which 
+	 * action must not modify. 
+	 * 
+	 * @throws IllegalArgumentException if child does not belong to g.nodes. 
+	 */
+	default void forEachParent(K child, BiConsumer<? super K, ? super Set<V>> action) {
+		this.parents(child).forEach(action);
+	}
+	
+	/*
+	 * @param parent the parent node of which to visit the children
+	 * @param action what to do with each child and the weight of the edges to it
+	 * 
+	 * @spec.requires the labels of g are Numbers
+	 * @spec.effects calls action once for each child of parent, with the smallest of the labels of the edges 
+	 * from parent to that child, as a double. 
+	 * 
+	 * @throws IllegalArgumentException if parent does not belong to g.nodes. 
+	 */
+	default void forEachChildWeight(K parent, EdgeWeightConsumer<K> action) {
+		for (Map.Entry<K, Set<V>> child : this.listChildren(parent).entrySet()) {
+			action.accept(child.getKey(), minWeight(child.getValue()));
+		}
+	}
+	
+	/*
+	 * @param child the child node of which to visit the parents
+	 * @param action what to do with each parent and the weight of the edges from it
+	 * 
+	 * @spec.requires the labels of g are Numbers
+	 * @spec.effects calls action once for each parent of child, with the smallest of the labels of the edges 
+	 * from that parent to child, as a double. 
+	 * 
+	 * @throws IllegalArgumentException if child does not belong to g.nodes. 
+	 */
+	default void forEachParentWeight(K child, EdgeWeightConsumer<K> action) {
+		for (Map.Entry<K, Set<V>> parent : this.listParents(child).entrySet()) {
+			action.accept(parent.getKey(), minWeight(parent.getValue()));
+		}
+	}
+	
+	/*
+	 * @spec.requires labels is not empty, and holds Numbers
+	 * @return the smallest of labels as a double.
+	 */
+	private static double minWeight(Set<?> labels) {
+		double weight = Double.POSITIVE_INFINITY;
+		for (Object label : labels) {
+			weight = Math.min(weight, ((Number) label).doubleValue());
+		}
+		return weight;
+	}
 }
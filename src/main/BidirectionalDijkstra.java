@@ -0,0 +1,99 @@
+package main;
+
+import main.MapGraph.MapPath;
+
+/*
+ * Bidirectional Dijkstra over an IndexedGraph : one search grows from the start over the children of the nodes
+ * it settles, another grows from the target over their parents, and the side with the closest queued node
+ * goes next.
+ *
+ * Every time a node is reached by both searches, it is a meeting point for a path of length
+ * forward distance + backward distance, and the best of those is kept. The search stops as soon as the two
+ * smallest queued distances add up to at least that best length : no path that goes through an unsettled
+ * node of either side can be shorter.
+ */
+final class BidirectionalDijkstra {
+
+	private BidirectionalDijkstra() {
+	}
+
+	/*
+	 * @param graph the graph to search
+	 * @param startNode the id of the node to start from
+	 * @param targetNode the id of the node to reach
+	 * @return a shortest path from startNode to targetNode, empty if there is none or if both are the same node.
+	 */
+	static MapPath shortestPath(IndexedGraph graph, int startNode, int targetNode) {
+		SearchScratch forward = SearchScratch.current();
+		SearchScratch backward = SearchScratch.backward();
+		forward.begin(graph.nodeCount());
+		backward.begin(graph.nodeCount());
+		forward.reach(startNode, 0., -1, -1);
+		forward.queue.insertOrDecrease(startNode, 0.);
+		backward.reach(targetNode, 0., -1, -1);
+		backward.queue.insertOrDecrease(targetNode, 0.);
+
+		double bestLength = startNode == targetNode ? 0. : Double.POSITIVE_INFINITY;
+		int meetingNode = startNode == targetNode ? startNode : -1;
+
+		while (!forward.queue.isEmpty() && !backward.queue.isEmpty()
+				&& forward.queue.minKey() + backward.queue.minKey() < bestLength) {
+			if (forward.queue.minKey() <= backward.queue.minKey()) {
+				int node = forward.queue.pollMin();
+				forward.settle(node);
+				double distance = forward.distance(node);
+				for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+					forward.relaxedCount++;
+					int child = graph.outTarget(node, cursor);
+					double childDistance = distance + graph.outWeight(node, cursor);
+					if (!forward.isSettled(child) && childDistance < forward.distance(child)) {
+						forward.reach(child, childDistance, node, cursor);
+						forward.queue.insertOrDecrease(child, childDistance);
+					}
+					double length = forward.distance(child) + backward.distance(child);
+					if (length < bestLength) {
+						bestLength = length;
+						meetingNode = child;
+					}
+				}
+			} else {
+				int node = backward.queue.pollMin();
+				backward.settle(node);
+				double distance = backward.distance(node);
+				for (int cursor = graph.firstIn(node); cursor >= 0; cursor = graph.nextIn(node, cursor)) {
+					backward.relaxedCount++;
+					int parent = graph.inSource(node, cursor);
+					double parentDistance = distance + graph.inWeight(node, cursor);
+					if (!backward.isSettled(parent) && parentDistance < backward.distance(parent)) {
+						backward.reach(parent, parentDistance, node, cursor);
+						backward.queue.insertOrDecrease(parent, parentDistance);
+					}
+					double length = forward.distance(parent) + backward.distance(parent);
+					if (length < bestLength) {
+						bestLength = length;
+						meetingNode = parent;
+					}
+				}
+			}
+		}
+
+		SearchStats.record(forward, backward);
+		if (meetingNode < 0) {
+			return new MapPath();
+		}
+		return buildPath(graph, startNode, meetingNode, forward, backward);
+	}
+
+	/*
+	 * @return the path from startNode to meetingNode along the forward predecessors, followed by the path
+	 * from meetingNode to the target along the backward ones.
+	 */
+	private static MapPath buildPath(IndexedGraph graph, int startNode, int meetingNode, SearchScratch forward, SearchScratch backward) {
+		MapPath path = DijkstraEngine.buildPath(graph, startNode, meetingNode, forward);
+		for (int node = meetingNode; backward.predecessor(node) >= 0; node = backward.predecessor(node)) {
+			int next = backward.predecessor(node);
+			path.addStep(graph, node, next, graph.inWeight(next, backward.predecessorCursor(node)));
+		}
+		return path;
+	}
+}
@@ -0,0 +1,292 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/*
+ * An immutable snapshot of an AbstractGraph with Double labels, stored in compressed sparse row form.
+ *
+ * Only the smallest label of each parent -> child pair is kept, since that's the only one a shortest path
+ * can go through. Once built, a CompiledGraph never changes and can be shared between threads.
+ *
+ * Names are found in a dictionary with open addressing, as in NodeSymbols : an int per slot rather than a
+ * boxed Integer and a map entry per node.
+ */
+public final class CompiledGraph implements IndexedGraph {
+
+	private final String[] names;
+	// the dictionary of names, each slot holds 0 or an id + 1
+	private final int[] slots;
+	private final int[] offsets;
+	private final int[] targets;
+	private final double[] weights;
+	private final int[] reverseOffsets;
+	private final int[] sources;
+	private final double[] reverseWeights;
+	private final double[] xs;
+	private final double[] ys;
+	private final boolean hasCoordinates;
+	private final long version;
+
+	/*
+	 * Abstraction function
+	 *
+	 * g.nodes is 0, 1, ... this.names.length-1, and g.names[i] is this.names[i].
+	 *
+	 * the edges leaving node i are the <i, this.targets[e], this.weights[e]> for
+	 * this.offsets[i] <= e < this.offsets[i+1]. A cursor is the index e.
+	 * 
+	 * the same edges are stored a second time grouped by child : the edges entering node i are the 
+	 * <this.sources[e], i, this.reverseWeights[e]> for this.reverseOffsets[i] <= e < this.reverseOffsets[i+1].
+	 * 
+	 * the coordinates of node i are (this.xs[i], this.ys[i]), NaN when it has none. this.xs and this.ys are 
+	 * null when no node has coordinates.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) each id i is in exactly one slot, found by probing from the hash of this.names[i], and the names are
+	 * distinct. At most half of the slots are used, and their number is a power of 2.
+	 * (2) this.offsets has this.names.length+1 entries, starts at 0, is non decreasing and ends at this.targets.length.
+	 * (3) this.targets and this.weights have the same length, and 0 <= this.targets[e] < this.names.length.
+	 * (4) the targets between this.offsets[i] and this.offsets[i+1] are distinct.
+	 * (5) (2) and (3) hold for this.reverseOffsets, this.sources and this.reverseWeights, which hold the 
+	 * same edges as this.offsets, this.targets and this.weights.
+	 * (6) this.xs and this.ys are both null, or both have this.names.length entries.
+	 */
+
+	private CompiledGraph(String[] names, int[] slots, int[] offsets, int[] targets, double[] weights, double[] xs, double[] ys, long version) {
+		this.names = names;
+		this.slots = slots;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.xs = xs;
+		this.ys = ys;
+		boolean hasCoordinates = xs != null;
+		for (int node = 0; hasCoordinates && node < names.length; node++) {
+			hasCoordinates = !Double.isNaN(xs[node]) && !Double.isNaN(ys[node]);
+		}
+		this.hasCoordinates = hasCoordinates;
+		this.version = version;
+		
+		// group the edges by child with a counting sort
+		this.reverseOffsets = new int[names.length + 1];
+		for (int target : targets) {
+			this.reverseOffsets[target + 1]++;
+		}
+		for (int node = 0; node < names.length; node++) {
+			this.reverseOffsets[node + 1] += this.reverseOffsets[node];
+		}
+		this.sources = new int[targets.length];
+		this.reverseWeights = new double[targets.length];
+		int[] next = Arrays.copyOf(this.reverseOffsets, names.length);
+		for (int node = 0; node < names.length; node++) {
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+				int position = next[targets[edge]]++;
+				this.sources[position] = node;
+				this.reverseWeights[position] = weights[edge];
+			}
+		}
+	}
+
+	/*
+	 * @param graph the graph to take a snapshot of
+	 * @param version the version of graph this snapshot is taken at. It is only recorded, see version().
+	 * @return a CompiledGraph with the nodes of graph, and one edge per parent -> child pair of graph
+	 * weighted with the smallest of its labels.
+	 *
+	 * If graph is modified while it is being compiled, the snapshot holds some of the modifications, and no edge
+	 * to a node added during the compilation.
+	 */
+	public static CompiledGraph compile(AbstractGraph<String, Double> graph, long version) {
+		return compile(graph, version, Collections.<String, double[]>emptyMap());
+	}
+
+	/*
+	 * @param graph the graph to take a snapshot of
+	 * @param version the version of graph this snapshot is taken at. It is only recorded, see version().
+	 * @param coordinates the coordinates {x, y} of some of the nodes of graph
+	 * @return the same snapshot as compile(graph, version), where nodes have the given coordinates.
+	 */
+	public static CompiledGraph compile(AbstractGraph<String, Double> graph, long version, Map<String, double[]> coordinates) {
+		String[] names = graph.nodes().toArray(new String[0]);
+		int[] slots = slots(names);
+
+		int[] offsets = new int[names.length + 1];
+		// the edges found so far, grown as needed : edges.targets[0 .. edges.count-1] and their weights
+		EdgeBuffer edges = new EdgeBuffer(Math.max(16, names.length));
+		for (int id = 0; id < names.length; id++) {
+			graph.forEachChildWeight(names[id], (childName, weight) -> {
+				int child = find(names, slots, childName);
+				if (child >= 0) {
+					edges.add(child, weight);
+				}
+			});
+			offsets[id + 1] = edges.count;
+		}
+
+		double[] xs = null;
+		double[] ys = null;
+		if (!coordinates.isEmpty()) {
+			xs = new double[names.length];
+			ys = new double[names.length];
+			for (int id = 0; id < names.length; id++) {
+				double[] point = coordinates.get(names[id]);
+				xs[id] = point == null ? Double.NaN : point[0];
+				ys[id] = point == null ? Double.NaN : point[1];
+			}
+		}
+		return new CompiledGraph(names, slots, offsets, Arrays.copyOf(edges.targets, edges.count), Arrays.copyOf(edges.weights, edges.count), xs, ys, version);
+	}
+
+	/*
+	 * @return the version given when this snapshot was compiled.
+	 */
+	@Override
+	public long version() {
+		return this.version;
+	}
+
+	/*
+	 * @return the number of edges in this snapshot.
+	 */
+	public int edgeCount() {
+		return this.targets.length;
+	}
+
+	@Override
+	public int nodeCount() {
+		return this.names.length;
+	}
+
+	@Override
+	public int nodeId(String node) {
+		return node == null ? -1 : find(this.names, this.slots, node);
+	}
+
+	@Override
+	public String nodeName(int id) {
+		return this.names[id];
+	}
+
+	@Override
+	public int firstOut(int node) {
+		return this.offsets[node] < this.offsets[node + 1] ? this.offsets[node] : -1;
+	}
+
+	@Override
+	public int nextOut(int node, int cursor) {
+		return cursor + 1 < this.offsets[node + 1] ? cursor + 1 : -1;
+	}
+
+	@Override
+	public int outTarget(int node, int cursor) {
+		return this.targets[cursor];
+	}
+
+	@Override
+	public double outWeight(int node, int cursor) {
+		return this.weights[cursor];
+	}
+
+	@Override
+	public int firstIn(int node) {
+		return this.reverseOffsets[node] < this.reverseOffsets[node + 1] ? this.reverseOffsets[node] : -1;
+	}
+
+	@Override
+	public int nextIn(int node, int cursor) {
+		return cursor + 1 < this.reverseOffsets[node + 1] ? cursor + 1 : -1;
+	}
+
+	@Override
+	public int inSource(int node, int cursor) {
+		return this.sources[cursor];
+	}
+
+	@Override
+	public double inWeight(int node, int cursor) {
+		return this.reverseWeights[cursor];
+	}
+
+	@Override
+	public boolean hasCoordinates() {
+		return this.hasCoordinates;
+	}
+
+	@Override
+	public double x(int node) {
+		return this.xs == null ? Double.NaN : this.xs[node];
+	}
+
+	@Override
+	public double y(int node) {
+		return this.ys == null ? Double.NaN : this.ys[node];
+	}
+
+	/*
+	 * @param names distinct names
+	 * @return the dictionary of names, see the representation invariant.
+	 */
+	private static int[] slots(String[] names) {
+		int[] slots = new int[Integer.highestOneBit(Math.max(8, names.length)) * 4];
+		int mask = slots.length - 1;
+		for (int id = 0; id < names.length; id++) {
+			int slot = hash(names[id]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = id + 1;
+		}
+		return slots;
+	}
+
+	/*
+	 * @return the id of name in the dictionary slots of names, or -1 if it isn't there.
+	 */
+	private static int find(String[] names, int[] slots, String name) {
+		int mask = slots.length - 1;
+		for (int slot = hash(name) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+			int id = slots[slot] - 1;
+			if (names[id].equals(name)) {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * @return the hash of name, mixed so that names with close hash codes, like numbers, don't fall in
+	 * neighbouring slots.
+	 */
+	private static int hash(String name) {
+		int hash = name.hashCode() * 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/*
+	 * The targets and weights of the edges of a snapshot being compiled, in arrays that grow as edges are added.
+	 */
+	static final class EdgeBuffer {
+
+		int[] targets;
+		double[] weights;
+		int count;
+
+		EdgeBuffer(int capacity) {
+			this.targets = new int[capacity];
+			this.weights = new double[capacity];
+		}
+
+		void add(int target, double weight) {
+			if (this.count == this.targets.length) {
+				this.targets = Arrays.copyOf(this.targets, this.count * 2);
+				this.weights = Arrays.copyOf(this.weights, this.count * 2);
+			}
+			this.targets[this.count] = target;
+			this.weights[this.count] = weight;
+			this.count++;
+		}
+	}
+}
@@ -1,85 +1,471 @@
 package main;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 
 public class ConcreteGraph<K,V> implements AbstractGraph<K,V> {
-	
+
 	public static final boolean DEBUG = false;
-	
-	private ConcurrentHashMap<K, ConcurrentHashMap<K, HashSet<V>>> nodes;
-	
+
+	// the number of locks the nodes are spread over, a power of two
+	private static final int LOCK_STRIPES = 64;
+
+	// the number of mutations whose changed nodes are remembered at least, see changedNodes
+	private static final int CHANGES_KEPT = 4096;
+
+	// the version at which the observers of this graph read : the latest one, including a mutation being published
+	static final long LATEST = Long.MAX_VALUE;
+
+	// node -> its latest version, which links to the older ones
+	private ConcurrentHashMap<K, NodeVersion<K, V>> nodes;
+
+	// a node is guarded by locks[stripe(node)], see lockStripes
+	private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+	// the last version given to a mutation : those after version() are still being published, see commit
+	private final AtomicLong lastVersion = new AtomicLong();
+
+	// the number of nodes in g, updated right after each mutation is published, see nodes()
+	private final AtomicInteger nodeCount = new AtomicInteger();
+
+	private final Set<K> nodesView = new NodesView();
+
+	// the versions read by the open snapshots, see snapshot()
+	private final Set<Pin> pins = ConcurrentHashMap.newKeySet();
+
+	// the nodes changed by the published mutations, the last one first, see changedNodes. The version of the
+	// first one is the version of the graph, see version()
+	private final AtomicReference<Change> changes = new AtomicReference<Change>(new Change(0, new Object[0], null));
+
+	// version -> the nodes changed by a mutation whose node versions are linked, but that is not published
+	// yet because a mutation given an earlier version is still linking its own, see publish
+	private final ConcurrentHashMap<Long, Object[]> linked = new ConcurrentHashMap<Long, Object[]>();
+
+	// told about every mutation, see addListener
+	private final CopyOnWriteArrayList<GraphListener<K, V>> listeners = new CopyOnWriteArrayList<GraphListener<K, V>>();
+
+	/*
+	 * A node as it is from one version of the graph on, until the next version of that node : its outgoing and
+	 * incoming edges, or nothing if it was removed at that version. Nothing in it changes once it is published,
+	 * but the link to the previous version, which is cut once no open snapshot can read past it.
+	 */
+	private static final class NodeVersion<K, V> {
+
+		private final long version;
+
+		// child -> labels, or null if the node was removed. Label sets know their smallest label, see EdgeLabels.
+		private final PersistentMap<K, EdgeLabels<V>> children;
+
+		// incoming-edge index : parent -> labels. The label sets are shared with the children of the parents.
+		private final PersistentMap<K, EdgeLabels<V>> parents;
+
+		private volatile NodeVersion<K, V> older;
+
+		private NodeVersion(long version, PersistentMap<K, EdgeLabels<V>> children, PersistentMap<K, EdgeLabels<V>> parents, NodeVersion<K, V> older) {
+			this.version = version;
+			this.children = children;
+			this.parents = parents;
+			this.older = older;
+		}
+
+		private boolean isRemoved() {
+			return this.children == null;
+		}
+	}
+
+	/*
+	 * The next version of a node, while a mutator builds it. Its children and parents are derived from those
+	 * of the latest version, with which they share all but the path to the neighbours changed, see
+	 * PersistentMap.
+	 */
+	private static final class Draft<K, V> {
+
+		private PersistentMap<K, EdgeLabels<V>> children;
+		private PersistentMap<K, EdgeLabels<V>> parents;
+		private boolean removed;
+
+		private Draft(NodeVersion<K, V> latest) {
+			this.children = latest == null ? PersistentMap.<K, EdgeLabels<V>>empty() : latest.children;
+			this.parents = latest == null ? PersistentMap.<K, EdgeLabels<V>>empty() : latest.parents;
+		}
+
+		private void putChild(K child, EdgeLabels<V> labels) {
+			this.children = this.children.with(child, labels);
+		}
+
+		private void removeChild(K child) {
+			this.children = this.children.without(child);
+		}
+
+		private void putParent(K parent, EdgeLabels<V> labels) {
+			this.parents = this.parents.with(parent, labels);
+		}
+
+		private void removeParent(K parent) {
+			this.parents = this.parents.without(parent);
+		}
+
+		private NodeVersion<K, V> publish(long version, NodeVersion<K, V> older) {
+			if (this.removed) {
+				return new NodeVersion<K, V>(version, null, null, older);
+			}
+			return new NodeVersion<K, V>(version, this.children, this.parents, older);
+		}
+	}
+
+	/*
+	 * The nodes a mutation gave a new version to. Changes are linked from the latest mutation published to the
+	 * oldest one remembered, one per version, and the link to the older ones is cut once there are enough of
+	 * them. The first one, at version 0, is that of no mutation.
+	 */
+	private static final class Change {
+
+		private final long version;
+		private final Object[] nodes;
+		private volatile Change older;
+
+		private Change(long version, Object[] nodes, Change older) {
+			this.version = version;
+			this.nodes = nodes;
+			this.older = older;
+		}
+	}
+
+	/*
+	 * The version read by an open snapshot. It is first set to a lower bound of that version, see snapshot().
+	 */
+	static final class Pin {
+
+		volatile long version;
+
+		private Pin(long version) {
+			this.version = version;
+		}
+	}
+
 
 	/*
 	 * Abstraction function
-	 * 
-	 * g.nodes corresponds to the keys of this.nodes. 
-	 * 
-	 * let <N1, N2, l> be an edge linking N1 to N2, labelled l -- it belongs to the abstract field g.edges. 
-	 * then this element's label can be found this.nodes['N1']['N2']
-	 * 
-	 * 
-	 * 
-	 * Representation invariant : 
-	 * 
-	 * (1) keys in this.nodes are unique and keys in values of g.nodes are unique. 
-	 * (2) all sets contained in this.nodes contain no duplicates. 
-	 * (3) keys in this.nodes and values of this.nodes are non null
-	 * (4) all sets contained in this.nodes contain no null. 
-	 */
-	
-	
-	
-	/*
-	 * The following representation invariants do not need to be checked : 
-	 * (1) Because this.nodes is a Map and values of this.nodes are Maps, keys are unique. 
-	 * (2) Because this.nodes values are Sets, they contain no duplicates. 
-
-	 * We are checking (3) and (4) here, as :
-	 * - a HashMap does allow for one null key and any number of null values, natively. 
-	 * - a HashSet does allow for null values natively. 
-	 * 
-	 * If not verified, throws a RunTimeException. 
+	 *
+	 * let the version of N at v be the first one, following the older links from this.nodes['N'], whose
+	 * version is lower than or equal to v. g at version v is then :
+	 *
+	 * g.nodes corresponds to the keys of this.nodes whose version at v exists and is not removed.
+	 *
+	 * let <N1, N2, l> be an edge linking N1 to N2, labelled l -- it belongs to the abstract field g.edges.
+	 * then this element's label can be found in the children of the version of N1 at v, under 'N2'.
+	 *
+	 * the parents of each version are an index of the same edges keyed the other way around : the label of
+	 * <N1, N2, l> can also be found in the parents of the version of N2 at v, under 'N1'. They carry no
+	 * abstract information of their own, they only exist so that incoming edges can be found without
+	 * scanning all the nodes.
+	 *
+	 * g itself is g at version this.changes.version.
+	 *
+	 *
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) keys in this.nodes are unique and keys in children and parents are unique.
+	 * (2) all label sets contain no duplicates.
+	 * (3) keys in this.nodes, children and parents, and values of this.nodes are non null
+	 * (4) all label sets contain no null.
+	 * (5) for the latest versions, the parents of N2 under N1 are the very same set as the children of N1
+	 * under N2 whenever either exists.
+	 * (6) versions strictly decrease along the older links, and the latest versions are at most
+	 * this.lastVersion. Those after this.changes.version belong to mutations being published.
+	 * (7) no version a snapshot in this.pins reads has been cut from its chain.
+	 * (8) the versions of this.changes and its older links are this.changes.version, this.changes.version - 1,
+	 * ... in that order, and the nodes of each are those given a new version by the mutation of that version.
+	 * (9) the keys of this.linked are versions after this.changes.version whose mutations linked their node
+	 * versions, and this.changes.version + 1 is only one of them while it is being published.
+	 *
+	 *
+	 * Thread safety :
+	 *
+	 * the mutators are linearizable. Each of them holds the locks of all the nodes it reads or writes :
+	 * the parent and child of an edge, or a node and all of its neighbours for removeNode. Locks are
+	 * striped, so writers on unrelated nodes seldom wait for one another, and they are always taken in the
+	 * order of their stripes, so writers never deadlock. A mutator builds the next versions of its nodes
+	 * under those locks, deriving their children and parents from the latest ones without copying them,
+	 * see PersistentMap. It then takes the next version from this.lastVersion, links its node versions to
+	 * the chains, and releases its locks. Mutations are linked in any order, but published in the order of
+	 * their versions : the version of the graph is the last of the versions linked without a gap before it,
+	 * and whichever writer links the version that closes a gap publishes the ones it joins, by adding their
+	 * changes to this.changes. That is what makes each mutation appear at once to snapshots. No lock is
+	 * shared by all the writers, and no writer waits while it holds a lock. A writer returns, and tells the
+	 * listeners about its mutation, once it is published : a writer only waits for the writers of the
+	 * versions before its own, which hold their locks already, to link their node versions.
+	 *
+	 * the observers take no lock. They read the latest versions, each of which never changes, so an
+	 * observer running next to writers never fails and sees each mutation either entirely or not at all,
+	 * node by node. Snapshots read all nodes at the same version, so they see each mutation entirely or
+	 * not at all. checkRep is only meaningful when no mutation is in progress.
+	 */
+
+
+
+	/*
+	 * The following representation invariants do not need to be checked :
+	 * (1) Because this.nodes, children and parents are Maps, keys are unique.
+	 * (2) Because labels are Sets, they contain no duplicates.
+	 * (6) to (9) because versions are only published by commit, which trims the chains itself.
+
+	 * We are checking (3), (4) and (5) here, as :
+	 * - a HashMap does allow for one null key and any number of null values, natively.
+	 * - a HashSet does allow for null values natively.
+	 *
+	 * If not verified, throws a RunTimeException.
 	 */
 	private void checkRep() throws RuntimeException {
-		
-		// TODO consider building such an iterator, you're doing the same thing below.
-		for (Map.Entry<K, ConcurrentHashMap<K, HashSet<V>>> edges : this.nodes.entrySet()) {
-			if (edges.getKey()==null) {
+
+		for (Map.Entry<K, NodeVersion<K, V>> node : this.nodes.entrySet()) {
+			if (node.getKey()==null) {
 				throw new RuntimeException("there are null nodes keys");
 			}
-			if (edges.getValue()==null) {
+			if (node.getValue()==null) {
 				throw new RuntimeException("there are null nodes values");
 			}
-			for (Map.Entry<K, HashSet<V>> labels: edges.getValue().entrySet()) {
+			if (node.getValue().isRemoved()) {
+				continue;
+			}
+			for (Map.Entry<K, EdgeLabels<V>> labels: node.getValue().children.entrySet()) {
 				for (V l : labels.getValue()) {
 					if (l==null) {
 						throw new RuntimeException("there are null edge labels");
 					}
 				}
+				NodeVersion<K, V> child = this.at(labels.getKey(), LATEST);
+				if (child == null || child.parents.get(node.getKey()) != labels.getValue()) {
+					throw new RuntimeException("the parents index is out of sync with the children");
+				}
+			}
+			for (Map.Entry<K, EdgeLabels<V>> labels: node.getValue().parents.entrySet()) {
+				NodeVersion<K, V> parent = this.at(labels.getKey(), LATEST);
+				if (parent == null || parent.children.get(node.getKey()) != labels.getValue()) {
+					throw new RuntimeException("the parents index is out of sync with the children");
+				}
 			}
 		}
 	}
-	
+
 	public ConcreteGraph() {
-		this.nodes = new ConcurrentHashMap<K, ConcurrentHashMap<K,HashSet<V>>>();
+		this.nodes = new ConcurrentHashMap<K, NodeVersion<K, V>>();
+		for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+			this.locks[stripe] = new ReentrantLock();
+		}
+	}
+
+	private static int stripe(Object node) {
+		int hash = node.hashCode();
+		return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+	}
+
+	/*
+	 * @param stripes the stripes to lock, in any order and possibly repeated. The array is sorted in place.
+	 * @spec.effects acquires the lock of each of the stripes once, in increasing order.
+	 * @return the stripes locked, to be given back to unlockStripes.
+	 */
+	private int[] lockStripes(int... stripes) {
+		Arrays.sort(stripes);
+		int count = 0;
+		for (int i = 0; i < stripes.length; i++) {
+			if (i == 0 || stripes[i] != stripes[i - 1]) {
+				stripes[count++] = stripes[i];
+			}
+		}
+		int[] locked = Arrays.copyOf(stripes, count);
+		for (int stripe : locked) {
+			this.locks[stripe].lock();
+		}
+		return locked;
+	}
+
+	private void unlockStripes(int[] locked) {
+		for (int i = locked.length - 1; i >= 0; i--) {
+			this.locks[locked[i]].unlock();
+		}
+	}
+
+	/*
+	 * @return the version of node at version, or null if node is not in g at that version.
+	 */
+	private NodeVersion<K, V> at(K node, long version) {
+		NodeVersion<K, V> current = this.nodes.get(node);
+		while (current != null && current.version > version) {
+			current = current.older;
+		}
+		return current == null || current.isRemoved() ? null : current;
+	}
+
+	/*
+	 * @spec.requires the lock of node is held.
+	 * @return the next version of node in draft, starting it from the latest one if it isn't there yet.
+	 */
+	private Draft<K, V> draft(Map<K, Draft<K, V>> draft, K node) {
+		Draft<K, V> next = draft.get(node);
+		if (next == null) {
+			next = new Draft<K, V>(this.at(node, LATEST));
+			draft.put(node, next);
+		}
+		return next;
 	}
-	
+
+	/*
+	 * @spec.requires the locks of all the nodes of draft are held.
+	 * @spec.effects links the next versions of draft as one new version of g, published once the versions
+	 * before are : snapshots taken from then on see all of them, and snapshots taken before none. Then drops
+	 * the versions of these nodes that no open snapshot can read anymore.
+	 * @return the version given to draft, to be waited for with awaitPublished once the locks are released.
+	 */
+	private long commit(Map<K, Draft<K, V>> draft) {
+		long version = this.lastVersion.incrementAndGet();
+		try {
+			for (Map.Entry<K, Draft<K, V>> next : draft.entrySet()) {
+				this.nodes.put(next.getKey(), next.getValue().publish(version, this.nodes.get(next.getKey())));
+			}
+		} finally {
+			this.publish(version, draft.keySet().toArray());
+		}
+		long oldestPinned = this.oldestPinned();
+		for (K node : draft.keySet()) {
+			NodeVersion<K, V> latest = this.nodes.get(node);
+			NodeVersion<K, V> oldestRead = latest;
+			while (oldestRead.version > oldestPinned && oldestRead.older != null) {
+				oldestRead = oldestRead.older;
+			}
+			oldestRead.older = null;
+			if (oldestRead == latest && latest.isRemoved()) { // no snapshot can see node anymore
+				this.nodes.remove(node, latest);
+			}
+		}
+		return version;
+	}
+
+	/*
+	 * @param version a version whose node versions are linked
+	 * @param nodes the nodes given a new version by its mutation
+	 * @spec.effects publishes version, and the versions linked after it, if all the versions before are
+	 * published, and leaves them to be published with the last of those otherwise.
+	 */
+	private void publish(long version, Object[] nodes) {
+		this.linked.put(version, nodes);
+		Change latest = this.changes.get();
+		// whoever links the version after the latest one published publishes it. If two writers see it
+		// linked, one of them fails to add it and reads the latest one again
+		for (Object[] next = this.linked.get(latest.version + 1); next != null; next = this.linked.get(latest.version + 1)) {
+			Change change = new Change(latest.version + 1, next, latest);
+			if (!this.changes.compareAndSet(latest, change)) {
+				latest = this.changes.get();
+				continue;
+			}
+			this.linked.remove(change.version);
+			if (change.version % CHANGES_KEPT == 0) {
+				Change oldest = change;
+				for (int kept = 1; kept < CHANGES_KEPT && oldest.older != null; kept++) {
+					oldest = oldest.older;
+				}
+				oldest.older = null;
+			}
+			latest = change;
+		}
+	}
+
+	/*
+	 * @spec.requires no lock of this graph is held, and version was given to a mutation
+	 * @spec.effects waits until version is published. The mutations given the versions before it are linked
+	 * already or about to be, since they hold their locks, so this is only a few map updates away.
+	 */
+	private void awaitPublished(long version) {
+		while (this.version() < version) {
+			Thread.yield();
+		}
+	}
+
+	/*
+	 * @param from a version of this graph
+	 * @param to a version of this graph, at most version()
+	 * @param limit the number of nodes the caller is interested in at most
+	 * @return the nodes given a new version by the mutations after from up to to : those they added or
+	 * removed, the ends of the edges they added, removed or relabelled, and the neighbours of the nodes they
+	 * removed. Null if there are more than limit of them, or if they are not all remembered anymore : only
+	 * the latest mutations are, at least CHANGES_KEPT of them.
+	 */
+	@SuppressWarnings("unchecked")
+	Set<K> changedNodes(long from, long to, int limit) {
+		Set<K> changed = new HashSet<K>();
+		if (from >= to) {
+			return changed;
+		}
+		for (Change change = this.changes.get(); change != null && change.version > from; change = change.older) {
+			if (change.version <= to) {
+				for (Object node : change.nodes) {
+					changed.add((K) node);
+				}
+				if (changed.size() > limit) {
+					return null;
+				}
+			}
+			if (change.version == from + 1) {
+				return changed;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * @return the oldest version an open snapshot may read.
+	 */
+	private long oldestPinned() {
+		// the version must be read before the pins : a snapshot pinned after that reads a later version
+		long oldest = this.version();
+		for (Pin pin : this.pins) {
+			oldest = Math.min(oldest, pin.version);
+		}
+		return oldest;
+	}
+
 	@Override
 	public void addNode(K node) {
 		if (DEBUG) {
 			this.checkRep();
 		}
-		if (this.nodes.containsKey(node)) {
-			throw new IllegalArgumentException("the node " + node.toString() + " is already present in this graph");
+		long version;
+		int[] locked = this.lockStripes(stripe(node));
+		try {
+			if (this.at(node, LATEST) != null) {
+				throw new IllegalArgumentException("the node " + node.toString() + " is already present in this graph");
+			}
+			Map<K, Draft<K, V>> draft = new HashMap<K, Draft<K, V>>();
+			this.draft(draft, node);
+			version = this.commit(draft);
+			this.nodeCount.incrementAndGet();
+		} finally {
+			this.unlockStripes(locked);
+		}
+		this.awaitPublished(version);
+		for (GraphListener<K, V> listener : this.listeners) {
+			listener.nodeAdded(node);
+			listener.mutationPublished(version);
 		}
-		ConcurrentHashMap<K, HashSet<V>> emptyEdgesMap = new ConcurrentHashMap<>();
-		this.nodes.put(node, emptyEdgesMap);
 		if (DEBUG) {
 			this.checkRep();
 		}
@@ -90,21 +476,78 @@ public class ConcreteGraph<K,V> implements AbstractGraph<K,V> {
 		if (DEBUG) {
 			this.checkRep();
 		}
-		if (!this.nodes.containsKey(node)) {
-			throw new IllegalArgumentException("the node " + node.toString() + " is not present in this graph");
-		}
-		this.nodes.remove(node); // removes all the edges where node is the parent, if any
-		// then remove all edges where node is the children, if any ! 
-		for (Map.Entry<K, ConcurrentHashMap<K, HashSet<V>>> edges : this.nodes.entrySet()) {
-			if (edges.getValue().containsKey(node)) {
-				edges.getValue().remove(node);
+		// the neighbours of node are locked too. They are read before taking the locks, and can't change
+		// once the lock of node is held : if a new one showed up in between, start again with it.
+		int[] stripes = this.neighbourStripes(node);
+		long version;
+		while (true) {
+			int[] locked = this.lockStripes(stripes);
+			try {
+				NodeVersion<K, V> latest = this.at(node, LATEST);
+				if (latest == null) {
+					throw new IllegalArgumentException("the node " + node.toString() + " is not present in this graph");
+				}
+				stripes = this.neighbourStripes(node);
+				if (!holdsAll(locked, stripes)) {
+					continue;
+				}
+				Map<K, Draft<K, V>> draft = new HashMap<K, Draft<K, V>>();
+				// removes all the edges where node is the parent, if any, and forget them in the children's index
+				for (K child : latest.children.keySet()) {
+					this.draft(draft, child).removeParent(node);
+				}
+				// then remove all edges where node is the children, if any ! Only the parents need to be visited.
+				for (K parent : latest.parents.keySet()) {
+					this.draft(draft, parent).removeChild(node);
+				}
+				this.draft(draft, node).removed = true;
+				version = this.commit(draft);
+				this.nodeCount.decrementAndGet();
+				break;
+			} finally {
+				this.unlockStripes(locked);
 			}
 		}
+		this.awaitPublished(version);
+		for (GraphListener<K, V> listener : this.listeners) {
+			listener.nodeRemoved(node);
+			listener.mutationPublished(version);
+		}
 		if (DEBUG) {
 			this.checkRep();
 		}
 	}
 
+	/*
+	 * @return the stripes of node and of its children and parents, as read without any lock.
+	 */
+	private int[] neighbourStripes(K node) {
+		NodeVersion<K, V> latest = this.at(node, LATEST);
+		if (latest == null) {
+			return new int[] {stripe(node)};
+		}
+		int[] stripes = new int[1 + latest.children.size() + latest.parents.size()];
+		int count = 0;
+		stripes[count++] = stripe(node);
+		for (K child : latest.children.keySet()) {
+			stripes[count++] = stripe(child);
+		}
+		for (K parent : latest.parents.keySet()) {
+			stripes[count++] = stripe(parent);
+		}
+		return stripes;
+	}
+
+	// locked is sorted, see lockStripes
+	private static boolean holdsAll(int[] locked, int[] stripes) {
+		for (int stripe : stripes) {
+			if (Arrays.binarySearch(locked, stripe) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public void addEdge(K child, K parent, V label) {
 		if (DEBUG) {
@@ -112,32 +555,48 @@ public class ConcreteGraph<K,V> implements AbstractGraph<K,V> {
 		}
 		if (child==null) {
 			throw new IllegalArgumentException("the child argument should be given a non null value");
-		}	
+		}
 		if (parent==null) {
 			throw new IllegalArgumentException("the parent argument should be given a non null value");
-		}	
+		}
 		if (label==null) {
 			throw new IllegalArgumentException("the label argument should be given a non null value");
 		}
-		
-		
-		if (!this.nodes.containsKey(parent)) {
-			this.nodes.put(parent, new ConcurrentHashMap<K, HashSet<V>>());	
-		} 
-		
-		if (!this.nodes.containsKey(child)) {
-			this.nodes.put(child, new ConcurrentHashMap<K, HashSet<V>>());	
-		} 
-		
-		if (!this.nodes.get(parent).containsKey(child)) {
-			this.nodes.get(parent).put(child, new HashSet<V>());	
-		}
-		
-		if (this.nodes.get(parent).get(child).contains(label)) {
-			throw new IllegalArgumentException("the edge defined by <" + parent.toString() + ", " + child.toString() + ", " + label.toString() + "> already exists in the graph");
-		}
-		// add child 
-		this.nodes.get(parent).get(child).add(label);
+
+		long version;
+		boolean newParent;
+		boolean newChild;
+		int[] locked = this.lockStripes(stripe(parent), stripe(child));
+		try {
+			NodeVersion<K, V> latest = this.at(parent, LATEST);
+			EdgeLabels<V> labels = latest == null ? null : latest.children.get(child);
+			if (labels != null && labels.contains(label)) {
+				throw new IllegalArgumentException("the edge defined by <" + parent.toString() + ", " + child.toString() + ", " + label.toString() + "> already exists in the graph");
+			}
+			EdgeLabels<V> shared = labels == null ? EdgeLabels.of(label) : labels.with(label);
+
+			// add child, creating the nodes that are missing
+			newParent = latest == null;
+			newChild = !child.equals(parent) && this.at(child, LATEST) == null;
+			Map<K, Draft<K, V>> draft = new HashMap<K, Draft<K, V>>();
+			this.draft(draft, parent).putChild(child, shared);
+			this.draft(draft, child).putParent(parent, shared);
+			version = this.commit(draft);
+			this.nodeCount.addAndGet((newParent ? 1 : 0) + (newChild ? 1 : 0));
+		} finally {
+			this.unlockStripes(locked);
+		}
+		this.awaitPublished(version);
+		for (GraphListener<K, V> listener : this.listeners) {
+			if (newParent) {
+				listener.nodeAdded(parent);
+			}
+			if (newChild) {
+				listener.nodeAdded(child);
+			}
+			listener.edgeAdded(child, parent, label);
+			listener.mutationPublished(version);
+		}
 		if (DEBUG) {
 			this.checkRep();
 		}
@@ -148,103 +607,484 @@ public class ConcreteGraph<K,V> implements AbstractGraph<K,V> {
 		if (DEBUG) {
 			this.checkRep();
 		}
-		if (!this.nodes.containsKey(parent)) {
-			throw new IllegalArgumentException("the node " + parent.toString() + " does not belong to the graph");
-		}
-		
-		if (!this.nodes.get(parent).containsKey(child)) {
-			throw new IllegalArgumentException("the node " + child.toString() + " is not a child of parent node");
-			
-		}
-		
-		if (!this.nodes.get(parent).get(child).contains(label)) {
-			throw new IllegalArgumentException("the edge defined by <" + parent.toString() + ", " + child.toString() + ", " + label.toString() + "> does not belong to this graph");
+		long version;
+		int[] locked = this.lockStripes(stripe(parent), stripe(child));
+		try {
+			NodeVersion<K, V> latest = this.at(parent, LATEST);
+			if (latest == null) {
+				throw new IllegalArgumentException("the node " + parent.toString() + " does not belong to the graph");
+			}
+
+			EdgeLabels<V> labels = latest.children.get(child);
+			if (labels == null) {
+				throw new IllegalArgumentException("the node " + child.toString() + " is not a child of parent node");
+			}
+
+			if (!labels.contains(label)) {
+				throw new IllegalArgumentException("the edge defined by <" + parent.toString() + ", " + child.toString() + ", " + label.toString() + "> does not belong to this graph");
+			}
+			Map<K, Draft<K, V>> draft = new HashMap<K, Draft<K, V>>();
+			EdgeLabels<V> shared = labels.without(label);
+			if (shared == null) {
+				this.draft(draft, parent).removeChild(child);
+				this.draft(draft, child).removeParent(parent);
+			} else {
+				this.draft(draft, parent).putChild(child, shared);
+				this.draft(draft, child).putParent(parent, shared);
+			}
+			version = this.commit(draft);
+		} finally {
+			this.unlockStripes(locked);
 		}
-		// what does this do if parent not in nodes or child not in nodes[parent] or label not in nodes[parent][child]?
-		this.nodes.get(parent).get(child).remove(label);
-		if (this.nodes.get(parent).get(child).isEmpty()) {
-			this.nodes.get(parent).remove(child);
+		this.awaitPublished(version);
+		for (GraphListener<K, V> listener : this.listeners) {
+			listener.edgeRemoved(child, parent, label);
+			listener.mutationPublished(version);
 		}
 		if (DEBUG) {
 			this.checkRep();
 		}
 	}
 
+	/*
+	 * @return a number that changes every time g is modified by one of the mutators. Two equal values
+	 * returned by this method mean that g has not been modified in between.
+	 */
+	public long version() {
+		return this.changes.get().version;
+	}
+
+	/*
+	 * @param listener told about every mutation of g from now on, see GraphListener.
+	 */
+	public void addListener(GraphListener<K, V> listener) {
+		this.listeners.add(listener);
+	}
+
+	/*
+	 * @param listener a listener added to g
+	 * @spec.effects stops telling listener about the mutations of g. Does nothing if it wasn't added.
+	 */
+	public void removeListener(GraphListener<K, V> listener) {
+		this.listeners.remove(listener);
+	}
+
+	/*
+	 * @return a read-only view of g as it is now, which keeps reading g at this version whatever mutations
+	 * follow, and without delaying them. Taking a snapshot copies nothing.
+	 *
+	 * @spec.effects keeps the versions of the nodes the snapshot reads until it is closed. Those of a node
+	 * are dropped by the next mutation of that node once no open snapshot reads them.
+	 */
+	public GraphSnapshot<K, V> snapshot() {
+		// pinned first at a version no later than the one read, see oldestPinned
+		Pin pin = new Pin(this.version());
+		this.pins.add(pin);
+		pin.version = this.version();
+		return new GraphSnapshot<K, V>(this, pin);
+	}
+
+	/*
+	 * @spec.effects lets the versions pin reads be dropped.
+	 */
+	void release(Pin pin) {
+		this.pins.remove(pin);
+	}
+
+	/*
+	 * @return true if node is in g.nodes. Unlike listNodes().contains(node), doesn't copy g.nodes.
+	 */
+	public boolean containsNode(K node) {
+		return this.containsNode(node, LATEST);
+	}
+
+	boolean containsNode(K node, long version) {
+		return node != null && this.at(node, version) != null;
+	}
+
 	@Override
 	public HashSet<K> listNodes() {
-		return new HashSet<K>(this.nodes.keySet());
+		return this.listNodes(LATEST);
+	}
+
+	HashSet<K> listNodes(long version) {
+		HashSet<K> nodes = new HashSet<K>();
+		for (K node : this.nodes.keySet()) {
+			if (this.at(node, version) != null) {
+				nodes.add(node);
+			}
+		}
+		return nodes;
 	}
 
 	@Override
 	public HashMap<K, Set<V>> listChildren(K parent) {
+		return this.listChildren(parent, LATEST);
+	}
+
+	HashMap<K, Set<V>> listChildren(K parent, long version) {
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.Counter.CHILDREN_LOOKUPS.increment();
+		}
 		if (DEBUG) {
 			checkRep();
-		}		
-		if (!this.nodes.containsKey(parent)) {
-			throw new IllegalArgumentException("the node " + parent.toString() + " does not belong to the graph");			
 		}
-		
-		HashMap<K, Set<V>> childrenMapping = new HashMap<K, Set<V>>(this.nodes.get(parent));
-		
-		for(Map.Entry<K, Set<V>> children : childrenMapping.entrySet()) {
-			if (children.getValue().isEmpty()) {
-				childrenMapping.remove(children.getKey());
-			}
+		NodeVersion<K, V> node = this.at(parent, version);
+		if (node == null) {
+			throw new IllegalArgumentException("the node " + parent.toString() + " does not belong to the graph");
 		}
-		if (DEBUG) {
-			checkRep();
-		}		
-		return childrenMapping;
+		// label sets are read-only, and never empty
+		return new HashMap<K, Set<V>>(node.children);
 	}
-	
-	
+
+
 
 	@Override
 	public HashMap<K, Set<V>> listParents(K child) {
-		if (DEBUG) {
-			checkRep();
-		}		
-		if (!this.nodes.containsKey(child)) {
-			throw new IllegalArgumentException("the node " + child.toString() + " does not belong to the graph");			
-		}	
-		
-		HashMap<K, Set<V>> parentsMapping = new HashMap<K, Set<V>>();
-		for (Map.Entry<K, ConcurrentHashMap<K, HashSet<V>>> edges : this.nodes.entrySet()) {
-			Set<V> parentEdgesLabels = new HashSet<V>();
-			for (Map.Entry<K, HashSet<V>> labels: edges.getValue().entrySet()) {
-				if (labels.getKey()==child) {
-					for (V l : labels.getValue()) {
-						parentEdgesLabels.add(l);
-					}					
-				}
-			}
-			if (!parentEdgesLabels.isEmpty()) {
-				parentsMapping.put(edges.getKey(), parentEdgesLabels);
-			}
+		return this.listParents(child, LATEST);
+	}
+
+	HashMap<K, Set<V>> listParents(K child, long version) {
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.Counter.PARENTS_LOOKUPS.increment();
 		}
 		if (DEBUG) {
 			checkRep();
 		}
-		return parentsMapping;
+		NodeVersion<K, V> node = this.at(child, version);
+		if (node == null) {
+			throw new IllegalArgumentException("the node " + child.toString() + " does not belong to the graph");
+		}
+
+		// only the incoming edges of child are visited, thanks to the parents index.
+		return new HashMap<K, Set<V>>(node.parents);
 	}
-	
+
+	/*
+	 * Unlike listChildren(parent).forEach, copies nothing and reads the smallest label of each edge from 
+	 * EdgeLabels, where it is kept up to date by addEdge and removeEdge. 
+	 */
+	@Override
+	public void forEachChildWeight(K parent, EdgeWeightConsumer<K> action) {
+		this.forEachChildWeight(parent, action, LATEST);
+	}
+
+	void forEachChildWeight(K parent, EdgeWeightConsumer<K> action, long version) {
+		if (!this.forEachChildWeightIfPresent(parent, action, version)) {
+			throw new IllegalArgumentException("the node " + parent.toString() + " does not belong to the graph");
+		}
+	}
+
+	/*
+	 * @return false, having visited nothing, if parent is not a node of the graph at version, and true once 
+	 * done as forEachChildWeight(parent, action, version) otherwise. Unlike containsNode followed by 
+	 * forEachChildWeight, parent is looked up once, so a concurrent writer can't remove it in between. 
+	 */
+	boolean forEachChildWeightIfPresent(K parent, EdgeWeightConsumer<K> action, long version) {
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.Counter.CHILDREN_LOOKUPS.increment();
+		}
+		NodeVersion<K, V> node = this.at(parent, version);
+		if (node == null) {
+			return false;
+		}
+		for (Map.Entry<K, EdgeLabels<V>> child : node.children.entrySet()) {
+			action.accept(child.getKey(), child.getValue().minWeight());
+		}
+		return true;
+	}
+
+	/*
+	 * Unlike listParents(child).forEach, copies nothing, see forEachChildWeight. 
+	 */
+	@Override
+	public void forEachParentWeight(K child, EdgeWeightConsumer<K> action) {
+		this.forEachParentWeight(child, action, LATEST);
+	}
+
+	void forEachParentWeight(K child, EdgeWeightConsumer<K> action, long version) {
+		if (!this.forEachParentWeightIfPresent(child, action, version)) {
+			throw new IllegalArgumentException("the node " + child.toString() + " does not belong to the graph");
+		}
+	}
+
+	/*
+	 * @return false, having visited nothing, if child is not a node of the graph at version, and true once 
+	 * done as forEachParentWeight(child, action, version) otherwise, see forEachChildWeightIfPresent. 
+	 */
+	boolean forEachParentWeightIfPresent(K child, EdgeWeightConsumer<K> action, long version) {
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.Counter.PARENTS_LOOKUPS.increment();
+		}
+		NodeVersion<K, V> node = this.at(child, version);
+		if (node == null) {
+			return false;
+		}
+		for (Map.Entry<K, EdgeLabels<V>> parent : node.parents.entrySet()) {
+			action.accept(parent.getKey(), parent.getValue().minWeight());
+		}
+		return true;
+	}
+
 	@Override
 	public HashSet<V> getEdgeLabels(K child, K parent){
+		return this.getEdgeLabels(child, parent, LATEST);
+	}
+
+	HashSet<V> getEdgeLabels(K child, K parent, long version){
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.Counter.EDGE_LABEL_LOOKUPS.increment();
+		}
 		if (DEBUG) {
 			checkRep();
-		}		
-		if (!this.nodes.containsKey(parent)) {
+		}
+		NodeVersion<K, V> node = this.at(parent, version);
+		if (node == null) {
 			throw new IllegalArgumentException(parent.toString() + " is not a node in this graph");
 		}
-		
-		if (!this.nodes.get(parent).containsKey(child)) {
-			throw new IllegalArgumentException(child.toString() + " is not a child of " + parent.toString());			
+
+		EdgeLabels<V> labels = node.children.get(child);
+		if (labels == null) {
+			throw new IllegalArgumentException(child.toString() + " is not a child of " + parent.toString());
 		}
-		
+
 		if (DEBUG) {
 			checkRep();
-		}		
-		return new HashSet<V>(this.nodes.get(parent).get(child));
+		}
+		return new HashSet<V>(labels);
+	}
+
+	/*
+	 * Unlike listNodes, copies nothing : the view reads this graph as it is at each call. Its iterators are
+	 * weakly consistent, like those of ConcurrentHashMap : they never throw ConcurrentModificationException,
+	 * see every node that stays in g while they run, and may or may not see nodes added or removed meanwhile.
+	 * size() is the number of nodes as of the last mutation that returned.
+	 */
+	@Override
+	public Set<K> nodes() {
+		return this.nodesView;
 	}
 
+	@Override
+	public void forEachNode(Consumer<? super K> action) {
+		for (Map.Entry<K, NodeVersion<K, V>> node : this.nodes.entrySet()) {
+			if (!node.getValue().isRemoved()) {
+				action.accept(node.getKey());
+			}
+		}
+	}
+
+	/*
+	 * Unlike listChildren, copies nothing : the view reads the children of parent as they are at each call, 
+	 * and is empty once parent is removed. Each iteration reads them as they were when it started, since 
+	 * the children of a node are never changed in place, see NodeVersion. 
+	 */
+	@Override
+	public Map<K, Set<V>> children(K parent) {
+		this.at(parent, LATEST, true);
+		return new NeighboursView(parent, true);
+	}
+
+	/*
+	 * Unlike listParents, copies nothing, see children. 
+	 */
+	@Override
+	public Map<K, Set<V>> parents(K child) {
+		this.at(child, LATEST, true);
+		return new NeighboursView(child, false);
+	}
+
+	/*
+	 * Unlike getEdgeLabels, copies nothing : label sets are never changed in place, so the set returned is 
+	 * the labels of the edges from parent to child as they were when called. 
+	 */
+	@Override
+	public Set<V> edgeLabels(K child, K parent) {
+		return this.edgeLabels(child, parent, LATEST);
+	}
+
+	Set<V> edgeLabels(K child, K parent, long version) {
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.Counter.EDGE_LABEL_LOOKUPS.increment();
+		}
+		NodeVersion<K, V> node = this.at(parent, version);
+		if (node == null) {
+			throw new IllegalArgumentException(parent.toString() + " is not a node in this graph");
+		}
+		EdgeLabels<V> labels = node.children.get(child);
+		if (labels == null) {
+			throw new IllegalArgumentException(child.toString() + " is not a child of " + parent.toString());
+		}
+		return labels;
+	}
+
+	/*
+	 * @return the smallest label of the edges from parent to child at version, as read by forEachChildWeight, 
+	 * or Double.POSITIVE_INFINITY if there is no such edge. Unlike edgeLabels, looks parent up once and 
+	 * never throws, see forEachChildWeightIfPresent. 
+	 */
+	double minWeight(K child, K parent, long version) {
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.Counter.EDGE_LABEL_LOOKUPS.increment();
+		}
+		NodeVersion<K, V> node = this.at(parent, version);
+		EdgeLabels<V> labels = node == null ? null : node.children.get(child);
+		return labels == null ? Double.POSITIVE_INFINITY : labels.minWeight();
+	}
+
+	// the children of parent at version, which never change
+	Map<K, Set<V>> children(K parent, long version) {
+		return readOnly(this.at(parent, version, true).children);
+	}
+
+	// the parents of child at version, which never change
+	Map<K, Set<V>> parents(K child, long version) {
+		return readOnly(this.at(child, version, false).parents);
+	}
+
+	/*
+	 * @param neighbours the children or parents of a published NodeVersion, which are read-only already
+	 * @return neighbours, typed as the observers return them.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Map<K, Set<V>> readOnly(Map<K, EdgeLabels<V>> neighbours) {
+		return (Map<K, Set<V>>) (Map<K, ?>) neighbours;
+	}
+
+	/*
+	 * Unlike listChildren(parent).forEach, copies nothing, and visits the children of parent as they are 
+	 * when called. 
+	 */
+	@Override
+	public void forEachChild(K parent, BiConsumer<? super K, ? super Set<V>> action) {
+		this.forEachChild(parent, action, LATEST);
+	}
+
+	void forEachChild(K parent, BiConsumer<? super K, ? super Set<V>> action, long version) {
+		this.at(parent, version, true).children.forEach(action);
+	}
+
+	/*
+	 * Unlike listParents(child).forEach, copies nothing, see forEachChild. 
+	 */
+	@Override
+	public void forEachParent(K child, BiConsumer<? super K, ? super Set<V>> action) {
+		this.forEachParent(child, action, LATEST);
+	}
+
+	void forEachParent(K child, BiConsumer<? super K, ? super Set<V>> action, long version) {
+		this.at(child, version, false).parents.forEach(action);
+	}
+
+	/*
+	 * @param children whether the children of node are looked up, rather than its parents, for GraphMetrics
+	 * @return the version of node at version.
+	 * @throws IllegalArgumentException if node is not in g at that version.
+	 */
+	private NodeVersion<K, V> at(K node, long version, boolean children) {
+		if (GraphMetrics.ENABLED) {
+			(children ? GraphMetrics.Counter.CHILDREN_LOOKUPS : GraphMetrics.Counter.PARENTS_LOOKUPS).increment();
+		}
+		NodeVersion<K, V> latest = this.at(node, version);
+		if (latest == null) {
+			throw new IllegalArgumentException("the node " + String.valueOf(node) + " does not belong to the graph");
+		}
+		return latest;
+	}
+
+	/*
+	 * The live view of g.nodes returned by nodes().
+	 */
+	private final class NodesView extends AbstractSet<K> {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean contains(Object node) {
+			return node != null && ConcreteGraph.this.containsNode((K) node);
+		}
+
+		@Override
+		public int size() {
+			return ConcreteGraph.this.nodeCount.get();
+		}
+
+		@Override
+		public Iterator<K> iterator() {
+			Iterator<Map.Entry<K, NodeVersion<K, V>>> entries = ConcreteGraph.this.nodes.entrySet().iterator();
+			return new Iterator<K>() {
+
+				// the next node to return, or null if it is yet to be found
+				private K next;
+
+				@Override
+				public boolean hasNext() {
+					while (this.next == null && entries.hasNext()) {
+						Map.Entry<K, NodeVersion<K, V>> node = entries.next();
+						if (!node.getValue().isRemoved()) {
+							this.next = node.getKey();
+						}
+					}
+					return this.next != null;
+				}
+
+				@Override
+				public K next() {
+					if (!this.hasNext()) {
+						throw new NoSuchElementException();
+					}
+					K node = this.next;
+					this.next = null;
+					return node;
+				}
+			};
+		}
+	}
+
+	/*
+	 * The live view of the children or the parents of a node, returned by children and parents.
+	 */
+	private final class NeighboursView extends AbstractMap<K, Set<V>> {
+
+		private final K node;
+		private final boolean children;
+
+		private NeighboursView(K node, boolean children) {
+			this.node = node;
+			this.children = children;
+		}
+
+		// the children or parents of node at the latest version, none if it was removed
+		private Map<K, Set<V>> current() {
+			NodeVersion<K, V> latest = ConcreteGraph.this.at(this.node, LATEST);
+			if (latest == null) {
+				return Collections.emptyMap();
+			}
+			return readOnly(this.children ? latest.children : latest.parents);
+		}
+
+		@Override
+		public Set<Map.Entry<K, Set<V>>> entrySet() {
+			return this.current().entrySet();
+		}
+
+		@Override
+		public Set<V> get(Object neighbour) {
+			return this.current().get(neighbour);
+		}
+
+		@Override
+		public boolean containsKey(Object neighbour) {
+			return this.current().containsKey(neighbour);
+		}
+
+		@Override
+		public int size() {
+			return this.current().size();
+		}
+
+		@Override
+		public void forEach(BiConsumer<? super K, ? super Set<V>> action) {
+			this.current().forEach(action);
+		}
+	}
 }
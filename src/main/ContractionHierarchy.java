@@ -0,0 +1,584 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import main.MapGraph.MapPath;
+
+/*
+ * A contraction hierarchy over an IndexedGraph : a preprocessed form of the graph that answers point to point
+ * shortest path queries while settling only a few hundred nodes, even on large road networks.
+ *
+ * Preprocessing contracts the nodes one after the other, from the least to the most important. Contracting
+ * a node v removes it from the graph, and adds a shortcut u -> w of length d(u, v) + d(v, w) for every pair
+ * of neighbours u -> v -> w whose shortest path goes through v. The rank of a node is the order it was
+ * contracted in. Nodes are contracted in rounds : each round picks the nodes whose priority is a local minimum
+ * among their remaining neighbours, which are never adjacent to one another, and computes their shortcuts in
+ * parallel.
+ *
+ * A query runs a bidirectional Dijkstra where both searches only go up in rank : the forward search over
+ * the edges and shortcuts to higher ranked children, the backward one over the edges and shortcuts from
+ * higher ranked parents. Shortcuts on the resulting path are unpacked back into the original edges.
+ *
+ * A ContractionHierarchy never changes once built. It answers queries on the graph it was built from, and
+ * can be shared between threads.
+ */
+public final class ContractionHierarchy {
+
+	// the number of nodes a witness search settles before giving up, and adding the shortcut
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+	// the same, when only estimating the number of shortcuts for a priority
+	private static final int ESTIMATE_SETTLE_LIMIT = 50;
+
+	private final IndexedGraph graph;
+	private final int[] ranks;
+	private final int shortcutCount;
+
+	// the edges to higher ranked children : <upSources[e], upTargets[e], upWeights[e]> for upOffsets[u] <= e < upOffsets[u+1]
+	private final int[] upOffsets;
+	private final int[] upSources;
+	private final int[] upTargets;
+	private final double[] upWeights;
+	private final int[] upMiddles;
+
+	// the edges from higher ranked parents : <downSources[e], downTargets[e], downWeights[e]> for downOffsets[w] <= e < downOffsets[w+1]
+	private final int[] downOffsets;
+	private final int[] downSources;
+	private final int[] downTargets;
+	private final double[] downWeights;
+	private final int[] downMiddles;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the hierarchy holds every edge of this.graph, plus shortcutCount shortcuts. An edge or shortcut u -> w
+	 * is stored once : in the up edges of u if this.ranks[w] > this.ranks[u], and in the down edges of w
+	 * otherwise. Its middle is -1 for an edge of this.graph, and the node v it skips for a shortcut
+	 * u -> v -> w, in which case u -> v and v -> w are themselves stored in the down and up edges of v.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) this.ranks is a permutation of 0 .. this.graph.nodeCount()-1.
+	 * (2) this.ranks[upTargets[e]] > this.ranks[upSources[e]] and this.ranks[downSources[e]] > this.ranks[downTargets[e]].
+	 * (3) there is at most one stored edge or shortcut per pair u -> w.
+	 */
+
+	private ContractionHierarchy(IndexedGraph graph, Contractor contractor) {
+		this.graph = graph;
+		this.ranks = contractor.ranks;
+		this.shortcutCount = contractor.shortcutCount;
+
+		int nodeCount = graph.nodeCount();
+		this.upOffsets = new int[nodeCount + 1];
+		this.downOffsets = new int[nodeCount + 1];
+		for (int e = 0; e < contractor.edgeCount; e++) {
+			int u = contractor.edgeSources[e];
+			int w = contractor.edgeTargets[e];
+			if (this.ranks[w] > this.ranks[u]) {
+				this.upOffsets[u + 1]++;
+			} else {
+				this.downOffsets[w + 1]++;
+			}
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			this.upOffsets[node + 1] += this.upOffsets[node];
+			this.downOffsets[node + 1] += this.downOffsets[node];
+		}
+		this.upSources = new int[this.upOffsets[nodeCount]];
+		this.upTargets = new int[this.upOffsets[nodeCount]];
+		this.upWeights = new double[this.upOffsets[nodeCount]];
+		this.upMiddles = new int[this.upOffsets[nodeCount]];
+		this.downSources = new int[this.downOffsets[nodeCount]];
+		this.downTargets = new int[this.downOffsets[nodeCount]];
+		this.downWeights = new double[this.downOffsets[nodeCount]];
+		this.downMiddles = new int[this.downOffsets[nodeCount]];
+		int[] nextUp = Arrays.copyOf(this.upOffsets, nodeCount);
+		int[] nextDown = Arrays.copyOf(this.downOffsets, nodeCount);
+		for (int edge = 0; edge < contractor.edgeCount; edge++) {
+			int u = contractor.edgeSources[edge];
+			int w = contractor.edgeTargets[edge];
+			if (this.ranks[w] > this.ranks[u]) {
+				int e = nextUp[u]++;
+				this.upSources[e] = u;
+				this.upTargets[e] = w;
+				this.upWeights[e] = contractor.edgeWeights[edge];
+				this.upMiddles[e] = contractor.edgeMiddles[edge];
+			} else {
+				int e = nextDown[w]++;
+				this.downSources[e] = u;
+				this.downTargets[e] = w;
+				this.downWeights[e] = contractor.edgeWeights[edge];
+				this.downMiddles[e] = contractor.edgeMiddles[edge];
+			}
+		}
+	}
+
+	/*
+	 * @param graph the graph to preprocess
+	 * @return the contraction hierarchy of graph, computed on the common ForkJoinPool.
+	 */
+	public static ContractionHierarchy build(IndexedGraph graph) {
+		return build(graph, ForkJoinPool.commonPool());
+	}
+
+	/*
+	 * @param graph the graph to preprocess
+	 * @param pool the pool the preprocessing runs on. A pool of parallelism 1 preprocesses sequentially.
+	 * @return the contraction hierarchy of graph.
+	 */
+	public static ContractionHierarchy build(IndexedGraph graph, ForkJoinPool pool) {
+		Contractor contractor = new Contractor(graph);
+		pool.submit(contractor::contractAll).join();
+		return new ContractionHierarchy(graph, contractor);
+	}
+
+	/*
+	 * @return the number of shortcuts added by the preprocessing.
+	 */
+	public int shortcutCount() {
+		return this.shortcutCount;
+	}
+
+	/*
+	 * @return the rank of node in the contraction order, from 0 for the first contracted.
+	 * @throws IllegalArgumentException if node is not in the graph.
+	 */
+	public int rank(String node) {
+		int id = this.graph.nodeId(node);
+		if (id < 0) {
+			throw new IllegalArgumentException("the node " + node + " does not belong to the graph");
+		}
+		return this.ranks[id];
+	}
+
+	/*
+	 * Find shortest path from A to B with an upward bidirectional search in the hierarchy.
+	 * If there are several solutions, doesn't make any promise about which one it will pick.
+	 *
+	 * @return MapPath made of edges of the original graph, that is empty if there isn't any path leading to
+	 * destination.
+	 *
+	 * @throws IllegalArgumentException if startPoint is not a node of the graph.
+	 */
+	public MapPath shortestPath(String startPoint, String endPoint) {
+		if (startPoint.equals(endPoint)) {
+			return new MapPath();
+		}
+		int startNode = this.graph.nodeId(startPoint);
+		if (startNode < 0) {
+			throw new IllegalArgumentException("the node " + startPoint + " does not belong to the graph");
+		}
+		int targetNode = this.graph.nodeId(endPoint);
+		if (targetNode < 0) {
+			return new MapPath();
+		}
+
+		SearchScratch forward = SearchScratch.current();
+		SearchScratch backward = SearchScratch.backward();
+		forward.begin(this.graph.nodeCount());
+		backward.begin(this.graph.nodeCount());
+		forward.reach(startNode, 0., -1, -1);
+		forward.queue.insertOrDecrease(startNode, 0.);
+		backward.reach(targetNode, 0., -1, -1);
+		backward.queue.insertOrDecrease(targetNode, 0.);
+
+		double bestLength = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		while (true) {
+			boolean forwardOpen = !forward.queue.isEmpty() && forward.queue.minKey() < bestLength;
+			boolean backwardOpen = !backward.queue.isEmpty() && backward.queue.minKey() < bestLength;
+			if (!forwardOpen && !backwardOpen) {
+				break;
+			}
+			boolean forwardTurn = forwardOpen && (!backwardOpen || forward.queue.minKey() <= backward.queue.minKey());
+			SearchScratch side = forwardTurn ? forward : backward;
+			SearchScratch other = forwardTurn ? backward : forward;
+			int[] offsets = forwardTurn ? this.upOffsets : this.downOffsets;
+			int[] neighbours = forwardTurn ? this.upTargets : this.downSources;
+			double[] weights = forwardTurn ? this.upWeights : this.downWeights;
+
+			int node = side.queue.pollMin();
+			side.settle(node);
+			double distance = side.distance(node);
+			double length = distance + other.distance(node);
+			if (length < bestLength) {
+				bestLength = length;
+				meetingNode = node;
+			}
+			if (this.isStalled(node, distance, side, forwardTurn)) {
+				continue;
+			}
+			for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+				side.relaxedCount++;
+				int neighbour = neighbours[e];
+				double neighbourDistance = distance + weights[e];
+				if (neighbourDistance < side.distance(neighbour)) {
+					side.reach(neighbour, neighbourDistance, node, e);
+					side.queue.insertOrDecrease(neighbour, neighbourDistance);
+				}
+			}
+		}
+
+		SearchStats.record(forward, backward);
+		if (meetingNode < 0) {
+			return new MapPath();
+		}
+
+		// the up edges from the start to the meeting node, then the down edges from there to the target.
+		// An up edge e is written e, and a down edge e is written ~e.
+		List<Integer> codes = new ArrayList<Integer>();
+		for (int node = meetingNode; node != startNode; node = forward.predecessor(node)) {
+			codes.add(forward.predecessorCursor(node));
+		}
+		Collections.reverse(codes);
+		for (int node = meetingNode; node != targetNode; node = backward.predecessor(node)) {
+			codes.add(~backward.predecessorCursor(node));
+		}
+		MapPath path = new MapPath();
+		for (int code : codes) {
+			this.unpack(code, path);
+		}
+		return path;
+	}
+
+	/*
+	 * Stall on demand : the upward search reaches node through lower ranked nodes only, so its distance may
+	 * be larger than the one through a higher ranked neighbour, reached by the same search via another route.
+	 * Such a node can't be on the shortest up-down path, and relaxing its edges would only grow the search.
+	 *
+	 * @return true if a higher ranked neighbour of node, reached by the search in side, leads to node in
+	 * less than distance : an edge into node for the forward search, out of node for the backward one.
+	 */
+	private boolean isStalled(int node, double distance, SearchScratch side, boolean forward) {
+		int[] offsets = forward ? this.downOffsets : this.upOffsets;
+		int[] neighbours = forward ? this.downSources : this.upTargets;
+		double[] weights = forward ? this.downWeights : this.upWeights;
+		for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+			if (side.distance(neighbours[e]) + weights[e] < distance) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * @spec.effects adds to path the edges of the original graph that the edge or shortcut code stands for.
+	 */
+	private void unpack(int code, MapPath path) {
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = code;
+		while (size > 0) {
+			code = stack[--size];
+			int from = code >= 0 ? this.upSources[code] : this.downSources[~code];
+			int to = code >= 0 ? this.upTargets[code] : this.downTargets[~code];
+			int middle = code >= 0 ? this.upMiddles[code] : this.downMiddles[~code];
+			if (middle < 0) {
+				double weight = code >= 0 ? this.upWeights[code] : this.downWeights[~code];
+				path.addStep(this.graph, from, to, weight);
+				continue;
+			}
+			if (size + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			// the middle was contracted before both ends : from -> middle is a down edge of middle,
+			// and middle -> to an up edge of middle. The first half goes on top, to be unpacked first.
+			stack[size++] = this.upEdge(middle, to);
+			stack[size++] = ~this.downEdge(middle, from);
+		}
+	}
+
+	private int upEdge(int from, int to) {
+		for (int e = this.upOffsets[from]; e < this.upOffsets[from + 1]; e++) {
+			if (this.upTargets[e] == to) {
+				return e;
+			}
+		}
+		throw new IllegalStateException("no up edge from " + from + " to " + to);
+	}
+
+	private int downEdge(int to, int from) {
+		for (int e = this.downOffsets[to]; e < this.downOffsets[to + 1]; e++) {
+			if (this.downSources[e] == from) {
+				return e;
+			}
+		}
+		throw new IllegalStateException("no down edge from " + from + " to " + to);
+	}
+
+	/*
+	 * The graph being contracted. Every edge and shortcut ever added is kept in one list, which becomes the
+	 * hierarchy once all nodes are contracted; the adjacency lists of each node only index the edges between
+	 * nodes that remain, so witness searches and priorities never look at contracted nodes.
+	 *
+	 * Witness searches and priorities are computed in parallel, and only read the lists; shortcuts are added
+	 * and contracted nodes detached between rounds by a single thread.
+	 */
+	private static final class Contractor {
+
+		private final int nodeCount;
+
+		// edge e goes from edgeSources[e] to edgeTargets[e], has length edgeWeights[e], and is a shortcut
+		// skipping edgeMiddles[e], or -1 for an edge of the original graph
+		private int[] edgeSources = new int[16];
+		private int[] edgeTargets = new int[16];
+		private double[] edgeWeights = new double[16];
+		private int[] edgeMiddles = new int[16];
+		private int edgeCount;
+
+		// the edges out of and into each remaining node, leading to and coming from remaining nodes
+		private final int[][] outEdges;
+		private final int[] outSizes;
+		private final int[][] inEdges;
+		private final int[] inSizes;
+
+		// contracted, or being contracted in the current round
+		private final boolean[] removed;
+		private final int[] priorities;
+		private final int[] deletedNeighbours;
+		private final int[] levels;
+		private final int[] ranks;
+		private int shortcutCount;
+
+		Contractor(IndexedGraph graph) {
+			this.nodeCount = graph.nodeCount();
+			this.outEdges = new int[this.nodeCount][];
+			this.outSizes = new int[this.nodeCount];
+			this.inEdges = new int[this.nodeCount][];
+			this.inSizes = new int[this.nodeCount];
+			this.removed = new boolean[this.nodeCount];
+			this.priorities = new int[this.nodeCount];
+			this.deletedNeighbours = new int[this.nodeCount];
+			this.levels = new int[this.nodeCount];
+			this.ranks = new int[this.nodeCount];
+			for (int node = 0; node < this.nodeCount; node++) {
+				this.outEdges[node] = new int[4];
+				this.inEdges[node] = new int[4];
+			}
+			for (int u = 0; u < this.nodeCount; u++) {
+				for (int cursor = graph.firstOut(u); cursor >= 0; cursor = graph.nextOut(u, cursor)) {
+					int w = graph.outTarget(u, cursor);
+					if (w != u) {
+						this.addEdge(u, w, graph.outWeight(u, cursor), -1);
+					}
+				}
+			}
+		}
+
+		/*
+		 * @spec.effects contracts every node, recording the contraction order in this.ranks. Must run inside
+		 * the pool the parallel rounds should use.
+		 */
+		void contractAll() {
+			int[] remaining = IntStream.range(0, this.nodeCount).toArray();
+			IntStream.of(remaining).parallel().forEach(v -> this.priorities[v] = this.priority(v));
+			int nextRank = 0;
+			while (remaining.length > 0) {
+				int[] batch = IntStream.of(remaining).parallel().filter(this::isLocalMinimum).toArray();
+				for (int v : batch) {
+					this.removed[v] = true;
+				}
+				List<List<double[]>> shortcuts = IntStream.range(0, batch.length).parallel()
+						.mapToObj(i -> this.shortcuts(batch[i], WITNESS_SETTLE_LIMIT)).collect(Collectors.toList());
+
+				boolean[] touched = new boolean[this.nodeCount];
+				for (int i = 0; i < batch.length; i++) {
+					int v = batch[i];
+					this.ranks[v] = nextRank++;
+					for (double[] shortcut : shortcuts.get(i)) {
+						this.addEdge((int) shortcut[0], (int) shortcut[1], shortcut[2], v);
+						this.shortcutCount++;
+					}
+					this.detach(v, touched);
+				}
+				remaining = IntStream.of(remaining).filter(v -> !this.removed[v]).toArray();
+				IntStream.of(remaining).parallel().filter(v -> touched[v]).forEach(v -> this.priorities[v] = this.priority(v));
+			}
+		}
+
+		/*
+		 * @spec.effects removes the edges between v and its remaining neighbours from the adjacency lists,
+		 * and marks those neighbours as touched.
+		 */
+		private void detach(int v, boolean[] touched) {
+			for (int i = 0; i < this.outSizes[v]; i++) {
+				int e = this.outEdges[v][i];
+				int w = this.edgeTargets[e];
+				this.inSizes[w] = remove(this.inEdges[w], this.inSizes[w], e);
+				this.touch(v, w, touched);
+			}
+			for (int i = 0; i < this.inSizes[v]; i++) {
+				int e = this.inEdges[v][i];
+				int u = this.edgeSources[e];
+				this.outSizes[u] = remove(this.outEdges[u], this.outSizes[u], e);
+				this.touch(v, u, touched);
+			}
+			this.outSizes[v] = 0;
+			this.inSizes[v] = 0;
+		}
+
+		/*
+		 * @spec.effects removes e from the first size entries of edges, not keeping their order.
+		 * @return the new size.
+		 */
+		private static int remove(int[] edges, int size, int e) {
+			for (int i = 0; i < size; i++) {
+				if (edges[i] == e) {
+					edges[i] = edges[size - 1];
+					return size - 1;
+				}
+			}
+			return size;
+		}
+
+		private void touch(int v, int neighbour, boolean[] touched) {
+			this.levels[neighbour] = Math.max(this.levels[neighbour], this.levels[v] + 1);
+			if (!touched[neighbour]) {
+				touched[neighbour] = true;
+				this.deletedNeighbours[neighbour]++;
+			}
+		}
+
+		/*
+		 * @return true if v comes before all of its remaining neighbours in the order of priorities, ties
+		 * being broken by id. Two such nodes are never neighbours.
+		 */
+		private boolean isLocalMinimum(int v) {
+			for (int i = 0; i < this.outSizes[v]; i++) {
+				if (this.comesBefore(this.edgeTargets[this.outEdges[v][i]], v)) {
+					return false;
+				}
+			}
+			for (int i = 0; i < this.inSizes[v]; i++) {
+				if (this.comesBefore(this.edgeSources[this.inEdges[v][i]], v)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean comesBefore(int u, int v) {
+			return this.priorities[u] < this.priorities[v] || (this.priorities[u] == this.priorities[v] && u < v);
+		}
+
+		/*
+		 * @return the priority of v, low coming first : twice the number of shortcuts its contraction would
+		 * add minus the number of edges it would remove, plus the number of its neighbours already contracted,
+		 * plus its level, the length of the longest chain of contracted nodes leading to it. The last two spread
+		 * the contractions evenly over the graph, which keeps the upward searches of queries small.
+		 */
+		private int priority(int v) {
+			int degree = this.outSizes[v] + this.inSizes[v];
+			return 2 * (this.shortcuts(v, ESTIMATE_SETTLE_LIMIT).size() - degree) + this.deletedNeighbours[v] + this.levels[v];
+		}
+
+		/*
+		 * @param v a node to contract
+		 * @param settleLimit the number of nodes each witness search settles before giving up
+		 * @return the shortcuts {u, w, length} needed to keep the distances between the remaining neighbours
+		 * of v once v is removed.
+		 */
+		private List<double[]> shortcuts(int v, int settleLimit) {
+			List<double[]> shortcuts = new ArrayList<double[]>();
+			SearchScratch scratch = SearchScratch.current();
+			for (int i = 0; i < this.inSizes[v]; i++) {
+				int in = this.inEdges[v][i];
+				int u = this.edgeSources[in];
+				double toV = this.edgeWeights[in];
+				double bound = 0.;
+				for (int j = 0; j < this.outSizes[v]; j++) {
+					int out = this.outEdges[v][j];
+					if (this.edgeTargets[out] != u) {
+						bound = Math.max(bound, toV + this.edgeWeights[out]);
+					}
+				}
+				this.witnessSearch(u, v, bound, settleLimit, scratch);
+				for (int j = 0; j < this.outSizes[v]; j++) {
+					int out = this.outEdges[v][j];
+					int w = this.edgeTargets[out];
+					double throughV = toV + this.edgeWeights[out];
+					if (w != u && scratch.distance(w) > throughV) {
+						shortcuts.add(new double[] {u, w, throughV});
+					}
+				}
+			}
+			return shortcuts;
+		}
+
+		/*
+		 * @spec.effects runs a Dijkstra from u in scratch over the remaining nodes other than v, skipping the
+		 * ones being contracted, until the next node is further than bound or settleLimit nodes were settled.
+		 */
+		private void witnessSearch(int u, int v, double bound, int settleLimit, SearchScratch scratch) {
+			scratch.begin(this.nodeCount);
+			scratch.reach(u, 0., -1, -1);
+			scratch.queue.insertOrDecrease(u, 0.);
+			int settled = 0;
+			while (!scratch.queue.isEmpty() && scratch.queue.minKey() <= bound && settled < settleLimit) {
+				int node = scratch.queue.pollMin();
+				scratch.settle(node);
+				settled++;
+				double distance = scratch.distance(node);
+				for (int i = 0; i < this.outSizes[node]; i++) {
+					int e = this.outEdges[node][i];
+					int child = this.edgeTargets[e];
+					if (child == v || this.removed[child] || scratch.isSettled(child)) {
+						continue;
+					}
+					double childDistance = distance + this.edgeWeights[e];
+					if (childDistance < scratch.distance(child)) {
+						scratch.reach(child, childDistance, node, i);
+						scratch.queue.insertOrDecrease(child, childDistance);
+					}
+				}
+			}
+		}
+
+		/*
+		 * @spec.effects adds the edge u -> w between two remaining nodes, or lowers its weight and sets its
+		 * middle if it is already there with a larger one.
+		 */
+		private void addEdge(int u, int w, double weight, int middle) {
+			for (int i = 0; i < this.outSizes[u]; i++) {
+				int e = this.outEdges[u][i];
+				if (this.edgeTargets[e] == w) {
+					if (weight < this.edgeWeights[e]) {
+						this.edgeWeights[e] = weight;
+						this.edgeMiddles[e] = middle;
+					}
+					return;
+				}
+			}
+			if (this.edgeCount == this.edgeSources.length) {
+				int length = this.edgeCount * 2;
+				this.edgeSources = Arrays.copyOf(this.edgeSources, length);
+				this.edgeTargets = Arrays.copyOf(this.edgeTargets, length);
+				this.edgeWeights = Arrays.copyOf(this.edgeWeights, length);
+				this.edgeMiddles = Arrays.copyOf(this.edgeMiddles, length);
+			}
+			int e = this.edgeCount++;
+			this.edgeSources[e] = u;
+			this.edgeTargets[e] = w;
+			this.edgeWeights[e] = weight;
+			this.edgeMiddles[e] = middle;
+			this.outEdges[u] = append(this.outEdges[u], this.outSizes[u]++, e);
+			this.inEdges[w] = append(this.inEdges[w], this.inSizes[w]++, e);
+		}
+
+		/*
+		 * @return edges, or a larger copy of it if it is full, with e written at index size.
+		 */
+		private static int[] append(int[] edges, int size, int e) {
+			if (size == edges.length) {
+				edges = Arrays.copyOf(edges, size * 2);
+			}
+			edges[size] = e;
+			return edges;
+		}
+	}
+}
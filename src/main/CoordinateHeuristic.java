@@ -0,0 +1,63 @@
+package main;
+
+/*
+ * Heuristics computed from the coordinates of the nodes of an IndexedGraph. They are only usable on graphs 
+ * where every node has coordinates, and are admissible when no edge is shorter than the straight line between 
+ * its nodes, as measured by the heuristic.
+ */
+public final class CoordinateHeuristic implements Heuristic {
+
+	private static final double EARTH_RADIUS_KM = 6371.0;
+
+	/*
+	 * the straight line distance between the points (x, y), in the units of the coordinates.
+	 */
+	public static final CoordinateHeuristic EUCLIDEAN = new CoordinateHeuristic(false, 1.);
+
+	/*
+	 * the great-circle distance in kilometres, for coordinates given as [latitude, longitude] in degrees.
+	 */
+	public static final CoordinateHeuristic HAVERSINE = new CoordinateHeuristic(true, 1.);
+
+	private final boolean haversine;
+	private final double scale;
+
+	private CoordinateHeuristic(boolean haversine, double scale) {
+		this.haversine = haversine;
+		this.scale = scale;
+	}
+
+	/*
+	 * @param factor a positive number
+	 * @return this heuristic with every estimate multiplied by factor, for instance to convert kilometres into 
+	 * minutes at top speed.
+	 */
+	public CoordinateHeuristic scaledBy(double factor) {
+		if (!(factor > 0.)) {
+			throw new IllegalArgumentException("the factor should be positive, not " + factor);
+		}
+		return new CoordinateHeuristic(this.haversine, this.scale * factor);
+	}
+
+	@Override
+	public double estimate(IndexedGraph graph, int node, int target) {
+		double x1 = graph.x(node);
+		double y1 = graph.y(node);
+		double x2 = graph.x(target);
+		double y2 = graph.y(target);
+		if (!this.haversine) {
+			return this.scale * Math.hypot(x2 - x1, y2 - y1);
+		}
+		double latitude1 = Math.toRadians(x1);
+		double latitude2 = Math.toRadians(x2);
+		double sinHalfLatitude = Math.sin((latitude2 - latitude1) / 2.);
+		double sinHalfLongitude = Math.sin(Math.toRadians(y2 - y1) / 2.);
+		double a = sinHalfLatitude * sinHalfLatitude + Math.cos(latitude1) * Math.cos(latitude2) * sinHalfLongitude * sinHalfLongitude;
+		return this.scale * 2. * EARTH_RADIUS_KM * Math.asin(Math.min(1., Math.sqrt(a)));
+	}
+
+	@Override
+	public boolean isUsableOn(IndexedGraph graph) {
+		return graph.hasCoordinates();
+	}
+}
@@ -0,0 +1,442 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import main.MapGraph.MapPath;
+
+/*
+ * The shortest distances from one source to every node of an IndexedGraph, with a predecessor for each node,
+ * computed by delta-stepping (Meyer and Sanders) on the threads of a ForkJoinPool.
+ *
+ * Nodes are kept in buckets of width delta by tentative distance. The nodes of the lowest bucket are taken
+ * all at once and their light edges, of weight at most delta, are relaxed in parallel, which may put nodes
+ * back in that bucket : this is repeated until it stays empty. The heavy edges of all the nodes taken from
+ * the bucket are then relaxed once, in parallel too, and the next bucket is taken. A small delta does little
+ * more work than Dijkstra but has little to run in parallel, a large one the opposite; the mean edge weight,
+ * see suggestDelta, is a good start for road networks.
+ *
+ * Tentative distances are updated with compare and set, as the bits of a non negative double order like the
+ * double itself. Each task of a round writes the nodes it reaches into buckets of its own, which are only
+ * gathered between rounds. Predecessors are found once distances are final, by a parallel traversal of the
+ * edges lying on shortest paths from the source.
+ *
+ * A DeltaStepping never changes once computed, and can be shared between threads.
+ */
+public final class DeltaStepping {
+
+	// frontiers smaller than this are handled by a single task
+	private static final int SEQUENTIAL_THRESHOLD = 512;
+	// bucket indices above this mean that delta is much too small for the graph
+	private static final long MAX_BUCKET = 1 << 26;
+	// the number of edges suggestDelta averages
+	private static final int DELTA_SAMPLE = 4096;
+
+	private final IndexedGraph graph;
+	private final int source;
+	private final double[] distances;
+	private final int[] predecessors;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the distance from this.source to the node of id v is this.distances[v], infinite if there is no path,
+	 * and the path itself ends with the edge from this.predecessors[v] to v, preceded by the path to that
+	 * predecessor, up to this.source.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) this.distances.length == this.predecessors.length == this.graph.nodeCount().
+	 * (2) this.predecessors[v] == -1 iff v == this.source or this.distances[v] is infinite.
+	 * (3) following predecessors from any reached node ends at this.source.
+	 */
+
+	private DeltaStepping(IndexedGraph graph, int source, double[] distances, int[] predecessors) {
+		this.graph = graph;
+		this.source = source;
+		this.distances = distances;
+		this.predecessors = predecessors;
+	}
+
+	/*
+	 * @param graph the graph to search, whose weights are not negative
+	 * @param source the name of a node of graph
+	 * @param delta the width of the buckets, see suggestDelta
+	 * @param pool the pool the relaxations run on
+	 * @return the distances and paths from source to every node of graph.
+	 * @throws IllegalArgumentException if source is not a node of graph, if delta is not a positive number,
+	 * or if it is so small that distances would spread over more than 2^26 buckets.
+	 */
+	public static DeltaStepping compute(IndexedGraph graph, String source, double delta, ForkJoinPool pool) {
+		int sourceId = graph.nodeId(source);
+		if (sourceId < 0) {
+			throw new IllegalArgumentException("the node " + source + " does not belong to the graph");
+		}
+		if (!(delta > 0) || Double.isInfinite(delta)) {
+			throw new IllegalArgumentException("the width of the buckets should be a positive number, not " + delta);
+		}
+		Search search = new Search(graph, delta, pool);
+		search.run(sourceId);
+		return new DeltaStepping(graph, sourceId, search.distances(), search.predecessors(sourceId));
+	}
+
+	/*
+	 * @return the mean weight of the first edges of graph, up to a few thousands, or 1 if it has none.
+	 */
+	public static double suggestDelta(IndexedGraph graph) {
+		double total = 0.;
+		int count = 0;
+		for (int node = 0; node < graph.nodeCount() && count < DELTA_SAMPLE; node++) {
+			for (int cursor = graph.firstOut(node); cursor >= 0 && count < DELTA_SAMPLE; cursor = graph.nextOut(node, cursor)) {
+				total += graph.outWeight(node, cursor);
+				count++;
+			}
+		}
+		return count == 0 || total == 0. ? 1. : total / count;
+	}
+
+	/*
+	 * @return the length of the shortest path from the source to node, infinite if there is none or if node is
+	 * not in the graph.
+	 */
+	public double distance(String node) {
+		int id = this.graph.nodeId(node);
+		return id < 0 ? Double.POSITIVE_INFINITY : this.distances[id];
+	}
+
+	/*
+	 * @return the node before node on a shortest path from the source, or null if node is the source, can't be
+	 * reached from it, or is not in the graph.
+	 */
+	public String predecessor(String node) {
+		int id = this.graph.nodeId(node);
+		return id < 0 || this.predecessors[id] < 0 ? null : this.graph.nodeName(this.predecessors[id]);
+	}
+
+	/*
+	 * @return a copy of the distances from the source, indexed by the ids of the graph searched.
+	 */
+	public double[] distances() {
+		return this.distances.clone();
+	}
+
+	/*
+	 * @return a copy of the predecessors on shortest paths from the source, indexed by the ids of the graph
+	 * searched, -1 for the source and for the nodes it can't reach.
+	 */
+	public int[] predecessors() {
+		return this.predecessors.clone();
+	}
+
+	/*
+	 * @return a shortest path from the source to target, empty if there is none, if target is the source, or
+	 * if it is not in the graph.
+	 */
+	public MapPath path(String target) {
+		MapPath path = new MapPath();
+		int node = this.graph.nodeId(target);
+		if (node < 0 || this.predecessors[node] < 0) {
+			return path;
+		}
+		int length = 0;
+		for (int step = node; step != this.source; step = this.predecessors[step]) {
+			length++;
+		}
+		int[] nodes = new int[length + 1];
+		for (int step = node, index = length; index >= 0; step = this.predecessors[step], index--) {
+			nodes[index] = step;
+		}
+		for (int k = 0; k < length; k++) {
+			path.addStep(this.graph, nodes[k], nodes[k + 1], this.weight(nodes[k], nodes[k + 1]));
+		}
+		return path;
+	}
+
+	private double weight(int parent, int child) {
+		for (int cursor = this.graph.firstOut(parent); cursor >= 0; cursor = this.graph.nextOut(parent, cursor)) {
+			if (this.graph.outTarget(parent, cursor) == child) {
+				return this.graph.outWeight(parent, cursor);
+			}
+		}
+		throw new IllegalStateException("no edge from " + parent + " to " + child);
+	}
+
+	/*
+	 * The state of one computation : tentative distances, and the buckets of each of its tasks.
+	 */
+	private static final class Search {
+
+		private final IndexedGraph graph;
+		private final double delta;
+		private final ForkJoinPool pool;
+		// the bits of the tentative distance of each node
+		private final AtomicLongArray distances;
+		// the distance each node last had its light edges relaxed with, to skip the copies of a node in a bucket
+		private final double[] relaxedWith;
+		// the bucket index + 1 each node was last taken from, so its heavy edges are relaxed once per bucket
+		private final int[] takenFrom;
+		// the buckets each task writes to
+		private final Buckets[] buckets;
+		// the nodes each task took from the current bucket
+		private final IntList[] taken;
+
+		Search(IndexedGraph graph, double delta, ForkJoinPool pool) {
+			int nodeCount = graph.nodeCount();
+			this.graph = graph;
+			this.delta = delta;
+			this.pool = pool;
+			this.distances = new AtomicLongArray(nodeCount);
+			long infinity = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+			for (int node = 0; node < nodeCount; node++) {
+				this.distances.lazySet(node, infinity);
+			}
+			this.relaxedWith = new double[nodeCount];
+			Arrays.fill(this.relaxedWith, Double.POSITIVE_INFINITY);
+			this.takenFrom = new int[nodeCount];
+			this.buckets = new Buckets[4 * pool.getParallelism()];
+			this.taken = new IntList[this.buckets.length];
+			for (int task = 0; task < this.buckets.length; task++) {
+				this.buckets[task] = new Buckets();
+				this.taken[task] = new IntList();
+			}
+		}
+
+		/*
+		 * @spec.effects computes the distances from source.
+		 */
+		void run(int source) {
+			this.distances.set(source, Double.doubleToRawLongBits(0.));
+			this.buckets[0].add(0, source);
+			for (int bucket = this.nextBucket(0); bucket >= 0; bucket = this.nextBucket(bucket + 1)) {
+				for (int[] frontier = this.take(bucket); frontier.length > 0; frontier = this.take(bucket)) {
+					int current = bucket;
+					this.forEachTask(frontier, (task, node) -> this.relaxLight(task, node, current));
+				}
+				this.forEachTask(IntList.concat(this.taken), (task, node) -> this.relaxHeavy(task, node));
+			}
+		}
+
+		private void relaxLight(int task, int node, int bucket) {
+			double distance = Double.longBitsToDouble(this.distances.get(node));
+			if (this.bucketOf(distance) < bucket || distance >= this.relaxedWith[node]) {
+				return; // left behind when the node moved to a lower bucket, or already relaxed at this distance
+			}
+			this.relaxedWith[node] = distance;
+			if (this.takenFrom[node] != bucket + 1) {
+				this.takenFrom[node] = bucket + 1;
+				this.taken[task].add(node);
+			}
+			for (int cursor = this.graph.firstOut(node); cursor >= 0; cursor = this.graph.nextOut(node, cursor)) {
+				double weight = this.graph.outWeight(node, cursor);
+				if (weight <= this.delta) {
+					this.relax(task, this.graph.outTarget(node, cursor), distance + weight);
+				}
+			}
+		}
+
+		private void relaxHeavy(int task, int node) {
+			double distance = Double.longBitsToDouble(this.distances.get(node));
+			for (int cursor = this.graph.firstOut(node); cursor >= 0; cursor = this.graph.nextOut(node, cursor)) {
+				double weight = this.graph.outWeight(node, cursor);
+				if (weight > this.delta) {
+					this.relax(task, this.graph.outTarget(node, cursor), distance + weight);
+				}
+			}
+		}
+
+		// lowers the tentative distance of node to distance if it is smaller, and puts node in its new bucket
+		private void relax(int task, int node, double distance) {
+			long bits = Double.doubleToRawLongBits(distance);
+			long current = this.distances.get(node);
+			while (bits < current) {
+				if (this.distances.compareAndSet(node, current, bits)) {
+					this.buckets[task].add(this.bucketOf(distance), node);
+					return;
+				}
+				current = this.distances.get(node);
+			}
+		}
+
+		private int bucketOf(double distance) {
+			double bucket = distance / this.delta;
+			if (bucket > MAX_BUCKET) {
+				throw new IllegalArgumentException("the width of the buckets " + this.delta + " is too small for the distances of this graph");
+			}
+			return (int) bucket;
+		}
+
+		// the lowest bucket from bucket on holding nodes in one of the tasks, -1 if there is none
+		private int nextBucket(int bucket) {
+			int next = -1;
+			for (Buckets own : this.buckets) {
+				int candidate = own.next(bucket);
+				if (candidate >= 0 && (next < 0 || candidate < next)) {
+					next = candidate;
+				}
+			}
+			return next;
+		}
+
+		// empties the given bucket of every task, and returns the nodes it held
+		private int[] take(int bucket) {
+			int size = 0;
+			for (Buckets own : this.buckets) {
+				size += own.size(bucket);
+			}
+			int[] frontier = new int[size];
+			int start = 0;
+			for (Buckets own : this.buckets) {
+				start = own.take(bucket, frontier, start);
+			}
+			return frontier;
+		}
+
+		/*
+		 * @spec.effects calls action on every node of frontier, spread over the tasks of this search, each
+		 * task being given its index.
+		 */
+		private void forEachTask(int[] frontier, NodeAction action) {
+			if (frontier.length < SEQUENTIAL_THRESHOLD) {
+				for (int node : frontier) {
+					action.accept(0, node);
+				}
+				return;
+			}
+			int tasks = this.buckets.length;
+			this.pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(task -> {
+				int end = (int) ((long) frontier.length * (task + 1) / tasks);
+				for (int i = (int) ((long) frontier.length * task / tasks); i < end; i++) {
+					action.accept(task, frontier[i]);
+				}
+			})).join();
+		}
+
+		double[] distances() {
+			double[] distances = new double[this.distances.length()];
+			for (int node = 0; node < distances.length; node++) {
+				distances[node] = Double.longBitsToDouble(this.distances.get(node));
+			}
+			return distances;
+		}
+
+		/*
+		 * @return a predecessor for every node reached, chosen among the nodes whose distance plus the weight of
+		 * their edge to it is its distance. Such edges are followed from source breadth first, so that each node
+		 * is given the first predecessor that claims it and no cycle can form, even with edges of weight 0.
+		 */
+		int[] predecessors(int source) {
+			AtomicIntegerArray predecessors = new AtomicIntegerArray(this.distances.length());
+			for (int node = 0; node < predecessors.length(); node++) {
+				predecessors.lazySet(node, -1);
+			}
+			predecessors.set(source, source);
+			IntList[] next = new IntList[this.buckets.length];
+			for (int task = 0; task < next.length; task++) {
+				next[task] = new IntList();
+			}
+			for (int[] frontier = {source}; frontier.length > 0; frontier = IntList.concat(next)) {
+				this.forEachTask(frontier, (task, node) -> {
+					double distance = Double.longBitsToDouble(this.distances.get(node));
+					for (int cursor = this.graph.firstOut(node); cursor >= 0; cursor = this.graph.nextOut(node, cursor)) {
+						int child = this.graph.outTarget(node, cursor);
+						if (distance + this.graph.outWeight(node, cursor) == Double.longBitsToDouble(this.distances.get(child))
+								&& predecessors.compareAndSet(child, -1, node)) {
+							next[task].add(child);
+						}
+					}
+				});
+			}
+			int[] result = new int[predecessors.length()];
+			for (int node = 0; node < result.length; node++) {
+				result[node] = predecessors.get(node);
+			}
+			result[source] = -1;
+			return result;
+		}
+	}
+
+	@FunctionalInterface
+	private interface NodeAction {
+		void accept(int task, int node);
+	}
+
+	/*
+	 * The buckets one task puts the nodes it reaches in, indexed by bucket, null when empty.
+	 */
+	private static final class Buckets {
+
+		private IntList[] lists = new IntList[16];
+		// no bucket below this holds nodes
+		private int lowest;
+
+		void add(int bucket, int node) {
+			if (bucket >= this.lists.length) {
+				this.lists = Arrays.copyOf(this.lists, Math.max(bucket + 1, 2 * this.lists.length));
+			}
+			if (this.lists[bucket] == null) {
+				this.lists[bucket] = new IntList();
+			}
+			this.lists[bucket].add(node);
+			this.lowest = Math.min(this.lowest, bucket);
+		}
+
+		// the lowest bucket from bucket on holding nodes, -1 if there is none
+		int next(int bucket) {
+			for (int index = Math.max(bucket, this.lowest); index < this.lists.length; index++) {
+				if (this.lists[index] != null) {
+					this.lowest = index;
+					return index;
+				}
+			}
+			this.lowest = this.lists.length;
+			return -1;
+		}
+
+		int size(int bucket) {
+			return bucket < this.lists.length && this.lists[bucket] != null ? this.lists[bucket].size : 0;
+		}
+
+		// copies the nodes of bucket into into from start on, empties it, and returns the index after them
+		int take(int bucket, int[] into, int start) {
+			if (bucket >= this.lists.length || this.lists[bucket] == null) {
+				return start;
+			}
+			IntList list = this.lists[bucket];
+			System.arraycopy(list.items, 0, into, start, list.size);
+			this.lists[bucket] = null;
+			return start + list.size;
+		}
+	}
+
+	private static final class IntList {
+
+		private int[] items = new int[8];
+		private int size;
+
+		void add(int item) {
+			if (this.size == this.items.length) {
+				this.items = Arrays.copyOf(this.items, 2 * this.size);
+			}
+			this.items[this.size++] = item;
+		}
+
+		// the items of all lists, which are emptied
+		static int[] concat(IntList[] lists) {
+			int size = 0;
+			for (IntList list : lists) {
+				size += list.size;
+			}
+			int[] items = new int[size];
+			int start = 0;
+			for (IntList list : lists) {
+				System.arraycopy(list.items, 0, items, start, list.size);
+				start += list.size;
+				list.size = 0;
+			}
+			return items;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package main;
+
+import main.MapGraph.MapPath;
+
+/*
+ * Dijkstra's algorithm over an IndexedGraph, with primitive distance and predecessor arrays and an indexed
+ * heap supporting decrease-key. The arrays come from the SearchScratch of the calling thread, so a search
+ * allocates nothing but the MapPath it returns, which is built once the target is settled.
+ *
+ * Given a Heuristic, the same search is A* : nodes are queued by distance from the start plus estimated
+ * distance to the target.
+ */
+final class DijkstraEngine {
+
+	private DijkstraEngine() {
+	}
+
+	/*
+	 * @param graph the graph to search
+	 * @param startNode the id of the node to start from
+	 * @param targetNode the id of the node to reach
+	 * @return a shortest path from startNode to targetNode, empty if there is none or if both are the same node.
+	 */
+	static MapPath shortestPath(IndexedGraph graph, int startNode, int targetNode) {
+		return shortestPath(graph, startNode, targetNode, Heuristic.NONE);
+	}
+
+	/*
+	 * @param heuristic a consistent heuristic for graph
+	 * @return the same as shortestPath(graph, startNode, targetNode), found with an A* search guided by heuristic.
+	 */
+	static MapPath shortestPath(IndexedGraph graph, int startNode, int targetNode, Heuristic heuristic) {
+		SearchScratch scratch = SearchScratch.current();
+		boolean found = search(graph, startNode, targetNode, heuristic, scratch);
+		SearchStats.record(scratch);
+		if (found) {
+			return buildPath(graph, startNode, targetNode, scratch);
+		}
+		return new MapPath();
+	}
+
+	/*
+	 * @spec.effects runs the search from startNode in scratch until targetNode is settled or the queue runs out.
+	 * @return true if targetNode was settled, and false if it can't be reached from startNode.
+	 */
+	static boolean search(IndexedGraph graph, int startNode, int targetNode, SearchScratch scratch) {
+		return search(graph, startNode, targetNode, Heuristic.NONE, scratch);
+	}
+
+	/*
+	 * @spec.effects runs the A* search guided by heuristic from startNode in scratch until targetNode is settled 
+	 * or the queue runs out.
+	 * @return true if targetNode was settled, and false if it can't be reached from startNode.
+	 */
+	static boolean search(IndexedGraph graph, int startNode, int targetNode, Heuristic heuristic, SearchScratch scratch) {
+		scratch.begin(graph.nodeCount());
+		IndexedMinHeap queue = scratch.queue;
+		boolean guided = heuristic != Heuristic.NONE;
+		scratch.reach(startNode, 0., -1, -1);
+		queue.insertOrDecrease(startNode, 0.);
+
+		while (!queue.isEmpty()) {
+			int node = queue.pollMin();
+			scratch.settle(node);
+			if (node == targetNode) {
+				return true;
+			}
+			double distance = scratch.distance(node);
+			for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+				scratch.relaxedCount++;
+				int child = graph.outTarget(node, cursor);
+				if (scratch.isSettled(child)) {
+					continue;
+				}
+				double childDistance = distance + graph.outWeight(node, cursor);
+				if (childDistance < scratch.distance(child)) {
+					scratch.reach(child, childDistance, node, cursor);
+					queue.insertOrDecrease(child, guided ? childDistance + heuristic.estimate(graph, child, targetNode) : childDistance);
+				}
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * @spec.requires targetNode was reached from startNode by the last search run in scratch.
+	 * @return the MapPath from startNode to targetNode obtained by following predecessors back from targetNode.
+	 * It is empty if startNode == targetNode.
+	 */
+	static MapPath buildPath(IndexedGraph graph, int startNode, int targetNode, SearchScratch scratch) {
+		int length = 0;
+		for (int node = targetNode; node != startNode; node = scratch.predecessor(node)) {
+			length++;
+		}
+		int[] nodes = scratch.pathBuffer(length);
+		int index = length;
+		for (int node = targetNode; node != startNode; node = scratch.predecessor(node)) {
+			nodes[--index] = node;
+		}
+		MapPath path = new MapPath();
+		for (int i = 0; i < length; i++) {
+			int node = nodes[i];
+			int parent = scratch.predecessor(node);
+			path.addStep(graph, parent, node, graph.outWeight(parent, scratch.predecessorCursor(node)));
+		}
+		return path;
+	}
+}
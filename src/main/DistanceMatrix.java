@@ -0,0 +1,226 @@
+package main;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import main.MapGraph.MapPath;
+
+/*
+ * The shortest distances from a list of sources to a list of targets in an IndexedGraph, with the paths
+ * behind them, for instance from depots to customers.
+ *
+ * It takes one Dijkstra per source rather than one per pair : each search stops as soon as all the targets
+ * are settled, and reads off all their distances at once. The searches are independent, and are spread over
+ * the threads of a ForkJoinPool.
+ *
+ * A DistanceMatrix never changes once computed, and can be shared between threads.
+ */
+public final class DistanceMatrix {
+
+	private final IndexedGraph graph;
+	private final int[] sources;
+	private final int[] targets;
+	private final double[][] distances;
+
+	// the predecessor of each node in the shortest path tree of each source, -1 if unreached
+	private final int[][] predecessors;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the distance from the source this.sources[i] to the target this.targets[j] is this.distances[i][j],
+	 * infinite if there is no path, and the path itself ends with the edge from this.predecessors[i][target]
+	 * to target, preceded by the path to that predecessor, up to this.sources[i].
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) this.distances.length == this.predecessors.length == this.sources.length, and every row of
+	 * this.distances has this.targets.length entries.
+	 * (2) this.predecessors[i][this.sources[i]] == -1.
+	 */
+
+	private DistanceMatrix(IndexedGraph graph, int[] sources, int[] targets, double[][] distances, int[][] predecessors) {
+		this.graph = graph;
+		this.sources = sources;
+		this.targets = targets;
+		this.distances = distances;
+		this.predecessors = predecessors;
+	}
+
+	/*
+	 * @param graph the graph to search
+	 * @param sources names of nodes of graph
+	 * @param targets names of nodes, those that are not in graph being unreachable
+	 * @param pool the pool the searches run on
+	 * @return the distances and paths from every source to every target.
+	 * @throws IllegalArgumentException if one of the sources is not a node of graph.
+	 */
+	public static DistanceMatrix compute(IndexedGraph graph, List<String> sources, List<String> targets, ForkJoinPool pool) {
+		int[] sourceIds = sourceIds(graph, sources);
+		int[] targetIds = targetIds(graph, targets);
+		double[][] distances = new double[sourceIds.length][];
+		int[][] predecessors = new int[sourceIds.length][];
+		run(graph, sourceIds, targetIds, distances, predecessors, pool);
+		return new DistanceMatrix(graph, sourceIds, targetIds, distances, predecessors);
+	}
+
+	/*
+	 * @return the same distances as compute(graph, sources, targets, pool), without keeping the paths :
+	 * distances[i][j] is the distance from sources.get(i) to targets.get(j), infinite if there is no path.
+	 * @throws IllegalArgumentException if one of the sources is not a node of graph.
+	 */
+	static double[][] distances(IndexedGraph graph, List<String> sources, List<String> targets, ForkJoinPool pool) {
+		int[] sourceIds = sourceIds(graph, sources);
+		double[][] distances = new double[sourceIds.length][];
+		run(graph, sourceIds, targetIds(graph, targets), distances, null, pool);
+		return distances;
+	}
+
+	/*
+	 * @return the number of sources, the rows of the matrix.
+	 */
+	public int sourceCount() {
+		return this.sources.length;
+	}
+
+	/*
+	 * @return the number of targets, the columns of the matrix.
+	 */
+	public int targetCount() {
+		return this.targets.length;
+	}
+
+	/*
+	 * @return the length of the shortest path from source i to target j, infinite if there is none.
+	 * @throws IndexOutOfBoundsException if i or j is out of the matrix.
+	 */
+	public double distance(int i, int j) {
+		return this.distances[i][j];
+	}
+
+	/*
+	 * @return a copy of the matrix of distances.
+	 */
+	public double[][] toArray() {
+		double[][] copy = new double[this.distances.length][];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = this.distances[i].clone();
+		}
+		return copy;
+	}
+
+	/*
+	 * @return a shortest path from source i to target j, empty if there is none or if they are the same node.
+	 * @throws IndexOutOfBoundsException if i or j is out of the matrix.
+	 */
+	public MapPath path(int i, int j) {
+		MapPath path = new MapPath();
+		int source = this.sources[i];
+		int target = this.targets[j];
+		if (target < 0 || this.distances[i][j] == Double.POSITIVE_INFINITY) {
+			return path;
+		}
+		int[] predecessors = this.predecessors[i];
+		int length = 0;
+		for (int node = target; node != source; node = predecessors[node]) {
+			length++;
+		}
+		int[] nodes = new int[length + 1];
+		for (int node = target, index = length; index >= 0; node = predecessors[node], index--) {
+			nodes[index] = node;
+		}
+		for (int k = 0; k < length; k++) {
+			path.addStep(this.graph, nodes[k], nodes[k + 1], this.weight(nodes[k], nodes[k + 1]));
+		}
+		return path;
+	}
+
+	private double weight(int parent, int child) {
+		for (int cursor = this.graph.firstOut(parent); cursor >= 0; cursor = this.graph.nextOut(parent, cursor)) {
+			if (this.graph.outTarget(parent, cursor) == child) {
+				return this.graph.outWeight(parent, cursor);
+			}
+		}
+		throw new IllegalStateException("no edge from " + parent + " to " + child);
+	}
+
+	private static int[] sourceIds(IndexedGraph graph, List<String> sources) {
+		int[] ids = new int[sources.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = graph.nodeId(sources.get(i));
+			if (ids[i] < 0) {
+				throw new IllegalArgumentException("the node " + sources.get(i) + " does not belong to the graph");
+			}
+		}
+		return ids;
+	}
+
+	// -1 for the targets that are not in graph
+	private static int[] targetIds(IndexedGraph graph, List<String> targets) {
+		int[] ids = new int[targets.size()];
+		for (int j = 0; j < ids.length; j++) {
+			ids[j] = graph.nodeId(targets.get(j));
+		}
+		return ids;
+	}
+
+	/*
+	 * @spec.effects fills distances[i] for every source i, and predecessors[i] too unless predecessors is null,
+	 * running the searches on pool.
+	 */
+	private static void run(IndexedGraph graph, int[] sources, int[] targets, double[][] distances, int[][] predecessors, ForkJoinPool pool) {
+		boolean[] isTarget = new boolean[graph.nodeCount()];
+		int targetCount = 0;
+		for (int target : targets) {
+			if (target >= 0 && !isTarget[target]) {
+				isTarget[target] = true;
+				targetCount++;
+			}
+		}
+		int distinctTargets = targetCount;
+		pool.submit(() -> IntStream.range(0, sources.length).parallel().forEach(i -> {
+			SearchScratch scratch = SearchScratch.current();
+			search(graph, sources[i], isTarget, distinctTargets, scratch);
+			double[] row = new double[targets.length];
+			for (int j = 0; j < targets.length; j++) {
+				row[j] = targets[j] < 0 ? Double.POSITIVE_INFINITY : scratch.distance(targets[j]);
+			}
+			distances[i] = row;
+			if (predecessors != null) {
+				int[] tree = new int[graph.nodeCount()];
+				for (int node = 0; node < tree.length; node++) {
+					tree[node] = scratch.isSettled(node) ? scratch.predecessor(node) : -1;
+				}
+				predecessors[i] = tree;
+			}
+		})).join();
+	}
+
+	/*
+	 * @spec.effects runs Dijkstra from source in scratch until the targetCount nodes marked in isTarget are
+	 * settled, or the queue runs out.
+	 */
+	private static void search(IndexedGraph graph, int source, boolean[] isTarget, int targetCount, SearchScratch scratch) {
+		scratch.begin(graph.nodeCount());
+		scratch.reach(source, 0., -1, -1);
+		scratch.queue.insertOrDecrease(source, 0.);
+		int remaining = targetCount;
+		while (!scratch.queue.isEmpty() && remaining > 0) {
+			int node = scratch.queue.pollMin();
+			scratch.settle(node);
+			if (isTarget[node]) {
+				remaining--;
+			}
+			double distance = scratch.distance(node);
+			for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+				int child = graph.outTarget(node, cursor);
+				double childDistance = distance + graph.outWeight(node, cursor);
+				if (!scratch.isSettled(child) && childDistance < scratch.distance(child)) {
+					scratch.reach(child, childDistance, node, cursor);
+					scratch.queue.insertOrDecrease(child, childDistance);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package main;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/*
+ * A DynamicShortestPathTree holds the shortest paths from one source node to all the nodes of a ConcreteGraph,
+ * and keeps them up to date as the graph is modified : it listens to the graph, and each mutation only
+ * repairs the part of the tree it affects, in the manner of the dynamic algorithm of Ramalingam and Reps.
+ *
+ * - an edge added, or whose smallest label decreases, can only shorten the paths going through it : a
+ *   search starting at its child settles the nodes whose distance drops, and stops where distances don't.
+ * - an edge removed, or whose smallest label increases, can only lengthen the paths of the nodes below it
+ *   in the tree, and only if it is a tree edge : those nodes are cut off, given the best distance they can
+ *   get from their parents outside of the cut subtree, and settled again by a search restricted to it.
+ *
+ * An update therefore costs time in proportion to the nodes whose distance or tree edge changes and to their
+ * edges, not to the size of the graph. See lastUpdateStats.
+ *
+ * The labels of the graph are the lengths of the edges, and must not be negative. As in MapGraph.shortestPath,
+ * an edge with several labels is as long as the smallest of them.
+ *
+ * A tree is thread safe. Once a mutator of the graph returns, the tree is up to date with its mutation.
+ * Repairs read the graph as it is rather than the mutation they are told about, so mutations told out of
+ * order by concurrent writers still leave the tree right once all of them are told.
+ */
+public class DynamicShortestPathTree implements GraphListener<String, Double>, AutoCloseable {
+
+	/*
+	 * A node reached from the source : its distance, and the edge into it in the tree.
+	 */
+	private static final class Reached {
+
+		private final double distance;
+		private final String predecessor;
+		private final double weight;
+		// the nodes whose predecessor this node is
+		private final HashSet<String> treeChildren = new HashSet<String>();
+
+		private Reached(double distance, String predecessor, double weight) {
+			this.distance = distance;
+			this.predecessor = predecessor;
+			this.weight = weight;
+		}
+	}
+
+	/*
+	 * A node a search may settle at distance, from predecessor through an edge of length weight.
+	 */
+	private static final class Candidate implements Comparable<Candidate> {
+
+		private final String node;
+		private final double distance;
+		private final String predecessor;
+		private final double weight;
+
+		private Candidate(String node, double distance, String predecessor, double weight) {
+			this.node = node;
+			this.distance = distance;
+			this.predecessor = predecessor;
+			this.weight = weight;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			return Double.compare(this.distance, other.distance);
+		}
+	}
+
+	private final ConcreteGraph<String, Double> graph;
+	private final String source;
+
+	// node -> where the tree reaches it from. Unreached nodes have no entry.
+	private final HashMap<String, Reached> tree = new HashMap<String, Reached>();
+
+	private long settledNodes;
+	private long relaxedEdges;
+	private SearchStats lastUpdate = new SearchStats(0, 0);
+
+	/*
+	 * Abstraction function
+	 *
+	 * the tree is made of the edges <tree[N].predecessor, N, tree[N].weight> for every node N reached from
+	 * source but source itself, and the distance from source to N is tree[N].distance.
+	 *
+	 * Representation invariant, once every mutation of this.graph has been told :
+	 *
+	 * (1) tree[source] has distance 0 and no predecessor, if source is in this.graph.
+	 * (2) tree[N].distance = tree[tree[N].predecessor].distance + tree[N].weight, and tree[N].weight is the
+	 * smallest label of the edge from the predecessor to N.
+	 * (3) no edge of this.graph leads to a node at a shorter distance than the tree gives it.
+	 * (4) N is in tree[P].treeChildren if and only if tree[N].predecessor is P.
+	 */
+
+	/*
+	 * @param graph the graph to keep the shortest paths of
+	 * @param source the node they start from
+	 * @spec.effects builds the shortest path tree from source, and listens to graph until closed.
+	 * @throws IllegalArgumentException if source is not a node of graph.
+	 */
+	public DynamicShortestPathTree(ConcreteGraph<String, Double> graph, String source) {
+		this.graph = graph;
+		this.source = source;
+		// listening first : mutations made while the tree is built are repaired once it is
+		graph.addListener(this);
+		synchronized (this) {
+			if (!graph.containsNode(source)) {
+				graph.removeListener(this);
+				throw new IllegalArgumentException("the node " + source + " does not belong to the graph");
+			}
+			this.build();
+			this.record();
+		}
+	}
+
+	/*
+	 * @return the node the paths of this tree start from.
+	 */
+	public String source() {
+		return this.source;
+	}
+
+	/*
+	 * @return the length of the shortest path from source to node, 0 for source itself, or
+	 * Double.POSITIVE_INFINITY if there is none.
+	 * @throws IllegalArgumentException if node is not a node of the graph.
+	 */
+	public synchronized double distance(String node) {
+		this.checkNode(node);
+		Reached reached = this.tree.get(node);
+		return reached == null ? Double.POSITIVE_INFINITY : reached.distance;
+	}
+
+	/*
+	 * @return the shortest path from source to node, which is empty if there is none or node is source.
+	 * @throws IllegalArgumentException if node is not a node of the graph.
+	 */
+	public synchronized MapGraph.MapPath path(String node) {
+		this.checkNode(node);
+		List<MapGraph.MapEdge> edges = new ArrayList<MapGraph.MapEdge>();
+		for (Reached reached = this.tree.get(node); reached != null && reached.predecessor != null; reached = this.tree.get(node)) {
+			edges.add(new MapGraph.MapEdge(reached.predecessor, node, reached.weight));
+			node = reached.predecessor;
+		}
+		Collections.reverse(edges);
+		MapGraph.MapPath path = new MapGraph.MapPath();
+		for (MapGraph.MapEdge edge : edges) {
+			path.addEdge(edge);
+		}
+		return path;
+	}
+
+	/*
+	 * @return how many nodes and edges the last repair of this tree visited, or its building if it wasn't
+	 * repaired yet. A repair that found the tree unaffected visits none.
+	 */
+	public synchronized SearchStats lastUpdateStats() {
+		return this.lastUpdate;
+	}
+
+	/*
+	 * @spec.effects stops following the mutations of the graph : the tree keeps the paths it has.
+	 */
+	@Override
+	public void close() {
+		this.graph.removeListener(this);
+	}
+
+	private void checkNode(String node) {
+		if (!this.graph.containsNode(node)) {
+			throw new IllegalArgumentException("the node " + node + " does not belong to the graph");
+		}
+	}
+
+	@Override
+	public synchronized void nodeAdded(String node) {
+		if (node.equals(this.source) && this.tree.isEmpty()) { // the source is back
+			this.build();
+			this.record();
+		}
+	}
+
+	@Override
+	public synchronized void nodeRemoved(String node) {
+		if (node.equals(this.source)) { // it may be back already, told out of order
+			this.build();
+		} else if (this.tree.containsKey(node)) {
+			this.reconnect(node);
+		}
+		this.record();
+	}
+
+	@Override
+	public synchronized void edgeAdded(String child, String parent, Double label) {
+		this.edgeChanged(child, parent);
+		this.record();
+	}
+
+	@Override
+	public synchronized void edgeRemoved(String child, String parent, Double label) {
+		this.edgeChanged(child, parent);
+		this.record();
+	}
+
+	/*
+	 * @spec.effects builds the tree from scratch : empty if the source is not in the graph anymore.
+	 */
+	private void build() {
+		this.tree.clear();
+		if (this.graph.containsNode(this.source)) {
+			this.tree.put(this.source, new Reached(0., null, 0.));
+			this.settle(new PriorityQueue<Candidate>(this.relaxChildren(this.source, 0., null)), null);
+		}
+	}
+
+	/*
+	 * @spec.effects repairs the tree after the edge from parent to child was added, removed, or had its
+	 * smallest label changed.
+	 */
+	private void edgeChanged(String child, String parent) {
+		Reached from = this.tree.get(parent);
+		Reached to = this.tree.get(child);
+		double weight = this.weight(parent, child);
+		double through = from == null ? Double.POSITIVE_INFINITY : from.distance + weight;
+		if (to != null && parent.equals(to.predecessor) && through > to.distance) {
+			this.reconnect(child);
+		} else if (through < (to == null ? Double.POSITIVE_INFINITY : to.distance)) {
+			PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+			queue.add(new Candidate(child, through, parent, weight));
+			this.settle(queue, null);
+		}
+	}
+
+	/*
+	 * @spec.effects cuts the subtree of root off the tree, then settles its nodes again from the rest of the
+	 * tree, at distances that can only be longer than they were.
+	 */
+	private void reconnect(String root) {
+		HashSet<String> cut = new HashSet<String>();
+		ArrayDeque<String> pending = new ArrayDeque<String>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			String node = pending.poll();
+			cut.add(node);
+			pending.addAll(this.tree.get(node).treeChildren);
+		}
+		for (String node : cut) {
+			this.detach(node);
+		}
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+		for (String node : cut) {
+			this.forEachParentWeight(node, (parent, weight) -> {
+				this.relaxedEdges++;
+				Reached from = this.tree.get(parent);
+				if (from != null) {
+					queue.add(new Candidate(node, from.distance + weight, parent, weight));
+				}
+			});
+		}
+		this.settle(queue, cut);
+	}
+
+	/*
+	 * @param within the only nodes the search may settle, or null for any node
+	 * @spec.effects settles the candidates of queue in order of distance, each at the first distance it is
+	 * taken out at if that is shorter than its distance in the tree, and relaxes the edges leaving it.
+	 */
+	private void settle(PriorityQueue<Candidate> queue, Set<String> within) {
+		while (!queue.isEmpty()) {
+			Candidate candidate = queue.poll();
+			Reached reached = this.tree.get(candidate.node);
+			if (reached != null && reached.distance <= candidate.distance) {
+				continue;
+			}
+			if (reached != null) {
+				this.detach(candidate.node);
+			}
+			Reached settled = this.attach(candidate);
+			if (reached != null) { // its tree children follow it, and the search shortens their distances too
+				settled.treeChildren.addAll(reached.treeChildren);
+			}
+			this.settledNodes++;
+			for (Candidate next : this.relaxChildren(candidate.node, candidate.distance, within)) {
+				queue.add(next);
+			}
+		}
+	}
+
+	/*
+	 * @return the children of node, restricted to within if it isn't null, that are reached through node at a
+	 * shorter distance than in the tree.
+	 */
+	private List<Candidate> relaxChildren(String node, double distance, Set<String> within) {
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		this.forEachChildWeight(node, (child, weight) -> {
+			this.relaxedEdges++;
+			if (within != null && !within.contains(child)) {
+				return;
+			}
+			Reached reached = this.tree.get(child);
+			if (reached == null || distance + weight < reached.distance) {
+				candidates.add(new Candidate(child, distance + weight, node, weight));
+			}
+		});
+		return candidates;
+	}
+
+	private Reached attach(Candidate candidate) {
+		Reached reached = new Reached(candidate.distance, candidate.predecessor, candidate.weight);
+		this.tree.put(candidate.node, reached);
+		Reached parent = this.tree.get(candidate.predecessor);
+		if (parent != null) {
+			parent.treeChildren.add(candidate.node);
+		}
+		return reached;
+	}
+
+	/*
+	 * @spec.effects removes node from the tree, and from the tree children of its predecessor. Its own tree
+	 * children keep it as their predecessor.
+	 */
+	private void detach(String node) {
+		Reached reached = this.tree.remove(node);
+		Reached parent = reached.predecessor == null ? null : this.tree.get(reached.predecessor);
+		if (parent != null) {
+			parent.treeChildren.remove(node);
+		}
+	}
+
+	/*
+	 * @return the length of the edge from parent to child, or Double.POSITIVE_INFINITY if there is none.
+	 */
+	private double weight(String parent, String child) {
+		return this.graph.minWeight(child, parent, ConcreteGraph.LATEST);
+	}
+
+	// visits the children of node, or none if it was removed meanwhile
+	private void forEachChildWeight(String node, EdgeWeightConsumer<String> action) {
+		this.graph.forEachChildWeightIfPresent(node, action, ConcreteGraph.LATEST);
+	}
+
+	// visits the parents of node, or none if it was removed meanwhile
+	private void forEachParentWeight(String node, EdgeWeightConsumer<String> action) {
+		this.graph.forEachParentWeightIfPresent(node, action, ConcreteGraph.LATEST);
+	}
+
+	private void record() {
+		this.lastUpdate = new SearchStats(this.settledNodes, this.relaxedEdges);
+		this.settledNodes = 0;
+		this.relaxedEdges = 0;
+	}
+}
@@ -0,0 +1,168 @@
+package main;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * The labels of the edges from one parent to one child of a ConcreteGraph : an immutable, non empty set,
+ * which keeps them in increasing order when they are all Comparable with one another, and precomputes the
+ * smallest of them as a double when they are Numbers, so that searches read the weight of a multi-labeled
+ * edge without boxing, copying or scanning its labels.
+ *
+ * A new set is derived for every label added or removed, see with and without, in time proportional to the
+ * number of labels, which is that of copying a HashSet.
+ */
+final class EdgeLabels<V> extends AbstractSet<V> {
+
+	// the labels, in increasing order if sorted, in insertion order otherwise
+	private final Object[] labels;
+
+	private final boolean sorted;
+
+	// the smallest of the labels as a double, or NaN if some label is not a Number
+	private final double minWeight;
+
+	/*
+	 * Representation invariant :
+	 *
+	 * (1) this.labels is not empty, and holds no null and no two equal labels.
+	 * (2) if this.sorted, all labels are Comparable with one another, and this.labels is in increasing order.
+	 * (3) this.minWeight is the smallest doubleValue of the labels if they are all Numbers, NaN otherwise.
+	 */
+
+	private EdgeLabels(Object[] labels, boolean sorted) {
+		this.labels = labels;
+		this.sorted = sorted;
+		double minWeight = Double.POSITIVE_INFINITY;
+		for (Object label : labels) {
+			if (!(label instanceof Number)) {
+				minWeight = Double.NaN;
+				break;
+			}
+			minWeight = Math.min(minWeight, ((Number) label).doubleValue());
+		}
+		this.minWeight = minWeight;
+	}
+
+	/*
+	 * @spec.requires label != null
+	 * @return the set of label alone.
+	 */
+	static <V> EdgeLabels<V> of(V label) {
+		return new EdgeLabels<V>(new Object[] {label}, label instanceof Comparable);
+	}
+
+	/*
+	 * @spec.requires label != null, and label is not in this
+	 * @return this set with label added.
+	 */
+	EdgeLabels<V> with(V label) {
+		Object[] labels = new Object[this.labels.length + 1];
+		if (this.sorted && comparable(this.labels[0], label)) {
+			int position = 0;
+			while (position < this.labels.length && compare(this.labels[position], label) <= 0) {
+				position++;
+			}
+			System.arraycopy(this.labels, 0, labels, 0, position);
+			labels[position] = label;
+			System.arraycopy(this.labels, position, labels, position + 1, this.labels.length - position);
+			return new EdgeLabels<V>(labels, true);
+		}
+		System.arraycopy(this.labels, 0, labels, 0, this.labels.length);
+		labels[this.labels.length] = label;
+		return new EdgeLabels<V>(labels, false);
+	}
+
+	/*
+	 * @spec.requires label is in this
+	 * @return this set without label, or null if label was the only one.
+	 */
+	EdgeLabels<V> without(V label) {
+		if (this.labels.length == 1) {
+			return null;
+		}
+		Object[] labels = new Object[this.labels.length - 1];
+		int count = 0;
+		for (Object other : this.labels) {
+			if (!other.equals(label)) {
+				labels[count++] = other;
+			}
+		}
+		return new EdgeLabels<V>(labels, this.sorted);
+	}
+
+	private static boolean comparable(Object label, Object other) {
+		return label instanceof Comparable && label.getClass() == other.getClass();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compare(Object label, Object other) {
+		return ((Comparable<Object>) label).compareTo(other);
+	}
+
+	/*
+	 * @return the smallest of the labels as a double, or NaN if some of them are not Numbers.
+	 */
+	double minWeight() {
+		return this.minWeight;
+	}
+
+	/*
+	 * @return the smallest of the labels if they are sorted, see isSorted, and the first one added otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	V first() {
+		return (V) this.labels[0];
+	}
+
+	/*
+	 * @return true if the labels are iterated in increasing order.
+	 */
+	boolean isSorted() {
+		return this.sorted;
+	}
+
+	@Override
+	public boolean contains(Object label) {
+		for (Object other : this.labels) {
+			if (other.equals(label)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return this.labels.length;
+	}
+
+	@Override
+	public Iterator<V> iterator() {
+		return new Iterator<V>() {
+
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return this.next < EdgeLabels.this.labels.length;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public V next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return (V) EdgeLabels.this.labels[this.next++];
+			}
+		};
+	}
+
+	@Override
+	public Object[] toArray() {
+		return Arrays.copyOf(this.labels, this.labels.length);
+	}
+}
@@ -0,0 +1,14 @@
+package main;
+
+/*
+ * What forEachChildWeight and forEachParentWeight of an AbstractGraph do with each neighbour of a node.
+ */
+@FunctionalInterface
+public interface EdgeWeightConsumer<K> {
+
+	/*
+	 * @param node a child or parent of the node whose neighbours are visited
+	 * @param weight the smallest label of the edges between them
+	 */
+	void accept(K node, double weight);
+}
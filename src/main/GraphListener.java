@@ -0,0 +1,55 @@
+package main;
+
+/*
+ * A GraphListener is told about each mutation of the ConcreteGraph it is added to, see
+ * ConcreteGraph.addListener : structures derived from the graph use it to follow it without rebuilding.
+ *
+ * The methods are called by the thread that made the mutation, once it is published and before the mutator
+ * returns, so a listener reading the graph sees at least that mutation. They are called after the writer
+ * released the locks of the graph, so that a slow listener only holds up its own writer : mutations made by
+ * different threads may be told concurrently, and out of the order they were made in, even those of the
+ * same node. A listener must therefore be thread safe, and read the graph as it is rather than rely on the
+ * order it is told things in. Exceptions thrown by a listener are thrown by the mutator, after the mutation
+ * is made.
+ *
+ * Each method does nothing unless overridden.
+ */
+public interface GraphListener<K,V> {
+
+	/*
+	 * @param node a node added to g, by addNode or by addEdge for an edge from or to it.
+	 */
+	default void nodeAdded(K node) {
+	}
+
+	/*
+	 * @param node a node removed from g. The edges from and to it were removed with it, and are not told
+	 * separately.
+	 */
+	default void nodeRemoved(K node) {
+	}
+
+	/*
+	 * @param child the child node of an edge added to g
+	 * @param parent the parent node of that edge
+	 * @param label the label of that edge
+	 */
+	default void edgeAdded(K child, K parent, V label) {
+	}
+
+	/*
+	 * @param child the child node of an edge removed from g
+	 * @param parent the parent node of that edge
+	 * @param label the label of that edge
+	 */
+	default void edgeRemoved(K child, K parent, V label) {
+	}
+
+	/*
+	 * @param version the version of g the mutation just told about was published at, see
+	 * ConcreteGraph.version. Called once for each mutation, after the methods above. Mutations made by
+	 * different threads may be told out of the order of their versions.
+	 */
+	default void mutationPublished(long version) {
+	}
+}
@@ -0,0 +1,121 @@
+package main;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counters and latency histograms aggregated over every graph of the JVM, for dashboards and for finding
+ * out what slow queries have in common : how long MapGraph.shortestPath takes, how much searching it does,
+ * how often the path cache and the compiled snapshot spare it work, and how often the adjacency of
+ * ConcreteGraphs is looked up.
+ *
+ * Metrics are only collected when the JVM is started with -Dshinygraph.metrics=true. Otherwise ENABLED is
+ * a false constant, and the JIT compiles away every check of it, so that collecting costs nothing. For the
+ * details of single queries, see ShortestPathEvent.
+ *
+ * Counters are LongAdders, so threads counting at once don't contend.
+ */
+public final class GraphMetrics {
+
+	// whether metrics are collected, fixed when the class is loaded
+	static final boolean ENABLED = Boolean.getBoolean("shinygraph.metrics");
+
+	private static final LatencyHistogram SHORTEST_PATH_LATENCY = new LatencyHistogram();
+
+	/*
+	 * The counters of GraphMetrics.
+	 */
+	public enum Counter {
+		// calls of MapGraph.shortestPath(startPoint, endPoint)
+		SHORTEST_PATHS,
+		// those of them that found no path
+		SHORTEST_PATHS_NOT_FOUND,
+		// the nodes settled, edges relaxed, and nodes queued and polled by their searches, see SearchStats
+		SETTLED_NODES,
+		RELAXED_EDGES,
+		HEAP_PUSHES,
+		HEAP_POPS,
+		// lookups in the PathCache of a MapGraph
+		PATH_CACHE_HITS,
+		PATH_CACHE_MISSES,
+		// searches of a MapGraph that reused its compiled snapshot, those that had to compile it again, and
+		// those that brought it up to date by reading again the nodes changed since, see OverlayGraph
+		SNAPSHOT_REUSES,
+		SNAPSHOT_COMPILES,
+		SNAPSHOT_PATCHES,
+		// lookups of the children, the parents and the edge labels of a node by the observers of ConcreteGraph
+		CHILDREN_LOOKUPS,
+		PARENTS_LOOKUPS,
+		EDGE_LABEL_LOOKUPS;
+
+		private final LongAdder count = new LongAdder();
+
+		/*
+		 * @return the value of this counter, 0 if metrics are not collected.
+		 */
+		public long get() {
+			return this.count.sum();
+		}
+
+		void increment() {
+			this.count.increment();
+		}
+
+		void add(long amount) {
+			this.count.add(amount);
+		}
+	}
+
+	private GraphMetrics() {
+	}
+
+	/*
+	 * @return true if metrics are collected, i.e. if the JVM was started with -Dshinygraph.metrics=true.
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/*
+	 * @return the durations of the calls of MapGraph.shortestPath(startPoint, endPoint), cache hits included.
+	 */
+	public static LatencyHistogram shortestPathLatency() {
+		return SHORTEST_PATH_LATENCY;
+	}
+
+	/*
+	 * @spec.effects sets every counter back to 0, and empties every histogram.
+	 */
+	public static void reset() {
+		for (Counter counter : Counter.values()) {
+			counter.count.reset();
+		}
+		SHORTEST_PATH_LATENCY.reset();
+	}
+
+	/*
+	 * @spec.requires ENABLED
+	 * @spec.effects counts a shortestPath query that took nanos and is described by event.
+	 */
+	static void recordShortestPath(ShortestPathEvent event, long nanos) {
+		SHORTEST_PATH_LATENCY.record(nanos);
+		Counter.SHORTEST_PATHS.increment();
+		if (!event.found) {
+			Counter.SHORTEST_PATHS_NOT_FOUND.increment();
+		}
+		Counter.SETTLED_NODES.add(event.settledNodes);
+		Counter.RELAXED_EDGES.add(event.relaxedEdges);
+		Counter.HEAP_PUSHES.add(event.heapPushes);
+		Counter.HEAP_POPS.add(event.heapPops);
+	}
+
+	/*
+	 * @return the value of every counter, one per line, then the latencies of shortestPath.
+	 */
+	public static String report() {
+		StringBuilder report = new StringBuilder();
+		for (Counter counter : Counter.values()) {
+			report.append(counter.name().toLowerCase()).append(" : ").append(counter.get()).append('\n');
+		}
+		return report.append("shortest path latency : ").append(SHORTEST_PATH_LATENCY).toString();
+	}
+}
@@ -0,0 +1,184 @@
+package main;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/*
+ * A GraphSnapshot is a read-only view of a ConcreteGraph as it was at one version, see ConcreteGraph.snapshot() :
+ * however long it is read for, it sees none of the mutations made to the graph after it was taken, and it
+ * doesn't hold them up either. Taking one copies nothing : the graph keeps the versions of its nodes that
+ * open snapshots read, and drops them once they are closed.
+ *
+ * A snapshot must therefore be closed once it is not needed anymore, best with try-with-resources :
+ *
+ * try (GraphSnapshot<String, Double> snapshot = graph.snapshot()) {
+ *     ...
+ * }
+ *
+ * The mutators throw UnsupportedOperationException, and every method but close and version throws
+ * IllegalStateException once the snapshot is closed.
+ */
+public final class GraphSnapshot<K,V> implements AbstractGraph<K,V>, AutoCloseable {
+
+	private final ConcreteGraph<K,V> graph;
+	private final ConcreteGraph.Pin pin;
+	private final long version;
+	private volatile boolean closed;
+
+	// the nodes of the snapshot, once nodes() is called
+	private volatile Set<K> nodes;
+
+	GraphSnapshot(ConcreteGraph<K,V> graph, ConcreteGraph.Pin pin) {
+		this.graph = graph;
+		this.pin = pin;
+		this.version = pin.version;
+	}
+
+	/*
+	 * @return the version of the graph this snapshot reads, as returned by its version() when it was taken.
+	 */
+	public long version() {
+		return this.version;
+	}
+
+	/*
+	 * @spec.effects lets the graph drop the versions this snapshot reads. Does nothing if it is already closed.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.graph.release(this.pin);
+	}
+
+	private void checkOpen() {
+		if (this.closed) {
+			throw new IllegalStateException("this snapshot is closed");
+		}
+	}
+
+	@Override
+	public void addNode(K node) {
+		throw new UnsupportedOperationException("a snapshot is read-only");
+	}
+
+	@Override
+	public void removeNode(K node) {
+		throw new UnsupportedOperationException("a snapshot is read-only");
+	}
+
+	@Override
+	public void addEdge(K child, K parent, V label) {
+		throw new UnsupportedOperationException("a snapshot is read-only");
+	}
+
+	@Override
+	public void removeEdge(K child, K parent, V label) {
+		throw new UnsupportedOperationException("a snapshot is read-only");
+	}
+
+	/*
+	 * @return true if node is in g.nodes.
+	 */
+	public boolean containsNode(K node) {
+		this.checkOpen();
+		return this.graph.containsNode(node, this.version);
+	}
+
+	@Override
+	public HashSet<K> listNodes() {
+		this.checkOpen();
+		return this.graph.listNodes(this.version);
+	}
+
+	@Override
+	public HashMap<K, Set<V>> listChildren(K parent) {
+		this.checkOpen();
+		return this.graph.listChildren(parent, this.version);
+	}
+
+	@Override
+	public HashMap<K, Set<V>> listParents(K child) {
+		this.checkOpen();
+		return this.graph.listParents(child, this.version);
+	}
+
+	/*
+	 * Copies the nodes of the snapshot the first time it is called, and returns that same set afterwards, 
+	 * which stays usable once the snapshot is closed. 
+	 */
+	@Override
+	public Set<K> nodes() {
+		this.checkOpen();
+		Set<K> nodes = this.nodes;
+		if (nodes == null) {
+			nodes = Collections.unmodifiableSet(this.graph.listNodes(this.version));
+			this.nodes = nodes;
+		}
+		return nodes;
+	}
+
+	@Override
+	public void forEachNode(Consumer<? super K> action) {
+		this.nodes().forEach(action);
+	}
+
+	/*
+	 * Copies nothing. The view is of the children of parent in this snapshot, so it never changes, and stays 
+	 * usable once the snapshot is closed. 
+	 */
+	@Override
+	public Map<K, Set<V>> children(K parent) {
+		this.checkOpen();
+		return this.graph.children(parent, this.version);
+	}
+
+	/*
+	 * Copies nothing, see children. 
+	 */
+	@Override
+	public Map<K, Set<V>> parents(K child) {
+		this.checkOpen();
+		return this.graph.parents(child, this.version);
+	}
+
+	@Override
+	public Set<V> edgeLabels(K child, K parent) {
+		this.checkOpen();
+		return this.graph.edgeLabels(child, parent, this.version);
+	}
+
+	@Override
+	public void forEachChild(K parent, BiConsumer<? super K, ? super Set<V>> action) {
+		this.checkOpen();
+		this.graph.forEachChild(parent, action, this.version);
+	}
+
+	@Override
+	public void forEachParent(K child, BiConsumer<? super K, ? super Set<V>> action) {
+		this.checkOpen();
+		this.graph.forEachParent(child, action, this.version);
+	}
+
+	@Override
+	public void forEachChildWeight(K parent, EdgeWeightConsumer<K> action) {
+		this.checkOpen();
+		this.graph.forEachChildWeight(parent, action, this.version);
+	}
+
+	@Override
+	public void forEachParentWeight(K child, EdgeWeightConsumer<K> action) {
+		this.checkOpen();
+		this.graph.forEachParentWeight(child, action, this.version);
+	}
+
+	@Override
+	public HashSet<V> getEdgeLabels(K child, K parent) {
+		this.checkOpen();
+		return this.graph.getEdgeLabels(child, parent, this.version);
+	}
+}
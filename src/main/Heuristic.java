@@ -0,0 +1,32 @@
+package main;
+
+/*
+ * A lower bound on the distance between two nodes of an IndexedGraph, which guides A* searches towards 
+ * their target. 
+ * 
+ * To get shortest paths out of A*, a heuristic must never overestimate the distance between two nodes 
+ * (admissible), and estimate(n, t) <= w + estimate(m, t) must hold for every edge <n, m, w> (consistent). 
+ */
+public interface Heuristic {
+
+	/*
+	 * the heuristic that knows nothing, with which A* is plain Dijkstra. 
+	 */
+	Heuristic NONE = (graph, node, target) -> 0.;
+
+	/*
+	 * @param graph the graph searched
+	 * @param node the id of a node of graph
+	 * @param target the id of the node the search is heading to
+	 * @return a lower bound on the length of the shortest path from node to target in graph.
+	 */
+	double estimate(IndexedGraph graph, int node, int target);
+
+	/*
+	 * @return false if this heuristic has no information about graph, in which case searches on graph 
+	 * ignore it and fall back to plain Dijkstra.
+	 */
+	default boolean isUsableOn(IndexedGraph graph) {
+		return true;
+	}
+}
@@ -0,0 +1,118 @@
+package main;
+
+/*
+ * An IndexedGraph is a read-only view of a graph with numerical labels, where nodes are identified by dense
+ * integer ids rather than by their names. It is what the shortest path searches of MapGraph run on :
+ * ids index plain arrays, and edges are visited without hashing, copying or boxing.
+ *
+ * Nodes are numbered 0, 1, ..., nodeCount()-1. Each node keeps its name, and there is at most one edge
+ * from a given parent to a given child.
+ *
+ * The edges leaving a node are visited with a cursor :
+ *
+ * for (int cursor = g.firstOut(node); cursor >= 0; cursor = g.nextOut(node, cursor)) {
+ *     int child = g.outTarget(node, cursor);
+ *     double weight = g.outWeight(node, cursor);
+ * }
+ *
+ * and the edges entering a node the same way, with firstIn, nextIn, inSource and inWeight.
+ *
+ * A cursor is only meaningful to the implementation that returned it and for the node it was obtained for.
+ *
+ * Nodes may also have coordinates (x, y), which heuristics use to guide searches.
+ *
+ * Specification fields:
+ * @spec.specfield : nodes // the set of node ids in this graph : 0, 1, ... nodeCount()-1
+ * @spec.specfield : names // the name of each node in nodes
+ * @spec.specfield : edges // the set of edges in this graph. E : <N1, N2, w> where w is a double
+ *
+ * Abstract invariants :
+ * - names contains no duplicates and no null.
+ * - there is at most one edge <N1, N2, w> for a given pair N1, N2.
+ */
+public interface IndexedGraph {
+
+	/*
+	 * @return the number of nodes in g.
+	 */
+	int nodeCount();
+
+	/*
+	 * @param node the name of a node
+	 * @return the id of the node with that name, or -1 if g does not contain such a node.
+	 */
+	int nodeId(String node);
+
+	/*
+	 * @param id the id of a node of g
+	 * @return the name of that node
+	 */
+	String nodeName(int id);
+
+	/*
+	 * @param node the id of a node of g
+	 * @return a cursor on the first edge leaving node, or -1 if node has no children.
+	 */
+	int firstOut(int node);
+
+	/*
+	 * @param node the id of a node of g
+	 * @param cursor a cursor on an edge leaving node
+	 * @return a cursor on the next edge leaving node, or -1 if there is none.
+	 */
+	int nextOut(int node, int cursor);
+
+	/*
+	 * @return the id of the child of the edge under cursor.
+	 */
+	int outTarget(int node, int cursor);
+
+	/*
+	 * @return the weight of the edge under cursor.
+	 */
+	double outWeight(int node, int cursor);
+
+	/*
+	 * @param node the id of a node of g
+	 * @return a cursor on the first edge entering node, or -1 if node has no parents.
+	 */
+	int firstIn(int node);
+
+	/*
+	 * @param node the id of a node of g
+	 * @param cursor a cursor on an edge entering node
+	 * @return a cursor on the next edge entering node, or -1 if there is none.
+	 */
+	int nextIn(int node, int cursor);
+
+	/*
+	 * @return the id of the parent of the edge under cursor.
+	 */
+	int inSource(int node, int cursor);
+
+	/*
+	 * @return the weight of the edge under cursor.
+	 */
+	double inWeight(int node, int cursor);
+
+	/*
+	 * @return the version of the graph g was taken from, see ConcreteGraph.version(). Two views of the same
+	 * graph with the same version have the same nodes and edges.
+	 */
+	long version();
+
+	/*
+	 * @return true if every node of g has coordinates.
+	 */
+	boolean hasCoordinates();
+
+	/*
+	 * @return the first coordinate of node, or NaN if it has none.
+	 */
+	double x(int node);
+
+	/*
+	 * @return the second coordinate of node, or NaN if it has none.
+	 */
+	double y(int node);
+}
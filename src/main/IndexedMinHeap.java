@@ -0,0 +1,164 @@
+package main;
+
+import java.util.Arrays;
+
+/*
+ * A binary min-heap of node ids keyed by doubles, which knows where each node sits in the heap so that
+ * the key of a queued node can be decreased in place. Each node is queued at most once.
+ *
+ * Arrays are only allocated when the heap has to grow, so a heap can be reused from one search to the next.
+ */
+final class IndexedMinHeap {
+
+	private int[] heap;
+	private int[] positions;
+	private double[] keys;
+	private int size;
+
+	// counted since the last clear, for SearchStats : nodes queued, nodes polled, and the largest size reached
+	int pushes;
+	int pops;
+	int peakSize;
+
+	/*
+	 * Representation invariant :
+	 *
+	 * (1) for 0 <= i < this.size, this.positions[this.heap[i]] == i.
+	 * (2) for every node not in this.heap[0 .. this.size-1], this.positions[node] == -1.
+	 * (3) for 0 < i < this.size, this.keys[this.heap[(i-1)/2]] <= this.keys[this.heap[i]].
+	 */
+
+	IndexedMinHeap(int capacity) {
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.keys = new double[capacity];
+		Arrays.fill(this.positions, -1);
+	}
+
+	/*
+	 * @spec.effects makes room for the node ids 0 .. nodeCount-1.
+	 */
+	void ensureCapacity(int nodeCount) {
+		if (nodeCount > this.positions.length) {
+			int oldLength = this.positions.length;
+			this.heap = Arrays.copyOf(this.heap, nodeCount);
+			this.positions = Arrays.copyOf(this.positions, nodeCount);
+			this.keys = Arrays.copyOf(this.keys, nodeCount);
+			Arrays.fill(this.positions, oldLength, nodeCount, -1);
+		}
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	boolean contains(int node) {
+		return this.positions[node] >= 0;
+	}
+
+	/*
+	 * @spec.requires !isEmpty()
+	 * @return the smallest key in the heap.
+	 */
+	double minKey() {
+		return this.keys[this.heap[0]];
+	}
+
+	/*
+	 * @spec.effects queues node with key, or lowers the key of node to key if it is already queued with a larger one.
+	 * @return true if the heap changed.
+	 */
+	boolean insertOrDecrease(int node, double key) {
+		int position = this.positions[node];
+		if (position < 0) {
+			position = this.size++;
+			this.heap[position] = node;
+			this.positions[node] = position;
+			this.pushes++;
+			if (this.size > this.peakSize) {
+				this.peakSize = this.size;
+			}
+		} else if (key >= this.keys[node]) {
+			return false;
+		}
+		this.keys[node] = key;
+		this.siftUp(position);
+		return true;
+	}
+
+	/*
+	 * @spec.requires !isEmpty()
+	 * @spec.effects removes the node with the smallest key from the heap.
+	 * @return that node.
+	 */
+	int pollMin() {
+		int min = this.heap[0];
+		this.positions[min] = -1;
+		this.size--;
+		this.pops++;
+		if (this.size > 0) {
+			int last = this.heap[this.size];
+			this.heap[0] = last;
+			this.positions[last] = 0;
+			this.siftDown(0);
+		}
+		return min;
+	}
+
+	/*
+	 * @spec.effects empties the heap, in time proportional to its size, and resets its counts.
+	 */
+	void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.positions[this.heap[i]] = -1;
+		}
+		this.size = 0;
+		this.pushes = 0;
+		this.pops = 0;
+		this.peakSize = 0;
+	}
+
+	private void siftUp(int position) {
+		int node = this.heap[position];
+		double key = this.keys[node];
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			int parent = this.heap[parentPosition];
+			if (this.keys[parent] <= key) {
+				break;
+			}
+			this.heap[position] = parent;
+			this.positions[parent] = position;
+			position = parentPosition;
+		}
+		this.heap[position] = node;
+		this.positions[node] = position;
+	}
+
+	private void siftDown(int position) {
+		int node = this.heap[position];
+		double key = this.keys[node];
+		int half = this.size >>> 1;
+		while (position < half) {
+			int childPosition = 2 * position + 1;
+			int child = this.heap[childPosition];
+			int rightPosition = childPosition + 1;
+			if (rightPosition < this.size && this.keys[this.heap[rightPosition]] < this.keys[child]) {
+				childPosition = rightPosition;
+				child = this.heap[childPosition];
+			}
+			if (key <= this.keys[child]) {
+				break;
+			}
+			this.heap[position] = child;
+			this.positions[child] = position;
+			position = childPosition;
+		}
+		this.heap[position] = node;
+		this.positions[node] = position;
+	}
+}
@@ -0,0 +1,252 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import main.MapGraph.MapPath;
+
+/*
+ * The k shortest loopless paths between two nodes of an IndexedGraph, by Yen's algorithm with Lawler's
+ * refinement : each path found after the first is the shortest of the candidates that leave a path found
+ * before at some spur node, after following it from the start up to there (its root), without going back
+ * through the root nor taking the edge out of the spur node that any path found before with the same root
+ * takes. Candidates of a path are only looked for from the spur node it was found from on, as those before
+ * were tried already for the path it was found from.
+ *
+ * Nothing is removed from the graph to get there : each spur search marks the nodes of its root as settled
+ * in its own SearchScratch, and skips the excluded edges when it expands the spur node. The spur searches of
+ * a round are independent and run in parallel on a ForkJoinPool.
+ *
+ * They are also A* searches guided by the exact distances to the target in the whole graph, computed once by
+ * a backward Dijkstra : excluding nodes and edges only makes distances longer, so these stay consistent, and
+ * each spur search goes almost straight to the target.
+ */
+final class KShortestPaths {
+
+	// the shortest first, then the one with fewer edges, then the smallest ids in order
+	private static final Comparator<Path> RANK = (a, b) -> {
+		int compare = Double.compare(a.distance, b.distance);
+		if (compare == 0) {
+			compare = Integer.compare(a.nodes.length, b.nodes.length);
+		}
+		return compare != 0 ? compare : Arrays.compare(a.nodes, b.nodes);
+	};
+
+	private KShortestPaths() {
+	}
+
+	/*
+	 * @param graph the graph to search
+	 * @param startNode the id of the node to start from
+	 * @param targetNode the id of the node to reach, different from startNode
+	 * @param k the number of paths wanted, at least 1
+	 * @param pool the pool the spur searches run on
+	 * @return the k shortest loopless paths from startNode to targetNode, shortest first, fewer if there aren't
+	 * as many, and none if targetNode can't be reached. Paths with the same nodes are only listed once.
+	 */
+	static List<MapPath> find(IndexedGraph graph, int startNode, int targetNode, int k, ForkJoinPool pool) {
+		if (k == 1) { // no detours to look for, so not worth the backward search
+			MapPath path = DijkstraEngine.shortestPath(graph, startNode, targetNode);
+			return path.isEmpty() ? new ArrayList<MapPath>() : new ArrayList<MapPath>(Arrays.asList(path));
+		}
+		double[] toTarget = distancesTo(graph, targetNode);
+		List<MapPath> paths = new ArrayList<MapPath>();
+		if (toTarget[startNode] == Double.POSITIVE_INFINITY) {
+			return paths;
+		}
+		List<Path> found = new ArrayList<Path>();
+		found.add(firstPath(graph, startNode, targetNode));
+		TreeSet<Path> candidates = new TreeSet<Path>(RANK);
+		Set<Path> seen = new HashSet<Path>(found);
+		while (found.size() < k) {
+			Path previous = found.get(found.size() - 1);
+			Path[] spurred = new Path[previous.nodes.length - 1];
+			pool.submit(() -> IntStream.range(previous.deviation, spurred.length).parallel().forEach(spur ->
+				spurred[spur] = spurPath(graph, previous, spur, targetNode, found, toTarget)
+			)).join();
+			for (Path candidate : spurred) {
+				if (candidate != null && seen.add(candidate)) {
+					candidates.add(candidate);
+				}
+			}
+			if (candidates.isEmpty()) {
+				break;
+			}
+			found.add(candidates.pollFirst());
+		}
+		for (Path path : found) {
+			paths.add(path.toMapPath(graph));
+		}
+		return paths;
+	}
+
+	/*
+	 * @return the distance from every node to targetNode, infinite for the nodes that can't reach it.
+	 * @spec.effects leaves the shortest path tree towards targetNode in the backward SearchScratch of the
+	 * calling thread, predecessors pointing towards targetNode.
+	 */
+	private static double[] distancesTo(IndexedGraph graph, int targetNode) {
+		SearchScratch scratch = SearchScratch.backward();
+		scratch.begin(graph.nodeCount());
+		scratch.reach(targetNode, 0., -1, -1);
+		scratch.queue.insertOrDecrease(targetNode, 0.);
+		while (!scratch.queue.isEmpty()) {
+			int node = scratch.queue.pollMin();
+			scratch.settle(node);
+			double distance = scratch.distance(node);
+			for (int cursor = graph.firstIn(node); cursor >= 0; cursor = graph.nextIn(node, cursor)) {
+				int parent = graph.inSource(node, cursor);
+				double parentDistance = distance + graph.inWeight(node, cursor);
+				if (!scratch.isSettled(parent) && parentDistance < scratch.distance(parent)) {
+					scratch.reach(parent, parentDistance, node, cursor);
+					scratch.queue.insertOrDecrease(parent, parentDistance);
+				}
+			}
+		}
+		double[] distances = new double[graph.nodeCount()];
+		for (int node = 0; node < distances.length; node++) {
+			distances[node] = scratch.distance(node);
+		}
+		return distances;
+	}
+
+	/*
+	 * @spec.requires distancesTo(graph, targetNode) was the last search run in the backward scratch of the
+	 * calling thread, and reached startNode.
+	 * @return the shortest path from startNode, read off the shortest path tree towards targetNode.
+	 */
+	private static Path firstPath(IndexedGraph graph, int startNode, int targetNode) {
+		SearchScratch scratch = SearchScratch.backward();
+		int length = 0;
+		for (int node = startNode; node != targetNode; node = scratch.predecessor(node)) {
+			length++;
+		}
+		int[] nodes = new int[length + 1];
+		double[] weights = new double[length];
+		nodes[0] = startNode;
+		for (int i = 0; i < length; i++) {
+			nodes[i + 1] = scratch.predecessor(nodes[i]);
+			weights[i] = graph.inWeight(nodes[i + 1], scratch.predecessorCursor(nodes[i]));
+		}
+		return new Path(nodes, weights, 0);
+	}
+
+	/*
+	 * @return the shortest path that follows previous up to its node of index spur, then leaves it without
+	 * going back through the nodes before spur nor taking an edge out of the spur node that a path of found
+	 * with the same root takes, or null if there is none.
+	 */
+	private static Path spurPath(IndexedGraph graph, Path previous, int spur, int targetNode, List<Path> found, double[] toTarget) {
+		int spurNode = previous.nodes[spur];
+		int[] excluded = new int[found.size()];
+		int excludedCount = 0;
+		for (Path path : found) {
+			if (path.nodes.length > spur + 1 && Arrays.equals(path.nodes, 0, spur + 1, previous.nodes, 0, spur + 1)) {
+				excluded[excludedCount++] = path.nodes[spur + 1];
+			}
+		}
+
+		SearchScratch scratch = SearchScratch.current();
+		scratch.begin(graph.nodeCount());
+		for (int i = 0; i < spur; i++) {
+			scratch.settle(previous.nodes[i]);
+		}
+		scratch.reach(spurNode, 0., -1, -1);
+		scratch.queue.insertOrDecrease(spurNode, toTarget[spurNode]);
+		boolean reached = false;
+		while (!scratch.queue.isEmpty()) {
+			int node = scratch.queue.pollMin();
+			scratch.settle(node);
+			if (node == targetNode) {
+				reached = true;
+				break;
+			}
+			double distance = scratch.distance(node);
+			for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+				int child = graph.outTarget(node, cursor);
+				if (scratch.isSettled(child) || toTarget[child] == Double.POSITIVE_INFINITY
+						|| node == spurNode && contains(excluded, excludedCount, child)) {
+					continue;
+				}
+				double childDistance = distance + graph.outWeight(node, cursor);
+				if (childDistance < scratch.distance(child)) {
+					scratch.reach(child, childDistance, node, cursor);
+					scratch.queue.insertOrDecrease(child, childDistance + toTarget[child]);
+				}
+			}
+		}
+		if (!reached) {
+			return null;
+		}
+
+		int spurLength = 0;
+		for (int node = targetNode; node != spurNode; node = scratch.predecessor(node)) {
+			spurLength++;
+		}
+		int[] nodes = Arrays.copyOf(previous.nodes, spur + 1 + spurLength);
+		double[] weights = Arrays.copyOf(previous.weights, spur + spurLength);
+		for (int node = targetNode, index = nodes.length - 1; node != spurNode; node = scratch.predecessor(node), index--) {
+			nodes[index] = node;
+			weights[index - 1] = graph.outWeight(scratch.predecessor(node), scratch.predecessorCursor(node));
+		}
+		return new Path(nodes, weights, spur);
+	}
+
+	private static boolean contains(int[] items, int count, int item) {
+		for (int i = 0; i < count; i++) {
+			if (items[i] == item) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * A path as the ids of its nodes and the weights of its edges, equal to the paths with the same nodes.
+	 */
+	private static final class Path {
+
+		final int[] nodes;
+		final double[] weights;
+		// the sum of weights, from the first edge to the last
+		final double distance;
+		// the index of the node at which it leaves the path it was found from
+		final int deviation;
+
+		Path(int[] nodes, double[] weights, int deviation) {
+			this.nodes = nodes;
+			this.weights = weights;
+			this.deviation = deviation;
+			double distance = 0.;
+			for (double weight : weights) {
+				distance += weight;
+			}
+			this.distance = distance;
+		}
+
+		MapPath toMapPath(IndexedGraph graph) {
+			MapPath path = new MapPath();
+			for (int i = 0; i < this.weights.length; i++) {
+				path.addStep(graph, this.nodes[i], this.nodes[i + 1], this.weights[i]);
+			}
+			return path;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Path && Arrays.equals(this.nodes, ((Path) other).nodes);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(this.nodes);
+		}
+	}
+}
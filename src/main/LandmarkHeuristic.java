@@ -0,0 +1,366 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/*
+ * The ALT heuristic (A*, Landmarks, Triangle inequality), for graphs without coordinates. A few nodes are
+ * chosen as landmarks, and the distances from every landmark to every node and from every node to every
+ * landmark are computed once. For a landmark L, the triangle inequality gives two lower bounds on the
+ * distance from a node n to the target t :
+ *
+ * d(n, t) >= d(L, t) - d(L, n)   and   d(n, t) >= d(n, L) - d(t, L)
+ *
+ * and the estimate is the largest of those bounds over all landmarks. It is admissible and consistent on
+ * any graph with non negative weights.
+ *
+ * Landmarks are picked one after the other, each as far as possible from the previous ones in number of
+ * edges, which spreads them towards the borders of the graph where their bounds are tightest. The distance
+ * tables are then filled in parallel, one landmark per task, and can be saved to a file and loaded back.
+ *
+ * A LandmarkHeuristic is only usable on the graph it was computed on, recognized by a fingerprint of its
+ * nodes and edges : their SHA-256 digest, which no edit of the graph can be made to keep short of undoing
+ * it. It never changes once built, and can be shared between threads.
+ */
+public final class LandmarkHeuristic implements Heuristic {
+
+	private static final int FILE_MAGIC = 0x414c5431; // "ALT1"
+	private static final int FILE_FORMAT = 2;
+	private static final int FINGERPRINT_BYTES = 32;
+
+	private final int nodeCount;
+	private final byte[] fingerprint;
+	private final int[] landmarks;
+
+	// d(landmarks[l], n) at fromLandmark[n * landmarks.length + l], and d(n, landmarks[l]) at toLandmark[...]
+	private final double[] fromLandmark;
+	private final double[] toLandmark;
+
+	// the last graph found to match the fingerprint and the last one found not to, at the versions they were
+	// checked at, so that checking the same graph again is immediate until it changes
+	private volatile Check matching;
+	private volatile Check rejected;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the heuristic for the graph whose fingerprint is this.fingerprint, with the landmarks this.landmarks.
+	 * The distances to and from each landmark are stored node by node, the landmarks of a node next to one
+	 * another, so an estimate reads two short runs of memory. Unreachable nodes are at infinite distance.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) 0 <= this.landmarks[l] < this.nodeCount, and the landmarks are all different.
+	 * (2) this.fromLandmark.length == this.toLandmark.length == this.nodeCount * this.landmarks.length.
+	 * (3) this.fingerprint holds FINGERPRINT_BYTES bytes.
+	 */
+
+	private LandmarkHeuristic(int nodeCount, byte[] fingerprint, int[] landmarks, double[] fromLandmark, double[] toLandmark) {
+		this.nodeCount = nodeCount;
+		this.fingerprint = fingerprint;
+		this.landmarks = landmarks;
+		this.fromLandmark = fromLandmark;
+		this.toLandmark = toLandmark;
+	}
+
+	/*
+	 * @param graph the graph the heuristic is for
+	 * @param landmarkCount the number of landmarks. More landmarks give tighter estimates, but use
+	 * 2 * landmarkCount doubles per node and make each estimate slower.
+	 * @return the landmark heuristic of graph, computed on the common ForkJoinPool.
+	 * @throws IllegalArgumentException if landmarkCount is not positive.
+	 */
+	public static LandmarkHeuristic build(IndexedGraph graph, int landmarkCount) {
+		return build(graph, landmarkCount, ForkJoinPool.commonPool());
+	}
+
+	/*
+	 * @param pool the pool the distance tables are computed on
+	 * @return the same as build(graph, landmarkCount), computed on pool.
+	 * @throws IllegalArgumentException if landmarkCount is not positive.
+	 */
+	public static LandmarkHeuristic build(IndexedGraph graph, int landmarkCount, ForkJoinPool pool) {
+		if (landmarkCount <= 0) {
+			throw new IllegalArgumentException("the number of landmarks should be positive, not " + landmarkCount);
+		}
+		int nodeCount = graph.nodeCount();
+		int[] landmarks = pickLandmarks(graph, Math.min(landmarkCount, nodeCount));
+		double[] fromLandmark = new double[nodeCount * landmarks.length];
+		double[] toLandmark = new double[nodeCount * landmarks.length];
+		pool.submit(() -> IntStream.range(0, landmarks.length).parallel().forEach(l -> {
+			fillDistances(graph, landmarks[l], true, fromLandmark, l, landmarks.length);
+			fillDistances(graph, landmarks[l], false, toLandmark, l, landmarks.length);
+		})).join();
+		return new LandmarkHeuristic(nodeCount, fingerprint(graph), landmarks, fromLandmark, toLandmark);
+	}
+
+	/*
+	 * @return the number of landmarks.
+	 */
+	public int landmarkCount() {
+		return this.landmarks.length;
+	}
+
+	@Override
+	public double estimate(IndexedGraph graph, int node, int target) {
+		int count = this.landmarks.length;
+		int n = node * count;
+		int t = target * count;
+		double best = 0.;
+		for (int l = 0; l < count; l++) {
+			double fromToTarget = this.fromLandmark[t + l];
+			double fromToNode = this.fromLandmark[n + l];
+			// an infinite d(L, n) or d(t, L) says nothing. Otherwise an infinite bound means t can't be reached from n
+			if (fromToTarget - fromToNode > best && fromToNode < Double.POSITIVE_INFINITY) {
+				best = fromToTarget - fromToNode;
+			}
+			double nodeToLandmark = this.toLandmark[n + l];
+			double targetToLandmark = this.toLandmark[t + l];
+			if (nodeToLandmark - targetToLandmark > best && targetToLandmark < Double.POSITIVE_INFINITY) {
+				best = nodeToLandmark - targetToLandmark;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * @return true if graph has the same nodes, numbered the same way, and the same edges as the graph this
+	 * heuristic was computed on.
+	 */
+	@Override
+	public boolean isUsableOn(IndexedGraph graph) {
+		long version = graph.version();
+		if (Check.is(this.matching, graph, version)) {
+			return true;
+		}
+		if (Check.is(this.rejected, graph, version)) {
+			return false;
+		}
+		if (graph.nodeCount() != this.nodeCount || !MessageDigest.isEqual(fingerprint(graph), this.fingerprint)) {
+			this.rejected = new Check(graph, version);
+			return false;
+		}
+		this.matching = new Check(graph, version);
+		return true;
+	}
+
+	/*
+	 * @spec.effects writes the landmarks and distance tables to file, replacing its content.
+	 * @throws IOException if file can't be written.
+	 */
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_FORMAT);
+			out.writeInt(this.nodeCount);
+			out.write(this.fingerprint);
+			out.writeInt(this.landmarks.length);
+			for (int landmark : this.landmarks) {
+				out.writeInt(landmark);
+			}
+			for (int i = 0; i < this.fromLandmark.length; i++) {
+				out.writeDouble(this.fromLandmark[i]);
+			}
+			for (int i = 0; i < this.toLandmark.length; i++) {
+				out.writeDouble(this.toLandmark[i]);
+			}
+		}
+	}
+
+	/*
+	 * @param file a file written by save
+	 * @return the heuristic saved in file. It is only usable on a graph identical to the one it was built on.
+	 * @throws IOException if file can't be read or wasn't written by save.
+	 */
+	public static LandmarkHeuristic load(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT) {
+				throw new IOException(file + " does not hold landmark distances");
+			}
+			int nodeCount = in.readInt();
+			byte[] fingerprint = new byte[FINGERPRINT_BYTES];
+			in.readFully(fingerprint);
+			int landmarkCount = in.readInt();
+			if (nodeCount < 0 || landmarkCount < 0 || landmarkCount > nodeCount
+					|| (long) nodeCount * landmarkCount > Integer.MAX_VALUE - 8) {
+				throw new IOException(file + " is corrupted");
+			}
+			int[] landmarks = new int[landmarkCount];
+			for (int l = 0; l < landmarkCount; l++) {
+				landmarks[l] = in.readInt();
+				if (landmarks[l] < 0 || landmarks[l] >= nodeCount) {
+					throw new IOException(file + " is corrupted, its landmark " + landmarks[l] + " is not a node");
+				}
+			}
+			double[] fromLandmark = new double[nodeCount * landmarkCount];
+			double[] toLandmark = new double[nodeCount * landmarkCount];
+			for (int i = 0; i < fromLandmark.length; i++) {
+				fromLandmark[i] = in.readDouble();
+			}
+			for (int i = 0; i < toLandmark.length; i++) {
+				toLandmark[i] = in.readDouble();
+			}
+			return new LandmarkHeuristic(nodeCount, fingerprint, landmarks, fromLandmark, toLandmark);
+		}
+	}
+
+	/*
+	 * @return count different nodes of graph, each as far as possible in number of edges, in either direction,
+	 * from the ones before it. A node that none of the previous ones can reach is the farthest of all.
+	 */
+	private static int[] pickLandmarks(IndexedGraph graph, int count) {
+		int nodeCount = graph.nodeCount();
+		int[] landmarks = new int[count];
+		if (count == 0) {
+			return landmarks;
+		}
+		int[] closest = new int[nodeCount];
+		int[] hops = new int[nodeCount];
+		Arrays.fill(closest, Integer.MAX_VALUE);
+		// the first landmark is the farthest node from node 0
+		int farthest = farthestFrom(graph, 0, hops, closest);
+		Arrays.fill(closest, Integer.MAX_VALUE);
+		for (int l = 0; l < count; l++) {
+			landmarks[l] = farthest;
+			if (l + 1 < count) {
+				farthest = farthestFrom(graph, farthest, hops, closest);
+			}
+		}
+		return landmarks;
+	}
+
+	/*
+	 * @spec.effects runs a breadth first search from source over the edges of graph taken both ways, and
+	 * lowers closest[n] to the number of edges between source and n.
+	 * @return the node with the largest closest value afterwards, the smallest id among ties.
+	 */
+	private static int farthestFrom(IndexedGraph graph, int source, int[] hops, int[] closest) {
+		Arrays.fill(hops, -1);
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		hops[source] = 0;
+		queue.add(source);
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+				int child = graph.outTarget(node, cursor);
+				if (hops[child] < 0) {
+					hops[child] = hops[node] + 1;
+					queue.add(child);
+				}
+			}
+			for (int cursor = graph.firstIn(node); cursor >= 0; cursor = graph.nextIn(node, cursor)) {
+				int parent = graph.inSource(node, cursor);
+				if (hops[parent] < 0) {
+					hops[parent] = hops[node] + 1;
+					queue.add(parent);
+				}
+			}
+		}
+		int farthest = 0;
+		for (int node = 0; node < hops.length; node++) {
+			if (hops[node] >= 0 && hops[node] < closest[node]) {
+				closest[node] = hops[node];
+			}
+			if (closest[node] > closest[farthest]) {
+				farthest = node;
+			}
+		}
+		return farthest;
+	}
+
+	/*
+	 * @spec.effects runs Dijkstra from landmark over the children of the nodes if forward, over their parents
+	 * otherwise, and writes the distance of each node n at table[n * stride + offset].
+	 */
+	private static void fillDistances(IndexedGraph graph, int landmark, boolean forward, double[] table, int offset, int stride) {
+		SearchScratch scratch = SearchScratch.current();
+		scratch.begin(graph.nodeCount());
+		scratch.reach(landmark, 0., -1, -1);
+		scratch.queue.insertOrDecrease(landmark, 0.);
+		while (!scratch.queue.isEmpty()) {
+			int node = scratch.queue.pollMin();
+			scratch.settle(node);
+			double distance = scratch.distance(node);
+			int cursor = forward ? graph.firstOut(node) : graph.firstIn(node);
+			for (; cursor >= 0; cursor = forward ? graph.nextOut(node, cursor) : graph.nextIn(node, cursor)) {
+				int neighbour = forward ? graph.outTarget(node, cursor) : graph.inSource(node, cursor);
+				double neighbourDistance = distance + (forward ? graph.outWeight(node, cursor) : graph.inWeight(node, cursor));
+				if (!scratch.isSettled(neighbour) && neighbourDistance < scratch.distance(neighbour)) {
+					scratch.reach(neighbour, neighbourDistance, node, cursor);
+					scratch.queue.insertOrDecrease(neighbour, neighbourDistance);
+				}
+			}
+		}
+		for (int node = 0; node < graph.nodeCount(); node++) {
+			table[node * stride + offset] = scratch.distance(node);
+		}
+	}
+
+	/*
+	 * A graph and the version it was at when it was compared to the fingerprint.
+	 */
+	private static final class Check {
+
+		private final IndexedGraph graph;
+		private final long version;
+
+		private Check(IndexedGraph graph, long version) {
+			this.graph = graph;
+			this.version = version;
+		}
+
+		/*
+		 * @return true if check was made on graph at version.
+		 */
+		private static boolean is(Check check, IndexedGraph graph, long version) {
+			return check != null && check.graph == graph && check.version == version;
+		}
+	}
+
+	/*
+	 * @return the SHA-256 digest of the number of nodes of graph, then for each node in id order of the length
+	 * and bytes of its name, the targets and weight bits of its edges, and -1 : targets are never negative, so
+	 * that no two graphs give the same sequence.
+	 */
+	private static byte[] fingerprint(IndexedGraph graph) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has it
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest)))) {
+			out.writeInt(graph.nodeCount());
+			for (int node = 0; node < graph.nodeCount(); node++) {
+				byte[] name = graph.nodeName(node).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(name.length);
+				out.write(name);
+				for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+					out.writeInt(graph.outTarget(node, cursor));
+					out.writeLong(Double.doubleToLongBits(graph.outWeight(node, cursor)));
+				}
+				out.writeInt(-1);
+			}
+		} catch (IOException e) {
+			// the digest writes to no file
+			throw new IllegalStateException(e);
+		}
+		return digest.digest();
+	}
+}
@@ -0,0 +1,105 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A histogram of durations in nanoseconds, with one bucket per power of two : a duration d > 0 falls in
+ * bucket 64 - numberOfLeadingZeros(d), which holds the durations of [2^(b-1), 2^b). Quantiles are read
+ * as the upper bound of their bucket, so they are at most twice the true value, which is enough to tell
+ * a 50 us query from a 5 ms one.
+ *
+ * Recording is a few atomic additions, and takes no lock. A LatencyHistogram is safe to use from many
+ * threads at once; what it returns while durations are recorded may miss the latest of them.
+ */
+public final class LatencyHistogram {
+
+	// bucket 0 holds the durations of 0, and bucket 63 those of [2^62, Long.MAX_VALUE]
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/*
+	 * @spec.effects adds nanos to the durations of this histogram, as 0 if it is negative.
+	 */
+	public void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		this.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+		this.count.increment();
+		this.total.add(nanos);
+		this.max.accumulate(nanos);
+	}
+
+	/*
+	 * @return the number of durations recorded.
+	 */
+	public long count() {
+		return this.count.sum();
+	}
+
+	/*
+	 * @return the mean of the durations recorded, in nanoseconds, or 0 if there are none.
+	 */
+	public double mean() {
+		long count = this.count.sum();
+		return count == 0 ? 0. : (double) this.total.sum() / count;
+	}
+
+	/*
+	 * @return the longest duration recorded, in nanoseconds, or 0 if there are none.
+	 */
+	public long max() {
+		return this.max.get();
+	}
+
+	/*
+	 * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+	 * @return an upper bound of that quantile of the durations recorded, in nanoseconds, no more than twice
+	 * the true quantile and no more than max(). 0 if there are none.
+	 * @throws IllegalArgumentException if quantile is not between 0 and 1.
+	 */
+	public long quantile(double quantile) {
+		if (!(quantile >= 0. && quantile <= 1.)) {
+			throw new IllegalArgumentException("the quantile should be between 0 and 1, not " + quantile);
+		}
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			counts[b] = this.buckets.get(b);
+			count += counts[b];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		int bucket = 0;
+		while (seen + counts[bucket] < rank) {
+			seen += counts[bucket++];
+		}
+		// 2^b - 1 wraps around to Long.MAX_VALUE for the last bucket
+		return Math.min((1L << bucket) - 1, this.max());
+	}
+
+	/*
+	 * @spec.effects forgets every duration recorded so far.
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; b++) {
+			this.buckets.set(b, 0);
+		}
+		this.count.reset();
+		this.total.reset();
+		this.max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "count : " + this.count() + ", mean : " + (long) this.mean() + " ns, p50 : " + this.quantile(0.5) 
+				+ " ns, p99 : " + this.quantile(0.99) + " ns, max : " + this.max() + " ns";
+	}
+}
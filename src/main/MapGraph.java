@@ -2,19 +2,25 @@ package main;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.Arrays;
+import java.util.Map;
 
 import java.util.Comparator;
-import java.util.PriorityQueue;
-import java.util.Set;
 
-import org.yaml.snakeyaml.Yaml;
-import java.io.InputStream;
 import java.io.File;
-import java.util.Map;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 
@@ -24,119 +30,680 @@ import java.io.FileNotFoundException;
  */
 public class MapGraph {
 
-	// a particular type of ConcreteGraph
+	// a particular type of ConcreteGraph, null for a MapGraph opened from a snapshot or on an OffHeapGraph
 	public ConcreteGraph<String, Double> concreteGraphMap;
 	
+	// the graph searched as it is when concreteGraphMap is null, null otherwise
+	private final IndexedGraph searchedGraph;
+	
+	// the coordinates {x, y} of the nodes that have some
+	private final ConcurrentHashMap<String, double[]> coordinates = new ConcurrentHashMap<String, double[]>();
+	
+	// the latest snapshot shortest paths are searched on, compiled or being compiled, see snapshot()
+	private final AtomicReference<Compilation> compilation = new AtomicReference<Compilation>();
+	
+	// incremented by setCoordinates, so that the snapshots compiled before are compiled again
+	private final AtomicLong coordinatesVersion = new AtomicLong();
+	
+	// the results of shortestPath(startPoint, endPoint), if caching them was asked for
+	private volatile PathCache pathCache;
+	
+	// rules out searches between nodes that are not connected, if one was given
+	private volatile ReachabilityIndex reachabilityIndex;
+	
 	/*
 	 * @param filePath absolute path to yaml file representing this graph
 	 * Must specify isolated nodes as empty entries in the yaml file. Will result 
 	 * in nodes without children or parents in the graph. 
+	 * 
+	 * The entry of a node may also give its coordinates as a sequence of two numbers, 
+	 * next to the distances to its children : 
+	 * 
+	 * Wishka:
+	 *   coordinates: [2.5, 7.]
+	 *   Marman: 5.
+	 * 
+	 * The file is read as a stream, see YamlMapLoader : nodes and edges go into concreteGraphMap as they are parsed. 
+	 * 
+	 * @throws UncheckedIOException if the file can't be read. 
+	 * @throws IllegalArgumentException if the file is not valid YAML or does not describe a map. 
 	 */
 	public MapGraph(String filePath) {
 		
-		Yaml yaml = new Yaml();
 		this.concreteGraphMap = new ConcreteGraph<String, Double>();		
+		this.searchedGraph = null;
+		try (Reader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+			YamlMapLoader.load(reader, this, filePath);
+		} catch (IOException e) {
+			throw new UncheckedIOException("can't read the map " + filePath, e);
+		}
+	}
+	
+	/*
+	 * @param reader a yaml document representing this graph, as described in MapGraph(filePath)
+	 * @throws UncheckedIOException if reader fails. 
+	 * @throws IllegalArgumentException if the document is not valid YAML or does not describe a map. 
+	 */
+	public MapGraph(Reader reader) {
+		this.concreteGraphMap = new ConcreteGraph<String, Double>();
+		this.searchedGraph = null;
+		YamlMapLoader.load(reader, this, "the document");
+	}
+	
+	/*
+	 * @param graph the graph this MapGraph is a view of. It is not copied, modifications of graph are seen by this.
+	 */
+	public MapGraph(ConcreteGraph<String, Double> graph) {
+		this.concreteGraphMap = graph;
+		this.searchedGraph = null;
+	}
+	
+	/*
+	 * @param graph the graph this MapGraph searches, for graphs too large for concreteGraphMap. It is not copied : 
+	 * searches run on graph itself, and see its modifications. Its concreteGraphMap is null, and compile, 
+	 * setCoordinates and shortestPathTree throw UnsupportedOperationException : graph is modified directly. 
+	 * Like graph, this MapGraph must not be searched while graph is modified. 
+	 */
+	public MapGraph(OffHeapGraph graph) {
+		this((IndexedGraph) graph);
+	}
+	
+	/*
+	 * @param graph the graph this MapGraph searches
+	 * Creates a MapGraph whose concreteGraphMap is null. 
+	 */
+	private MapGraph(IndexedGraph graph) {
+		this.concreteGraphMap = null;
+		this.searchedGraph = graph;
+	}
+	
+	/*
+	 * @param file a file written by exportSnapshot
+	 * @return a read-only MapGraph on the graph saved in file, which is memory mapped rather than read, see 
+	 * MappedGraph : it is usable right away whatever its size, and takes next to no heap. Its concreteGraphMap 
+	 * is null, and compile and setCoordinates throw UnsupportedOperationException. For a graph that can be 
+	 * modified, use new MapGraph(MappedGraph.open(file).toConcreteGraph()). The checksum of file is verified 
+	 * first, which reads it whole : see openSnapshot(file, false) to skip it. 
+	 * 
+	 * @throws IOException if file can't be read, wasn't written by exportSnapshot, or doesn't match its 
+	 * checksum. 
+	 */
+	public static MapGraph openSnapshot(File file) throws IOException {
+		return openSnapshot(file, true);
+	}
+	
+	/*
+	 * @param verifyChecksum true to read the whole file and compare it with its checksum first, which takes 
+	 * time linear in its size, false to only check its header for a file that is trusted 
+	 * @return the same as openSnapshot(file). 
+	 * @throws IOException if file can't be read, wasn't written by exportSnapshot, its header is corrupted, or 
+	 * verifyChecksum is true and its checksum doesn't match. 
+	 */
+	public static MapGraph openSnapshot(File file, boolean verifyChecksum) throws IOException {
+		return new MapGraph(MappedGraph.open(file, verifyChecksum));
+	}
+	
+	/*
+	 * @spec.effects writes the current snapshot of this graph, with the coordinates of its nodes if they all 
+	 * have some, to file in the binary format of MappedGraph. The snapshot is lossy : like compile(), it keeps 
+	 * one edge per parent -> child pair, weighted with the smallest of its labels, which is all searches use. 
+	 * The other labels are not written, and MappedGraph.toConcreteGraph() doesn't get them back. 
+	 * @throws IOException if file can't be written. 
+	 */
+	public void exportSnapshot(File file) throws IOException {
+		MappedGraph.write(this.snapshot(), file);
+	}
+	
+	/*
+	 * @return a read-only snapshot of this graph in compressed sparse row form, with one edge per
+	 * parent -> child pair weighted with the smallest of its labels. shortestPath runs on the latest snapshot
+	 * for as long as concreteGraphMap is not modified, and brings it up to date when it is, see snapshot(). 
+	 * 
+	 * It is compiled from a GraphSnapshot of concreteGraphMap, so it holds each mutation made meanwhile by 
+	 * other threads either entirely or not at all, and doesn't hold them up. 
+	 * @throws UnsupportedOperationException if this graph is read-only.
+	 */
+	public CompiledGraph compile() {
+		this.checkModifiable();
+		Compilation compilation = new Compilation(0L, this.coordinatesVersion.get());
+		CompiledGraph snapshot;
+		try (GraphSnapshot<String, Double> pinned = this.concreteGraphMap.snapshot()) {
+			snapshot = CompiledGraph.compile(pinned, pinned.version(), this.coordinates);
+		}
+		compilation.complete(snapshot);
+		this.compilation.set(compilation);
+		return snapshot;
+	}
+	
+	/*
+	 * @param node a node of this graph
+	 * @param x the first coordinate of node
+	 * @param y the second coordinate of node
+	 * 
+	 * @spec.effects gives node the coordinates (x, y), which the heuristics of shortestPath can use.
+	 * @throws IllegalArgumentException if node is not in this graph, or x or y is NaN.
+	 * @throws UnsupportedOperationException if this graph is read-only.
+	 */
+	public void setCoordinates(String node, double x, double y) {
+		this.checkModifiable();
+		if (!this.concreteGraphMap.containsNode(node)) {
+			throw new IllegalArgumentException("the node " + node + " does not belong to the graph");
+		}
+		if (Double.isNaN(x) || Double.isNaN(y)) {
+			throw new IllegalArgumentException("the coordinates of " + node + " should be numbers");
+		}
+		this.coordinates.put(node, new double[] {x, y});
+		this.coordinatesVersion.incrementAndGet();
+	}
+	
+	/*
+	 * @return the coordinates {x, y} of node, or null if it has none.
+	 */
+	public double[] getCoordinates(String node) {
+		if (this.searchedGraph != null) {
+			int id = this.searchedGraph.nodeId(node);
+			return id < 0 || Double.isNaN(this.searchedGraph.x(id)) ? null : new double[] {this.searchedGraph.x(id), this.searchedGraph.y(id)};
+		}
+		double[] point = this.coordinates.get(node);
+		return point == null ? null : point.clone();
+	}
+	
+	private void checkModifiable() {
+		if (this.searchedGraph != null) {
+			throw new UnsupportedOperationException("this graph has no concreteGraphMap, it was opened from a snapshot or built on an OffHeapGraph");
+		}
+	}
+	
+	/*
+	 * @return the latest snapshot of this graph, or a new one if concreteGraphMap or the coordinates changed 
+	 * since. 
+	 * 
+	 * Only one thread makes the new snapshot, the others needing it wait for it rather than making it too. 
+	 * When only the edges of a few nodes changed, it patches the rows of those nodes over the latest 
+	 * snapshot, which takes time linear in their degrees, see OverlayGraph. It compiles concreteGraphMap 
+	 * again otherwise, which takes time linear in its size. 
+	 */
+	private IndexedGraph snapshot() {
+		if (this.searchedGraph != null) {
+			return this.searchedGraph;
+		}
+		while (true) {
+			// read before the latest compilation : a compilation started after them holds all they stand for 
+			long coordinates = this.coordinatesVersion.get();
+			long version = this.concreteGraphMap.version();
+			Compilation latest = this.compilation.get();
+			if (latest != null && latest.coordinates >= coordinates && latest.version >= version) {
+				if (GraphMetrics.ENABLED) {
+					GraphMetrics.Counter.SNAPSHOT_REUSES.increment();
+				}
+				return latest.join();
+			}
+			Compilation next = new Compilation(version, coordinates);
+			if (this.compilation.compareAndSet(latest, next)) {
+				return this.compile(next, latest);
+			}
+		}
+	}
+	
+	/*
+	 * @param compilation the compilation this thread started
+	 * @param previous the compilation it replaced, null if there was none
+	 * @return the snapshot of compilation, patched over that of previous if it is done and can be, compiled 
+	 * otherwise. 
+	 * @spec.effects completes compilation, and forgets it if it fails so that the next search tries again. 
+	 */
+	private IndexedGraph compile(Compilation compilation, Compilation previous) {
 		try {
-			InputStream inputStream = new FileInputStream(new File(filePath));		
-			Map<String, Map<String, Double>> obj = yaml.load(inputStream);
-			for (Map.Entry<String, Map<String, Double>> node : obj.entrySet()) {	
-				if (!this.concreteGraphMap.listNodes().contains(node.getKey())) {
-					this.concreteGraphMap.addNode(node.getKey());									
+			IndexedGraph snapshot = null;
+			try (GraphSnapshot<String, Double> pinned = this.concreteGraphMap.snapshot()) {
+				IndexedGraph base = previous == null || previous.coordinates != compilation.coordinates ? null : previous.done();
+				if (base != null) {
+					Set<String> changed = this.concreteGraphMap.changedNodes(base.version(), pinned.version(), OverlayGraph.patchLimit(base));
+					snapshot = changed == null ? null : OverlayGraph.patch(base, pinned, changed, this.coordinates);
 				}
-				if(node.getValue()!=null) { // if null, means it's an empty entry.
-					for (Map.Entry<String, Double> path: node.getValue().entrySet()) {	
-						this.concreteGraphMap.addEdge(path.getKey(), node.getKey(), path.getValue());
-					}						
+				if (snapshot != null) {
+					if (GraphMetrics.ENABLED) {
+						GraphMetrics.Counter.SNAPSHOT_PATCHES.increment();
+					}
+				} else {
+					snapshot = CompiledGraph.compile(pinned, pinned.version(), this.coordinates);
+					if (GraphMetrics.ENABLED) {
+						GraphMetrics.Counter.SNAPSHOT_COMPILES.increment();
+					}
 				}
 			}
-		} catch (FileNotFoundException e) {
-			System.out.println("File not found ! " + filePath);
-		}		
+			compilation.complete(snapshot);
+			return snapshot;
+		} catch (RuntimeException | Error e) {
+			compilation.snapshot.completeExceptionally(e);
+			this.compilation.compareAndSet(compilation, null);
+			throw e;
+		}
+	}
+	
+	/*
+	 * A snapshot of concreteGraphMap, compiled by the thread that started it while those needing it too wait 
+	 * for it, see snapshot(). 
+	 */
+	private static final class Compilation {
 		
-
+		// the version the snapshot holds at least, then the version it holds once it is done
+		private volatile long version;
+		// the coordinatesVersion whose coordinates the snapshot holds at least
+		private final long coordinates;
+		private final CompletableFuture<IndexedGraph> snapshot = new CompletableFuture<IndexedGraph>();
+		
+		private Compilation(long version, long coordinates) {
+			this.version = version;
+			this.coordinates = coordinates;
+		}
+		
+		private void complete(IndexedGraph snapshot) {
+			this.version = snapshot.version();
+			this.snapshot.complete(snapshot);
+		}
+		
+		/*
+		 * @return the snapshot, or null if it is not done or failed. 
+		 */
+		private IndexedGraph done() {
+			return this.snapshot.isDone() && !this.snapshot.isCompletedExceptionally() ? this.snapshot.join() : null;
+		}
+		
+		/*
+		 * @return the snapshot, once it is done. 
+		 * @throws RuntimeException or Error, whatever compiling it threw. 
+		 */
+		private IndexedGraph join() {
+			try {
+				return this.snapshot.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e;
+			}
+		}
 	}
 	
 	/*
 	 * Find shortest path from A to B using Dijkstra's algorithm. 
 	 * If there are several solutions, doesn't make any promise about which one it will pick. 
 	 * 
+	 * The search runs on the snapshot returned by compile(), so it only visits int ids and primitive weights, 
+	 * and reuses the arrays of the previous searches run by the calling thread. With a cache set by 
+	 * setPathCache, a pair asked for again before the graph is modified is answered without a search. 
+	 * 
 	 * @return MapPath that is empty if there isn't any path leading to destination.
+	 * 
+	 * @throws IllegalArgumentException if startPoint is not a node of this graph. 
 	 */
 	public MapPath shortestPath(String startPoint, String endPoint) {
 		
-		String startNode = new String(startPoint);
-		String targetNode = new String(endPoint);
-		LinkedHashSet<String> visitedSet = new LinkedHashSet<String>();
-		PriorityQueue<MapPath> pathPriorityQueue = new PriorityQueue<MapPath>(100, new MapPathComparator());
-		
-		
-		// initialize : current node is start node, and add a path start -> start (0 distance) to the queue. 
-		MapPath startToItselfMapPath = new MapPath();
-		MapEdge firstEdge = new MapEdge(startNode, startNode, 0.);
-		startToItselfMapPath.addEdge(firstEdge);
-		pathPriorityQueue.add(startToItselfMapPath);
-		
+		long begin = GraphMetrics.ENABLED ? System.nanoTime() : 0L;
+		ShortestPathEvent event = new ShortestPathEvent();
+		event.begin();
+		MapPath path = this.shortestPath(startPoint, endPoint, event);
+		event.end();
+		if (event.shouldCommit()) {
+			event.startPoint = startPoint;
+			event.endPoint = endPoint;
+			event.commit();
+		}
+		if (GraphMetrics.ENABLED) {
+			GraphMetrics.recordShortestPath(event, System.nanoTime() - begin);
+		}
+		return path;
+	}
+	
+	/*
+	 * @return the same as shortestPath(startPoint, endPoint).
+	 * @spec.effects fills event with what was done to find the path. 
+	 */
+	private MapPath shortestPath(String startPoint, String endPoint, ShortestPathEvent event) {
 		
-		while(!pathPriorityQueue.isEmpty()) {
-			
-			MapPath bestMapPath = pathPriorityQueue.remove();
-			String bestPathDestinationNode = bestMapPath.endNode();
-			
-			
-			if(bestPathDestinationNode.equals(targetNode)) {
-				bestMapPath.removeEdge(firstEdge);
-				return bestMapPath;
-			}
-			
-			if (visitedSet.contains(bestPathDestinationNode)) {
-				continue;
+		if (startPoint.equals(endPoint)) {
+			event.found = true;
+			return new MapGraph.MapPath();
+		}
+		IndexedGraph graph = this.snapshot();
+		PathCache cache = this.pathCache;
+		if (cache != null) {
+			MapPath cached = cache.get(startPoint, endPoint, graph.version());
+			if (GraphMetrics.ENABLED) {
+				(cached != null ? GraphMetrics.Counter.PATH_CACHE_HITS : GraphMetrics.Counter.PATH_CACHE_MISSES).increment();
 			}
-			
-			
-			for(Map.Entry<String, Set<Double>> childrenEntry: this.concreteGraphMap.listChildren(bestPathDestinationNode).entrySet()) {
-				Set<Double> childrenLabels = childrenEntry.getValue();
-				if (!childrenLabels.isEmpty()) {
-					if (!visitedSet.contains(childrenEntry.getKey())) {
-						Double minLabelForChildren = Collections.min(childrenLabels);
-						MapPath extendedMapPath = new MapGraph.MapPath(bestMapPath);
-						extendedMapPath.addEdge(new MapEdge(bestPathDestinationNode, childrenEntry.getKey(), minLabelForChildren));
-						pathPriorityQueue.add(extendedMapPath);							
-					}				
-				}
+			if (cached != null) {
+				event.cacheHit = true;
+				event.found = !cached.isEmpty();
+				return cached;
 			}
-			
+		}
+		int startNode = startId(graph, startPoint);
+		int targetNode = graph.nodeId(endPoint);
+		MapPath path;
+		if (targetNode < 0 || this.cannotReach(graph, startPoint, endPoint)) {
+			path = new MapGraph.MapPath();
+		} else {
+			path = DijkstraEngine.shortestPath(graph, startNode, targetNode);
+			event.found = !path.isEmpty();
+			event.setStats(SearchStats.current());
+		}
+		// an empty path was either searched or rejected by an index that knew about this version, see cannotReach 
+		if (cache != null) {
+			cache.put(startPoint, endPoint, graph.version(), path);
+		}
+		return path;
+	}
 	
-			visitedSet.add(bestPathDestinationNode);
+	/*
+	 * @param cache where shortestPath(startPoint, endPoint) keeps its results, or null to stop caching them. 
+	 * A cached path is only returned as long as concreteGraphMap is not modified. 
+	 * @spec.effects the results of shortestPath(startPoint, endPoint) are looked up in cache from now on, and 
+	 * cache is bound to the graph this searches for good : MapGraphs on the same concreteGraphMap can share 
+	 * it, others can't. 
+	 * @throws IllegalArgumentException if cache was set on a MapGraph that searches another graph. 
+	 */
+	public void setPathCache(PathCache cache) {
+		if (cache != null) {
+			// the versions the entries are stamped with are those of concreteGraphMap, or of the snapshot 
+			// searched by a read-only MapGraph 
+			cache.bind(this.concreteGraphMap != null ? this.concreteGraphMap : this.searchedGraph);
+		}
+		this.pathCache = cache;
+	}
 	
-			
+	/*
+	 * @return the cache of shortestPath(startPoint, endPoint), with its hit and miss counts, or null if 
+	 * results are not cached. 
+	 */
+	public PathCache getPathCache() {
+		return this.pathCache;
+	}
+	
+	/*
+	 * @param index an index of concreteGraphMap, or null to stop using one. 
+	 * @spec.effects shortestPath, bidirectionalShortestPath, the A* shortestPath and kShortestPaths return 
+	 * right away without searching when index tells that endPoint can't be reached from startPoint. 
+	 * @throws IllegalArgumentException if index is not an index of concreteGraphMap. 
+	 * @throws UnsupportedOperationException if this graph is read-only. 
+	 */
+	public void setReachabilityIndex(ReachabilityIndex index) {
+		this.checkModifiable();
+		if (index != null && index.graph() != this.concreteGraphMap) {
+			throw new IllegalArgumentException("the index should be an index of concreteGraphMap");
 		}
+		this.reachabilityIndex = index;
+	}
+	
+	/*
+	 * @return the index searches check first, or null if there is none. 
+	 */
+	public ReachabilityIndex getReachabilityIndex() {
+		return this.reachabilityIndex;
+	}
+	
+	// true if the reachability index, if there is one, tells that endPoint can't be reached from startPoint in 
+	// graph : an index that doesn't know about the version of graph yet tells nothing 
+	private boolean cannotReach(IndexedGraph graph, String startPoint, String endPoint) {
+		ReachabilityIndex index = this.reachabilityIndex;
+		return index != null && !index.canReach(startPoint, endPoint, graph.version());
+	}
+	
+	/*
+	 * Find shortest path from A to B with an A* search : the nodes closest to B according to heuristic are 
+	 * looked at first, which settles far fewer nodes than shortestPath when the heuristic is good. 
+	 * Falls back to plain Dijkstra when heuristic can't be used on this graph, e.g. a CoordinateHeuristic 
+	 * on a graph where some nodes have no coordinates. 
+	 * If there are several solutions, doesn't make any promise about which one it will pick. 
+	 * 
+	 * @param heuristic a consistent heuristic for this graph, see Heuristic
+	 * @return MapPath that is empty if there isn't any path leading to destination.
+	 * 
+	 * @throws IllegalArgumentException if startPoint is not a node of this graph. 
+	 */
+	public MapPath shortestPath(String startPoint, String endPoint, Heuristic heuristic) {
 		
-		return new MapGraph.MapPath();
-
+		if (startPoint.equals(endPoint)) {
+			return new MapGraph.MapPath();
+		}
+		IndexedGraph graph = this.snapshot();
+		int startNode = startId(graph, startPoint);
+		int targetNode = graph.nodeId(endPoint);
+		if (targetNode < 0 || this.cannotReach(graph, startPoint, endPoint)) {
+			return new MapGraph.MapPath();
+		}
+		
+		return DijkstraEngine.shortestPath(graph, startNode, targetNode, heuristic.isUsableOn(graph) ? heuristic : Heuristic.NONE);
+	}
+	
+	/*
+	 * Find the k shortest loopless paths from A to B, to offer alternatives to the shortest one, with Yen's 
+	 * algorithm, see KShortestPaths : the searches for the detours of each path run in parallel on the common 
+	 * ForkJoinPool, and nothing is removed from concreteGraphMap meanwhile. Like shortestPath, paths follow the 
+	 * smallest label of each edge, and a path is listed once however many labels its edges have. 
+	 * Paths of the same length are ranked by number of edges, and then in an order that only depends on the 
+	 * snapshot searched. 
+	 * 
+	 * @param k the number of paths wanted
+	 * @return the k shortest paths from startPoint to endPoint, shortest first : fewer if there aren't as many, 
+	 * none if endPoint can't be reached, and a single empty path if startPoint is endPoint. 
+	 * 
+	 * @throws IllegalArgumentException if startPoint is not a node of this graph, or k is less than 1. 
+	 */
+	public List<MapPath> kShortestPaths(String startPoint, String endPoint, int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("the number of paths should be at least 1, not " + k);
+		}
+		IndexedGraph graph = this.snapshot();
+		int startNode = startId(graph, startPoint);
+		if (startPoint.equals(endPoint)) {
+			return new ArrayList<MapPath>(Arrays.asList(new MapGraph.MapPath()));
+		}
+		int targetNode = graph.nodeId(endPoint);
+		if (targetNode < 0 || this.cannotReach(graph, startPoint, endPoint)) {
+			return new ArrayList<MapPath>();
+		}
+		return KShortestPaths.find(graph, startNode, targetNode, k, ForkJoinPool.commonPool());
+	}
+	
+	/*
+	 * Find shortest path from A to B with a bidirectional Dijkstra : a search from A over children and a search 
+	 * from B over parents run in turn until they meet. Settles far fewer nodes than shortestPath when A and B 
+	 * are far apart. 
+	 * If there are several solutions, doesn't make any promise about which one it will pick. 
+	 * 
+	 * @return MapPath that is empty if there isn't any path leading to destination.
+	 * 
+	 * @throws IllegalArgumentException if startPoint is not a node of this graph. 
+	 */
+	public MapPath bidirectionalShortestPath(String startPoint, String endPoint) {
+		
+		if (startPoint.equals(endPoint)) {
+			return new MapGraph.MapPath();
+		}
+		IndexedGraph graph = this.snapshot();
+		int startNode = startId(graph, startPoint);
+		int targetNode = graph.nodeId(endPoint);
+		if (targetNode < 0 || this.cannotReach(graph, startPoint, endPoint)) {
+			return new MapGraph.MapPath();
+		}
+		
+		return BidirectionalDijkstra.shortestPath(graph, startNode, targetNode);
+	}
+	
+	/*
+	 * @return the contraction hierarchy of the current snapshot of this graph, see ContractionHierarchy. 
+	 * Preprocessing runs on all cores and takes a while on large graphs; the hierarchy then answers 
+	 * shortestPath queries on that snapshot much faster than this graph does, but doesn't see later 
+	 * modifications of concreteGraphMap. 
+	 */
+	public ContractionHierarchy contractionHierarchy() {
+		return ContractionHierarchy.build(this.snapshot());
+	}
+	
+	/*
+	 * The distances from every source to every target, with one search per source that stops once all the 
+	 * targets are settled, rather than one search per pair. The searches run in parallel on the common 
+	 * ForkJoinPool. 
+	 * 
+	 * @return distances[i][j] the length of the shortest path from sources.get(i) to targets.get(j), 
+	 * Double.POSITIVE_INFINITY if there isn't any, or if the target is not a node of this graph. 
+	 * 
+	 * @throws IllegalArgumentException if one of the sources is not a node of this graph. 
+	 */
+	public double[][] distanceMatrix(List<String> sources, List<String> targets) {
+		return DistanceMatrix.distances(this.snapshot(), sources, targets, ForkJoinPool.commonPool());
+	}
+	
+	/*
+	 * The service area of source : the nodes that can be reached from it within budget, found by a single 
+	 * Dijkstra that stops once it gets further than budget, so that its cost depends on the size of the area 
+	 * and not on the size of the graph. 
+	 * 
+	 * @return the distance from source of every node at most budget away from it, source included, closest 
+	 * first. 
+	 * @throws IllegalArgumentException if source is not a node of this graph, or budget is negative or NaN. 
+	 */
+	public Map<String, Double> reachableWithin(String source, double budget) {
+		return ReachableRegion.distances(this.snapshot(), source, budget);
+	}
+	
+	/*
+	 * @return the service areas reachableWithin(sources.get(i), budget) at index i, searched in parallel on the 
+	 * common ForkJoinPool. 
+	 * @throws IllegalArgumentException if one of the sources is not a node of this graph, or budget is negative 
+	 * or NaN. 
+	 */
+	public List<Map<String, Double>> reachableWithin(List<String> sources, double budget) {
+		return ReachableRegion.distances(this.snapshot(), sources, budget, ForkJoinPool.commonPool());
+	}
+	
+	/*
+	 * @return the same nodes and distances as reachableWithin(source, budget), along with the tree of the 
+	 * shortest paths leading to them, see ReachableRegion. 
+	 * @throws IllegalArgumentException if source is not a node of this graph, or budget is negative or NaN. 
+	 */
+	public ReachableRegion reachableRegion(String source, double budget) {
+		return ReachableRegion.compute(this.snapshot(), source, budget);
+	}
+	
+	/*
+	 * The shortest paths from source to every node, computed by delta-stepping on the common ForkJoinPool, see 
+	 * DeltaStepping : for large graphs, the relaxations of a single search run on all the cores. 
+	 * 
+	 * @param delta the width of the buckets of delta-stepping, see DeltaStepping.suggestDelta
+	 * @return the distances from source, and a shortest path to each node. 
+	 * @throws IllegalArgumentException if source is not a node of this graph, or delta is not a positive number. 
+	 */
+	public DeltaStepping shortestPaths(String source, double delta) {
+		return DeltaStepping.compute(this.snapshot(), source, delta, ForkJoinPool.commonPool());
+	}
+	
+	/*
+	 * @return shortestPaths(source, delta) with the delta suggested for this graph by DeltaStepping.suggestDelta.
+	 * @throws IllegalArgumentException if source is not a node of this graph. 
+	 */
+	public DeltaStepping shortestPaths(String source) {
+		IndexedGraph graph = this.snapshot();
+		return DeltaStepping.compute(graph, source, DeltaStepping.suggestDelta(graph), ForkJoinPool.commonPool());
+	}
+	
+	/*
+	 * @return the same distances as distanceMatrix(sources, targets), along with the shortest paths behind 
+	 * them, see DistanceMatrix. Keeps a predecessor for every node of the graph and every source. 
+	 * 
+	 * @throws IllegalArgumentException if one of the sources is not a node of this graph. 
+	 */
+	public DistanceMatrix distanceMatrixWithPaths(List<String> sources, List<String> targets) {
+		return DistanceMatrix.compute(this.snapshot(), sources, targets, ForkJoinPool.commonPool());
+	}
+	
+	/*
+	 * @param landmarkCount the number of landmarks, see LandmarkHeuristic
+	 * @return the landmark heuristic of the current snapshot of this graph, to pass to 
+	 * shortestPath(startPoint, endPoint, heuristic) when nodes have no coordinates. Once concreteGraphMap 
+	 * is modified, the heuristic no longer applies and searches given it fall back to Dijkstra. 
+	 * @throws IllegalArgumentException if landmarkCount is not positive. 
+	 */
+	public LandmarkHeuristic landmarkHeuristic(int landmarkCount) {
+		return LandmarkHeuristic.build(this.snapshot(), landmarkCount);
+	}
+	
+	/*
+	 * @param source a node of this graph
+	 * @return the shortest paths from source to every node, kept up to date as concreteGraphMap is 
+	 * modified, see DynamicShortestPathTree. Close it once it is not needed anymore. 
+	 * @throws IllegalArgumentException if source is not a node of this graph. 
+	 * @throws UnsupportedOperationException if this graph is read-only. 
+	 */
+	public DynamicShortestPathTree shortestPathTree(String source) {
+		this.checkModifiable();
+		return new DynamicShortestPathTree(this.concreteGraphMap, source);
+	}
+	
+	/*
+	 * @return how many nodes and edges the last search run by the calling thread visited. 
+	 */
+	public SearchStats lastSearchStats() {
+		return SearchStats.last();
+	}
+	
+	/*
+	 * @return the id of startPoint in graph.
+	 * @throws IllegalArgumentException if startPoint is not a node of graph. 
+	 */
+	private static int startId(IndexedGraph graph, String startPoint) {
+		int startNode = graph.nodeId(startPoint);
+		if (startNode < 0) {
+			throw new IllegalArgumentException("the node " + startPoint + " does not belong to the graph");
+		}
+		return startNode;
 	}
 	
 	
 	/*
 	 * represents an edge between two spatial points in the graph, and the distance associated with it. 
+	 * 
+	 * The distance is kept unboxed, and the names of the two points are the strings given, not copies of 
+	 * them. Two edges are equal if they have the same points and the same distance, and comparing or hashing 
+	 * edges allocates nothing. 
 	 */
 	public static class MapEdge{
 		
 		private final String start;
 		private final String end;
-		private final Double distance;
+		private final double distance;
 		
+		/*
+		 * @throws IllegalArgumentException if distance is null. 
+		 */
 		public MapEdge(String start, String end, Double distance) {
+			this(start, end, checkDistance(distance));
+		}
+		
+		private MapEdge(String start, String end, double distance) {
 			this.start = start;
 			this.end = end;
 			this.distance = distance;
 		}
 		
+		private static double checkDistance(Double distance) {
+			if (distance == null) {
+				throw new IllegalArgumentException("the distance of an edge can't be null");
+			}
+			return distance.doubleValue();
+		}
+		
 		public String getStart() {
-			return new String(this.start);
+			return this.start;
 		}
 		
 		public String getEnd() {
-			return new String(this.end);
+			return this.end;
 		}
 		
 		public Double getDistance() {
@@ -152,12 +719,21 @@ public class MapGraph {
 	            return false;
 	        }	
 	        final MapEdge otherSame = (MapEdge) other;
-			return this.start==otherSame.start && this.end==otherSame.end && this.distance == otherSame.distance;
+			return this.start.equals(otherSame.start) && this.end.equals(otherSame.end) 
+					&& Double.doubleToLongBits(this.distance) == Double.doubleToLongBits(otherSame.distance);
 		}
 		
 		@Override
 		public int hashCode() {
-			return (this.start.toString() + this.end.toString() + this.distance.toString()).hashCode();
+			int hash = 31 * (31 * this.start.hashCode() + this.end.hashCode()) + Double.hashCode(this.distance);
+			// consecutive edges have close hash codes for start and end, whose sum then drops its low bits
+			hash *= 0x9e3779b9;
+			return hash ^ (hash >>> 16);
+		}
+		
+		@Override
+		public String toString() {
+			return this.start + " -> " + this.end + " (" + this.distance + ")";
 		}
 		
 	}
@@ -165,91 +741,273 @@ public class MapGraph {
 	/*
 	 * represents a set of edges starting from A and ending in B, in a map represented as a graph. 
 	 * It's a path in the sense that it's continuous (one can go through it and arrive at B). 
+	 * 
+	 * The edges are kept as a persistent chain : each edge added is a single Step pointing to the steps 
+	 * before it, which copies and extensions of the path share rather than copy. A step holds the ids of the 
+	 * two nodes of its edge and its distance, so it takes 32 bytes. The start of a step is not always the end 
+	 * of the one before, since edges can be added and removed anywhere, and leaving it out would save nothing 
+	 * anyway : the header, the link, the end and the distance take 28 bytes, and objects are aligned on 8. 
+	 * 
+	 * The ids are given by a NodeSymbols that the path shares with its copies and extensions, and that holds 
+	 * the names of its nodes only : the paths a search returns are given their names as they are built, so 
+	 * that they never keep the graph they were found on alive. 
+	 * 
+	 * The start node, the number of edges and the total distance are kept by the path itself. They are 
+	 * therefore read in constant time, copying a path or extending it with one edge takes constant time, 
+	 * and the list of steps is only built when pathSteps() asks for it. 
 	 */
 	public static class MapPath {
 		
-		private LinkedHashSet<MapEdge> edges;		
-		private Double totalDistance = 0.;
+		/*
+		 * The last edge of a path, and the path before it. Never changes, so that paths can share it. 
+		 */
+		private static final class Step {
+			
+			// the path up to this edge, null if it is the first one
+			private final Step previous;
+			// not always previous.end, see the class comment
+			private final int start;
+			private final int end;
+			private final double distance;
+			
+			private Step(Step previous, int start, int end, double distance) {
+				this.previous = previous;
+				this.start = start;
+				this.end = end;
+				this.distance = distance;
+			}
+		}
+		
+		// the ids of the nodes of the steps, null until the first edge is added
+		private NodeSymbols symbols;
+		// the last step, null for an empty path
+		private Step last;
+		// the id of the start node of the first step, -1 for an empty path
+		private int start = -1;
+		private int size;
+		private double totalDistance;
+		
+		/*
+		 * Abstraction function
+		 * 
+		 * the edges of the path are those of the steps of the chain ending at this.last, from the first one 
+		 * to the last one, from this.symbols.name(step.start) to this.symbols.name(step.end). 
+		 * 
+		 * Representation invariant : 
+		 * 
+		 * (1) this.last is null iff this.start is -1 iff this.size is 0.
+		 * (2) this.start is the start of the first step, this.size is the number of steps of the chain, and 
+		 * this.totalDistance the sum of their distances, added from the first one to the last one.
+		 * (3) this.symbols is not null if this.last isn't, and gave the ids of all the steps.
+		 */
 		
 		/*
 		 * empty set of MapEdge
 		 */
 		public MapPath() {
-			this.edges = new LinkedHashSet<MapEdge>();
 		}
 		
+
 		/*
-		 * copy constructor
+		 * copy constructor. Takes constant time : the two paths share their edges until either is modified. 
 		 */
 		public MapPath(MapPath otherMapPath) {
-			this.edges = new LinkedHashSet<MapEdge>(otherMapPath.edges);
-			this.totalDistance = Double.valueOf(otherMapPath.totalDistance());
+			this.symbols = otherMapPath.symbols;
+			this.last = otherMapPath.last;
+			this.start = otherMapPath.start;
+			this.size = otherMapPath.size;
+			this.totalDistance = otherMapPath.totalDistance;
 		}
 		
 		/*
-		 * Add a MapEdge in the set and update the total distance. 
+		 * Add a MapEdge at the end of the path and update the total distance. 
 		 */
 		public void addEdge(MapEdge edge){
-			this.edges.add(edge);
-			this.totalDistance = this.totalDistance + edge.getDistance();
+			if (this.symbols == null) {
+				this.symbols = new NodeSymbols();
+			}
+			// an edge that continues the path starts where the last one ends, no need to look it up
+			int start = this.last != null && edge.start.equals(this.symbols.name(this.last.end)) ? this.last.end : this.symbols.id(edge.start);
+			this.addStep(start, this.symbols.id(edge.end), edge.distance);
+		}
+		
+		/*
+		 * @spec.requires start and end are nodes of graph.
+		 * @spec.effects adds the edge from the node start of graph to its node end at the end of the path, and 
+		 * updates the total distance. The path keeps the names of the two nodes, not graph. 
+		 */
+		void addStep(IndexedGraph graph, int start, int end, double distance) {
+			if (this.symbols == null) {
+				this.symbols = new NodeSymbols();
+			}
+			// the names are those the graph holds : an edge that continues the path compares them by reference
+			String startName = graph.nodeName(start);
+			int startId = this.last != null && startName == this.symbols.name(this.last.end) ? this.last.end : this.symbols.id(startName);
+			this.addStep(startId, this.symbols.id(graph.nodeName(end)), distance);
+		}
+		
+		/*
+		 * @spec.requires this.symbols gave start and end their ids.
+		 * @spec.effects adds the edge from start to end at the end of the path, and updates the total distance.
+		 */
+		private void addStep(int start, int end, double distance) {
+			if (this.last == null) {
+				this.start = start;
+				this.totalDistance = 0.;
+			}
+			this.last = new Step(this.last, start, end, distance);
+			this.size++;
+			this.totalDistance += distance;
+		}
+		
+		/*
+		 * @return a new path made of the edges of this one followed by edge. Takes constant time, and leaves 
+		 * this path as it is. 
+		 */
+		public MapPath extend(MapEdge edge) {
+			MapPath extended = new MapPath(this);
+			extended.addEdge(edge);
+			return extended;
 		}
 		
+		/*
+		 * Remove edge from the path, and its distance from the total distance. Takes time linear in the 
+		 * number of edges of the path. 
+		 */
 		public void removeEdge(MapEdge edge) {
-			this.edges.remove(edge);
+			if (this.last == null) {
+				return;
+			}
+			int start = this.symbols.find(edge.start);
+			int end = this.symbols.find(edge.end);
+			ArrayList<Step> after = new ArrayList<Step>();
+			Step step = this.last;
+			while (step != null && !(step.start == start && step.end == end 
+					&& Double.doubleToLongBits(step.distance) == Double.doubleToLongBits(edge.distance))) {
+				after.add(step);
+				step = step.previous;
+			}
+			if (step == null) {
+				return;
+			}
+			step = step.previous;
+			for (int i = after.size() - 1; i >= 0; i--) {
+				Step kept = after.get(i);
+				step = new Step(step, kept.start, kept.end, kept.distance);
+			}
+			this.last = step;
+			this.size--;
+			Step[] steps = this.steps();
+			this.start = steps.length > 0 ? steps[0].start : -1;
+			this.totalDistance = 0.;
+			for (Step kept : steps) {
+				this.totalDistance += kept.distance;
+			}
+		}
+		
+		/*
+		 * @return a copy of this path whose nodes are identified by a NodeSymbols of its own, which the 
+		 * copies and extensions of this path don't share. Takes time linear in the number of edges. 
+		 */
+		MapPath withOwnSymbols() {
+			MapPath copy = new MapPath();
+			if (this.last != null) {
+				copy.symbols = new NodeSymbols();
+				for (Step step : this.steps()) {
+					copy.addStep(copy.symbols.id(this.symbols.name(step.start)), copy.symbols.id(this.symbols.name(step.end)), step.distance);
+				}
+			}
+			return copy;
+		}
+		
+		/*
+		 * @return the steps of the path, from the first one to the last one. 
+		 */
+		private Step[] steps() {
+			Step[] steps = new Step[this.size];
+			int index = steps.length;
+			for (Step step = this.last; step != null; step = step.previous) {
+				steps[--index] = step;
+			}
+			return steps;
 		}
 		
 		/*
 		 * @return the starting point. Based on insertion order of edges. 
 		 */
 		public String startNode() {
-			if (!this.edges.isEmpty()) {
-				return new ArrayList<MapEdge>(this.edges).get(0).getStart();
-			} else {
+			if (this.last == null) {
 				throw new RuntimeException("empty path");
 			}
+			return this.symbols.name(this.start);
 		}
 
 		/*
 		 * @return the end point. Based on insertion order of edges. 
 		 */
 		public String endNode() {
-			if (!this.edges.isEmpty()) {
-				return new ArrayList<MapEdge>(this.edges).get(this.edges.size()-1).getEnd();
-			} else {
+			if (this.last == null) {
 				throw new RuntimeException("empty path");
 			}
+			return this.symbols.name(this.last.end);
 		}
 		
 		/*
 		 * @return the total distance
 		 */
 		public Double totalDistance() {
-			if (this.edges.isEmpty()) {
+			return Double.valueOf(this.distance());
+		}
+		
+		/*
+		 * @return the total distance, unboxed. 
+		 */
+		public double distance() {
+			if (this.last == null) {
 				throw new RuntimeException("empty path");
-			} else {
-				return Double.valueOf(this.totalDistance);
-			}	
+			}
+			return this.totalDistance;
+		}
+		
+		/*
+		 * @return the number of edges in the path. 
+		 */
+		public int size() {
+			return this.size;
+		}
+		
+		/*
+		 * @return the edges of the path, in order of insertion. 
+		 */
+		public List<MapEdge> edges() {
+			Step[] steps = this.steps();
+			MapEdge[] edges = new MapEdge[steps.length];
+			for (int i = 0; i < steps.length; i++) {
+				edges[i] = new MapEdge(this.symbols.name(steps[i].start), this.symbols.name(steps[i].end), steps[i].distance);
+			}
+			return Arrays.asList(edges);
 		}
 		
 		/*
 		 * @return the set of nodes representing the steps of the path, in order of 
-		 * edges insertion.
+		 * edges insertion : the start of each edge, then the end of the last one. 
 		 * 
 		 */
 		public List<String> pathSteps(){
-			if (this.edges.isEmpty()) {
+			if (this.last == null) {
 				throw new RuntimeException("empty path");
 			}
-			List<String> pathNodes = new ArrayList<String>();
-			for (MapEdge edge: this.edges) {
-				pathNodes.add(edge.start);
+			String[] nodes = new String[this.size + 1];
+			nodes[this.size] = this.symbols.name(this.last.end);
+			int index = this.size;
+			for (Step step = this.last; step != null; step = step.previous) {
+				nodes[--index] = this.symbols.name(step.start);
 			}
-			pathNodes.add(this.endNode());
-			return pathNodes;
+			return new ArrayList<String>(Arrays.asList(nodes));
 		}
 		
 		public boolean isEmpty() {
-			return this.edges.isEmpty();
+			return this.last == null;
 		}
 		
 	}
@@ -259,7 +1017,7 @@ public class MapGraph {
 	 */
 	public static class MapPathComparator implements Comparator<MapPath>{
 	     public int compare(MapPath path1, MapPath path2) {	    	 	
-	         return path1.totalDistance().compareTo(path2.totalDistance());
+	         return Double.compare(path1.distance(), path2.distance());
 	     }
 	 }
 	
@@ -0,0 +1,440 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/*
+ * A read-only IndexedGraph stored in a binary snapshot file, and memory mapped rather than read : its nodes
+ * and edges are read straight from the page cache when searches visit them. Nothing is copied onto the heap.
+ *
+ * Opening a snapshot verifies its checksum, which reads every page of the file once. Callers that trust the
+ * file, and want a map of any size usable in milliseconds, skip it explicitly with open(file, false) and
+ * may verify it later with verifyChecksum(). A snapshot opened without it that turns out to be corrupted may
+ * make searches fail with an IndexOutOfBoundsException or return wrong paths.
+ *
+ * A snapshot holds one edge per parent -> child pair, weighted with the smallest of its labels, as searches
+ * only ever take that one : the other labels of a pair are not in the file, see toConcreteGraph.
+ *
+ * A snapshot file is written by write(graph, file). It holds the edges of the graph in compressed sparse row
+ * form, both grouped by parent and by child, their weights, the coordinates of the nodes if they all have
+ * some, and the table of node names. Nodes are numbered in the order of their names encoded in UTF-8, so that
+ * nodeId is a binary search in that table. All numbers are little endian. The file starts with a header :
+ *
+ * offset  0 : int    magic number, "SGRF"
+ * offset  4 : int    format version, 2
+ * offset  8 : int    number of nodes n
+ * offset 12 : int    number of edges m
+ * offset 16 : int    flags, 1 if the nodes have coordinates
+ * offset 20 : int    unused, 0
+ * offset 24 : long   version of the graph, see IndexedGraph.version()
+ * offset 32 : long   length of the table of names in bytes
+ * offset 40 : long   CRC32 of the 40 bytes of the header before it, then of everything after the header
+ *
+ * followed by the sections, in this order : the weights of the edges by parent, double[m], and by child,
+ * double[m], the coordinates x and y, double[n] each and only if flagged, the offsets of the edges of each
+ * parent, int[n+1], their children, int[m], the offsets of the edges of each child, int[n+1], their parents,
+ * int[m], the offsets of the names, int[n+1], and the names themselves.
+ *
+ * The whole file is mapped at once, so it must be smaller than 2 GB.
+ */
+public final class MappedGraph implements IndexedGraph {
+
+	private static final int MAGIC = 0x46524753; // "SGRF" in little endian
+	private static final int FORMAT = 2;
+	private static final int HEADER_BYTES = 48;
+	private static final int HAS_COORDINATES = 1;
+
+	private final ByteBuffer buffer;
+	private final int nodeCount;
+	private final int edgeCount;
+	private final boolean hasCoordinates;
+	private final long version;
+
+	// where each section starts in buffer
+	private final int weightsStart;
+	private final int reverseWeightsStart;
+	private final int xsStart;
+	private final int ysStart;
+	private final int offsetsStart;
+	private final int targetsStart;
+	private final int reverseOffsetsStart;
+	private final int sourcesStart;
+	private final int nameOffsetsStart;
+	private final int namesStart;
+
+	// true once the checksum of the file was found to match
+	private volatile boolean checked;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the graph described by the sections of this.buffer, as in the file format above : the edges leaving
+	 * node i are <i, targets[e], weights[e]> for offsets[i] <= e < offsets[i+1], where the array x is read at
+	 * this.xStart + e * size of an entry. A cursor is the index e. The edges entering node i are found the
+	 * same way in reverseOffsets, sources and reverseWeights.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) this.buffer holds the header and sections of a snapshot of this.nodeCount nodes and
+	 * this.edgeCount edges, whose checksum matches if this.checked.
+	 * (2) the names are distinct, and sorted by their bytes.
+	 */
+
+	private MappedGraph(ByteBuffer buffer, long nameBytes) throws IOException {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.nodeCount = buffer.getInt(8);
+		this.edgeCount = buffer.getInt(12);
+		this.hasCoordinates = (buffer.getInt(16) & HAS_COORDINATES) != 0;
+		this.version = buffer.getLong(24);
+		long position = HEADER_BYTES;
+		this.weightsStart = (int) position;
+		position += 8L * this.edgeCount;
+		this.reverseWeightsStart = (int) position;
+		position += 8L * this.edgeCount;
+		this.xsStart = (int) position;
+		position += this.hasCoordinates ? 8L * this.nodeCount : 0;
+		this.ysStart = (int) position;
+		position += this.hasCoordinates ? 8L * this.nodeCount : 0;
+		this.offsetsStart = (int) position;
+		position += 4L * (this.nodeCount + 1);
+		this.targetsStart = (int) position;
+		position += 4L * this.edgeCount;
+		this.reverseOffsetsStart = (int) position;
+		position += 4L * (this.nodeCount + 1);
+		this.sourcesStart = (int) position;
+		position += 4L * this.edgeCount;
+		this.nameOffsetsStart = (int) position;
+		position += 4L * (this.nodeCount + 1);
+		this.namesStart = (int) position;
+		position += nameBytes;
+		if (position != buffer.capacity()) {
+			throw new IOException("the snapshot should be " + position + " bytes long, not " + buffer.capacity());
+		}
+		if (this.buffer.getInt(this.offsetsStart + 4 * this.nodeCount) != this.edgeCount
+				|| this.buffer.getInt(this.reverseOffsetsStart + 4 * this.nodeCount) != this.edgeCount
+				|| this.buffer.getInt(this.nameOffsetsStart + 4 * this.nodeCount) != nameBytes) {
+			throw new IOException("the snapshot is corrupted, its sections don't add up");
+		}
+	}
+
+	/*
+	 * @param file a file written by write
+	 * @return the graph stored in file, mapped in memory, once its checksum was verified. It stays usable
+	 * after file is deleted.
+	 * @throws IOException if file can't be read, wasn't written by write, or doesn't match its checksum.
+	 */
+	public static MappedGraph open(File file) throws IOException {
+		return open(file, true);
+	}
+
+	/*
+	 * @param file a file written by write
+	 * @param verifyChecksum true to read the whole file and compare it with its checksum before returning,
+	 * false to only check that its header is consistent
+	 * @return the graph stored in file, mapped in memory. It stays usable after file is deleted.
+	 * @throws IOException if file can't be read, wasn't written by write, its header is corrupted, or
+	 * verifyChecksum is true and the checksum doesn't match.
+	 */
+	public static MappedGraph open(File file, boolean verifyChecksum) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is not a graph snapshot");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IOException(file + " is not a graph snapshot");
+		}
+		if (buffer.getInt(4) != FORMAT) {
+			throw new IOException(file + " is a snapshot in format " + buffer.getInt(4) + ", only format " + FORMAT + " can be read");
+		}
+		if (buffer.getInt(8) < 0 || buffer.getInt(12) < 0 || buffer.getLong(32) < 0) {
+			throw new IOException(file + " is corrupted");
+		}
+		MappedGraph graph = new MappedGraph(buffer, buffer.getLong(32));
+		if (verifyChecksum) {
+			graph.verifyChecksum();
+		}
+		return graph;
+	}
+
+	/*
+	 * @spec.effects reads the whole snapshot, unless it was found to match its checksum before.
+	 * @throws IOException if the snapshot doesn't match its checksum.
+	 */
+	public void verifyChecksum() throws IOException {
+		if (this.checked) {
+			return;
+		}
+		if (checksum(this.buffer) != this.buffer.getLong(40)) {
+			throw new IOException("the snapshot is corrupted, its checksum doesn't match");
+		}
+		this.checked = true;
+	}
+
+	/*
+	 * @param graph the graph to store
+	 * @spec.effects writes a snapshot of graph to file, replacing its content. Coordinates are only kept if
+	 * every node has some.
+	 * @throws IOException if file can't be written.
+	 * @throws IllegalArgumentException if the snapshot would be larger than 2 GB.
+	 */
+	public static void write(IndexedGraph graph, File file) throws IOException {
+		int nodeCount = graph.nodeCount();
+
+		// number the nodes in the order of their names
+		byte[][] names = new byte[nodeCount][];
+		Integer[] order = new Integer[nodeCount];
+		long nameBytes = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			names[node] = graph.nodeName(node).getBytes(StandardCharsets.UTF_8);
+			order[node] = node;
+			nameBytes += names[node].length;
+		}
+		Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(names[a], names[b]));
+		int[] newIds = new int[nodeCount];
+		for (int id = 0; id < nodeCount; id++) {
+			newIds[order[id]] = id;
+		}
+		int edgeCount = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+				edgeCount++;
+			}
+		}
+
+		boolean hasCoordinates = graph.hasCoordinates();
+		long size = HEADER_BYTES + 16L * edgeCount + (hasCoordinates ? 16L * nodeCount : 0)
+				+ 4L * (3 * (nodeCount + 1) + 2 * edgeCount) + nameBytes;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("the snapshot would take " + size + " bytes, more than the 2 GB that can be mapped");
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.position(HEADER_BYTES);
+			// weights by parent, then by child
+			for (int id = 0; id < nodeCount; id++) {
+				for (int cursor = graph.firstOut(order[id]); cursor >= 0; cursor = graph.nextOut(order[id], cursor)) {
+					buffer.putDouble(graph.outWeight(order[id], cursor));
+				}
+			}
+			for (int id = 0; id < nodeCount; id++) {
+				for (int cursor = graph.firstIn(order[id]); cursor >= 0; cursor = graph.nextIn(order[id], cursor)) {
+					buffer.putDouble(graph.inWeight(order[id], cursor));
+				}
+			}
+			if (hasCoordinates) {
+				for (int id = 0; id < nodeCount; id++) {
+					buffer.putDouble(graph.x(order[id]));
+				}
+				for (int id = 0; id < nodeCount; id++) {
+					buffer.putDouble(graph.y(order[id]));
+				}
+			}
+			// children by parent, then parents by child
+			buffer.putInt(0);
+			for (int id = 0, offset = 0; id < nodeCount; id++) {
+				for (int cursor = graph.firstOut(order[id]); cursor >= 0; cursor = graph.nextOut(order[id], cursor)) {
+					offset++;
+				}
+				buffer.putInt(offset);
+			}
+			for (int id = 0; id < nodeCount; id++) {
+				for (int cursor = graph.firstOut(order[id]); cursor >= 0; cursor = graph.nextOut(order[id], cursor)) {
+					buffer.putInt(newIds[graph.outTarget(order[id], cursor)]);
+				}
+			}
+			buffer.putInt(0);
+			for (int id = 0, offset = 0; id < nodeCount; id++) {
+				for (int cursor = graph.firstIn(order[id]); cursor >= 0; cursor = graph.nextIn(order[id], cursor)) {
+					offset++;
+				}
+				buffer.putInt(offset);
+			}
+			for (int id = 0; id < nodeCount; id++) {
+				for (int cursor = graph.firstIn(order[id]); cursor >= 0; cursor = graph.nextIn(order[id], cursor)) {
+					buffer.putInt(newIds[graph.inSource(order[id], cursor)]);
+				}
+			}
+			// names
+			buffer.putInt(0);
+			for (int id = 0, offset = 0; id < nodeCount; id++) {
+				offset += names[order[id]].length;
+				buffer.putInt(offset);
+			}
+			for (int id = 0; id < nodeCount; id++) {
+				buffer.put(names[order[id]]);
+			}
+
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, FORMAT);
+			buffer.putInt(8, nodeCount);
+			buffer.putInt(12, edgeCount);
+			buffer.putInt(16, hasCoordinates ? HAS_COORDINATES : 0);
+			buffer.putInt(20, 0);
+			buffer.putLong(24, graph.version());
+			buffer.putLong(32, nameBytes);
+			buffer.putLong(40, checksum(buffer));
+			buffer.force();
+		}
+	}
+
+	/*
+	 * @return the CRC32 of the header of snapshot up to the checksum, then of its sections.
+	 */
+	private static long checksum(ByteBuffer snapshot) {
+		CRC32 checksum = new CRC32();
+		checksum.update(snapshot.duplicate().position(0).limit(40));
+		checksum.update(snapshot.duplicate().position(HEADER_BYTES));
+		return checksum.getValue();
+	}
+
+	/*
+	 * @return a ConcreteGraph on the heap with the same nodes and edges as this, that can be modified. Each
+	 * parent -> child pair has the one label the snapshot kept, the smallest of those it had when written.
+	 */
+	public ConcreteGraph<String, Double> toConcreteGraph() {
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		String[] names = new String[this.nodeCount];
+		for (int node = 0; node < this.nodeCount; node++) {
+			names[node] = this.nodeName(node);
+			graph.addNode(names[node]);
+		}
+		for (int node = 0; node < this.nodeCount; node++) {
+			for (int cursor = this.firstOut(node); cursor >= 0; cursor = this.nextOut(node, cursor)) {
+				graph.addEdge(names[this.outTarget(node, cursor)], names[node], this.outWeight(node, cursor));
+			}
+		}
+		return graph;
+	}
+
+	/*
+	 * @return the number of edges.
+	 */
+	public int edgeCount() {
+		return this.edgeCount;
+	}
+
+	@Override
+	public long version() {
+		return this.version;
+	}
+
+	@Override
+	public int nodeCount() {
+		return this.nodeCount;
+	}
+
+	@Override
+	public int nodeId(String node) {
+		byte[] name = node.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = this.nodeCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = this.compareName(middle, name);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * @return the comparison of the name of node with name, byte by byte.
+	 */
+	private int compareName(int node, byte[] name) {
+		int start = this.namesStart + this.buffer.getInt(this.nameOffsetsStart + 4 * node);
+		int end = this.namesStart + this.buffer.getInt(this.nameOffsetsStart + 4 * (node + 1));
+		int length = Math.min(end - start, name.length);
+		for (int i = 0; i < length; i++) {
+			int comparison = Byte.compareUnsigned(this.buffer.get(start + i), name[i]);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return (end - start) - name.length;
+	}
+
+	@Override
+	public String nodeName(int id) {
+		int start = this.buffer.getInt(this.nameOffsetsStart + 4 * id);
+		int end = this.buffer.getInt(this.nameOffsetsStart + 4 * (id + 1));
+		byte[] name = new byte[end - start];
+		this.buffer.get(this.namesStart + start, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int firstOut(int node) {
+		int edge = this.buffer.getInt(this.offsetsStart + 4 * node);
+		return edge < this.buffer.getInt(this.offsetsStart + 4 * (node + 1)) ? edge : -1;
+	}
+
+	@Override
+	public int nextOut(int node, int cursor) {
+		return cursor + 1 < this.buffer.getInt(this.offsetsStart + 4 * (node + 1)) ? cursor + 1 : -1;
+	}
+
+	@Override
+	public int outTarget(int node, int cursor) {
+		return this.buffer.getInt(this.targetsStart + 4 * cursor);
+	}
+
+	@Override
+	public double outWeight(int node, int cursor) {
+		return this.buffer.getDouble(this.weightsStart + 8 * cursor);
+	}
+
+	@Override
+	public int firstIn(int node) {
+		int edge = this.buffer.getInt(this.reverseOffsetsStart + 4 * node);
+		return edge < this.buffer.getInt(this.reverseOffsetsStart + 4 * (node + 1)) ? edge : -1;
+	}
+
+	@Override
+	public int nextIn(int node, int cursor) {
+		return cursor + 1 < this.buffer.getInt(this.reverseOffsetsStart + 4 * (node + 1)) ? cursor + 1 : -1;
+	}
+
+	@Override
+	public int inSource(int node, int cursor) {
+		return this.buffer.getInt(this.sourcesStart + 4 * cursor);
+	}
+
+	@Override
+	public double inWeight(int node, int cursor) {
+		return this.buffer.getDouble(this.reverseWeightsStart + 8 * cursor);
+	}
+
+	@Override
+	public boolean hasCoordinates() {
+		return this.hasCoordinates;
+	}
+
+	@Override
+	public double x(int node) {
+		return this.hasCoordinates ? this.buffer.getDouble(this.xsStart + 8 * node) : Double.NaN;
+	}
+
+	@Override
+	public double y(int node) {
+		return this.hasCoordinates ? this.buffer.getDouble(this.ysStart + 8 * node) : Double.NaN;
+	}
+}
@@ -0,0 +1,172 @@
+package main;
+
+import java.util.Arrays;
+
+/*
+ * A symbol table of node names : gives each name it is asked about a dense int id, and the name back from its
+ * id. A table can be built on an IndexedGraph, whose nodes then keep their ids in the graph, and names that
+ * aren't nodes of the graph get ids after them, 0 being the first id otherwise.
+ *
+ * A table is owned by whatever uses it, like the paths found by a search on a graph, and goes away with it.
+ * Ids are never reused nor forgotten while it lives.
+ *
+ * Names that aren't nodes of the graph are found in a dictionary with open addressing, which allocates
+ * nothing to look a name up and takes a few bytes per name. Giving ids and looking names up is serialized,
+ * getting the name of an id isn't, and a NodeSymbols can be shared between threads.
+ */
+public final class NodeSymbols {
+
+	// the graph whose nodes have the first ids, null if there is none
+	private final IndexedGraph graph;
+	// the number of nodes of graph when the table was built, and the first id given to another name
+	private final int graphNodes;
+	// the names that aren't nodes of graph, by id - this.graphNodes, null until there is one. Grown under the
+	// lock of this, published again after each growth
+	private volatile String[] names;
+	// guarded by this : the dictionary of names, each slot holds 0 or an index of names + 1
+	private int[] slots;
+	// guarded by this
+	private int size;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the name of id i is this.graph.nodeName(i) for i below this.graphNodes, and this.names[i - this.graphNodes]
+	 * for i from this.graphNodes to this.graphNodes + this.size - 1.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) each index of this.names below this.size is in exactly one slot, found by probing from the hash of
+	 * its name, and the names are distinct. No name of this.names is the name of a node of this.graph with an
+	 * id below this.graphNodes.
+	 * (2) at most half of the slots are used.
+	 */
+
+	/*
+	 * @spec.effects an empty table.
+	 */
+	public NodeSymbols() {
+		this.graph = null;
+		this.graphNodes = 0;
+	}
+
+	/*
+	 * @param graph a graph that never gives another name to the ids of its nodes
+	 * @spec.effects a table where the nodes of graph have their ids in graph.
+	 */
+	public NodeSymbols(IndexedGraph graph) {
+		this.graph = graph;
+		this.graphNodes = graph.nodeCount();
+	}
+
+	/*
+	 * @param name the name of a node
+	 * @return the id of name, given to it now if it didn't have one.
+	 * @throws IllegalArgumentException if name is null.
+	 */
+	public int id(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("a node name can't be null");
+		}
+		int id = this.graphId(name);
+		return id >= 0 ? id : this.findOrAdd(name, true);
+	}
+
+	/*
+	 * @return the id of name, or -1 if it has none.
+	 */
+	public int find(String name) {
+		if (name == null) {
+			return -1;
+		}
+		int id = this.graphId(name);
+		return id >= 0 ? id : this.findOrAdd(name, false);
+	}
+
+	/*
+	 * @return the name of id.
+	 * @throws IllegalArgumentException if id was not given to a name by this table.
+	 */
+	public String name(int id) {
+		if (id >= 0 && id < this.graphNodes) {
+			return this.graph.nodeName(id);
+		}
+		String[] names = this.names;
+		int index = id - this.graphNodes;
+		String name = names != null && index >= 0 && index < names.length ? names[index] : null;
+		if (name == null) {
+			throw new IllegalArgumentException("the id " + id + " was not given to a name");
+		}
+		return name;
+	}
+
+	/*
+	 * @return the number of ids given so far, the nodes of the graph of this table included.
+	 */
+	public synchronized int size() {
+		return this.graphNodes + this.size;
+	}
+
+	private int graphId(String name) {
+		if (this.graph == null) {
+			return -1;
+		}
+		int id = this.graph.nodeId(name);
+		return id < this.graphNodes ? id : -1;
+	}
+
+	/*
+	 * @return the id of name among the names that aren't nodes of the graph, given to it now if add and it
+	 * didn't have one, and -1 if it has none otherwise.
+	 */
+	private synchronized int findOrAdd(String name, boolean add) {
+		if (this.slots == null) {
+			if (!add) {
+				return -1;
+			}
+			this.slots = new int[16];
+			this.names = new String[8];
+		}
+		String[] names = this.names;
+		int hash = hash(name);
+		int mask = this.slots.length - 1;
+		int slot = hash & mask;
+		for (; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+			int index = this.slots[slot] - 1;
+			if (names[index].equals(name)) {
+				return this.graphNodes + index;
+			}
+		}
+		if (!add) {
+			return -1;
+		}
+		if (this.size == names.length) {
+			names = Arrays.copyOf(names, 2 * this.size);
+		}
+		names[this.size] = name;
+		this.names = names;
+		if (2 * (this.size + 1) > this.slots.length) {
+			this.slots = new int[2 * this.slots.length];
+			mask = this.slots.length - 1;
+			for (int index = 0; index <= this.size; index++) {
+				slot = hash(names[index]) & mask;
+				while (this.slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				this.slots[slot] = index + 1;
+			}
+		} else {
+			this.slots[slot] = this.size + 1;
+		}
+		return this.graphNodes + this.size++;
+	}
+
+	/*
+	 * @return the hash of name, mixed so that names with close hash codes, like numbers, don't fall in
+	 * neighbouring slots.
+	 */
+	private static int hash(String name) {
+		int hash = name.hashCode() * 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+}
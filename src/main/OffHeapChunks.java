@@ -0,0 +1,118 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * A growable run of bytes outside of the Java heap, addressed by long offsets : chunks of CHUNK_BYTES each,
+ * allocated as the run grows. Only the array of chunks lives on the heap, so the run can be far larger than
+ * the heap, and larger than the 2 GB a single ByteBuffer holds.
+ *
+ * Each chunk is a temporary file in java.io.tmpdir mapped in memory, and deleted as soon as it is mapped.
+ * Unlike direct ByteBuffers, mapped files don't count against -XX:MaxDirectMemorySize, which is the size of
+ * the heap by default, and the operating system writes their pages out to the file when memory runs short.
+ * The files are sparse : a chunk only takes the pages that were written to, in memory and on disk. Large
+ * chunks keep the number of mappings, which the operating system limits, low.
+ *
+ * ints and doubles must not straddle two chunks : they are read and written at offsets that are multiples
+ * of their size, which is what OffHeapGraph does with its records of 32 or 16 bytes.
+ *
+ * The memory is given back when the chunks are garbage collected. Reads may run concurrently, as they only
+ * use absolute gets; writes must not run concurrently with anything.
+ */
+final class OffHeapChunks {
+
+	static final int CHUNK_SHIFT = 24;
+	static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_BYTES - 1;
+
+	private ByteBuffer[] chunks = new ByteBuffer[0];
+	// the chunks in use, the first ones of this.chunks
+	private int chunkCount;
+
+	// the bytes allocated so far, a multiple of CHUNK_BYTES
+	private long capacity;
+
+	/*
+	 * @spec.effects allocates the chunks needed to address the bytes 0 .. length-1. New chunks hold zeros.
+	 * @throws UncheckedIOException if a temporary file can't be created or mapped.
+	 */
+	void ensureCapacity(long length) {
+		while (this.capacity < length) {
+			if (this.chunkCount == this.chunks.length) {
+				this.chunks = Arrays.copyOf(this.chunks, Math.max(4, 2 * this.chunkCount));
+			}
+			this.chunks[this.chunkCount++] = map();
+			this.capacity += CHUNK_BYTES;
+		}
+	}
+
+	/*
+	 * @return a new chunk, mapped from a temporary file that is already deleted.
+	 */
+	private static ByteBuffer map() {
+		Path file = null;
+		try {
+			file = Files.createTempFile("shinygraph", ".chunk");
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+				// the mapping outlives the channel and the file
+				return channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_BYTES).order(ByteOrder.nativeOrder());
+			}
+		} catch (IOException e) {
+			if (file != null) {
+				file.toFile().delete();
+			}
+			throw new UncheckedIOException("can't map a chunk of off heap memory", e);
+		}
+	}
+
+	/*
+	 * @return the number of bytes mapped off heap.
+	 */
+	long capacity() {
+		return this.capacity;
+	}
+
+	private ByteBuffer chunk(long offset) {
+		return this.chunks[(int) (offset >>> CHUNK_SHIFT)];
+	}
+
+	int getInt(long offset) {
+		return this.chunk(offset).getInt((int) offset & CHUNK_MASK);
+	}
+
+	void putInt(long offset, int value) {
+		this.chunk(offset).putInt((int) offset & CHUNK_MASK, value);
+	}
+
+	long getLong(long offset) {
+		return this.chunk(offset).getLong((int) offset & CHUNK_MASK);
+	}
+
+	void putLong(long offset, long value) {
+		this.chunk(offset).putLong((int) offset & CHUNK_MASK, value);
+	}
+
+	double getDouble(long offset) {
+		return this.chunk(offset).getDouble((int) offset & CHUNK_MASK);
+	}
+
+	void putDouble(long offset, double value) {
+		this.chunk(offset).putDouble((int) offset & CHUNK_MASK, value);
+	}
+
+	byte getByte(long offset) {
+		return this.chunk(offset).get((int) offset & CHUNK_MASK);
+	}
+
+	void putByte(long offset, byte value) {
+		this.chunk(offset).put((int) offset & CHUNK_MASK, value);
+	}
+}
@@ -0,0 +1,566 @@
+package main;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+ * A graph with numerical labels whose nodes, edges and labels are stored outside of the Java heap, in
+ * OffHeapChunks, for networks too large to keep in the maps of ConcreteGraph : a continent-scale road network
+ * takes a few tens of bytes per edge off heap, and it keeps nothing on the heap but the arrays of chunks of
+ * memory : the names, in UTF-8, and the dictionary from names to ids are stored off heap too. The memory off
+ * heap is mapped from temporary files, so it is bounded by neither -Xmx nor -XX:MaxDirectMemorySize, see
+ * OffHeapChunks.
+ *
+ * It is both an AbstractGraph<String, Double> that can be modified, and an IndexedGraph that the searches of
+ * MapGraph run on as it is, without compiling a snapshot first, see MapGraph(OffHeapGraph).
+ *
+ * Storage is append-mostly : adding nodes, edges and labels appends records, and removing them only unlinks
+ * records, whose memory isn't reused. A removed node keeps its id, which it gets back if it is added again;
+ * as an IndexedGraph, removed nodes are nodes without edges that nodeId doesn't find.
+ *
+ * An OffHeapGraph is not thread safe : it may be read by many threads at once, searches included, but it
+ * must not be read while it is modified.
+ */
+public final class OffHeapGraph implements AbstractGraph<String, Double>, IndexedGraph {
+
+	// a node record, at id * NODE_BYTES in this.nodes : the first edges leaving and entering it, where its name
+	// is in this.names, its hash, and whether it is in the graph
+	private static final int NODE_BYTES = 32;
+	private static final int FIRST_OUT = 0;
+	private static final int FIRST_IN = 4;
+	private static final int NAME_LENGTH = 8;
+	private static final int ALIVE = 12;
+	private static final int NAME_START = 16;
+	private static final int HASH = 24;
+
+	// an edge record, at index * EDGE_BYTES in this.edges : one per parent and child, with the list of its
+	// labels and the smallest of them, and linked in the list of edges leaving its parent and in the list of
+	// edges entering its child
+	private static final int EDGE_BYTES = 32;
+	private static final int SOURCE = 0;
+	private static final int TARGET = 4;
+	private static final int NEXT_OUT = 8;
+	private static final int NEXT_IN = 12;
+	private static final int FIRST_LABEL = 16;
+	private static final int WEIGHT = 24;
+
+	// a label record, at index * LABEL_BYTES in this.labels, linked in the list of labels of its edge
+	private static final int LABEL_BYTES = 16;
+	private static final int LABEL = 0;
+	private static final int NEXT_LABEL = 8;
+
+	private final OffHeapChunks nodes = new OffHeapChunks();
+	private final OffHeapChunks edges = new OffHeapChunks();
+	private final OffHeapChunks labels = new OffHeapChunks();
+	private final OffHeapChunks names = new OffHeapChunks();
+
+	// the ids given so far, to nodes in the graph or removed
+	private int idCount;
+	private int nodeCount;
+	private int edgeRecordCount;
+	private int labelRecordCount;
+	private long nameBytes;
+	private long version;
+
+	// the dictionary of names, open addressing with linear probing : each of the slotCount slots of 4 bytes
+	// holds 0 or a node id + 1
+	private int slotCount = 16;
+	private OffHeapChunks slots = slots(16);
+
+	/*
+	 * Abstraction function
+	 *
+	 * g.nodes are the names of the ids i < this.idCount whose record is ALIVE.
+	 * <N1, N2, l> is in g.edges if the edge records in the list starting at FIRST_OUT of N1 include one whose
+	 * TARGET is N2, and whose list of labels starting at FIRST_LABEL includes l.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) each edge record linked from a node is in exactly one list of edges leaving a node, that of its
+	 * SOURCE, and one list of edges entering a node, that of its TARGET, and both are alive.
+	 * (2) there is at most one edge record linked for a given SOURCE and TARGET, and its list of labels is not
+	 * empty, has no two equal labels, and its WEIGHT is the smallest of them.
+	 * (3) removed nodes have no edges.
+	 * (4) each id is in exactly one slot, found by probing from the HASH of its name. Names are distinct.
+	 * (5) at most half of the slots are used.
+	 */
+
+	/*
+	 * @return the number of bytes mapped off heap to store this graph. Only the pages written to take memory.
+	 */
+	public long offHeapBytes() {
+		return this.nodes.capacity() + this.edges.capacity() + this.labels.capacity() + this.names.capacity() + this.slots.capacity();
+	}
+
+	/*
+	 * @return a number that changes every time g is modified, see ConcreteGraph.version().
+	 */
+	@Override
+	public long version() {
+		return this.version;
+	}
+
+	/*
+	 * @return true if node is in g.nodes.
+	 */
+	public boolean containsNode(String node) {
+		return node != null && this.nodeId(node) >= 0;
+	}
+
+	@Override
+	public void addNode(String node) {
+		if (node == null) {
+			throw new IllegalArgumentException("the node argument should be given a non null value");
+		}
+		if (this.containsNode(node)) {
+			throw new IllegalArgumentException("the node " + node + " is already present in this graph");
+		}
+		this.add(node);
+		this.version++;
+	}
+
+	@Override
+	public void removeNode(String node) {
+		int id = node == null ? -1 : this.nodeId(node);
+		if (id < 0) {
+			throw new IllegalArgumentException("the node " + node + " is not present in this graph");
+		}
+		for (int edge = this.node(id, FIRST_OUT); edge >= 0; edge = this.edge(edge, NEXT_OUT)) {
+			int child = this.edge(edge, TARGET);
+			if (child != id) {
+				this.unlinkIn(child, edge);
+			}
+		}
+		for (int edge = this.node(id, FIRST_IN); edge >= 0; edge = this.edge(edge, NEXT_IN)) {
+			int parent = this.edge(edge, SOURCE);
+			if (parent != id) {
+				this.unlinkOut(parent, edge);
+			}
+		}
+		long record = (long) id * NODE_BYTES;
+		this.nodes.putInt(record + FIRST_OUT, -1);
+		this.nodes.putInt(record + FIRST_IN, -1);
+		this.nodes.putInt(record + ALIVE, 0);
+		this.nodeCount--;
+		this.version++;
+	}
+
+	@Override
+	public void addEdge(String child, String parent, Double label) {
+		if (child == null) {
+			throw new IllegalArgumentException("the child argument should be given a non null value");
+		}
+		if (parent == null) {
+			throw new IllegalArgumentException("the parent argument should be given a non null value");
+		}
+		if (label == null) {
+			throw new IllegalArgumentException("the label argument should be given a non null value");
+		}
+		int parentId = this.nodeId(parent);
+		int childId = this.nodeId(child);
+		int edge = parentId < 0 || childId < 0 ? -1 : this.findEdge(parentId, childId);
+		if (edge >= 0 && this.findLabel(edge, label) >= 0) {
+			throw new IllegalArgumentException("the edge defined by <" + parent + ", " + child + ", " + label + "> already exists in the graph");
+		}
+		if (parentId < 0) {
+			parentId = this.add(parent);
+		}
+		if (childId < 0) {
+			childId = child.equals(parent) ? parentId : this.add(child);
+		}
+		if (edge < 0) {
+			edge = this.edgeRecordCount++;
+			this.edges.ensureCapacity((long) this.edgeRecordCount * EDGE_BYTES);
+			long record = (long) edge * EDGE_BYTES;
+			this.edges.putInt(record + SOURCE, parentId);
+			this.edges.putInt(record + TARGET, childId);
+			this.edges.putInt(record + NEXT_OUT, this.node(parentId, FIRST_OUT));
+			this.edges.putInt(record + NEXT_IN, this.node(childId, FIRST_IN));
+			this.edges.putInt(record + FIRST_LABEL, -1);
+			this.edges.putDouble(record + WEIGHT, Double.POSITIVE_INFINITY);
+			this.nodes.putInt((long) parentId * NODE_BYTES + FIRST_OUT, edge);
+			this.nodes.putInt((long) childId * NODE_BYTES + FIRST_IN, edge);
+		}
+		int labelRecord = this.labelRecordCount++;
+		this.labels.ensureCapacity((long) this.labelRecordCount * LABEL_BYTES);
+		this.labels.putDouble((long) labelRecord * LABEL_BYTES + LABEL, label);
+		this.labels.putInt((long) labelRecord * LABEL_BYTES + NEXT_LABEL, this.edge(edge, FIRST_LABEL));
+		this.edges.putInt((long) edge * EDGE_BYTES + FIRST_LABEL, labelRecord);
+		this.edges.putDouble((long) edge * EDGE_BYTES + WEIGHT, Math.min(this.outWeight(parentId, edge), label));
+		this.version++;
+	}
+
+	@Override
+	public void removeEdge(String child, String parent, Double label) {
+		int parentId = parent == null ? -1 : this.nodeId(parent);
+		if (parentId < 0) {
+			throw new IllegalArgumentException("the node " + parent + " does not belong to the graph");
+		}
+		int childId = child == null ? -1 : this.nodeId(child);
+		int edge = childId < 0 ? -1 : this.findEdge(parentId, childId);
+		if (edge < 0) {
+			throw new IllegalArgumentException("the node " + child + " is not a child of parent node");
+		}
+		int previous = -1;
+		int labelRecord = this.edge(edge, FIRST_LABEL);
+		while (labelRecord >= 0 && !sameLabel(this.label(labelRecord), label)) {
+			previous = labelRecord;
+			labelRecord = this.nextLabel(labelRecord);
+		}
+		if (labelRecord < 0) {
+			throw new IllegalArgumentException("the edge defined by <" + parent + ", " + child + ", " + label + "> does not belong to this graph");
+		}
+		if (previous < 0) {
+			this.edges.putInt((long) edge * EDGE_BYTES + FIRST_LABEL, this.nextLabel(labelRecord));
+		} else {
+			this.labels.putInt((long) previous * LABEL_BYTES + NEXT_LABEL, this.nextLabel(labelRecord));
+		}
+		if (this.edge(edge, FIRST_LABEL) < 0) {
+			this.unlinkOut(parentId, edge);
+			this.unlinkIn(childId, edge);
+		} else {
+			double weight = Double.POSITIVE_INFINITY;
+			for (int other = this.edge(edge, FIRST_LABEL); other >= 0; other = this.nextLabel(other)) {
+				weight = Math.min(weight, this.label(other));
+			}
+			this.edges.putDouble((long) edge * EDGE_BYTES + WEIGHT, weight);
+		}
+		this.version++;
+	}
+
+	@Override
+	public HashSet<String> listNodes() {
+		HashSet<String> nodes = new HashSet<String>();
+		for (int id = 0; id < this.idCount; id++) {
+			if (this.isAlive(id)) {
+				nodes.add(this.nodeName(id));
+			}
+		}
+		return nodes;
+	}
+
+	@Override
+	public HashMap<String, Set<Double>> listChildren(String parent) {
+		int id = this.existingId(parent);
+		HashMap<String, Set<Double>> children = new HashMap<String, Set<Double>>();
+		for (int edge = this.node(id, FIRST_OUT); edge >= 0; edge = this.edge(edge, NEXT_OUT)) {
+			children.put(this.nodeName(this.edge(edge, TARGET)), this.labelsOf(edge));
+		}
+		return children;
+	}
+
+	@Override
+	public HashMap<String, Set<Double>> listParents(String child) {
+		int id = this.existingId(child);
+		HashMap<String, Set<Double>> parents = new HashMap<String, Set<Double>>();
+		for (int edge = this.node(id, FIRST_IN); edge >= 0; edge = this.edge(edge, NEXT_IN)) {
+			parents.put(this.nodeName(this.edge(edge, SOURCE)), this.labelsOf(edge));
+		}
+		return parents;
+	}
+
+	@Override
+	public HashSet<Double> getEdgeLabels(String child, String parent) {
+		int parentId = parent == null ? -1 : this.nodeId(parent);
+		if (parentId < 0) {
+			throw new IllegalArgumentException(parent + " is not a node in this graph");
+		}
+		int childId = child == null ? -1 : this.nodeId(child);
+		int edge = childId < 0 ? -1 : this.findEdge(parentId, childId);
+		if (edge < 0) {
+			throw new IllegalArgumentException(child + " is not a child of " + parent);
+		}
+		return this.labelsOf(edge);
+	}
+
+	/*
+	 * Reads the smallest label of each edge from its record, without decoding its labels. 
+	 */
+	@Override
+	public void forEachChildWeight(String parent, EdgeWeightConsumer<String> action) {
+		int id = this.existingId(parent);
+		for (int edge = this.node(id, FIRST_OUT); edge >= 0; edge = this.edge(edge, NEXT_OUT)) {
+			action.accept(this.nodeName(this.edge(edge, TARGET)), this.outWeight(id, edge));
+		}
+	}
+
+	@Override
+	public void forEachParentWeight(String child, EdgeWeightConsumer<String> action) {
+		int id = this.existingId(child);
+		for (int edge = this.node(id, FIRST_IN); edge >= 0; edge = this.edge(edge, NEXT_IN)) {
+			action.accept(this.nodeName(this.edge(edge, SOURCE)), this.inWeight(id, edge));
+		}
+	}
+
+	/*
+	 * IndexedGraph : ids are given in the order nodes are first added, and cursors are edge records.
+	 */
+
+	@Override
+	public int nodeCount() {
+		return this.idCount;
+	}
+
+	@Override
+	public int nodeId(String node) {
+		int id = this.find(node.getBytes(StandardCharsets.UTF_8), hash(node));
+		return id >= 0 && this.isAlive(id) ? id : -1;
+	}
+
+	@Override
+	public String nodeName(int id) {
+		long start = this.nodes.getLong((long) id * NODE_BYTES + NAME_START);
+		byte[] bytes = new byte[this.node(id, NAME_LENGTH)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.names.getByte(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int firstOut(int node) {
+		return this.node(node, FIRST_OUT);
+	}
+
+	@Override
+	public int nextOut(int node, int cursor) {
+		return this.edge(cursor, NEXT_OUT);
+	}
+
+	@Override
+	public int outTarget(int node, int cursor) {
+		return this.edge(cursor, TARGET);
+	}
+
+	@Override
+	public double outWeight(int node, int cursor) {
+		return this.edges.getDouble((long) cursor * EDGE_BYTES + WEIGHT);
+	}
+
+	@Override
+	public int firstIn(int node) {
+		return this.node(node, FIRST_IN);
+	}
+
+	@Override
+	public int nextIn(int node, int cursor) {
+		return this.edge(cursor, NEXT_IN);
+	}
+
+	@Override
+	public int inSource(int node, int cursor) {
+		return this.edge(cursor, SOURCE);
+	}
+
+	@Override
+	public double inWeight(int node, int cursor) {
+		return this.edges.getDouble((long) cursor * EDGE_BYTES + WEIGHT);
+	}
+
+	@Override
+	public boolean hasCoordinates() {
+		return false;
+	}
+
+	@Override
+	public double x(int node) {
+		return Double.NaN;
+	}
+
+	@Override
+	public double y(int node) {
+		return Double.NaN;
+	}
+
+	private int node(int id, int field) {
+		return this.nodes.getInt((long) id * NODE_BYTES + field);
+	}
+
+	private boolean isAlive(int id) {
+		return this.node(id, ALIVE) != 0;
+	}
+
+	private int edge(int edge, int field) {
+		return this.edges.getInt((long) edge * EDGE_BYTES + field);
+	}
+
+	private double label(int labelRecord) {
+		return this.labels.getDouble((long) labelRecord * LABEL_BYTES + LABEL);
+	}
+
+	private int nextLabel(int labelRecord) {
+		return this.labels.getInt((long) labelRecord * LABEL_BYTES + NEXT_LABEL);
+	}
+
+	// labels are compared as Double.equals does, so that they behave as in a Set<Double>
+	private static boolean sameLabel(double label, double other) {
+		return Double.doubleToLongBits(label) == Double.doubleToLongBits(other);
+	}
+
+	/*
+	 * @return the id of node.
+	 * @throws IllegalArgumentException if node is not in g.
+	 */
+	private int existingId(String node) {
+		int id = node == null ? -1 : this.nodeId(node);
+		if (id < 0) {
+			throw new IllegalArgumentException("the node " + node + " does not belong to the graph");
+		}
+		return id;
+	}
+
+	/*
+	 * @return the edge record from parent to child, or -1 if there is none.
+	 */
+	private int findEdge(int parent, int child) {
+		for (int edge = this.node(parent, FIRST_OUT); edge >= 0; edge = this.edge(edge, NEXT_OUT)) {
+			if (this.edge(edge, TARGET) == child) {
+				return edge;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * @return the label record of edge equal to label, or -1 if there is none.
+	 */
+	private int findLabel(int edge, double label) {
+		for (int labelRecord = this.edge(edge, FIRST_LABEL); labelRecord >= 0; labelRecord = this.nextLabel(labelRecord)) {
+			if (sameLabel(this.label(labelRecord), label)) {
+				return labelRecord;
+			}
+		}
+		return -1;
+	}
+
+	private HashSet<Double> labelsOf(int edge) {
+		HashSet<Double> labels = new HashSet<Double>();
+		for (int labelRecord = this.edge(edge, FIRST_LABEL); labelRecord >= 0; labelRecord = this.nextLabel(labelRecord)) {
+			labels.add(this.label(labelRecord));
+		}
+		return labels;
+	}
+
+	/*
+	 * @spec.effects removes edge from the list of edges leaving parent.
+	 */
+	private void unlinkOut(int parent, int edge) {
+		int previous = -1;
+		int current = this.node(parent, FIRST_OUT);
+		while (current != edge) {
+			previous = current;
+			current = this.edge(current, NEXT_OUT);
+		}
+		if (previous < 0) {
+			this.nodes.putInt((long) parent * NODE_BYTES + FIRST_OUT, this.edge(edge, NEXT_OUT));
+		} else {
+			this.edges.putInt((long) previous * EDGE_BYTES + NEXT_OUT, this.edge(edge, NEXT_OUT));
+		}
+	}
+
+	/*
+	 * @spec.effects removes edge from the list of edges entering child.
+	 */
+	private void unlinkIn(int child, int edge) {
+		int previous = -1;
+		int current = this.node(child, FIRST_IN);
+		while (current != edge) {
+			previous = current;
+			current = this.edge(current, NEXT_IN);
+		}
+		if (previous < 0) {
+			this.nodes.putInt((long) child * NODE_BYTES + FIRST_IN, this.edge(edge, NEXT_IN));
+		} else {
+			this.edges.putInt((long) previous * EDGE_BYTES + NEXT_IN, this.edge(edge, NEXT_IN));
+		}
+	}
+
+	/*
+	 * @spec.requires node is not in g
+	 * @spec.effects adds node to g, under the id it had if it was removed, and under a new id otherwise.
+	 * @return the id of node.
+	 */
+	private int add(String node) {
+		byte[] bytes = node.getBytes(StandardCharsets.UTF_8);
+		int hash = hash(node);
+		int id = this.find(bytes, hash);
+		if (id < 0) {
+			id = this.idCount++;
+			this.nodes.ensureCapacity((long) this.idCount * NODE_BYTES);
+			long record = (long) id * NODE_BYTES;
+			this.nodes.putInt(record + FIRST_OUT, -1);
+			this.nodes.putInt(record + FIRST_IN, -1);
+			this.nodes.putInt(record + NAME_LENGTH, bytes.length);
+			this.nodes.putLong(record + NAME_START, this.nameBytes);
+			this.nodes.putInt(record + HASH, hash);
+			this.names.ensureCapacity(this.nameBytes + bytes.length);
+			for (byte b : bytes) {
+				this.names.putByte(this.nameBytes++, b);
+			}
+			if (2 * this.idCount > this.slotCount) {
+				this.slotCount *= 2;
+				this.slots = slots(this.slotCount);
+				for (int other = 0; other < this.idCount; other++) {
+					this.slots.putInt(4L * this.freeSlot(this.node(other, HASH)), other + 1);
+				}
+			} else {
+				this.slots.putInt(4L * this.freeSlot(hash), id + 1);
+			}
+		}
+		this.nodes.putInt((long) id * NODE_BYTES + ALIVE, 1);
+		this.nodeCount++;
+		return id;
+	}
+
+	/*
+	 * @return the id given to the node named by bytes, whose hash is hash, whether it is in g or was removed,
+	 * or -1 if there is none.
+	 */
+	private int find(byte[] bytes, int hash) {
+		int mask = this.slotCount - 1;
+		for (int slot = hash & mask; this.slots.getInt(4L * slot) != 0; slot = (slot + 1) & mask) {
+			int id = this.slots.getInt(4L * slot) - 1;
+			if (this.node(id, HASH) == hash && this.hasName(id, bytes)) {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	// the first empty slot probed from hash
+	private int freeSlot(int hash) {
+		int mask = this.slotCount - 1;
+		int slot = hash & mask;
+		while (this.slots.getInt(4L * slot) != 0) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// count empty slots, new chunks being filled with zeros
+	private static OffHeapChunks slots(int count) {
+		OffHeapChunks slots = new OffHeapChunks();
+		slots.ensureCapacity(4L * count);
+		return slots;
+	}
+
+	private boolean hasName(int id, byte[] bytes) {
+		if (this.node(id, NAME_LENGTH) != bytes.length) {
+			return false;
+		}
+		long start = this.nodes.getLong((long) id * NODE_BYTES + NAME_START);
+		for (int i = 0; i < bytes.length; i++) {
+			if (this.names.getByte(start + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(String node) {
+		int hash = node.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+}
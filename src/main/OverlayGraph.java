@@ -0,0 +1,295 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * A CompiledGraph brought up to a later version of the graph it was compiled from without compiling it again :
+ * the rows of the nodes changed since are read again from the graph, and the nodes added since get the ids
+ * after those of the CompiledGraph. The other rows are those of the CompiledGraph, shared with it.
+ *
+ * An overlay is only built while no node of its CompiledGraph was removed, so that ids keep their names, and
+ * while few rows are patched : searches look each row up before visiting it, and MapGraph rather compiles the
+ * graph again once patches pile up, see patch. Once built, an OverlayGraph never changes and can be shared
+ * between threads.
+ */
+final class OverlayGraph implements IndexedGraph {
+
+	// the number of rows that may be patched in any graph, and the share of the other nodes that may be, as
+	// a right shift of their number
+	private static final int PATCHED_ROWS = 64;
+	private static final int PATCHED_SHARE = 5;
+
+	private final CompiledGraph base;
+	private final String[] added;
+	private final HashMap<String, Integer> addedIds;
+	private final int[] patched;
+	private final Row[] rows;
+	private final double[] xs;
+	private final double[] ys;
+	private final boolean hasCoordinates;
+	private final long version;
+
+	/*
+	 * Abstraction function
+	 *
+	 * g.nodes is 0, 1, ... this.patched.length-1. g.names[i] is this.base.nodeName(i) for the nodes of
+	 * this.base, and this.added[i - this.base.nodeCount()] for the others.
+	 *
+	 * the edges leaving node i are those of this.base when this.patched[i] is 0, and the
+	 * <i, row.targets[e], row.weights[e]> of row = this.rows[this.patched[i] - 1] otherwise, the edges entering
+	 * it likewise with row.sources and row.sourceWeights. A cursor is the cursor of this.base, or the index e.
+	 *
+	 * the coordinates of node i are those in this.base for its nodes, and
+	 * (this.xs[i - this.base.nodeCount()], this.ys[i - this.base.nodeCount()]) for the others.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) this.addedIds maps this.added[i] to this.base.nodeCount() + i, for every i, and no name of
+	 * this.added is a name of this.base.
+	 * (2) this.patched has this.base.nodeCount() + this.added.length entries, none of the added nodes is 0,
+	 * and the other entries are 0 or distinct indexes of this.rows + 1.
+	 * (3) the ids in the rows are ids of g.nodes, and a row holds each of them at most once.
+	 * (4) this.xs and this.ys have this.added.length entries.
+	 */
+
+	private OverlayGraph(CompiledGraph base, String[] added, HashMap<String, Integer> addedIds, int[] patched, Row[] rows, double[] xs, double[] ys, long version) {
+		this.base = base;
+		this.added = added;
+		this.addedIds = addedIds;
+		this.patched = patched;
+		this.rows = rows;
+		this.xs = xs;
+		this.ys = ys;
+		boolean hasCoordinates = base.hasCoordinates();
+		for (int node = 0; hasCoordinates && node < added.length; node++) {
+			hasCoordinates = !Double.isNaN(xs[node]) && !Double.isNaN(ys[node]);
+		}
+		this.hasCoordinates = hasCoordinates;
+		this.version = version;
+	}
+
+	/*
+	 * The edges leaving and entering a patched node.
+	 */
+	private static final class Row {
+
+		private final int[] targets;
+		private final double[] weights;
+		private final int[] sources;
+		private final double[] sourceWeights;
+
+		private Row(CompiledGraph.EdgeBuffer out, CompiledGraph.EdgeBuffer in) {
+			this.targets = Arrays.copyOf(out.targets, out.count);
+			this.weights = Arrays.copyOf(out.weights, out.count);
+			this.sources = Arrays.copyOf(in.targets, in.count);
+			this.sourceWeights = Arrays.copyOf(in.weights, in.count);
+		}
+	}
+
+	/*
+	 * @param previous a CompiledGraph or an OverlayGraph of graph, at an older version than graph
+	 * @param graph the graph at the version the overlay is built at
+	 * @param changed the nodes given a new version since previous, see ConcreteGraph.changedNodes. It may
+	 * hold other nodes too.
+	 * @param coordinates the coordinates {x, y} of some of the nodes of graph. Those of the nodes of
+	 * previous must not have changed since it was built.
+	 * @return previous with the rows of the changed nodes read again from graph, or null if a node of
+	 * previous was removed from graph or if too many rows would be patched : graph must then be compiled
+	 * again.
+	 */
+	static OverlayGraph patch(IndexedGraph previous, GraphSnapshot<String, Double> graph, Set<String> changed, Map<String, double[]> coordinates) {
+		OverlayGraph overlay = previous instanceof OverlayGraph ? (OverlayGraph) previous : null;
+		CompiledGraph base = overlay == null ? (CompiledGraph) previous : overlay.base;
+		int baseCount = base.nodeCount();
+		List<String> names = overlay == null ? new ArrayList<String>() : new ArrayList<String>(Arrays.asList(overlay.added));
+		HashMap<String, Integer> ids = overlay == null ? new HashMap<String, Integer>() : new HashMap<String, Integer>(overlay.addedIds);
+		int patchedCount = overlay == null ? 0 : overlay.rows.length;
+
+		// the nodes of previous keep their ids, and those added since get the next ones
+		List<String> read = new ArrayList<String>(changed.size());
+		for (String node : changed) {
+			int id = previous.nodeId(node);
+			if (!graph.containsNode(node)) {
+				if (id >= 0) {
+					return null;
+				}
+				continue;
+			}
+			if (id < 0) {
+				ids.put(node, baseCount + names.size());
+				names.add(node);
+			}
+			if (id < 0 || overlay == null || overlay.patched[id] == 0) {
+				patchedCount++;
+			}
+			read.add(node);
+		}
+		if (patchedCount > patchLimit(previous)) {
+			return null;
+		}
+
+		int[] patched = overlay == null ? new int[baseCount + names.size()] : Arrays.copyOf(overlay.patched, baseCount + names.size());
+		Row[] rows = overlay == null ? new Row[patchedCount] : Arrays.copyOf(overlay.rows, patchedCount);
+		int nextRow = overlay == null ? 0 : overlay.rows.length;
+		for (String node : read) {
+			int id = id(base, ids, node);
+			if (patched[id] == 0) {
+				patched[id] = ++nextRow;
+			}
+			CompiledGraph.EdgeBuffer out = new CompiledGraph.EdgeBuffer(4);
+			graph.forEachChildWeight(node, (childName, weight) -> {
+				int child = id(base, ids, childName);
+				if (child >= 0) {
+					out.add(child, weight);
+				}
+			});
+			CompiledGraph.EdgeBuffer in = new CompiledGraph.EdgeBuffer(4);
+			graph.forEachParentWeight(node, (parentName, weight) -> {
+				int parent = id(base, ids, parentName);
+				if (parent >= 0) {
+					in.add(parent, weight);
+				}
+			});
+			rows[patched[id] - 1] = new Row(out, in);
+		}
+
+		String[] added = names.toArray(new String[0]);
+		double[] xs = overlay == null ? new double[0] : overlay.xs;
+		double[] ys = overlay == null ? new double[0] : overlay.ys;
+		if (xs.length < added.length) {
+			int known = xs.length;
+			xs = Arrays.copyOf(xs, added.length);
+			ys = Arrays.copyOf(ys, added.length);
+			for (int node = known; node < added.length; node++) {
+				double[] point = coordinates.get(added[node]);
+				xs[node] = point == null ? Double.NaN : point[0];
+				ys[node] = point == null ? Double.NaN : point[1];
+			}
+		}
+		return new OverlayGraph(base, added, ids, patched, rows, xs, ys, graph.version());
+	}
+
+	/*
+	 * @param previous a CompiledGraph or an OverlayGraph
+	 * @return the number of rows an overlay of previous may patch.
+	 */
+	static int patchLimit(IndexedGraph previous) {
+		CompiledGraph base = previous instanceof OverlayGraph ? ((OverlayGraph) previous).base : (CompiledGraph) previous;
+		return PATCHED_ROWS + (base.nodeCount() >> PATCHED_SHARE);
+	}
+
+	private static int id(CompiledGraph base, HashMap<String, Integer> addedIds, String node) {
+		int id = base.nodeId(node);
+		if (id >= 0) {
+			return id;
+		}
+		Integer added = addedIds.get(node);
+		return added == null ? -1 : added;
+	}
+
+	/*
+	 * @return the version of the graph this overlay was built at.
+	 */
+	@Override
+	public long version() {
+		return this.version;
+	}
+
+	@Override
+	public int nodeCount() {
+		return this.patched.length;
+	}
+
+	@Override
+	public int nodeId(String node) {
+		return id(this.base, this.addedIds, node);
+	}
+
+	@Override
+	public String nodeName(int id) {
+		int baseCount = this.base.nodeCount();
+		return id < baseCount ? this.base.nodeName(id) : this.added[id - baseCount];
+	}
+
+	@Override
+	public int firstOut(int node) {
+		int row = this.patched[node];
+		if (row == 0) {
+			return this.base.firstOut(node);
+		}
+		return this.rows[row - 1].targets.length > 0 ? 0 : -1;
+	}
+
+	@Override
+	public int nextOut(int node, int cursor) {
+		int row = this.patched[node];
+		if (row == 0) {
+			return this.base.nextOut(node, cursor);
+		}
+		return cursor + 1 < this.rows[row - 1].targets.length ? cursor + 1 : -1;
+	}
+
+	@Override
+	public int outTarget(int node, int cursor) {
+		int row = this.patched[node];
+		return row == 0 ? this.base.outTarget(node, cursor) : this.rows[row - 1].targets[cursor];
+	}
+
+	@Override
+	public double outWeight(int node, int cursor) {
+		int row = this.patched[node];
+		return row == 0 ? this.base.outWeight(node, cursor) : this.rows[row - 1].weights[cursor];
+	}
+
+	@Override
+	public int firstIn(int node) {
+		int row = this.patched[node];
+		if (row == 0) {
+			return this.base.firstIn(node);
+		}
+		return this.rows[row - 1].sources.length > 0 ? 0 : -1;
+	}
+
+	@Override
+	public int nextIn(int node, int cursor) {
+		int row = this.patched[node];
+		if (row == 0) {
+			return this.base.nextIn(node, cursor);
+		}
+		return cursor + 1 < this.rows[row - 1].sources.length ? cursor + 1 : -1;
+	}
+
+	@Override
+	public int inSource(int node, int cursor) {
+		int row = this.patched[node];
+		return row == 0 ? this.base.inSource(node, cursor) : this.rows[row - 1].sources[cursor];
+	}
+
+	@Override
+	public double inWeight(int node, int cursor) {
+		int row = this.patched[node];
+		return row == 0 ? this.base.inWeight(node, cursor) : this.rows[row - 1].sourceWeights[cursor];
+	}
+
+	@Override
+	public boolean hasCoordinates() {
+		return this.hasCoordinates;
+	}
+
+	@Override
+	public double x(int node) {
+		int baseCount = this.base.nodeCount();
+		return node < baseCount ? this.base.x(node) : this.xs[node - baseCount];
+	}
+
+	@Override
+	public double y(int node) {
+		int baseCount = this.base.nodeCount();
+		return node < baseCount ? this.base.y(node) : this.ys[node - baseCount];
+	}
+}
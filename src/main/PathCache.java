@@ -0,0 +1,210 @@
+package main;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import main.MapGraph.MapPath;
+
+/*
+ * A bounded cache of shortest paths, keyed on their start and end nodes, for workloads where the same
+ * queries come back again and again.
+ *
+ * Every entry is stamped with the version of the graph it was computed on, see ConcreteGraph.version(), and
+ * is only returned for that same version : once the graph is modified, the old entries read as misses and
+ * are dropped as they are found. Versions only tell apart the states of one graph, so a cache is bound to
+ * the first graph it is set on, see MapGraph.setPathCache, and can't be set on another one.
+ *
+ * Paths are stored as copies with a table of node names of their own, which the paths given to put and
+ * their extensions don't grow.
+ *
+ * When full, the least recently used entry goes first. The entries are spread over independent segments,
+ * each with its own lock and its own share of the capacity, so that threads looking up different pairs
+ * rarely wait for one another. Hits and misses are counted with LongAdders for the same reason.
+ *
+ * A PathCache is safe to use from many threads at once.
+ */
+public final class PathCache {
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private final int capacity;
+	private final Segment[] segments;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	// the graph whose versions the entries are stamped with, null until the cache is bound to one
+	private final AtomicReference<Object> owner = new AtomicReference<Object>();
+
+	/*
+	 * @param capacity the number of paths the cache holds at most
+	 * @throws IllegalArgumentException if capacity is not positive.
+	 */
+	public PathCache(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("the capacity should be positive, not " + capacity);
+		}
+		this.capacity = capacity;
+		int segmentCount = Math.min(MAX_SEGMENTS, capacity);
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			// the first capacity % segmentCount segments hold one more entry, so that they add up to capacity
+			this.segments[i] = new Segment(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+		}
+	}
+
+	/*
+	 * @param version the current version of the graph
+	 * @return a copy of the path from start to end cached for that version, or null if there is none.
+	 */
+	public MapPath get(String start, String end, long version) {
+		Key key = new Key(start, end);
+		Segment segment = this.segmentOf(key);
+		Entry entry;
+		synchronized (segment) {
+			entry = segment.get(key);
+			if (entry != null && entry.version != version) {
+				segment.remove(key);
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			this.misses.increment();
+			return null;
+		}
+		this.hits.increment();
+		return new MapPath(entry.path);
+	}
+
+	/*
+	 * @param version the version of the graph path was computed on
+	 * @spec.effects caches a copy of path as the path from start to end for that version, evicting the least
+	 * recently used entry of its segment if needed.
+	 */
+	public void put(String start, String end, long version, MapPath path) {
+		Key key = new Key(start, end);
+		Entry entry = new Entry(version, path.withOwnSymbols());
+		Segment segment = this.segmentOf(key);
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	/*
+	 * @param graph the graph whose versions are given to get and put
+	 * @spec.effects binds this cache to graph, unless it is bound to it already.
+	 * @throws IllegalArgumentException if this cache is bound to another graph.
+	 */
+	void bind(Object graph) {
+		if (!this.owner.compareAndSet(null, graph) && this.owner.get() != graph) {
+			throw new IllegalArgumentException("the cache is already used by another graph");
+		}
+	}
+
+	/*
+	 * @spec.effects removes every entry. The counters are left as they are.
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/*
+	 * @return the number of paths the cache holds at most.
+	 */
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/*
+	 * @return the number of entries in the cache, including the stale ones not found yet.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/*
+	 * @return the number of calls to get that returned a path.
+	 */
+	public long hitCount() {
+		return this.hits.sum();
+	}
+
+	/*
+	 * @return the number of calls to get that returned null.
+	 */
+	public long missCount() {
+		return this.misses.sum();
+	}
+
+	private Segment segmentOf(Key key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return this.segments[Math.floorMod(hash, this.segments.length)];
+	}
+
+	/*
+	 * an access ordered map, that drops its eldest entry when it grows beyond its capacity. Guarded by its own lock.
+	 */
+	private static final class Segment extends LinkedHashMap<Key, Entry> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+			return this.size() > this.capacity;
+		}
+	}
+
+	private static final class Key {
+
+		private final String start;
+		private final String end;
+
+		Key(String start, String end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return this.start.equals(key.start) && this.end.equals(key.end);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.start.hashCode() + this.end.hashCode();
+		}
+	}
+
+	private static final class Entry {
+
+		private final long version;
+		private final MapPath path;
+
+		Entry(long version, MapPath path) {
+			this.version = version;
+			this.path = path;
+		}
+	}
+}
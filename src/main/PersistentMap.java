@@ -0,0 +1,442 @@
+package main;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/*
+ * An immutable map that shares most of its structure with the map it was derived from : with and without
+ * return a new map in time and space logarithmic in its size, and leave this one as it is, instead of
+ * copying it. It is a hash array mapped trie (Bagwell) : each level of the trie looks at 5 more bits of the
+ * hashes of the keys, and keeps only the slots that are used, in an array indexed by the bits set in a
+ * bitmap. Keys whose hashes are all equal share a collision list.
+ *
+ * Used for the children and parents of the versions of the nodes of a ConcreteGraph, so that a new version
+ * of a node with many edges shares them with the previous one rather than copying them.
+ *
+ * Neither keys nor values can be null. Its views are read-only.
+ */
+final class PersistentMap<K, V> extends AbstractMap<K, V> {
+
+	// the number of bits of the hashes each level of the trie looks at
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<Object, Object>(new Trie(0, new Object[0]), 0);
+
+	private final Trie root;
+	private final int size;
+	// made by the first call to entrySet, see there
+	private Set<Map.Entry<K, V>> entries;
+
+	/*
+	 * A level of the trie : slots[i] holds the keys whose hashes have, at the bits of this level, the rank of
+	 * the i-th bit set in bitmap. A slot is a Leaf, a Trie one level down, or a Collision.
+	 */
+	private static final class Trie {
+
+		private final int bitmap;
+		private final Object[] slots;
+
+		private Trie(int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+	}
+
+	// the leaves of keys whose hashes are all hash, two or more of them
+	private static final class Collision {
+
+		private final int hash;
+		private final Leaf<?, ?>[] leaves;
+
+		private Collision(int hash, Leaf<?, ?>[] leaves) {
+			this.hash = hash;
+			this.leaves = leaves;
+		}
+	}
+
+	// a key, the hash it is found by and its value, which is also how the map hands out its entries
+	private static final class Leaf<K, V> implements Map.Entry<K, V> {
+
+		private final int hash;
+		private final K key;
+		private final V value;
+
+		private Leaf(int hash, K key, V value) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public K getKey() {
+			return this.key;
+		}
+
+		@Override
+		public V getValue() {
+			return this.value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+			return this.key.equals(entry.getKey()) && this.value.equals(entry.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return this.key.hashCode() ^ this.value.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return this.key + "=" + this.value;
+		}
+	}
+
+	/*
+	 * Abstraction function
+	 *
+	 * the map holds key -> value for each Leaf found from this.root, through the slots of the tries and the
+	 * leaves of the collisions.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) a leaf for the key k at depth d of the trie, or a collision holding it, is in the slot of its trie
+	 * given by the bits d * BITS to d * BITS + BITS - 1 of hash(k), and its hash is hash(k).
+	 * (2) no two leaves have equal keys, and no key nor value is null.
+	 * (3) a collision holds two leaves or more, whose hashes are its hash.
+	 * (4) no trie but this.root is empty, and no trie but this.root holds a single slot that isn't a trie.
+	 * (5) this.size is the number of leaves.
+	 */
+
+	private PersistentMap(Trie root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/*
+	 * @return the empty map.
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> PersistentMap<K, V> empty() {
+		return (PersistentMap<K, V>) EMPTY;
+	}
+
+	private static int hash(Object key) {
+		int hash = key.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+
+	/*
+	 * @spec.requires key != null and value != null
+	 * @return this map, where key maps to value.
+	 */
+	PersistentMap<K, V> with(K key, V value) {
+		Leaf<K, V> old = this.leaf(key);
+		if (old != null && old.value == value) {
+			return this;
+		}
+		Trie root = (Trie) insert(this.root, new Leaf<K, V>(hash(key), key, value), 0);
+		return new PersistentMap<K, V>(root, old == null ? this.size + 1 : this.size);
+	}
+
+	/*
+	 * @return this map, where key maps to nothing.
+	 */
+	PersistentMap<K, V> without(Object key) {
+		if (this.leaf(key) == null) {
+			return this;
+		}
+		Trie root = (Trie) remove(this.root, key, hash(key), 0);
+		return root.slots.length == 0 ? PersistentMap.<K, V>empty() : new PersistentMap<K, V>(root, this.size - 1);
+	}
+
+	@Override
+	public V get(Object key) {
+		Leaf<K, V> leaf = this.leaf(key);
+		return leaf == null ? null : leaf.value;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.leaf(key) != null;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	/*
+	 * The set is made once : racing threads may each make one, which are all alike.
+	 */
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		Set<Map.Entry<K, V>> entries = this.entries;
+		if (entries == null) {
+			entries = new AbstractSet<Map.Entry<K, V>>() {
+
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					return new Entries<K, V>(PersistentMap.this.root);
+				}
+
+				@Override
+				public int size() {
+					return PersistentMap.this.size;
+				}
+			};
+			this.entries = entries;
+		}
+		return entries;
+	}
+
+	/*
+	 * Unlike entrySet().forEach, visits the leaves without an iterator.
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+		forEach(this.root, action);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> void forEach(Object slot, BiConsumer<? super K, ? super V> action) {
+		if (slot instanceof Leaf) {
+			Leaf<K, V> leaf = (Leaf<K, V>) slot;
+			action.accept(leaf.key, leaf.value);
+		} else if (slot instanceof Trie) {
+			for (Object child : ((Trie) slot).slots) {
+				forEach(child, action);
+			}
+		} else {
+			for (Leaf<?, ?> leaf : ((Collision) slot).leaves) {
+				forEach(leaf, action);
+			}
+		}
+	}
+
+	/*
+	 * @return the leaf of key, or null if it has none.
+	 */
+	@SuppressWarnings("unchecked")
+	private Leaf<K, V> leaf(Object key) {
+		if (key == null) {
+			return null;
+		}
+		int hash = hash(key);
+		Object slot = this.root;
+		for (int shift = 0; slot instanceof Trie; shift += BITS) {
+			Trie trie = (Trie) slot;
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((trie.bitmap & bit) == 0) {
+				return null;
+			}
+			slot = trie.slots[Integer.bitCount(trie.bitmap & (bit - 1))];
+		}
+		if (slot instanceof Leaf) {
+			Leaf<K, V> leaf = (Leaf<K, V>) slot;
+			return leaf.hash == hash && leaf.key.equals(key) ? leaf : null;
+		}
+		Collision collision = (Collision) slot;
+		if (collision.hash == hash) {
+			for (Leaf<?, ?> leaf : collision.leaves) {
+				if (leaf.key.equals(key)) {
+					return (Leaf<K, V>) leaf;
+				}
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * @param slot a slot whose keys have the same bits as leaf.hash below shift
+	 * @return slot with leaf in place of the leaf of its key, or added if there is none.
+	 */
+	private static Object insert(Object slot, Leaf<?, ?> leaf, int shift) {
+		if (slot instanceof Trie) {
+			Trie trie = (Trie) slot;
+			int bit = 1 << ((leaf.hash >>> shift) & MASK);
+			int index = Integer.bitCount(trie.bitmap & (bit - 1));
+			if ((trie.bitmap & bit) == 0) {
+				Object[] slots = new Object[trie.slots.length + 1];
+				System.arraycopy(trie.slots, 0, slots, 0, index);
+				slots[index] = leaf;
+				System.arraycopy(trie.slots, index, slots, index + 1, trie.slots.length - index);
+				return new Trie(trie.bitmap | bit, slots);
+			}
+			Object[] slots = trie.slots.clone();
+			slots[index] = insert(slots[index], leaf, shift + BITS);
+			return new Trie(trie.bitmap, slots);
+		}
+		if (slot instanceof Leaf) {
+			Leaf<?, ?> other = (Leaf<?, ?>) slot;
+			if (other.hash != leaf.hash) {
+				return pair(other, other.hash, leaf, leaf.hash, shift);
+			}
+			return other.key.equals(leaf.key) ? leaf : new Collision(leaf.hash, new Leaf<?, ?>[] {other, leaf});
+		}
+		Collision collision = (Collision) slot;
+		if (collision.hash != leaf.hash) {
+			return pair(collision, collision.hash, leaf, leaf.hash, shift);
+		}
+		Leaf<?, ?>[] leaves = collision.leaves;
+		for (int i = 0; i < leaves.length; i++) {
+			if (leaves[i].key.equals(leaf.key)) {
+				leaves = leaves.clone();
+				leaves[i] = leaf;
+				return new Collision(collision.hash, leaves);
+			}
+		}
+		Leaf<?, ?>[] grown = new Leaf<?, ?>[leaves.length + 1];
+		System.arraycopy(leaves, 0, grown, 0, leaves.length);
+		grown[leaves.length] = leaf;
+		return new Collision(collision.hash, grown);
+	}
+
+	/*
+	 * @spec.requires firstHash != secondHash, and they have the same bits below shift
+	 * @return a trie at shift holding first and second, the leaves or collisions of these hashes.
+	 */
+	private static Trie pair(Object first, int firstHash, Object second, int secondHash, int shift) {
+		int firstIndex = (firstHash >>> shift) & MASK;
+		int secondIndex = (secondHash >>> shift) & MASK;
+		if (firstIndex == secondIndex) {
+			return new Trie(1 << firstIndex, new Object[] {pair(first, firstHash, second, secondHash, shift + BITS)});
+		}
+		Object[] slots = firstIndex < secondIndex ? new Object[] {first, second} : new Object[] {second, first};
+		return new Trie((1 << firstIndex) | (1 << secondIndex), slots);
+	}
+
+	/*
+	 * @param slot a slot that holds the leaf of key, whose hash is hash
+	 * @return slot without the leaf of key, or null if nothing is left. A trie below the root left with a
+	 * single leaf or collision is replaced by it.
+	 */
+	private static Object remove(Object slot, Object key, int hash, int shift) {
+		if (slot instanceof Leaf) {
+			return null;
+		}
+		if (slot instanceof Collision) {
+			Leaf<?, ?>[] leaves = ((Collision) slot).leaves;
+			if (leaves.length == 2) {
+				return leaves[0].key.equals(key) ? leaves[1] : leaves[0];
+			}
+			Leaf<?, ?>[] rest = new Leaf<?, ?>[leaves.length - 1];
+			int count = 0;
+			for (Leaf<?, ?> leaf : leaves) {
+				if (!leaf.key.equals(key)) {
+					rest[count++] = leaf;
+				}
+			}
+			return new Collision(hash, rest);
+		}
+		Trie trie = (Trie) slot;
+		int bit = 1 << ((hash >>> shift) & MASK);
+		int index = Integer.bitCount(trie.bitmap & (bit - 1));
+		Object child = remove(trie.slots[index], key, hash, shift + BITS);
+		if (child != null) {
+			if (shift > 0 && trie.slots.length == 1 && !(child instanceof Trie)) {
+				return child;
+			}
+			Object[] slots = trie.slots.clone();
+			slots[index] = child;
+			return new Trie(trie.bitmap, slots);
+		}
+		if (shift > 0 && trie.slots.length == 1) {
+			return null;
+		}
+		Object[] slots = new Object[trie.slots.length - 1];
+		System.arraycopy(trie.slots, 0, slots, 0, index);
+		System.arraycopy(trie.slots, index + 1, slots, index, slots.length - index);
+		if (shift > 0 && slots.length == 1 && !(slots[0] instanceof Trie)) {
+			return slots[0];
+		}
+		return new Trie(trie.bitmap & ~bit, slots);
+	}
+
+	/*
+	 * Iterates over the leaves depth first. The levels above the one it reads are only kept once it goes down
+	 * one, which most maps of a few entries never need.
+	 */
+	private static final class Entries<K, V> implements Iterator<Map.Entry<K, V>> {
+
+		// up to 7 levels of tries, then a collision list
+		private static final int MAX_DEPTH = 8;
+
+		// the slots of the level being read, and the position of the next one to read
+		private Object[] slots;
+		private int position;
+		// the slots and positions of the levels above, null until needed
+		private Object[][] above;
+		private int[] abovePositions;
+		private int depth;
+		private Leaf<K, V> next;
+
+		private Entries(Trie root) {
+			this.slots = root.slots;
+			this.advance();
+		}
+
+		// finds the next leaf, or leaves this.next null if there is none
+		@SuppressWarnings("unchecked")
+		private void advance() {
+			this.next = null;
+			while (true) {
+				if (this.position == this.slots.length) {
+					if (this.depth == 0) {
+						return;
+					}
+					this.depth--;
+					this.slots = this.above[this.depth];
+					this.position = this.abovePositions[this.depth];
+					continue;
+				}
+				Object slot = this.slots[this.position++];
+				if (slot instanceof Leaf) {
+					this.next = (Leaf<K, V>) slot;
+					return;
+				}
+				if (this.above == null) {
+					this.above = new Object[MAX_DEPTH - 1][];
+					this.abovePositions = new int[MAX_DEPTH - 1];
+				}
+				this.above[this.depth] = this.slots;
+				this.abovePositions[this.depth++] = this.position;
+				this.slots = slot instanceof Trie ? ((Trie) slot).slots : ((Collision) slot).leaves;
+				this.position = 0;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+			if (this.next == null) {
+				throw new NoSuchElementException();
+			}
+			Leaf<K, V> next = this.next;
+			this.advance();
+			return next;
+		}
+	}
+}
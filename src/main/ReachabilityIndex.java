@@ -0,0 +1,1049 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * An index of which nodes of a ConcreteGraph can reach which, so that searches between nodes that are not
+ * connected fail right away instead of exploring everything reachable from their start, see
+ * MapGraph.setReachabilityIndex.
+ *
+ * The strongly connected components of the graph are found by Tarjan's algorithm, run without recursion so
+ * that long chains of nodes don't overflow the stack. Nodes of the same component reach each other. The graph
+ * of the components, their condensation, has no cycle, and each component is given an interval [low, high]
+ * in each of a few random depth first traversals of it (GRAIL, Yildirim et al.) : high is the rank of the
+ * component in the post order of the traversal, and low the smallest rank among the components it reaches.
+ * A component can only reach another if each of its intervals contains the other's, which rules out most
+ * impossible queries in constant time. The remaining ones are answered by a depth first search of the
+ * condensation that only enters components whose intervals contain those of the target.
+ *
+ * The index listens to the graph, and follows added nodes and edges without being rebuilt : an edge between
+ * two components either joins them in the condensation, widening the intervals of the components that now
+ * reach more, or closes a cycle, and the components along it are merged into one. Removals are only counted :
+ * an index that still has removed edges may find paths that are gone, never miss one that exists, and it is
+ * rebuilt on the common ForkJoinPool once removals add up to a sixteenth of the nodes, or by rebuild().
+ *
+ * Listeners are told about a mutation after it is published, so the index may not know yet about an edge a
+ * search would already see. It keeps track of the versions of the graph it was told about in full, and only
+ * answers that a node can't be reached at a version it knows, see canReach(from, to, version).
+ *
+ * A ReachabilityIndex is thread safe. Queries take no lock and allocate nothing : they read a labeling, a view
+ * of the condensation that never changes, which the writers publish again each time they were told about more
+ * versions. The condensation is kept in blocks of components, copied on write, so that publishing it copies
+ * nothing and a mutation only copies the blocks it changes. The index is built, and rebuilt, without holding
+ * the lock of the writers but to apply the mutations told meanwhile.
+ */
+public class ReachabilityIndex implements GraphListener<String, Double>, AutoCloseable {
+
+	// the number of random traversals each component gets an interval from
+	private static final int LABELINGS = 3;
+	// the number of components of a block, see Block
+	private static final int BLOCK_SHIFT = 8;
+	private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	private static final int[] EMPTY = new int[0];
+
+	private final ConcreteGraph<String, Double> graph;
+	private final Random random = new Random(42);
+
+	// guards the fields below but this.labeling, and what this.condensation holds
+	private final ReentrantLock lock = new ReentrantLock();
+	private Condensation condensation;
+	// the version of the graph this.condensation was built from
+	private long built;
+	// the latest version of the graph whose mutations, and those of all the versions before, were told
+	private long told;
+	// the versions after this.told whose mutations were told, ahead of some before them
+	private final TreeSet<Long> toldAhead = new TreeSet<Long>();
+	// the nodes and edges added while a new condensation is built, as {node} and {child, parent}, and the
+	// number of removals, or null if none is being built
+	private List<String[]> backlog;
+	private int backlogRemovals;
+	// held while a thread builds a new condensation
+	private final ReentrantLock buildLock = new ReentrantLock();
+	// set while a rebuild waits for, or runs on, the common ForkJoinPool
+	private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+	// what queries read : this.condensation as it was at some version
+	private volatile Labeling labeling;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the node N can reach the node M in this.graph if component(N) == component(M), or if there is a path from
+	 * component(N) to component(M) in the condensation, whose edges are the successors of each component, where
+	 * component(N) follows mergedInto from components.get(N) until it gets to a component that wasn't merged.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) the condensation has no cycle, and holds no merged component.
+	 * (2) C is among the successors of D iff D is among the predecessors of C, with no duplicates.
+	 * (3) for each edge from D to C of the condensation and each labeling l, lows[l][D] <= lows[l][C] and
+	 * highs[l][C] <= highs[l][D].
+	 * (4) if there is a path from N to M in this.graph at a version from this.built to this.told, then
+	 * component(N) can reach component(M) in this.condensation. The reverse holds too as long as removals is 0.
+	 * (5) every version in this.toldAhead is greater than this.told + 1.
+	 * (6) (4) holds for this.labeling at the versions from its built to its version, and its version is at
+	 * most this.told.
+	 * (7) no block held by a labeling is changed, and neither is the array of blocks it holds.
+	 */
+
+	/*
+	 * @param graph the graph to index
+	 * @spec.effects indexes graph, and follows its mutations until closed.
+	 */
+	public ReachabilityIndex(ConcreteGraph<String, Double> graph) {
+		this.graph = graph;
+		this.buildLock.lock();
+		try {
+			this.backlog = new ArrayList<String[]>();
+			// listening first : mutations told while the index is built are applied to it once it is
+			graph.addListener(this);
+			this.build();
+		} finally {
+			this.buildLock.unlock();
+		}
+	}
+
+	/*
+	 * @return the graph this index is about.
+	 */
+	public ConcreteGraph<String, Double> graph() {
+		return this.graph;
+	}
+
+	/*
+	 * @return the version of the graph this index was last built from : it knows about no edge removed before
+	 * it, and may still have those removed after, see rebuild().
+	 */
+	public long builtVersion() {
+		return this.labeling.built;
+	}
+
+	/*
+	 * @return the number of strongly connected components of the graph, as far as this index knows : more than
+	 * that once nodes or edges were removed, until it is rebuilt.
+	 */
+	public int componentCount() {
+		return this.labeling.componentCount;
+	}
+
+	/*
+	 * @return true if from and to are in the same strongly connected component of the graph, as far as this
+	 * index knows, see componentCount.
+	 */
+	public boolean sameComponent(String from, String to) {
+		Labeling labeling = this.labeling;
+		int fromComponent = labeling.component(from);
+		return fromComponent >= 0 && fromComponent == labeling.component(to);
+	}
+
+	/*
+	 * @return canReach(from, to, graph().version()).
+	 */
+	public boolean canReach(String from, String to) {
+		return this.canReach(from, to, this.graph.version());
+	}
+
+	/*
+	 * @param version a version of the graph
+	 * @return false if there is no path from from to to in the graph at version, or if one of them wasn't in
+	 * it. It returns true when the index can't tell, because it wasn't told about all the mutations up to
+	 * version yet or was rebuilt since, and it may return true for nodes that were connected by edges
+	 * removed since the index was last built.
+	 */
+	public boolean canReach(String from, String to, long version) {
+		Labeling labeling = this.labeling;
+		return !labeling.reflects(version) || labeling.canReach(from, to);
+	}
+
+	/*
+	 * @spec.effects builds a new condensation of the graph, without the nodes and edges removed since the last
+	 * one, and publishes it. Waits for the rebuild another thread may be running, and then runs its own.
+	 */
+	public void rebuild() {
+		this.buildLock.lock();
+		try {
+			this.lock.lock();
+			try {
+				this.backlog = new ArrayList<String[]>();
+				this.backlogRemovals = 0;
+			} finally {
+				this.lock.unlock();
+			}
+			this.build();
+		} finally {
+			this.buildLock.unlock();
+		}
+	}
+
+	/*
+	 * @spec.effects stops following the mutations of the graph.
+	 */
+	@Override
+	public void close() {
+		this.graph.removeListener(this);
+	}
+
+	@Override
+	public void nodeAdded(String node) {
+		this.lock.lock();
+		try {
+			if (this.condensation != null) {
+				this.condensation.nodeAdded(node);
+			}
+			if (this.backlog != null) {
+				this.backlog.add(new String[] {node});
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void nodeRemoved(String node) {
+		this.removed();
+	}
+
+	@Override
+	public void edgeAdded(String child, String parent, Double label) {
+		this.lock.lock();
+		try {
+			if (this.condensation != null) {
+				this.condensation.edgeAdded(child, parent);
+			}
+			if (this.backlog != null) {
+				this.backlog.add(new String[] {child, parent});
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public void edgeRemoved(String child, String parent, Double label) {
+		this.removed();
+	}
+
+	@Override
+	public void mutationPublished(long version) {
+		this.lock.lock();
+		try {
+			if (version <= this.told + 1) {
+				this.advanceTold(version);
+			} else {
+				this.toldAhead.add(version);
+			}
+			if (this.condensation != null && this.labeling.version < this.told) {
+				this.labeling = this.condensation.freeze(this.built, this.told);
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void removed() {
+		boolean outdated = false;
+		this.lock.lock();
+		try {
+			if (this.condensation != null) {
+				this.condensation.removals++;
+				outdated = this.condensation.outdated();
+			}
+			if (this.backlog != null) {
+				this.backlogRemovals++;
+			}
+		} finally {
+			this.lock.unlock();
+		}
+		if (outdated) {
+			this.scheduleRebuild();
+		}
+	}
+
+	/*
+	 * @spec.effects rebuilds the index on the common ForkJoinPool, unless a rebuild is scheduled already, and
+	 * again after it if the removals told while it ran are enough for the new condensation to be outdated.
+	 */
+	private void scheduleRebuild() {
+		if (!this.rebuildScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		ForkJoinPool.commonPool().execute(() -> {
+			try {
+				this.rebuild();
+			} finally {
+				this.rebuildScheduled.set(false);
+			}
+			boolean outdated;
+			this.lock.lock();
+			try {
+				outdated = this.condensation.outdated();
+			} finally {
+				this.lock.unlock();
+			}
+			if (outdated) {
+				this.scheduleRebuild();
+			}
+		});
+	}
+
+	/*
+	 * @spec.requires this.lock is held
+	 * @spec.effects makes this.told at least version, and moves it past the versions told ahead that follow.
+	 */
+	private void advanceTold(long version) {
+		this.told = Math.max(this.told, version);
+		while (!this.toldAhead.isEmpty() && this.toldAhead.first() <= this.told + 1) {
+			this.told = Math.max(this.told, this.toldAhead.pollFirst());
+		}
+	}
+
+	/*
+	 * @spec.requires this.buildLock is held by this thread, and this.backlog was started before
+	 * @spec.effects indexes the graph as it is now, applies the mutations told in the meantime, and publishes
+	 * the result in place of this.condensation.
+	 */
+	private void build() {
+		try {
+			CompiledGraph compiled;
+			long built;
+			try (GraphSnapshot<String, Double> pinned = this.graph.snapshot()) {
+				built = pinned.version();
+				compiled = CompiledGraph.compile(pinned, built);
+			}
+			Condensation condensation = new Condensation(compiled, this.random);
+			this.lock.lock();
+			try {
+				// some of them may be in compiled already, and applying them again changes nothing
+				for (String[] added : this.backlog) {
+					if (added.length == 1) {
+						condensation.nodeAdded(added[0]);
+					} else {
+						condensation.edgeAdded(added[0], added[1]);
+					}
+				}
+				condensation.removals = this.backlogRemovals;
+				this.condensation = condensation;
+				this.built = built;
+				this.advanceTold(built);
+				this.labeling = condensation.freeze(built, this.told);
+			} finally {
+				this.lock.unlock();
+			}
+		} finally {
+			this.lock.lock();
+			try {
+				this.backlog = null;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+	/*
+	 * @return the strongly connected component of each node of graph, numbered by Tarjan's algorithm : an edge
+	 * between two components always goes from the higher number to the lower.
+	 */
+	static int[] components(IndexedGraph graph) {
+		int nodeCount = graph.nodeCount();
+		int[] index = new int[nodeCount];
+		int[] low = new int[nodeCount];
+		int[] component = new int[nodeCount];
+		Arrays.fill(index, -1);
+		// the nodes not yet given a component, in the order they were reached
+		int[] stack = new int[nodeCount];
+		int stackSize = 0;
+		// the recursion of Tarjan's algorithm : the nodes being explored, and the edge each one is at
+		int[] path = new int[nodeCount];
+		int[] cursors = new int[nodeCount];
+		int pathSize = 0;
+		int nextIndex = 0;
+		int nextComponent = 0;
+
+		for (int root = 0; root < nodeCount; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			index[root] = low[root] = nextIndex++;
+			component[root] = -1;
+			stack[stackSize++] = root;
+			path[pathSize] = root;
+			cursors[pathSize++] = graph.firstOut(root);
+			while (pathSize > 0) {
+				int node = path[pathSize - 1];
+				int cursor = cursors[pathSize - 1];
+				if (cursor >= 0) {
+					cursors[pathSize - 1] = graph.nextOut(node, cursor);
+					int child = graph.outTarget(node, cursor);
+					if (index[child] < 0) {
+						index[child] = low[child] = nextIndex++;
+						component[child] = -1;
+						stack[stackSize++] = child;
+						path[pathSize] = child;
+						cursors[pathSize++] = graph.firstOut(child);
+					} else if (component[child] < 0) { // still on the stack
+						low[node] = Math.min(low[node], index[child]);
+					}
+					continue;
+				}
+				pathSize--;
+				if (low[node] == index[node]) {
+					int member;
+					do {
+						member = stack[--stackSize];
+						component[member] = nextComponent;
+					} while (member != node);
+					nextComponent++;
+				}
+				if (pathSize > 0) {
+					int parent = path[pathSize - 1];
+					low[parent] = Math.min(low[parent], low[node]);
+				}
+			}
+		}
+		return component;
+	}
+
+	/*
+	 * The intervals, successors and merges of BLOCK_SIZE consecutive components. A block never changes once a
+	 * labeling holds it : the condensation copies a block before its first change after each freeze.
+	 */
+	private static final class Block {
+
+		// the component each component was merged into, itself for those that weren't
+		private final int[] mergedInto;
+		// the components each component has an edge to in the condensation, none for those merged. The arrays
+		// are never changed in place, and shared between the copies of a block
+		private final int[][] successors;
+		// the interval of each component in each labeling, at labeling * BLOCK_SIZE + the offset of the
+		// component in the block
+		private final int[] lows;
+		private final int[] highs;
+
+		private Block() {
+			this.mergedInto = new int[BLOCK_SIZE];
+			this.successors = new int[BLOCK_SIZE][];
+			this.lows = new int[LABELINGS * BLOCK_SIZE];
+			this.highs = new int[LABELINGS * BLOCK_SIZE];
+		}
+
+		private Block(Block block) {
+			this.mergedInto = block.mergedInto.clone();
+			this.successors = block.successors.clone();
+			this.lows = block.lows.clone();
+			this.highs = block.highs.clone();
+		}
+	}
+
+	/*
+	 * The condensation of the graph, which the listeners update as it is mutated, see the abstraction
+	 * function above. What queries read of it is in blocks, copied on write : freezing it into a labeling
+	 * copies nothing, and the next changes copy the array of blocks and the blocks they change.
+	 */
+	private static final class Condensation {
+
+		private final Random random;
+		// the component each node was put in when it was indexed, see component. Entries are only ever added
+		// to it, so the labelings share it
+		private final ConcurrentHashMap<String, Integer> components;
+		// the blocks of the components, see Block
+		private Block[] blocks = new Block[0];
+		// the blocks, and the array of blocks, copied since the last freeze are those of this epoch
+		private int epoch = 1;
+		private int[] blockEpochs = new int[0];
+		private int blocksEpoch;
+		private int componentCount;
+		// the number of components that weren't merged
+		private int unmerged;
+		// the components each component has an edge from in the condensation, for those that weren't merged
+		private int[][] predecessors = new int[0][];
+		private int[] predecessorCounts = new int[0];
+		// the next rank of each labeling, for new components
+		private int nextRank;
+		// the stamp of the components visited by the current search of the condensation
+		private int[] visited = new int[0];
+		private int stamp;
+		// removed nodes and edges since the condensation was built
+		private int removals;
+
+		/*
+		 * @spec.effects the condensation of compiled : finds its components, links them, and labels them.
+		 */
+		private Condensation(CompiledGraph compiled, Random random) {
+			this.random = random;
+			int nodeCount = compiled.nodeCount();
+			int[] componentOf = components(compiled);
+			int count = 0;
+			for (int component : componentOf) {
+				count = Math.max(count, component + 1);
+			}
+			this.components = new ConcurrentHashMap<String, Integer>(2 * nodeCount);
+			for (int node = 0; node < nodeCount; node++) {
+				this.components.put(compiled.nodeName(node), componentOf[node]);
+			}
+			for (int component = 0; component < count; component++) {
+				this.newComponent();
+			}
+			// the successors are gathered first, and then set at their size
+			int[][] successors = new int[count][];
+			int[] successorCounts = new int[count];
+			for (int node = 0; node < nodeCount; node++) {
+				int from = componentOf[node];
+				for (int cursor = compiled.firstOut(node); cursor >= 0; cursor = compiled.nextOut(node, cursor)) {
+					int to = componentOf[compiled.outTarget(node, cursor)];
+					if (from != to && !contains(successors[from], successorCounts[from], to)) {
+						successors[from] = append(successors[from] == null ? new int[2] : successors[from], successorCounts[from]++, to);
+						this.predecessors[to] = append(this.predecessors[to], this.predecessorCounts[to]++, from);
+					}
+				}
+			}
+			for (int component = 0; component < count; component++) {
+				if (successorCounts[component] > 0) {
+					this.setSuccessors(component, Arrays.copyOf(successors[component], successorCounts[component]));
+				}
+			}
+			this.label();
+		}
+
+		private void nodeAdded(String node) {
+			if (!this.components.containsKey(node)) {
+				this.components.put(node, this.newComponent());
+			}
+		}
+
+		private void edgeAdded(String child, String parent) {
+			this.nodeAdded(parent);
+			this.nodeAdded(child);
+			int from = this.component(this.components.get(parent));
+			int to = this.component(this.components.get(child));
+			if (from == to) {
+				return;
+			}
+			if (this.reaches(to, from)) {
+				this.merge(this.cycle(to, from));
+			} else if (!contains(this.successors(from), this.successors(from).length, to)) {
+				this.link(from, to);
+				this.widenAncestors(from, to);
+			}
+		}
+
+		/*
+		 * @return true once removals add up to enough for the condensation to be built again.
+		 */
+		private boolean outdated() {
+			return this.removals > 16 + this.components.size() / 16;
+		}
+
+		/*
+		 * @return a labeling of this condensation as it is now, which reflects the versions of the graph from
+		 * built to version. Copies nothing : the changes that follow copy what they change.
+		 */
+		private Labeling freeze(long built, long version) {
+			this.epoch++;
+			return new Labeling(built, version, this.components, this.blocks, this.componentCount, this.unmerged);
+		}
+
+		private Block block(int component) {
+			return this.blocks[component >>> BLOCK_SHIFT];
+		}
+
+		// the block of component, copied first if a labeling may hold it
+		private Block writable(int component) {
+			int index = component >>> BLOCK_SHIFT;
+			if (this.blocksEpoch != this.epoch) {
+				this.blocks = this.blocks.clone();
+				this.blocksEpoch = this.epoch;
+			}
+			if (this.blockEpochs[index] != this.epoch) {
+				this.blocks[index] = new Block(this.blocks[index]);
+				this.blockEpochs[index] = this.epoch;
+			}
+			return this.blocks[index];
+		}
+
+		private int mergedInto(int component) {
+			return this.block(component).mergedInto[component & BLOCK_MASK];
+		}
+
+		private int[] successors(int component) {
+			return this.block(component).successors[component & BLOCK_MASK];
+		}
+
+		private void setSuccessors(int component, int[] successors) {
+			this.writable(component).successors[component & BLOCK_MASK] = successors;
+		}
+
+		private int low(int labeling, int component) {
+			return this.block(component).lows[labeling << BLOCK_SHIFT | component & BLOCK_MASK];
+		}
+
+		private int high(int labeling, int component) {
+			return this.block(component).highs[labeling << BLOCK_SHIFT | component & BLOCK_MASK];
+		}
+
+		private void setInterval(int labeling, int component, int low, int high) {
+			Block block = this.writable(component);
+			block.lows[labeling << BLOCK_SHIFT | component & BLOCK_MASK] = low;
+			block.highs[labeling << BLOCK_SHIFT | component & BLOCK_MASK] = high;
+		}
+
+		/*
+		 * @spec.effects gives every component its interval in each labeling, from random depth first traversals
+		 * of the condensation. Only called before the condensation is first frozen : it shuffles the successors
+		 * in place.
+		 */
+		private void label() {
+			int[] order = new int[this.componentCount];
+			int[] stack = new int[this.componentCount];
+			int[] next = new int[this.componentCount];
+			for (int labeling = 0; labeling < LABELINGS; labeling++) {
+				for (int component = 0; component < this.componentCount; component++) {
+					order[component] = component;
+					shuffle(this.successors(component), this.successors(component).length, this.random);
+				}
+				shuffle(order, order.length, this.random);
+				this.stamp++;
+				int rank = 0;
+				for (int root : order) {
+					if (this.visited[root] == this.stamp) {
+						continue;
+					}
+					this.visited[root] = this.stamp;
+					int depth = 0;
+					stack[depth] = root;
+					next[depth++] = 0;
+					while (depth > 0) {
+						int component = stack[depth - 1];
+						int[] successors = this.successors(component);
+						if (next[depth - 1] < successors.length) {
+							int successor = successors[next[depth - 1]++];
+							if (this.visited[successor] != this.stamp) {
+								this.visited[successor] = this.stamp;
+								stack[depth] = successor;
+								next[depth++] = 0;
+							}
+							continue;
+						}
+						depth--;
+						int high = rank++;
+						int low = high;
+						for (int successor : successors) {
+							low = Math.min(low, this.low(labeling, successor));
+						}
+						this.setInterval(labeling, component, low, high);
+					}
+				}
+				this.nextRank = Math.max(this.nextRank, rank);
+			}
+		}
+
+		// the component that component was merged into, following merges
+		private int component(int component) {
+			while (this.mergedInto(component) != component) {
+				int grandparent = this.mergedInto(this.mergedInto(component));
+				this.writable(component).mergedInto[component & BLOCK_MASK] = grandparent;
+				component = grandparent;
+			}
+			return component;
+		}
+
+		// whether each interval of outer contains the one of inner in the same labeling
+		private boolean encloses(int outer, int inner) {
+			for (int labeling = 0; labeling < LABELINGS; labeling++) {
+				if (this.low(labeling, outer) > this.low(labeling, inner) || this.high(labeling, inner) > this.high(labeling, outer)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/*
+		 * @return true if there is a path from the component from to the component to in the condensation.
+		 */
+		private boolean reaches(int from, int to) {
+			if (from == to) {
+				return true;
+			}
+			if (!this.encloses(from, to)) {
+				return false;
+			}
+			this.stamp++;
+			int[] stack = new int[16];
+			int size = 0;
+			stack[size++] = from;
+			this.visited[from] = this.stamp;
+			while (size > 0) {
+				int component = stack[--size];
+				for (int successor : this.successors(component)) {
+					if (successor == to) {
+						return true;
+					}
+					if (this.visited[successor] != this.stamp && this.encloses(successor, to)) {
+						this.visited[successor] = this.stamp;
+						stack = append(stack, size++, successor);
+					}
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * @spec.requires from reaches to, and they are different components
+		 * @return the components on the paths from from to to, both included.
+		 */
+		private int[] cycle(int from, int to) {
+			// the components reached from from that may reach to, marked with a first stamp
+			this.stamp++;
+			int reachable = this.stamp;
+			int[] stack = new int[16];
+			int size = 0;
+			stack[size++] = from;
+			this.visited[from] = reachable;
+			while (size > 0) {
+				int component = stack[--size];
+				for (int successor : this.successors(component)) {
+					if (this.visited[successor] != reachable && this.encloses(successor, to)) {
+						this.visited[successor] = reachable;
+						stack = append(stack, size++, successor);
+					}
+				}
+			}
+			// among them, those that reach to, marked with a second stamp
+			this.stamp++;
+			int[] members = new int[16];
+			int memberCount = 0;
+			stack[size++] = to;
+			this.visited[to] = this.stamp;
+			while (size > 0) {
+				int component = stack[--size];
+				members = append(members, memberCount++, component);
+				for (int i = 0; i < this.predecessorCounts[component]; i++) {
+					int predecessor = this.predecessors[component][i];
+					if (this.visited[predecessor] == reachable) {
+						this.visited[predecessor] = this.stamp;
+						stack = append(stack, size++, predecessor);
+					}
+				}
+			}
+			return Arrays.copyOf(members, memberCount);
+		}
+
+		/*
+		 * @spec.effects merges members into the first of them, which takes over their edges and the hull of their
+		 * intervals, and widens the intervals of the components that reach it.
+		 */
+		private void merge(int[] members) {
+			int merged = members[0];
+			for (int member : members) {
+				this.writable(member).mergedInto[member & BLOCK_MASK] = merged;
+			}
+			this.unmerged -= members.length - 1;
+			int[] outside = new int[16];
+			int outsideCount = 0;
+			for (int member : members) {
+				for (int successor : this.successors(member)) {
+					this.unlinkPredecessor(successor, member);
+					if (this.mergedInto(successor) != merged) {
+						outside = append(outside, outsideCount++, successor);
+					}
+				}
+				this.setSuccessors(member, EMPTY);
+			}
+			for (int i = 0; i < outsideCount; i++) {
+				if (!contains(this.successors(merged), this.successors(merged).length, outside[i])) {
+					this.link(merged, outside[i]);
+				}
+			}
+			outsideCount = 0;
+			for (int member : members) {
+				for (int i = 0; i < this.predecessorCounts[member]; i++) {
+					int predecessor = this.predecessors[member][i];
+					this.unlinkSuccessor(predecessor, member);
+					if (this.mergedInto(predecessor) != merged) {
+						outside = append(outside, outsideCount++, predecessor);
+					}
+				}
+				this.predecessorCounts[member] = 0;
+			}
+			for (int i = 0; i < outsideCount; i++) {
+				if (!contains(this.successors(outside[i]), this.successors(outside[i]).length, merged)) {
+					this.link(outside[i], merged);
+				}
+			}
+			for (int labeling = 0; labeling < LABELINGS; labeling++) {
+				int low = this.low(labeling, merged);
+				int high = this.high(labeling, merged);
+				for (int member : members) {
+					low = Math.min(low, this.low(labeling, member));
+					high = Math.max(high, this.high(labeling, member));
+				}
+				this.setInterval(labeling, merged, low, high);
+			}
+			for (int i = 0; i < this.predecessorCounts[merged]; i++) {
+				this.widenAncestors(this.predecessors[merged][i], merged);
+			}
+		}
+
+		/*
+		 * @spec.effects widens the intervals of from and of the components that reach it, until they contain those
+		 * of to.
+		 */
+		private void widenAncestors(int from, int to) {
+			int[] stack = new int[16];
+			int size = 0;
+			stack[size++] = from;
+			while (size > 0) {
+				int component = stack[--size];
+				if (this.encloses(component, to)) {
+					continue; // and so do the components that reach it
+				}
+				for (int labeling = 0; labeling < LABELINGS; labeling++) {
+					this.setInterval(labeling, component, Math.min(this.low(labeling, component), this.low(labeling, to)),
+							Math.max(this.high(labeling, component), this.high(labeling, to)));
+				}
+				for (int i = 0; i < this.predecessorCounts[component]; i++) {
+					stack = append(stack, size++, this.predecessors[component][i]);
+				}
+			}
+		}
+
+		// a component of its own, whose interval in each labeling is a new rank
+		private int newComponent() {
+			int component = this.componentCount++;
+			this.unmerged++;
+			if (component == this.predecessors.length) {
+				int length = Math.max(16, 2 * component);
+				this.predecessors = Arrays.copyOf(this.predecessors, length);
+				this.predecessorCounts = Arrays.copyOf(this.predecessorCounts, length);
+				this.visited = Arrays.copyOf(this.visited, length);
+			}
+			int index = component >>> BLOCK_SHIFT;
+			if (index == this.blocks.length) {
+				// a new block, which no labeling holds yet
+				this.blocks = Arrays.copyOf(this.blocks, index + 1);
+				this.blocksEpoch = this.epoch;
+				this.blocks[index] = new Block();
+				this.blockEpochs = Arrays.copyOf(this.blockEpochs, index + 1);
+				this.blockEpochs[index] = this.epoch;
+			}
+			this.writable(component).mergedInto[component & BLOCK_MASK] = component;
+			this.setSuccessors(component, EMPTY);
+			this.predecessors[component] = new int[2];
+			int rank = this.nextRank++;
+			for (int labeling = 0; labeling < LABELINGS; labeling++) {
+				this.setInterval(labeling, component, rank, rank);
+			}
+			return component;
+		}
+
+		private void link(int from, int to) {
+			int[] successors = this.successors(from);
+			successors = Arrays.copyOf(successors, successors.length + 1);
+			successors[successors.length - 1] = to;
+			this.setSuccessors(from, successors);
+			this.predecessors[to] = append(this.predecessors[to], this.predecessorCounts[to]++, from);
+		}
+
+		// removes member from the successors of component
+		private void unlinkSuccessor(int component, int member) {
+			int[] successors = this.successors(component);
+			for (int i = 0; i < successors.length; i++) {
+				if (successors[i] == member) {
+					int[] unlinked = Arrays.copyOf(successors, successors.length - 1);
+					if (i < unlinked.length) {
+						unlinked[i] = successors[successors.length - 1];
+					}
+					this.setSuccessors(component, unlinked);
+					return;
+				}
+			}
+		}
+
+		// removes member from the predecessors of component
+		private void unlinkPredecessor(int component, int member) {
+			int[] items = this.predecessors[component];
+			int count = this.predecessorCounts[component];
+			for (int i = 0; i < count; i++) {
+				if (items[i] == member) {
+					items[i] = items[--count];
+					break;
+				}
+			}
+			this.predecessorCounts[component] = count;
+		}
+	}
+
+	/*
+	 * A condensation frozen as it was at some version, which queries read without any lock : the blocks of
+	 * the condensation as they were then, which never change.
+	 */
+	private static final class Labeling {
+
+		// the versions of the graph this labeling reflects, see reflects
+		private final long built;
+		private final long version;
+		// shared with the condensation, which may have added nodes to it since : those with a component this
+		// labeling doesn't have were added after version
+		private final Map<String, Integer> components;
+		private final Block[] blocks;
+		// the number of components, merged or not
+		private final int count;
+		// the number of components that weren't merged
+		private final int componentCount;
+
+		private Labeling(long built, long version, Map<String, Integer> components, Block[] blocks, int count, int componentCount) {
+			this.built = built;
+			this.version = version;
+			this.components = components;
+			this.blocks = blocks;
+			this.count = count;
+			this.componentCount = componentCount;
+		}
+
+		/*
+		 * @return true if each path of the graph at version is in this labeling : version is neither before
+		 * the one it was built from, whose removed edges it may lack, nor after the mutations it was told of.
+		 */
+		private boolean reflects(long version) {
+			return this.built <= version && version <= this.version;
+		}
+
+		/*
+		 * @return the component of node, or -1 if it wasn't indexed when this labeling was made.
+		 */
+		private int component(String node) {
+			Integer component = this.components.get(node);
+			if (component == null || component >= this.count) {
+				return -1;
+			}
+			int merged = component;
+			for (int next = this.mergedInto(merged); next != merged; next = this.mergedInto(merged)) {
+				merged = next;
+			}
+			return merged;
+		}
+
+		private int mergedInto(int component) {
+			return this.blocks[component >>> BLOCK_SHIFT].mergedInto[component & BLOCK_MASK];
+		}
+
+		private boolean canReach(String from, String to) {
+			int fromComponent = this.component(from);
+			int toComponent = this.component(to);
+			return fromComponent >= 0 && toComponent >= 0 && this.reaches(fromComponent, toComponent);
+		}
+
+		// whether each interval of outer contains the one of inner in the same labeling
+		private boolean encloses(int outer, int inner) {
+			Block outerBlock = this.blocks[outer >>> BLOCK_SHIFT];
+			Block innerBlock = this.blocks[inner >>> BLOCK_SHIFT];
+			for (int labeling = 0; labeling < LABELINGS; labeling++) {
+				int outerIndex = labeling << BLOCK_SHIFT | outer & BLOCK_MASK;
+				int innerIndex = labeling << BLOCK_SHIFT | inner & BLOCK_MASK;
+				if (outerBlock.lows[outerIndex] > innerBlock.lows[innerIndex] || innerBlock.highs[innerIndex] > outerBlock.highs[outerIndex]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/*
+		 * @return true if there is a path from the component from to the component to. Allocates nothing once
+		 * the scratch of the calling thread is large enough for the condensation.
+		 */
+		private boolean reaches(int from, int to) {
+			if (from == to) {
+				return true;
+			}
+			if (!this.encloses(from, to)) {
+				return false;
+			}
+			Scratch scratch = Scratch.begin(this.count);
+			int[] visited = scratch.visited;
+			int stamp = scratch.stamp;
+			int size = 0;
+			scratch.stack[size++] = from;
+			visited[from] = stamp;
+			while (size > 0) {
+				int component = scratch.stack[--size];
+				for (int successor : this.blocks[component >>> BLOCK_SHIFT].successors[component & BLOCK_MASK]) {
+					if (successor == to) {
+						return true;
+					}
+					if (visited[successor] != stamp && this.encloses(successor, to)) {
+						visited[successor] = stamp;
+						// each component is pushed once at most
+						scratch.stack[size++] = successor;
+					}
+				}
+			}
+			return false;
+		}
+	}
+
+	/*
+	 * The working memory of the searches of the condensation a thread runs for its queries, reused by all of
+	 * them, see SearchScratch : components are stamped with the search that visited them.
+	 */
+	private static final class Scratch {
+
+		private static final ThreadLocal<Scratch> CURRENT = ThreadLocal.withInitial(Scratch::new);
+
+		private int[] visited = new int[0];
+		private int[] stack = new int[0];
+		private int stamp;
+
+		/*
+		 * @return the scratch of the calling thread, with room for count components and a new stamp.
+		 */
+		private static Scratch begin(int count) {
+			Scratch scratch = CURRENT.get();
+			if (count > scratch.visited.length) {
+				int length = Math.max(count, scratch.visited.length * 3 / 2);
+				scratch.visited = new int[length];
+				scratch.stack = new int[length];
+				scratch.stamp = 0;
+			}
+			if (++scratch.stamp == 0) { // wrapped around : older stamps would read as visited
+				Arrays.fill(scratch.visited, 0);
+				scratch.stamp = 1;
+			}
+			return scratch;
+		}
+	}
+
+	// items with item at index, grown if needed
+	private static int[] append(int[] items, int index, int item) {
+		if (index == items.length) {
+			items = Arrays.copyOf(items, Math.max(2, 2 * index));
+		}
+		items[index] = item;
+		return items;
+	}
+
+	private static boolean contains(int[] items, int count, int item) {
+		for (int i = 0; i < count; i++) {
+			if (items[i] == item) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void shuffle(int[] items, int count, Random random) {
+		for (int i = count - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int item = items[i];
+			items[i] = items[j];
+			items[j] = item;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import main.MapGraph.MapEdge;
+import main.MapGraph.MapPath;
+
+/*
+ * The nodes of an IndexedGraph that can be reached from a source within a distance budget, the service area
+ * or isochrone of the source, with their distances and the tree of shortest paths leading to them.
+ *
+ * It takes a single Dijkstra that stops as soon as the closest queued node is further than the budget. The
+ * search runs in the SearchScratch of the calling thread, whose arrays are not cleared between searches, so
+ * its cost depends on the size of the region and not on the size of the graph.
+ *
+ * A ReachableRegion never changes once computed, and can be shared between threads.
+ */
+public final class ReachableRegion {
+
+	private final String source;
+	private final double budget;
+	// the nodes of the region, the source first, closest first
+	private final LinkedHashMap<String, Double> distances;
+	// the last edge of the shortest path to each node of the region but the source
+	private final HashMap<String, MapEdge> lastEdges;
+
+	/*
+	 * Abstraction function
+	 *
+	 * the region reached from this.source within this.budget is the key set of this.distances, which maps each
+	 * node to its distance from this.source. The shortest path to a node ends with this.lastEdges.get(node),
+	 * preceded by the shortest path to the start of that edge, up to this.source.
+	 *
+	 * Representation invariant :
+	 *
+	 * (1) this.distances holds this.source, at distance 0, and all its values are at most this.budget.
+	 * (2) this.lastEdges has the same keys as this.distances but this.source, and the start of every edge in
+	 * it is a key of this.distances.
+	 */
+
+	private ReachableRegion(String source, double budget, LinkedHashMap<String, Double> distances, HashMap<String, MapEdge> lastEdges) {
+		this.source = source;
+		this.budget = budget;
+		this.distances = distances;
+		this.lastEdges = lastEdges;
+	}
+
+	/*
+	 * @param graph the graph to search
+	 * @param source the name of a node of graph
+	 * @param budget the largest distance from source of the nodes wanted
+	 * @return the nodes reached from source within budget, with the shortest paths leading to them.
+	 * @throws IllegalArgumentException if source is not a node of graph, or budget is negative or NaN.
+	 */
+	public static ReachableRegion compute(IndexedGraph graph, String source, double budget) {
+		int sourceId = sourceId(graph, source, budget);
+		SearchScratch scratch = SearchScratch.current();
+		int[] region = search(graph, sourceId, budget, scratch);
+		LinkedHashMap<String, Double> distances = new LinkedHashMap<String, Double>();
+		HashMap<String, MapEdge> lastEdges = new HashMap<String, MapEdge>();
+		for (int node : region) {
+			String name = graph.nodeName(node);
+			distances.put(name, scratch.distance(node));
+			int predecessor = scratch.predecessor(node);
+			if (predecessor >= 0) {
+				lastEdges.put(name, new MapEdge(graph.nodeName(predecessor), name, graph.outWeight(predecessor, scratch.predecessorCursor(node))));
+			}
+		}
+		return new ReachableRegion(source, budget, distances, lastEdges);
+	}
+
+	/*
+	 * @return the distance from source of every node reached within budget, closest first.
+	 * @throws IllegalArgumentException if source is not a node of graph, or budget is negative or NaN.
+	 */
+	static Map<String, Double> distances(IndexedGraph graph, String source, double budget) {
+		return distances(graph, sourceId(graph, source, budget), budget);
+	}
+
+	/*
+	 * @return distances(graph, sources.get(i), budget) at index i, the searches running on pool.
+	 * @throws IllegalArgumentException if one of the sources is not a node of graph, or budget is negative or NaN.
+	 */
+	static List<Map<String, Double>> distances(IndexedGraph graph, List<String> sources, double budget, ForkJoinPool pool) {
+		int[] sourceIds = new int[sources.size()];
+		for (int i = 0; i < sourceIds.length; i++) {
+			sourceIds[i] = sourceId(graph, sources.get(i), budget);
+		}
+		return pool.submit(() -> IntStream.range(0, sourceIds.length).parallel()
+			.mapToObj(i -> distances(graph, sourceIds[i], budget))
+			.collect(Collectors.toList())
+		).join();
+	}
+
+	private static Map<String, Double> distances(IndexedGraph graph, int source, double budget) {
+		SearchScratch scratch = SearchScratch.current();
+		int[] region = search(graph, source, budget, scratch);
+		LinkedHashMap<String, Double> distances = new LinkedHashMap<String, Double>();
+		for (int node : region) {
+			distances.put(graph.nodeName(node), scratch.distance(node));
+		}
+		return distances;
+	}
+
+	private static int sourceId(IndexedGraph graph, String source, double budget) {
+		if (!(budget >= 0)) {
+			throw new IllegalArgumentException("the budget should be a non negative number, not " + budget);
+		}
+		int id = graph.nodeId(source);
+		if (id < 0) {
+			throw new IllegalArgumentException("the node " + source + " does not belong to the graph");
+		}
+		return id;
+	}
+
+	/*
+	 * @spec.effects runs Dijkstra from source in scratch until the closest queued node is further than budget.
+	 * @return the nodes settled, closest first : the source, and every node at most budget away from it.
+	 */
+	private static int[] search(IndexedGraph graph, int source, double budget, SearchScratch scratch) {
+		scratch.begin(graph.nodeCount());
+		scratch.reach(source, 0., -1, -1);
+		scratch.queue.insertOrDecrease(source, 0.);
+		int[] region = new int[16];
+		int size = 0;
+		while (!scratch.queue.isEmpty() && scratch.queue.minKey() <= budget) {
+			int node = scratch.queue.pollMin();
+			scratch.settle(node);
+			if (size == region.length) {
+				region = Arrays.copyOf(region, 2 * size);
+			}
+			region[size++] = node;
+			double distance = scratch.distance(node);
+			for (int cursor = graph.firstOut(node); cursor >= 0; cursor = graph.nextOut(node, cursor)) {
+				scratch.relaxedCount++;
+				int child = graph.outTarget(node, cursor);
+				double childDistance = distance + graph.outWeight(node, cursor);
+				if (childDistance <= budget && !scratch.isSettled(child) && childDistance < scratch.distance(child)) {
+					scratch.reach(child, childDistance, node, cursor);
+					scratch.queue.insertOrDecrease(child, childDistance);
+				}
+			}
+		}
+		SearchStats.record(scratch);
+		return Arrays.copyOf(region, size);
+	}
+
+	/*
+	 * @return the node the region was searched from.
+	 */
+	public String source() {
+		return this.source;
+	}
+
+	/*
+	 * @return the largest distance from the source of the nodes of the region.
+	 */
+	public double budget() {
+		return this.budget;
+	}
+
+	/*
+	 * @return the number of nodes of the region, the source included.
+	 */
+	public int size() {
+		return this.distances.size();
+	}
+
+	/*
+	 * @return true if node was reached within the budget.
+	 */
+	public boolean contains(String node) {
+		return this.distances.containsKey(node);
+	}
+
+	/*
+	 * @return the distance from the source of every node of the region, closest first. It can't be modified.
+	 */
+	public Map<String, Double> distances() {
+		return Collections.unmodifiableMap(this.distances);
+	}
+
+	/*
+	 * @return the distance of node from the source, or infinity if it is not in the region.
+	 */
+	public double distance(String node) {
+		return this.distances.getOrDefault(node, Double.POSITIVE_INFINITY);
+	}
+
+	/*
+	 * @return the node before node on its shortest path from the source, or null if node is the source or is
+	 * not in the region.
+	 */
+	public String predecessor(String node) {
+		MapEdge edge = this.lastEdges.get(node);
+		return edge == null ? null : edge.getStart();
+	}
+
+	/*
+	 * @return the shortest path from the source to node, empty if node is the source or is not in the region.
+	 */
+	public MapPath path(String node) {
+		int length = 0;
+		for (MapEdge edge = this.lastEdges.get(node); edge != null; edge = this.lastEdges.get(edge.getStart())) {
+			length++;
+		}
+		MapEdge[] edges = new MapEdge[length];
+		for (MapEdge edge = this.lastEdges.get(node); edge != null; edge = this.lastEdges.get(edge.getStart())) {
+			edges[--length] = edge;
+		}
+		MapPath path = new MapPath();
+		for (MapEdge edge : edges) {
+			path = path.extend(edge);
+		}
+		return path;
+	}
+}
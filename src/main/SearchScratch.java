@@ -0,0 +1,118 @@
+package main;
+
+import java.util.Arrays;
+
+/*
+ * The working memory of one shortest path search over an IndexedGraph : tentative distances, predecessors,
+ * settled flags and the queue. A SearchScratch belongs to one thread and is reused by all the searches that
+ * thread runs, so a search allocates nothing once the arrays are large enough for the graph.
+ *
+ * Rather than clearing the arrays between searches, every entry is stamped with the search it was written
+ * by; an entry written by an older search reads as unreached.
+ */
+final class SearchScratch {
+
+	private static final ThreadLocal<SearchScratch> CURRENT = ThreadLocal.withInitial(SearchScratch::new);
+	private static final ThreadLocal<SearchScratch> BACKWARD = ThreadLocal.withInitial(SearchScratch::new);
+
+	private double[] distances = new double[0];
+	private int[] predecessors = new int[0];
+	private int[] predecessorCursors = new int[0];
+	private int[] reachedStamps = new int[0];
+	private int[] settledStamps = new int[0];
+	private int[] pathBuffer = new int[16];
+	private int stamp;
+	
+	// counted for SearchStats
+	int settledCount;
+	int relaxedCount;
+
+	final IndexedMinHeap queue = new IndexedMinHeap(0);
+
+	/*
+	 * @return the scratch of the calling thread.
+	 */
+	static SearchScratch current() {
+		return CURRENT.get();
+	}
+
+	/*
+	 * @return a second scratch of the calling thread, for the backward half of bidirectional searches.
+	 */
+	static SearchScratch backward() {
+		return BACKWARD.get();
+	}
+
+	/*
+	 * @spec.effects forgets everything about the previous search, and makes room for nodeCount nodes.
+	 */
+	void begin(int nodeCount) {
+		if (nodeCount > this.reachedStamps.length) {
+			int length = Math.max(nodeCount, this.reachedStamps.length * 3 / 2);
+			this.distances = new double[length];
+			this.predecessors = new int[length];
+			this.predecessorCursors = new int[length];
+			this.reachedStamps = new int[length];
+			this.settledStamps = new int[length];
+			this.queue.ensureCapacity(length);
+		}
+		this.queue.clear();
+		this.settledCount = 0;
+		this.relaxedCount = 0;
+		this.stamp++;
+		if (this.stamp == 0) { // wrapped around, old stamps could be mistaken for current ones
+			Arrays.fill(this.reachedStamps, 0);
+			Arrays.fill(this.settledStamps, 0);
+			this.stamp = 1;
+		}
+	}
+
+	/*
+	 * @return the tentative distance of node in the current search, or infinity if it hasn't been reached.
+	 */
+	double distance(int node) {
+		return this.reachedStamps[node] == this.stamp ? this.distances[node] : Double.POSITIVE_INFINITY;
+	}
+
+	boolean isReached(int node) {
+		return this.reachedStamps[node] == this.stamp;
+	}
+
+	/*
+	 * @spec.effects records that node is reached at distance from predecessor, through the edge under cursor.
+	 * predecessor is -1 for the source of the search.
+	 */
+	void reach(int node, double distance, int predecessor, int cursor) {
+		this.reachedStamps[node] = this.stamp;
+		this.distances[node] = distance;
+		this.predecessors[node] = predecessor;
+		this.predecessorCursors[node] = cursor;
+	}
+
+	int predecessor(int node) {
+		return this.predecessors[node];
+	}
+
+	int predecessorCursor(int node) {
+		return this.predecessorCursors[node];
+	}
+
+	boolean isSettled(int node) {
+		return this.settledStamps[node] == this.stamp;
+	}
+
+	void settle(int node) {
+		this.settledStamps[node] = this.stamp;
+		this.settledCount++;
+	}
+
+	/*
+	 * @return a buffer of at least length ints, owned by this scratch.
+	 */
+	int[] pathBuffer(int length) {
+		if (length > this.pathBuffer.length) {
+			this.pathBuffer = new int[Math.max(length, this.pathBuffer.length * 2)];
+		}
+		return this.pathBuffer;
+	}
+}
@@ -0,0 +1,115 @@
+package main;
+
+/*
+ * What the last shortest path search run by a thread did : how many nodes it settled, how many edges 
+ * it relaxed, and how hard it worked its queue. A bidirectional search reports the sum of both of its 
+ * directions. 
+ */
+public final class SearchStats {
+
+	private static final ThreadLocal<SearchStats> LAST = ThreadLocal.withInitial(SearchStats::new);
+
+	private long settledNodes;
+	private long relaxedEdges;
+	private long heapPushes;
+	private long heapPops;
+	private long peakQueueSize;
+
+	private SearchStats() {
+	}
+
+	SearchStats(long settledNodes, long relaxedEdges) {
+		this.settledNodes = settledNodes;
+		this.relaxedEdges = relaxedEdges;
+	}
+
+	private SearchStats(SearchStats other) {
+		this.settledNodes = other.settledNodes;
+		this.relaxedEdges = other.relaxedEdges;
+		this.heapPushes = other.heapPushes;
+		this.heapPops = other.heapPops;
+		this.peakQueueSize = other.peakQueueSize;
+	}
+
+	/*
+	 * @return a copy of the statistics of the last search run by the calling thread.
+	 */
+	static SearchStats last() {
+		return new SearchStats(LAST.get());
+	}
+
+	/*
+	 * @return the statistics of the last search run by the calling thread, which the next search overwrites.
+	 */
+	static SearchStats current() {
+		return LAST.get();
+	}
+
+	/*
+	 * @spec.effects records the statistics of the search that just ended in scratch on the calling thread.
+	 */
+	static void record(SearchScratch scratch) {
+		SearchStats stats = LAST.get();
+		stats.settledNodes = scratch.settledCount;
+		stats.relaxedEdges = scratch.relaxedCount;
+		stats.heapPushes = scratch.queue.pushes;
+		stats.heapPops = scratch.queue.pops;
+		stats.peakQueueSize = scratch.queue.peakSize;
+	}
+
+	/*
+	 * @spec.effects records the statistics of the bidirectional search that just ended in forward and 
+	 * backward on the calling thread.
+	 */
+	static void record(SearchScratch forward, SearchScratch backward) {
+		SearchStats stats = LAST.get();
+		stats.settledNodes = forward.settledCount + backward.settledCount;
+		stats.relaxedEdges = forward.relaxedCount + backward.relaxedCount;
+		stats.heapPushes = forward.queue.pushes + backward.queue.pushes;
+		stats.heapPops = forward.queue.pops + backward.queue.pops;
+		stats.peakQueueSize = forward.queue.peakSize + backward.queue.peakSize;
+	}
+
+	/*
+	 * @return the number of nodes whose distance was settled by the search.
+	 */
+	public long settledNodes() {
+		return this.settledNodes;
+	}
+
+	/*
+	 * @return the number of edges the search looked at.
+	 */
+	public long relaxedEdges() {
+		return this.relaxedEdges;
+	}
+
+	/*
+	 * @return the number of nodes the search put in its queue.
+	 */
+	public long heapPushes() {
+		return this.heapPushes;
+	}
+
+	/*
+	 * @return the number of nodes the search took out of its queue.
+	 */
+	public long heapPops() {
+		return this.heapPops;
+	}
+
+	/*
+	 * @return the largest number of nodes the queue held at once, the sum of both queues for a bidirectional 
+	 * search.
+	 */
+	public long peakQueueSize() {
+		return this.peakQueueSize;
+	}
+
+	@Override
+	public String toString() {
+		return "settled nodes : " + this.settledNodes + ", relaxed edges : " + this.relaxedEdges 
+				+ ", heap pushes : " + this.heapPushes + ", heap pops : " + this.heapPops 
+				+ ", peak queue size : " + this.peakQueueSize;
+	}
+}
@@ -0,0 +1,62 @@
+package main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * The JDK Flight Recorder event of one MapGraph.shortestPath(startPoint, endPoint) query : its duration, its
+ * two ends, whether it was answered by the path cache, and what the search did, see SearchStats.
+ *
+ * Recorded by e.g. java -XX:StartFlightRecording:filename=queries.jfr ..., and shown under shiny-graph in
+ * JDK Mission Control or by jfr print --events shinygraph.ShortestPath queries.jfr. When no recording asks
+ * for it, the event is never committed and costs a few field writes per query.
+ */
+@Name("shinygraph.ShortestPath")
+@Label("Shortest Path")
+@Category("shiny-graph")
+@Description("A shortest path query of a MapGraph")
+final class ShortestPathEvent extends Event {
+
+	@Label("Start")
+	String startPoint;
+
+	@Label("End")
+	String endPoint;
+
+	@Label("Cache Hit")
+	@Description("Answered by the path cache, without a search")
+	boolean cacheHit;
+
+	@Label("Found")
+	@Description("A path from start to end exists")
+	boolean found;
+
+	@Label("Settled Nodes")
+	long settledNodes;
+
+	@Label("Relaxed Edges")
+	long relaxedEdges;
+
+	@Label("Heap Pushes")
+	long heapPushes;
+
+	@Label("Heap Pops")
+	long heapPops;
+
+	@Label("Peak Queue Size")
+	long peakQueueSize;
+
+	/*
+	 * @spec.effects copies stats into this event.
+	 */
+	void setStats(SearchStats stats) {
+		this.settledNodes = stats.settledNodes();
+		this.relaxedEdges = stats.relaxedEdges();
+		this.heapPushes = stats.heapPushes();
+		this.heapPops = stats.heapPops();
+		this.peakQueueSize = stats.peakQueueSize();
+	}
+}
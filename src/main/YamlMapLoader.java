@@ -0,0 +1,165 @@
+package main;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.regex.Pattern;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+/*
+ * Reads the YAML description of a map into a MapGraph, one parser event at a time : nodes, edges and
+ * coordinates go into the graph as soon as they are read, and neither the document nor the set of nodes is
+ * ever copied. Memory use is the graph itself plus the fixed size buffer of the parser.
+ *
+ * The document is a mapping from each node to the mapping of its children to the distances of the edges,
+ * where the entry of a node may also give its coordinates as a sequence of two numbers :
+ *
+ * Wishka:
+ *   coordinates: [2.5, 7.]
+ *   Marman: 5.
+ * Irmoupolis:
+ *
+ * Distances and coordinates are written as YAML writes decimal ints and floats, digits with an optional
+ * fraction and exponent, which may be grouped with underscores. The other YAML numerals (octal, hexadecimal
+ * and sexagesimal ints, .inf and .nan) are rejected, and so are quoted numbers, which YAML reads as strings.
+ */
+final class YamlMapLoader {
+
+	// the key of the coordinates in the entry of a node
+	private static final String COORDINATES = "coordinates";
+	// a decimal YAML int or float
+	private static final Pattern DECIMAL = Pattern.compile("[-+]?(\\.[0-9]+|[0-9][0-9_]*(\\.[0-9_]*)?)([eE][-+]?[0-9]+)?");
+	// a YAML int with a leading 0, which is octal
+	private static final Pattern OCTAL = Pattern.compile("[-+]?0[0-9_]+");
+
+	private final Iterator<Event> events;
+	private final MapGraph graph;
+	private final String source;
+
+	private YamlMapLoader(Reader reader, MapGraph graph, String source) {
+		this.events = new Yaml().parse(reader).iterator();
+		this.graph = graph;
+		this.source = source;
+	}
+
+	/*
+	 * @param reader the YAML document
+	 * @param source the name of the document in error messages, e.g. its path
+	 * @spec.effects adds the nodes, edges and coordinates described by the document to graph.
+	 * @throws IllegalArgumentException if the document is not valid YAML or does not describe a map.
+	 * @throws UncheckedIOException if reader fails.
+	 */
+	static void load(Reader reader, MapGraph graph, String source) {
+		YamlMapLoader loader = new YamlMapLoader(reader, graph, source);
+		try {
+			loader.loadStream();
+		} catch (YAMLException e) {
+			if (e.getCause() instanceof IOException) { // the parser wraps the failures of reader
+				throw new UncheckedIOException((IOException) e.getCause());
+			}
+			throw new IllegalArgumentException(source + " is not valid YAML : " + e.getMessage(), e);
+		}
+	}
+
+	private void loadStream() {
+		this.expect(Event.ID.StreamStart);
+		Event event = this.next();
+		if (event.is(Event.ID.StreamEnd)) { // an empty document is an empty map
+			return;
+		}
+		if (!event.is(Event.ID.DocumentStart)) {
+			throw this.error(event, "a document");
+		}
+		event = this.next();
+		if (event.is(Event.ID.Scalar) && isNull((ScalarEvent) event)) {
+			return;
+		}
+		if (!event.is(Event.ID.MappingStart)) {
+			throw this.error(event, "a mapping from nodes to their children");
+		}
+		for (event = this.next(); !event.is(Event.ID.MappingEnd); event = this.next()) {
+			String node = this.scalar(event, "the name of a node");
+			if (!this.graph.concreteGraphMap.containsNode(node)) {
+				this.graph.concreteGraphMap.addNode(node);
+			}
+			this.loadEntry(node);
+		}
+	}
+
+	/*
+	 * @spec.effects reads the value of the entry of node : nothing for an isolated node, or the mapping of its
+	 * children and coordinates.
+	 */
+	private void loadEntry(String node) {
+		Event event = this.next();
+		if (event.is(Event.ID.Scalar) && isNull((ScalarEvent) event)) {
+			return;
+		}
+		if (!event.is(Event.ID.MappingStart)) {
+			throw this.error(event, "the children of " + node);
+		}
+		for (event = this.next(); !event.is(Event.ID.MappingEnd); event = this.next()) {
+			String child = this.scalar(event, "the name of a child of " + node);
+			Event value = this.next();
+			if (value.is(Event.ID.SequenceStart)) {
+				if (!child.equals(COORDINATES)) {
+					throw this.error(value, "the distance from " + node + " to " + child);
+				}
+				double x = this.number(this.next(), "the first coordinate of " + node);
+				double y = this.number(this.next(), "the second coordinate of " + node);
+				this.expect(Event.ID.SequenceEnd);
+				this.graph.setCoordinates(node, x, y);
+			} else {
+				this.graph.concreteGraphMap.addEdge(child, node, this.number(value, "the distance from " + node + " to " + child));
+			}
+		}
+	}
+
+	private Event next() {
+		if (!this.events.hasNext()) {
+			throw new IllegalArgumentException(this.source + " ends too early");
+		}
+		return this.events.next();
+	}
+
+	private void expect(Event.ID id) {
+		Event event = this.next();
+		if (!event.is(id)) {
+			throw this.error(event, id.toString());
+		}
+	}
+
+	private String scalar(Event event, String expected) {
+		if (!event.is(Event.ID.Scalar)) {
+			throw this.error(event, expected);
+		}
+		return ((ScalarEvent) event).getValue();
+	}
+
+	private double number(Event event, String expected) {
+		String value = this.scalar(event, expected);
+		if (!((ScalarEvent) event).getImplicit().canOmitTagInPlainScalar() || !DECIMAL.matcher(value).matches()
+				|| OCTAL.matcher(value).matches()) {
+			throw this.error(event, expected + " as a decimal number, not " + value);
+		}
+		return Double.parseDouble(value.replace("_", ""));
+	}
+
+	private IllegalArgumentException error(Event event, String expected) {
+		Mark mark = event.getStartMark();
+		return new IllegalArgumentException(this.source + " is not a valid map : expected " + expected 
+				+ " at line " + (mark.getLine() + 1) + ", column " + (mark.getColumn() + 1));
+	}
+
+	private static boolean isNull(ScalarEvent event) {
+		String value = event.getValue();
+		return event.getImplicit().canOmitTagInPlainScalar()
+				&& (value.isEmpty() || value.equals("~") || value.equals("null") || value.equals("Null") || value.equals("NULL"));
+	}
+}
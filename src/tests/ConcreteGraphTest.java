@@ -2,6 +2,15 @@ package tests;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +20,8 @@ import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
 
 import main.ConcreteGraph;
+import main.GraphListener;
+import main.GraphSnapshot;
 
 @TestInstance(Lifecycle.PER_CLASS)
 class ConcreteGraphTest {
@@ -107,5 +118,387 @@ class ConcreteGraphTest {
 		assertTrue(thisGraph.getEdgeLabels(testChildNode, testParentNode).contains(testEdgeLabel));
 	}
 	
+	// addEdge + ListParents, several parents
+	@Test
+	void testListParentsSeveralParents() {
+		thisGraph.addEdge(testChildNode, testParentNode, testEdgeLabel);
+		thisGraph.addEdge(testChildNode, "otherParentNode", testEdgeLabel);
+		thisGraph.addEdge(testParentNode, testChildNode, testEdgeLabel);
+		assertEquals(2, thisGraph.listParents(testChildNode).size());
+		assertTrue(thisGraph.listParents(testChildNode).get("otherParentNode").contains(testEdgeLabel));
+		assertTrue(thisGraph.listParents(testParentNode).containsKey(testChildNode));
+	}
+	
+	// addEdge + removeNode + ListChildren + ListParents
+	@Test
+	void testRemoveNodeRemovesIncomingAndOutgoingEdges() {
+		thisGraph.addEdge(testChildNode, testParentNode, testEdgeLabel);
+		thisGraph.addEdge(testParentNode, testChildNode, testEdgeLabel);
+		thisGraph.addEdge(testChildNode, testChildNode, testEdgeLabel);
+		thisGraph.removeNode(testChildNode);
+		assertTrue(thisGraph.listChildren(testParentNode).isEmpty());
+		assertTrue(thisGraph.listParents(testParentNode).isEmpty());
+		thisGraph.addNode(testChildNode);
+		assertTrue(thisGraph.listParents(testChildNode).isEmpty());
+	}
+	
+	// concurrent mutators
+	
+	private static final int WRITERS = 8;
+	
+	/*
+	 * @spec.effects runs writer(0) ... writer(WRITERS - 1) on as many threads at once, and waits for them.
+	 */
+	private void runWriters(java.util.function.IntConsumer writer) throws InterruptedException {
+		List<Thread> threads = new ArrayList<Thread>();
+		List<Throwable> failures = new ArrayList<Throwable>();
+		for (int w = 0; w < WRITERS; w++) {
+			int id = w;
+			Thread thread = new Thread(() -> writer.accept(id));
+			thread.setUncaughtExceptionHandler((t, e) -> {
+				synchronized (failures) {
+					failures.add(e);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(failures.isEmpty(), () -> "a writer failed : " + failures.get(0));
+	}
+	
+	/*
+	 * checks that listChildren and listParents describe the same edges.
+	 */
+	private void assertIndexesInSync() {
+		int childEdges = 0;
+		int parentEdges = 0;
+		for (String node : thisGraph.listNodes()) {
+			for (Map.Entry<String, Set<String>> child : thisGraph.listChildren(node).entrySet()) {
+				assertEquals(child.getValue(), thisGraph.listParents(child.getKey()).get(node));
+				childEdges += child.getValue().size();
+			}
+			for (Set<String> labels : thisGraph.listParents(node).values()) {
+				parentEdges += labels.size();
+			}
+		}
+		assertEquals(childEdges, parentEdges);
+	}
+	
+	@Test
+	void testConcurrentAddEdgeLosesNoLabel() throws InterruptedException {
+		int nodes = 6;
+		runWriters(w -> {
+			for (int parent = 0; parent < nodes; parent++) {
+				for (int child = 0; child < nodes; child++) {
+					thisGraph.addEdge("n" + child, "n" + parent, "w" + w);
+				}
+			}
+		});
+		assertEquals(nodes, thisGraph.listNodes().size());
+		for (int parent = 0; parent < nodes; parent++) {
+			for (int child = 0; child < nodes; child++) {
+				assertEquals(WRITERS, thisGraph.getEdgeLabels("n" + child, "n" + parent).size());
+			}
+		}
+		assertEquals(WRITERS * nodes * nodes, thisGraph.version());
+		assertIndexesInSync();
+	}
+	
+	@Test
+	void testConcurrentMutationsKeepIndexesInSync() throws InterruptedException {
+		AtomicLong applied = new AtomicLong();
+		runWriters(w -> {
+			Random random = new Random(w);
+			for (int i = 0; i < 20000; i++) {
+				String parent = "n" + random.nextInt(12);
+				String child = "n" + random.nextInt(12);
+				String label = "l" + random.nextInt(3);
+				try {
+					switch (random.nextInt(10)) {
+					case 0:
+						thisGraph.removeNode(parent);
+						break;
+					case 1:
+						thisGraph.addNode(parent);
+						break;
+					case 2: case 3: case 4: case 5:
+						thisGraph.addEdge(child, parent, label);
+						break;
+					default:
+						thisGraph.removeEdge(child, parent, label);
+					}
+					applied.incrementAndGet();
+				} catch (IllegalArgumentException e) {
+					// refused against the current state of the graph, which is expected
+				}
+				if (i % 1000 == 0) { // observers must not fail next to the writers
+					for (String node : thisGraph.listNodes()) {
+						try {
+							thisGraph.listChildren(node);
+							thisGraph.listParents(node);
+						} catch (IllegalArgumentException e) {
+							// removed in the meantime
+						}
+					}
+				}
+			}
+		});
+		// every mutation that didn't throw was applied exactly once
+		assertEquals(applied.get(), thisGraph.version());
+		assertIndexesInSync();
+	}
+	
+	@Test
+	void testSlowListenerDoesNotHoldUpOtherWriters() throws InterruptedException {
+		CountDownLatch told = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		thisGraph.addListener(new GraphListener<String, String>() {
+			@Override
+			public void nodeAdded(String node) {
+				if (node.equals(testParentNode)) {
+					told.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+		Thread slow = new Thread(() -> thisGraph.addNode(testParentNode));
+		slow.start();
+		told.await();
+		// the slow writer's mutation is published, and its node free for others
+		assertEquals(1, thisGraph.version());
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			thisGraph.addEdge(testChildNode, testParentNode, testEdgeLabel);
+			thisGraph.removeEdge(testChildNode, testParentNode, testEdgeLabel);
+		});
+		assertEquals(3, thisGraph.version());
+		release.countDown();
+		slow.join();
+	}
+	
 
+	// snapshots
+	
+	@Test
+	void testSnapshotDoesNotSeeLaterMutations() {
+		thisGraph.addEdge(testChildNode, testParentNode, testEdgeLabel);
+		try (GraphSnapshot<String, String> snapshot = thisGraph.snapshot()) {
+			thisGraph.addEdge(testChildNode, testParentNode, "otherLabel");
+			thisGraph.removeEdge(testChildNode, testParentNode, testEdgeLabel);
+			thisGraph.removeNode(testChildNode);
+			thisGraph.addNode("otherNode");
+			
+			assertEquals(2, snapshot.listNodes().size());
+			assertFalse(snapshot.containsNode("otherNode"));
+			assertEquals(Set.of(testEdgeLabel), snapshot.getEdgeLabels(testChildNode, testParentNode));
+			assertTrue(snapshot.listParents(testChildNode).containsKey(testParentNode));
+			assertEquals(thisGraph.version() - 4, snapshot.version());
+			
+			GraphSnapshot<String, String> latest = thisGraph.snapshot();
+			assertFalse(latest.containsNode(testChildNode));
+			assertTrue(latest.listChildren(testParentNode).isEmpty());
+			latest.close();
+		}
+	}
+	
+	@Test
+	void testSnapshotIsReadOnlyAndUnusableOnceClosed() {
+		thisGraph.addNode(testParentNode);
+		GraphSnapshot<String, String> snapshot = thisGraph.snapshot();
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.addNode(testChildNode));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.removeNode(testParentNode));
+		assertThrows(IllegalArgumentException.class, () -> snapshot.listChildren(testChildNode));
+		snapshot.close();
+		assertThrows(IllegalStateException.class, () -> snapshot.listNodes());
+		snapshot.close();
+	}
+	
+	@Test
+	void testSnapshotsSeeWholeMutationsUnderConcurrentWriters() throws InterruptedException {
+		// each writer grows its own chain w:0 -> w:1 -> w:2 ..., a node and the edge to it at once
+		int length = 2000;
+		AtomicLong checked = new AtomicLong();
+		List<Throwable> failures = new ArrayList<Throwable>();
+		Thread reader = new Thread(() -> {
+			while (thisGraph.version() < WRITERS * (length + 1)) {
+				try (GraphSnapshot<String, String> snapshot = thisGraph.snapshot()) {
+					int nodes = 0;
+					for (int w = 0; w < WRITERS; w++) {
+						int last = -1;
+						while (snapshot.containsNode(w + ":" + (last + 1))) {
+							last++;
+						}
+						for (int i = 0; i <= last; i++) {
+							assertEquals(i < last ? Set.of(w + ":" + (i + 1)) : Set.of(), snapshot.listChildren(w + ":" + i).keySet());
+							assertEquals(i > 0 ? Set.of(w + ":" + (i - 1)) : Set.of(), snapshot.listParents(w + ":" + i).keySet());
+						}
+						nodes += last + 1;
+					}
+					assertEquals(nodes, snapshot.listNodes().size());
+				}
+				checked.incrementAndGet();
+			}
+		});
+		reader.setUncaughtExceptionHandler((t, e) -> failures.add(e));
+		reader.start();
+		runWriters(w -> {
+			thisGraph.addNode(w + ":0");
+			for (int i = 0; i < length; i++) {
+				thisGraph.addEdge(w + ":" + (i + 1), w + ":" + i, "e");
+			}
+		});
+		reader.join();
+		assertTrue(failures.isEmpty(), () -> "the reader failed : " + failures.get(0));
+		assertTrue(checked.get() > 0);
+	}
+	
+	@Test
+	void testHubNeighboursMatchEveryVersion() {
+		// "Aa" and "BB" have the same hash code, and so do all the strings made of them
+		List<String> neighbours = new ArrayList<String>();
+		for (int i = 0; i < 3000; i++) {
+			neighbours.add("n" + i);
+		}
+		for (int i = 0; i < 64; i++) {
+			StringBuilder colliding = new StringBuilder();
+			for (int bit = 0; bit < 6; bit++) {
+				colliding.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+			}
+			neighbours.add(colliding.toString());
+		}
+		Random random = new Random(3);
+		Map<String, Set<String>> children = new HashMap<String, Set<String>>();
+		List<GraphSnapshot<String, String>> snapshots = new ArrayList<GraphSnapshot<String, String>>();
+		List<Map<String, Set<String>>> expected = new ArrayList<Map<String, Set<String>>>();
+		thisGraph.addNode(testParentNode);
+		for (int i = 0; i < 20000; i++) {
+			String child = neighbours.get(random.nextInt(neighbours.size()));
+			if (children.containsKey(child) && random.nextInt(3) == 0) {
+				thisGraph.removeEdge(child, testParentNode, testEdgeLabel);
+				children.remove(child);
+			} else if (!children.containsKey(child)) {
+				thisGraph.addEdge(child, testParentNode, testEdgeLabel);
+				children.put(child, Set.of(testEdgeLabel));
+			}
+			if (i % 2000 == 0) {
+				snapshots.add(thisGraph.snapshot());
+				expected.add(new HashMap<String, Set<String>>(children));
+			}
+		}
+		assertEquals(children, thisGraph.listChildren(testParentNode));
+		assertEquals(children, thisGraph.children(testParentNode));
+		assertEquals(children.size(), thisGraph.children(testParentNode).size());
+		for (String neighbour : neighbours) {
+			assertEquals(children.containsKey(neighbour), thisGraph.children(testParentNode).containsKey(neighbour));
+			if (children.containsKey(neighbour)) {
+				assertEquals(Set.of(testParentNode), thisGraph.listParents(neighbour).keySet());
+			}
+		}
+		for (int i = 0; i < snapshots.size(); i++) {
+			assertEquals(expected.get(i), snapshots.get(i).listChildren(testParentNode));
+			snapshots.get(i).close();
+		}
+		thisGraph.removeNode(testParentNode);
+		for (String child : children.keySet()) {
+			assertTrue(thisGraph.listParents(child).isEmpty());
+		}
+	}
+	
+	@Test
+	void testForEachChildWeightFollowsTheSmallestLabel() {
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		graph.addEdge("b", "a", 5.);
+		graph.addEdge("b", "a", 2.);
+		graph.addEdge("b", "a", 7.);
+		graph.addEdge("c", "a", 1.);
+		Map<String, Double> weights = new HashMap<String, Double>();
+		graph.forEachChildWeight("a", weights::put);
+		assertEquals(Map.of("b", 2., "c", 1.), weights);
+		
+		try (GraphSnapshot<String, Double> snapshot = graph.snapshot()) {
+			graph.removeEdge("b", "a", 2.);
+			graph.removeEdge("c", "a", 1.);
+			weights.clear();
+			graph.forEachParentWeight("b", weights::put);
+			assertEquals(Map.of("a", 5.), weights);
+			assertEquals(Set.of(5., 7.), graph.getEdgeLabels("b", "a"));
+			weights.clear();
+			snapshot.forEachChildWeight("a", weights::put);
+			assertEquals(Map.of("b", 2., "c", 1.), weights);
+		}
+		assertThrows(IllegalArgumentException.class, () -> graph.forEachChildWeight("nowhere", weights::put));
+	}
+	
+	@Test
+	void testLabelSetsBehaveAsSets() {
+		thisGraph.addEdge(testChildNode, testParentNode, "b");
+		thisGraph.addEdge(testChildNode, testParentNode, "a");
+		thisGraph.addEdge(testChildNode, testParentNode, "c");
+		thisGraph.removeEdge(testChildNode, testParentNode, "b");
+		Set<String> labels = thisGraph.listChildren(testParentNode).get(testChildNode);
+		assertEquals(Set.of("a", "c"), labels);
+		assertEquals(labels, thisGraph.listParents(testChildNode).get(testParentNode));
+		assertEquals(Set.of("a", "c").hashCode(), labels.hashCode());
+		assertThrows(UnsupportedOperationException.class, () -> labels.add("d"));
+		assertThrows(IllegalArgumentException.class, () -> thisGraph.addEdge(testChildNode, testParentNode, "c"));
+	}
+	
+	@Test
+	void testViewsFollowTheGraphAndCannotModifyIt() {
+		thisGraph.addEdge(testChildNode, testParentNode, testEdgeLabel);
+		Set<String> nodes = thisGraph.nodes();
+		Map<String, Set<String>> children = thisGraph.children(testParentNode);
+		Map<String, Set<String>> parents = thisGraph.parents(testChildNode);
+		assertEquals(Set.of(testChildNode, testParentNode), nodes);
+		assertEquals(Map.of(testChildNode, Set.of(testEdgeLabel)), children);
+		assertEquals(Set.of(testEdgeLabel), thisGraph.edgeLabels(testChildNode, testParentNode));
+		
+		thisGraph.addEdge("otherChild", testParentNode, testEdgeLabel);
+		assertEquals(3, nodes.size());
+		assertTrue(nodes.contains("otherChild"));
+		assertEquals(Set.of(testChildNode, "otherChild"), children.keySet());
+		assertThrows(UnsupportedOperationException.class, () -> children.put("x", Set.of()));
+		assertThrows(UnsupportedOperationException.class, () -> children.get(testChildNode).add("x"));
+		assertThrows(UnsupportedOperationException.class, () -> nodes.remove(testChildNode));
+		
+		try (GraphSnapshot<String, String> snapshot = thisGraph.snapshot()) {
+			Map<String, Set<String>> before = snapshot.children(testParentNode);
+			thisGraph.removeNode(testParentNode);
+			assertTrue(children.isEmpty());
+			assertTrue(parents.isEmpty());
+			assertEquals(2, nodes.size());
+			assertEquals(Set.of(testChildNode, "otherChild"), before.keySet());
+			assertEquals(3, snapshot.nodes().size());
+		}
+		assertThrows(IllegalArgumentException.class, () -> thisGraph.children(testParentNode));
+	}
+	
+	@Test
+	void testNodeViewIteratesWhileNodesAreRemoved() {
+		for (int i = 0; i < 1000; i++) {
+			thisGraph.addEdge(String.valueOf(i + 1), String.valueOf(i), testEdgeLabel);
+		}
+		int seen = 0;
+		for (String node : thisGraph.nodes()) {
+			if (!node.equals("0")) {
+				thisGraph.removeNode(node);
+			}
+			seen++;
+		}
+		assertEquals(1001, seen);
+		assertEquals(Set.of("0"), thisGraph.nodes());
+		List<String> visited = new ArrayList<String>();
+		thisGraph.forEachNode(visited::add);
+		assertEquals(List.of("0"), visited);
+		thisGraph.addEdge("1", "0", testEdgeLabel);
+		thisGraph.forEachChild("0", (child, labels) -> visited.add(child + labels));
+		thisGraph.forEachParent("1", (parent, labels) -> visited.add(parent + labels));
+		assertEquals(List.of("0", "1[testEdgeLabel]", "0[testEdgeLabel]"), visited);
+	}
 }
@@ -6,9 +6,47 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import main.CompiledGraph;
+import main.ContractionHierarchy;
+import main.ConcreteGraph;
+import main.CoordinateHeuristic;
+import main.DeltaStepping;
+import main.DistanceMatrix;
+import main.DynamicShortestPathTree;
+import main.GraphListener;
+import main.LandmarkHeuristic;
+import main.LatencyHistogram;
 import main.MapGraph;
+import main.MappedGraph;
+import main.NodeSymbols;
+import main.OffHeapGraph;
+import main.PathCache;
+import main.ReachabilityIndex;
+import main.ReachableRegion;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
@@ -21,6 +59,7 @@ class MapGraphTest {
 	public MapGraph brokenGraph;
 	public String yamlFileString = "/Users/emile/Documents/shiny-graph/src/tests/testMapGraph.yaml";	
 	public String yamlFileStringIsolatedNode = "/Users/emile/Documents/shiny-graph/src/tests/testMapGraphBrokenPath.yaml";	
+	public String yamlFileStringCoordinates = "/Users/emile/Documents/shiny-graph/src/tests/testMapGraphCoordinates.yaml";	
 	public List<String> expectedShortestPathSteps = Arrays.asList("Wishka", "Irmoupolis", "Ziouxuan", "Tetrov", "Murat", "Larti");
 	public Double expectedShortestPathCost = 33.;
 	public String exampleEdgeStartString = "start";
@@ -67,6 +106,7 @@ class MapGraphTest {
 		assertTrue(thisEdge.getStart().equals(exampleEdgeStartString));
 		assertTrue(thisEdge.getEnd().equals(exampleEdgeEndString));
 		assertTrue(thisEdge.getDistance().equals(exampleEdgeDistanceDouble));
+		assertThrows(IllegalArgumentException.class, () -> new MapGraph.MapEdge(exampleEdgeStartString, exampleEdgeEndString, null));
 	}
 	
 	@Test
@@ -76,6 +116,54 @@ class MapGraphTest {
 				new MapGraph.MapEdge(exampleEdgeStartString, exampleEdgeEndString, exampleEdgeDistanceDouble));				
 	}
 	
+	@Test
+	void testMapEdgesAreEqualByValue() {
+		MapGraph.MapEdge edge = new MapGraph.MapEdge(new String("start"), new String("end"), Double.valueOf(1234.5));
+		MapGraph.MapEdge same = new MapGraph.MapEdge(new String("start"), new String("end"), Double.valueOf(1234.5));
+		assertEquals(edge, same);
+		assertEquals(edge.hashCode(), same.hashCode());
+		assertNotEquals(edge, new MapGraph.MapEdge("end", "start", 1234.5));
+		assertNotEquals(edge, new MapGraph.MapEdge("start", "end", 1234.25));
+		assertEquals(Collections.singleton(edge), new HashSet<MapGraph.MapEdge>(Arrays.asList(same, same)));
+		
+		MapGraph.MapPath path = new MapGraph.MapPath();
+		path.addEdge(edge);
+		assertEquals(Arrays.asList(same), path.edges());
+		path.removeEdge(same);
+		assertTrue(path.isEmpty());
+	}
+	
+	@Test
+	void testNodeSymbols() {
+		NodeSymbols symbols = new NodeSymbols();
+		assertEquals(-1, symbols.find("Wishka"));
+		assertEquals(0, symbols.id("Wishka"));
+		assertEquals(1, symbols.id("Larti"));
+		assertEquals(0, symbols.id(new String("Wishka")));
+		assertEquals(1, symbols.find("Larti"));
+		assertEquals("Larti", symbols.name(1));
+		assertEquals(2, symbols.size());
+		assertThrows(IllegalArgumentException.class, () -> symbols.name(2));
+		assertThrows(IllegalArgumentException.class, () -> symbols.id(null));
+		
+		List<Integer> ids = Collections.synchronizedList(new ArrayList<Integer>());
+		new ForkJoinPool(4).submit(() -> IntStream.range(0, 1000).parallel().forEach(i -> ids.add(symbols.id("node " + i % 200)))).join();
+		assertEquals(202, symbols.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("node " + i % 200, symbols.name(symbols.find("node " + i % 200)));
+		}
+		assertEquals(new HashSet<Integer>(ids), new HashSet<Integer>(IntStream.range(2, 202).boxed().collect(Collectors.toList())));
+		
+		// on a graph, its nodes keep their ids and other names come after them
+		CompiledGraph graph = this.thisGraph.compile();
+		NodeSymbols graphSymbols = new NodeSymbols(graph);
+		assertEquals(graph.nodeId("Wishka"), graphSymbols.id("Wishka"));
+		assertEquals("Larti", graphSymbols.name(graph.nodeId("Larti")));
+		assertEquals(graph.nodeCount(), graphSymbols.id("Nowhere"));
+		assertEquals("Nowhere", graphSymbols.name(graph.nodeCount()));
+		assertEquals(graph.nodeCount() + 1, graphSymbols.size());
+	}
+	
 	@Test
 	void testMapPath() {
 		assertTrue(exampleSingleEdgePath.totalDistance().equals(exampleEdgeDistanceDouble));
@@ -85,6 +173,50 @@ class MapGraphTest {
 		assertTrue(exampleDoubleEdgePath.endNode().equals(this.exampleEdgeEndString2));
 	}
 	
+	@Test 
+	void testMapPathExtensionsShareTheirPrefix() {
+		MapGraph.MapPath empty = new MapGraph.MapPath();
+		assertTrue(new MapGraph.MapPath(empty).isEmpty());
+		MapGraph.MapPath extended = this.exampleSingleEdgePath.extend(new MapGraph.MapEdge("end", "far", 5.));
+		assertEquals(1, this.exampleSingleEdgePath.size());
+		assertEquals(2, extended.size());
+		assertEquals(15., extended.distance());
+		assertEquals("start", extended.startNode());
+		assertEquals("far", extended.endNode());
+		
+		MapGraph.MapPath copy = new MapGraph.MapPath(extended);
+		copy.addEdge(new MapGraph.MapEdge("far", "further", 1.));
+		assertEquals(Arrays.asList("start", "end", "far"), extended.pathSteps());
+		assertEquals(Arrays.asList("start", "end", "far", "further"), copy.pathSteps());
+		
+		copy.removeEdge(copy.edges().get(1));
+		assertEquals(11., copy.distance());
+		assertEquals(2, copy.edges().size());
+		assertEquals(15., extended.distance());
+		// the edges after the one removed keep their own start
+		assertEquals(Arrays.asList(new MapGraph.MapEdge("start", "end", 10.), new MapGraph.MapEdge("far", "further", 1.)), copy.edges());
+		assertEquals(Arrays.asList("start", "far", "further"), copy.pathSteps());
+		assertEquals("start", copy.startNode());
+		copy.removeEdge(new MapGraph.MapEdge("start", "end", 10.));
+		assertEquals(Arrays.asList("far", "further"), copy.pathSteps());
+		assertEquals(1., copy.distance());
+		copy.removeEdge(new MapGraph.MapEdge("nowhere", "further", 1.));
+		assertEquals(1, copy.size());
+		
+		MapGraph.MapPath broken = new MapGraph.MapPath();
+		broken.addEdge(new MapGraph.MapEdge("A", "B", 1.));
+		broken.addEdge(new MapGraph.MapEdge("X", "Y", 2.));
+		assertEquals(Arrays.asList(new MapGraph.MapEdge("A", "B", 1.), new MapGraph.MapEdge("X", "Y", 2.)), broken.edges());
+		assertEquals(Arrays.asList("A", "X", "Y"), broken.pathSteps());
+		
+		// paths found by a search take the ids of the graph, and can still be extended by hand
+		MapGraph.MapPath found = this.thisGraph.shortestPath("Wishka", "Larti").extend(new MapGraph.MapEdge("Larti", "Nowhere", 1.));
+		List<String> steps = new ArrayList<String>(this.expectedShortestPathSteps);
+		steps.add("Nowhere");
+		assertEquals(steps, found.pathSteps());
+		assertEquals(new MapGraph.MapEdge("Larti", "Nowhere", 1.), found.edges().get(found.size() - 1));
+	}
+	
 	@Test 
 	void testMapPathComparator() {
 		assertTrue(new MapGraph.MapPathComparator().compare(this.exampleDoubleEdgePath, this.exampleSingleEdgePath)>0);
@@ -110,6 +242,861 @@ class MapGraphTest {
 	}
 
 	
+	@Test 
+	void testCompileKeepsMinimumLabel() {	
+		MapGraph graph = new MapGraph(yamlFileString);
+		graph.concreteGraphMap.addEdge("Larti", "Tetrov", 20.);
+		CompiledGraph compiled = graph.compile();
+		assertEquals(graph.concreteGraphMap.listNodes().size(), compiled.nodeCount());
+		int tetrov = compiled.nodeId("Tetrov");
+		int larti = compiled.nodeId("Larti");
+		double weight = -1.;
+		for (int cursor = compiled.firstOut(tetrov); cursor >= 0; cursor = compiled.nextOut(tetrov, cursor)) {
+			if (compiled.outTarget(tetrov, cursor) == larti) {
+				weight = compiled.outWeight(tetrov, cursor);
+			}
+		}
+		assertEquals(20., weight);
+		assertEquals(-1, compiled.nodeId("not a node"));
+	}
+	
+	@Test 
+	void testShortestPathSeesModificationsAfterCompile() {	
+		MapGraph graph = new MapGraph(yamlFileString);
+		graph.compile();
+		graph.concreteGraphMap.addEdge("Larti", "Wishka", 1.);
+		MapGraph.MapPath shortcut = graph.shortestPath("Wishka", "Larti");
+		assertEquals(Arrays.asList("Wishka", "Larti"), shortcut.pathSteps());
+		assertEquals(1., shortcut.totalDistance());
+	}
+	
+	@Test 
+	void testEnginesMatchBellmanFordOnRandomGraphs() throws IOException {	
+		File file = File.createTempFile("map", ".sgrf");
+		file.deleteOnExit();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		double[] deltas = {0.5, 2., 100.};
+		double[] budgets = {0., 2.5, 6., 1000.};
+		try {
+			for (long seed = 0; seed < 20; seed++) {
+				MapGraph graph = new MapGraph(randomGraph(seed, 60, 240));
+				CompiledGraph compiled = graph.compile();
+				ContractionHierarchy hierarchy = graph.contractionHierarchy();
+				LandmarkHeuristic landmarks = graph.landmarkHeuristic(4);
+				graph.exportSnapshot(file);
+				MapGraph snapshot = MapGraph.openSnapshot(file);
+				List<String> nodes = new ArrayList<String>(graph.concreteGraphMap.listNodes());
+				List<String> targets = nodes.subList(0, 20);
+				DistanceMatrix matrix = graph.distanceMatrixWithPaths(nodes, targets);
+				double[][] distances = graph.distanceMatrix(nodes, targets);
+				List<List<Map<String, Double>>> regions = new ArrayList<List<Map<String, Double>>>();
+				for (double budget : budgets) {
+					regions.add(graph.reachableWithin(nodes, budget));
+				}
+				for (int i = 0; i < nodes.size(); i++) {
+					String start = nodes.get(i);
+					Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, start);
+					DeltaStepping paths = DeltaStepping.compute(compiled, start, deltas[i % deltas.length], pool);
+					assertNull(paths.predecessor(start));
+					for (String end : nodes) {
+						assertPathMatches(graph, start, end, expected.get(end), graph.shortestPath(start, end));
+						assertPathMatches(graph, start, end, expected.get(end), graph.bidirectionalShortestPath(start, end));
+						assertPathMatches(graph, start, end, expected.get(end), hierarchy.shortestPath(start, end));
+						assertPathMatches(graph, start, end, expected.get(end), graph.shortestPath(start, end, landmarks));
+						assertPathMatches(graph, start, end, expected.get(end), snapshot.shortestPath(start, end));
+						assertPathMatches(graph, start, end, expected.get(end), snapshot.bidirectionalShortestPath(start, end));
+						assertEquals(expected.getOrDefault(end, Double.POSITIVE_INFINITY), paths.distance(end), 1e-9, start + " -> " + end);
+						assertPathMatches(graph, start, end, expected.get(end), paths.path(end));
+					}
+					for (int j = 0; j < targets.size(); j++) {
+						assertEquals(expected.getOrDefault(targets.get(j), Double.POSITIVE_INFINITY), distances[i][j], 1e-9);
+						assertEquals(distances[i][j], matrix.distance(i, j));
+						assertPathMatches(graph, start, targets.get(j), expected.get(targets.get(j)), matrix.path(i, j));
+					}
+					for (int b = 0; b < budgets.length; b++) {
+						double budget = budgets[b];
+						Map<String, Double> within = new HashMap<String, Double>(expected);
+						within.values().removeIf(distance -> distance > budget);
+						Map<String, Double> region = graph.reachableWithin(start, budget);
+						assertEquals(within.keySet(), region.keySet());
+						for (String node : within.keySet()) {
+							assertEquals(within.get(node), region.get(node), 1e-9);
+						}
+						assertEquals(region, regions.get(b).get(i));
+						double previous = 0.;
+						for (double distance : region.values()) {
+							assertTrue(previous <= distance);
+							previous = distance;
+						}
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		// the k shortest paths are checked against all the simple paths, on graphs small enough to list them
+		for (long seed = 0; seed < 10; seed++) {
+			MapGraph graph = new MapGraph(randomGraph(seed, 9, 30));
+			for (String end : Arrays.asList("3", "7", "8")) {
+				List<Double> expected = new ArrayList<Double>();
+				simplePathLengths(graph.concreteGraphMap, "0", end, new HashSet<String>(Arrays.asList("0")), 0., expected);
+				Collections.sort(expected);
+				List<MapGraph.MapPath> paths = graph.kShortestPaths("0", end, 12);
+				assertEquals(Math.min(12, expected.size()), paths.size());
+				Set<List<String>> distinct = new HashSet<List<String>>();
+				for (int i = 0; i < paths.size(); i++) {
+					MapGraph.MapPath path = paths.get(i);
+					assertPathMatches(graph, "0", end, expected.get(i), path);
+					assertEquals(path.pathSteps().size(), new HashSet<String>(path.pathSteps()).size());
+					assertTrue(distinct.add(path.pathSteps()));
+				}
+			}
+		}
+	}
+	
+	@Test 
+	void testBidirectionalShortestPath() {	
+		MapGraph.MapPath exampleShortestPath = this.thisGraph.bidirectionalShortestPath(
+				expectedShortestPathSteps.get(0),
+				expectedShortestPathSteps.get(expectedShortestPathSteps.size()-1)
+				);
+		assertEquals(expectedShortestPathSteps, exampleShortestPath.pathSteps());
+		assertEquals(expectedShortestPathCost, exampleShortestPath.totalDistance());		
+		assertTrue(this.thisGraph.lastSearchStats().settledNodes() > 0);
+		assertTrue(this.brokenGraph.bidirectionalShortestPath("Wishka", "Larti").isEmpty());
+	}
+	
+	@Test 
+	void testConstructorCoordinates() {	
+		MapGraph graph = new MapGraph(yamlFileStringCoordinates);
+		assertArrayEquals(new double[] {0., 3.}, graph.getCoordinates("Cassis"));
+		assertFalse(graph.concreteGraphMap.listNodes().contains("coordinates"));
+		assertTrue(graph.concreteGraphMap.listChildren("Cassis").get("Dinan").contains(4.));
+		assertNull(thisGraph.getCoordinates("Tetrov"));
+	}
+	
+	@Test 
+	void testAStarShortestPath() {	
+		MapGraph graph = new MapGraph(yamlFileStringCoordinates);
+		MapGraph.MapPath path = graph.shortestPath("Arbon", "Dinan", CoordinateHeuristic.EUCLIDEAN);
+		assertEquals(Arrays.asList("Arbon", "Bellac", "Dinan"), path.pathSteps());
+		assertEquals(3., path.totalDistance());
+	}
+	
+	@Test 
+	void testAStarWithoutCoordinatesFallsBackToDijkstra() {	
+		MapGraph.MapPath exampleShortestPath = this.thisGraph.shortestPath(
+				expectedShortestPathSteps.get(0),
+				expectedShortestPathSteps.get(expectedShortestPathSteps.size()-1),
+				CoordinateHeuristic.HAVERSINE
+				);
+		assertEquals(expectedShortestPathSteps, exampleShortestPath.pathSteps());
+		assertEquals(expectedShortestPathCost, exampleShortestPath.totalDistance());		
+	}
+	
+	@Test 
+	void testLandmarkShortestPath() {	
+		LandmarkHeuristic landmarks = this.thisGraph.landmarkHeuristic(3);
+		assertEquals(3, landmarks.landmarkCount());
+		MapGraph.MapPath path = this.thisGraph.shortestPath("Wishka", "Larti", landmarks);
+		assertEquals(this.expectedShortestPathSteps, path.pathSteps());
+		assertEquals(this.expectedShortestPathCost, path.totalDistance());
+		assertThrows(IllegalArgumentException.class, () -> this.thisGraph.landmarkHeuristic(0));
+	}
+	
+	@Test 
+	void testLandmarkHeuristicSaveAndLoad() throws IOException {	
+		MapGraph graph = new MapGraph(randomGraph(3, 60, 240));
+		LandmarkHeuristic landmarks = graph.landmarkHeuristic(4);
+		File file = File.createTempFile("landmarks", ".alt");
+		file.deleteOnExit();
+		landmarks.save(file);
+		LandmarkHeuristic loaded = LandmarkHeuristic.load(file);
+		assertEquals(4, loaded.landmarkCount());
+		assertTrue(loaded.isUsableOn(graph.compile()));
+		Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, "0");
+		for (String end : graph.concreteGraphMap.listNodes()) {
+			assertPathMatches(graph, "0", end, expected.get(end), graph.shortestPath("0", end, loaded));
+		}
+		// once the graph changes, the saved distances no longer apply
+		graph.concreteGraphMap.addEdge("0", "59", 0.);
+		assertFalse(loaded.isUsableOn(graph.compile()));
+		assertFalse(loaded.isUsableOn(graph.compile()));
+		assertEquals(0., graph.shortestPath("59", "0", loaded).totalDistance());
+		
+		// a graph that changes in place is checked again after each change
+		OffHeapGraph offHeap = new OffHeapGraph();
+		offHeap.addEdge("b", "a", 1.);
+		offHeap.addEdge("c", "b", 1.);
+		LandmarkHeuristic offHeapLandmarks = LandmarkHeuristic.build(offHeap, 2);
+		assertTrue(offHeapLandmarks.isUsableOn(offHeap));
+		offHeap.addEdge("c", "a", 1.);
+		assertFalse(offHeapLandmarks.isUsableOn(offHeap));
+		offHeap.removeEdge("c", "a", 1.);
+		assertTrue(offHeapLandmarks.isUsableOn(offHeap));
+		
+		// a landmark that is not a node, or tables too large for an array, are rejected on load
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		ByteBuffer.wrap(bytes).putInt(48, 60);
+		Files.write(file.toPath(), bytes);
+		assertThrows(IOException.class, () -> LandmarkHeuristic.load(file));
+		landmarks.save(file);
+		bytes = Files.readAllBytes(file.toPath());
+		ByteBuffer.wrap(bytes).putInt(8, Integer.MAX_VALUE);
+		Files.write(file.toPath(), bytes);
+		assertThrows(IOException.class, () -> LandmarkHeuristic.load(file));
+	}
+	
+	@Test 
+	void testDistanceMatrix() {	
+		List<String> sources = Arrays.asList("Wishka", "Larti");
+		List<String> targets = Arrays.asList("Larti", "Wishka", "Nowhere");
+		double[][] distances = this.thisGraph.distanceMatrix(sources, targets);
+		assertEquals(2, distances.length);
+		assertEquals(this.expectedShortestPathCost, distances[0][0]);
+		assertEquals(0., distances[0][1]);
+		assertEquals(Double.POSITIVE_INFINITY, distances[0][2]);
+		assertEquals(0., distances[1][0]);
+		assertThrows(IllegalArgumentException.class, () -> this.thisGraph.distanceMatrix(Arrays.asList("Nowhere"), targets));
+		
+		MapGraph.MapPath path = this.thisGraph.distanceMatrixWithPaths(sources, targets).path(0, 0);
+		assertEquals(this.expectedShortestPathSteps, path.pathSteps());
+	}
+	
+	@Test 
+	void testDistanceMatrixWithDuplicateAndUnknownTargets() {	
+		List<String> sources = Arrays.asList("Wishka", "Wishka");
+		List<String> targets = Arrays.asList("Larti", "Nowhere", "Larti", "Nowhere");
+		DistanceMatrix matrix = this.thisGraph.distanceMatrixWithPaths(sources, targets);
+		double[][] distances = this.thisGraph.distanceMatrix(sources, targets);
+		for (int i = 0; i < sources.size(); i++) {
+			assertEquals(this.expectedShortestPathCost, distances[i][0]);
+			assertEquals(this.expectedShortestPathCost, distances[i][2]);
+			assertEquals(Double.POSITIVE_INFINITY, distances[i][1]);
+			assertEquals(Double.POSITIVE_INFINITY, distances[i][3]);
+			assertEquals(this.expectedShortestPathSteps, matrix.path(i, 0).pathSteps());
+			assertEquals(this.expectedShortestPathSteps, matrix.path(i, 2).pathSteps());
+			assertTrue(matrix.path(i, 1).isEmpty());
+			assertTrue(matrix.path(i, 3).isEmpty());
+		}
+		assertArrayEquals(distances[0], distances[1]);
+	}
+	
+	@Test 
+	void testDeltaSteppingRelaxesLargeFrontiersInParallel() {	
+		MapGraph graph = new MapGraph(randomGraph(9, 5000, 40000));
+		for (DeltaStepping paths : Arrays.asList(graph.shortestPaths("0"), graph.shortestPaths("0", 100.))) {
+			for (int node = 97; node < 5000; node += 97) {
+				String end = String.valueOf(node);
+				MapGraph.MapPath expected = graph.shortestPath("0", end);
+				assertEquals(expected.totalDistance(), paths.distance(end), 1e-9, end);
+				assertEquals(expected.totalDistance(), paths.path(end).totalDistance(), 1e-9, end);
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> graph.shortestPaths("0", 0.));
+		assertThrows(IllegalArgumentException.class, () -> graph.shortestPaths("nowhere"));
+	}
+	
+	@Test 
+	void testDeltaSteppingWithDeltaLargerThanEveryWeight() {	
+		MapGraph graph = new MapGraph(randomGraph(3, 60, 240));
+		DeltaStepping paths = graph.shortestPaths("0", 1e9);
+		Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, "0");
+		for (String end : graph.concreteGraphMap.listNodes()) {
+			assertEquals(expected.getOrDefault(end, Double.POSITIVE_INFINITY), paths.distance(end), 1e-9, end);
+			assertPathMatches(graph, "0", end, expected.get(end), paths.path(end));
+		}
+	}
+	
+	@Test 
+	void testKShortestPaths() {	
+		List<MapGraph.MapPath> paths = this.thisGraph.kShortestPaths("Wishka", "Larti", 5);
+		assertEquals(5, paths.size());
+		assertEquals(expectedShortestPathSteps, paths.get(0).pathSteps());
+		assertEquals(expectedShortestPathCost, paths.get(0).totalDistance());
+		for (int i = 1; i < paths.size(); i++) {
+			assertTrue(paths.get(i - 1).totalDistance() <= paths.get(i).totalDistance());
+			assertNotEquals(paths.get(i - 1).pathSteps(), paths.get(i).pathSteps());
+		}
+		assertEquals(1, this.thisGraph.kShortestPaths("Wishka", "Wishka", 3).size());
+		assertTrue(this.thisGraph.kShortestPaths("Wishka", "nowhere", 3).isEmpty());
+		assertTrue(this.brokenGraph.kShortestPaths("Wishka", "Larti", 3).isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> this.thisGraph.kShortestPaths("nowhere", "Wishka", 3));
+		assertThrows(IllegalArgumentException.class, () -> this.thisGraph.kShortestPaths("Wishka", "Larti", 0));
+	}
+	
+	@Test 
+	void testKShortestPathsWithFewerSimplePathsThanK() {	
+		MapGraph graph = new MapGraph(new StringReader("Arbon:\n  Bellac: 1\n  Cassis: 2\nBellac:\n  Dinan: 1\n  Arbon: 1\nCassis:\n  Dinan: 1\nDinan: ~\n"));
+		List<MapGraph.MapPath> paths = graph.kShortestPaths("Arbon", "Dinan", 10);
+		assertEquals(2, paths.size());
+		assertEquals(Arrays.asList("Arbon", "Bellac", "Dinan"), paths.get(0).pathSteps());
+		assertEquals(2., paths.get(0).totalDistance());
+		assertEquals(Arrays.asList("Arbon", "Cassis", "Dinan"), paths.get(1).pathSteps());
+		assertEquals(3., paths.get(1).totalDistance());
+		List<MapGraph.MapPath> all = graph.kShortestPaths("Arbon", "Dinan", Integer.MAX_VALUE);
+		assertEquals(2, all.size());
+		for (int i = 0; i < all.size(); i++) {
+			assertEquals(paths.get(i).pathSteps(), all.get(i).pathSteps());
+		}
+	}
+	
+	@Test 
+	void testReachableRegion() {	
+		ReachableRegion region = this.thisGraph.reachableRegion("Wishka", expectedShortestPathCost);
+		assertTrue(region.contains("Larti"));
+		assertEquals(expectedShortestPathCost, region.distance("Larti"));
+		assertEquals(expectedShortestPathSteps, region.path("Larti").pathSteps());
+		assertEquals("Murat", region.predecessor("Larti"));
+		assertNull(region.predecessor("Wishka"));
+		assertTrue(region.path("Wishka").isEmpty());
+		assertEquals(0., region.distance("Wishka"));
+		
+		assertFalse(this.thisGraph.reachableRegion("Wishka", expectedShortestPathCost - 1.).contains("Larti"));
+		assertEquals(Collections.singletonMap("Wishka", 0.), this.thisGraph.reachableWithin("Wishka", 0.));
+		assertThrows(IllegalArgumentException.class, () -> this.thisGraph.reachableWithin("Wishka", -1.));
+		assertThrows(IllegalArgumentException.class, () -> this.thisGraph.reachableWithin("nowhere", 1.));
+		assertThrows(UnsupportedOperationException.class, () -> region.distances().clear());
+	}
+	
+	@Test 
+	void testReachableWithinBudgetExactlyOnAnEdge() {	
+		MapGraph graph = new MapGraph(new StringReader("Arbon:\n  Bellac: 2.5\nBellac:\n  Cassis: 1\nCassis: ~\n"));
+		Map<String, Double> region = graph.reachableWithin("Arbon", 2.5);
+		assertEquals(Arrays.asList("Arbon", "Bellac"), new ArrayList<String>(region.keySet()));
+		assertEquals(2.5, region.get("Bellac"));
+		assertEquals(Arrays.asList(region), graph.reachableWithin(Arrays.asList("Arbon"), 2.5));
+		assertEquals(Collections.singleton("Arbon"), graph.reachableWithin("Arbon", Math.nextDown(2.5)).keySet());
+		assertTrue(graph.reachableWithin("Arbon", 3.5).containsKey("Cassis"));
+	}
+	
+	@Test 
+	void testReachabilityIndexFollowsAddedEdges() {	
+		for (long seed = 0; seed < 5; seed++) {
+			ConcreteGraph<String, Double> graph = randomGraph(seed, 40, 45);
+			try (ReachabilityIndex index = new ReachabilityIndex(graph)) {
+				assertReachabilityMatches(graph, index, true);
+				Random random = new Random(seed);
+				for (int round = 0; round < 6; round++) {
+					for (int i = 0; i < 10; i++) {
+						String parent = String.valueOf(random.nextInt(42));
+						String child = String.valueOf(random.nextInt(42));
+						if (!graph.containsNode(parent) || !graph.listChildren(parent).containsKey(child)) {
+							graph.addEdge(child, parent, 1.);
+						}
+					}
+					assertReachabilityMatches(graph, index, true);
+				}
+			}
+		}
+	}
+	
+	@Test 
+	void testReachabilityIndexStaysSafeAfterRemovals() {	
+		ConcreteGraph<String, Double> graph = randomGraph(6, 40, 80);
+		ReachabilityIndex index = new ReachabilityIndex(graph);
+		Random random = new Random(6);
+		for (int i = 0; i < 30; i++) {
+			List<String> nodes = new ArrayList<String>(graph.listNodes());
+			String parent = nodes.get(random.nextInt(nodes.size()));
+			List<String> children = new ArrayList<String>(graph.listChildren(parent).keySet());
+			if (i % 5 == 0) {
+				graph.removeNode(parent);
+			} else if (!children.isEmpty()) {
+				String child = children.get(random.nextInt(children.size()));
+				graph.removeEdge(child, parent, graph.getEdgeLabels(child, parent).iterator().next());
+			}
+			assertReachabilityMatches(graph, index, false);
+		}
+		index.close();
+		int components = index.componentCount();
+		long closedAt = graph.version();
+		graph.addEdge("new child", "new parent", 1.);
+		assertEquals(components, index.componentCount());
+		// a closed index can't tell about the versions that follow
+		assertTrue(index.canReach("new parent", "new child"));
+		assertTrue(index.canReach("new child", "new parent"));
+		assertFalse(index.canReach("new child", "new parent", closedAt));
+	}
+	
+	@Test 
+	void testReachabilityIndexOnALongChain() {	
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		for (int node = 1; node < 100000; node++) {
+			graph.addEdge(String.valueOf(node), String.valueOf(node - 1), 1.);
+		}
+		ReachabilityIndex index = new ReachabilityIndex(graph);
+		assertEquals(100000, index.componentCount());
+		assertTrue(index.canReach("0", "99999"));
+		assertFalse(index.canReach("99999", "0"));
+		graph.addEdge("0", "99999", 1.);
+		assertEquals(1, index.componentCount());
+		assertTrue(index.canReach("99999", "0"));
+		assertTrue(index.sameComponent("5", "50000"));
+		index.close();
+	}
+	
+	@Test 
+	void testReachabilityIndexOnlyRejectsVersionsItKnows() {	
+		MapGraph graph = new MapGraph(randomGraph(8, 30, 20));
+		graph.setPathCache(new PathCache(64));
+		List<MapGraph.MapPath> found = new ArrayList<MapGraph.MapPath>();
+		List<Boolean> reached = new ArrayList<Boolean>();
+		// told about the mutations before the index, and searching while it doesn't know about them yet
+		graph.concreteGraphMap.addListener(new GraphListener<String, Double>() {
+			@Override
+			public void edgeAdded(String child, String parent, Double label) {
+				reached.add(graph.getReachabilityIndex().canReach(parent, child));
+				found.add(graph.shortestPath(parent, child));
+			}
+		});
+		ReachabilityIndex index = new ReachabilityIndex(graph.concreteGraphMap);
+		graph.setReachabilityIndex(index);
+		long before = graph.concreteGraphMap.version();
+		graph.concreteGraphMap.addEdge("far", "near", 1.);
+		assertEquals(Arrays.asList(true), reached);
+		assertEquals(1, found.get(0).size());
+		assertEquals(1, graph.shortestPath("near", "far").size());
+		assertTrue(index.canReach("near", "far"));
+		assertFalse(index.canReach("far", "near"));
+		assertFalse(index.canReach("far", "near", before + 1));
+		assertTrue(index.canReach("far", "near", before + 2));
+		index.close();
+	}
+	
+	@Test 
+	void testReachabilityIndexFromManyThreads() throws InterruptedException {	
+		ConcreteGraph<String, Double> graph = randomGraph(9, 200, 150);
+		ReachabilityIndex index = new ReachabilityIndex(graph);
+		List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			Random random = new Random(t);
+			int number = t;
+			boolean writer = t % 2 == 0;
+			threads[t] = new Thread(() -> {
+				try {
+					// each writer labels its edges with its own number, so that they never add nor remove the same
+					double label = number;
+					for (int k = 0; k < 400; k++) {
+						String parent = String.valueOf(random.nextInt(220));
+						String child = String.valueOf(random.nextInt(220));
+						if (!writer) {
+							index.canReach(parent, child);
+						} else if (k % 10 == 0 && hasEdge(graph, child, parent, label)) {
+							graph.removeEdge(child, parent, label);
+						} else if (!hasEdge(graph, child, parent, label)) {
+							graph.addEdge(child, parent, label);
+						}
+					}
+				} catch (Throwable failure) {
+					failures.add(failure);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(Collections.emptyList(), failures);
+		assertReachabilityMatches(graph, index, false);
+		long removedFrom = graph.version();
+		graph.removeNode("0");
+		for (int i = 0; i < 100; i++) {
+			graph.addNode("removed " + i);
+			graph.removeNode("removed " + i);
+		}
+		// the removals are enough for the index to be rebuilt in the background, without a query
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (index.builtVersion() <= removedFrom && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(index.builtVersion() > removedFrom);
+		// and once rebuilt after the last of them, it is exact again
+		index.rebuild();
+		assertEquals(graph.version(), index.builtVersion());
+		ReachabilityIndex fresh = new ReachabilityIndex(graph);
+		assertEquals(fresh.componentCount(), index.componentCount());
+		fresh.close();
+		assertReachabilityMatches(graph, index, true);
+		index.close();
+	}
+	
+	@Test 
+	void testShortestPathChecksTheReachabilityIndex() {	
+		MapGraph graph = new MapGraph(randomGraph(7, 60, 70));
+		ReachabilityIndex index = new ReachabilityIndex(graph.concreteGraphMap);
+		graph.setReachabilityIndex(index);
+		assertSame(index, graph.getReachabilityIndex());
+		for (String start : graph.concreteGraphMap.listNodes()) {
+			Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, start);
+			for (String end : graph.concreteGraphMap.listNodes()) {
+				assertPathMatches(graph, start, end, expected.get(end), graph.shortestPath(start, end));
+				assertPathMatches(graph, start, end, expected.get(end), graph.bidirectionalShortestPath(start, end));
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> graph.setReachabilityIndex(new ReachabilityIndex(new ConcreteGraph<String, Double>())));
+		graph.setReachabilityIndex(null);
+		index.close();
+		
+		MapGraph broken = new MapGraph(yamlFileStringIsolatedNode);
+		broken.setReachabilityIndex(new ReachabilityIndex(broken.concreteGraphMap));
+		assertFalse(broken.getReachabilityIndex().canReach("Wishka", "Larti"));
+		assertTrue(broken.shortestPath("Wishka", "Larti").isEmpty());
+	}
+	
+	@Test 
+	void testPathCache() {	
+		MapGraph graph = new MapGraph(yamlFileString);
+		PathCache cache = new PathCache(100);
+		graph.setPathCache(cache);
+		assertSame(cache, graph.getPathCache());
+		MapGraph.MapPath first = graph.shortestPath("Wishka", "Larti");
+		MapGraph.MapPath second = graph.shortestPath("Wishka", "Larti");
+		assertEquals(1, cache.missCount());
+		assertEquals(1, cache.hitCount());
+		assertEquals(this.expectedShortestPathSteps, second.pathSteps());
+		assertNotSame(first, second);
+		
+		// modifying a returned path doesn't modify the cached one
+		second.addEdge(new MapGraph.MapEdge("Larti", "Nowhere", 1.));
+		assertEquals(this.expectedShortestPathCost, graph.shortestPath("Wishka", "Larti").totalDistance());
+		
+		// modifying the graph invalidates the cached paths
+		graph.concreteGraphMap.addEdge("Larti", "Wishka", 1.);
+		assertEquals(Arrays.asList("Wishka", "Larti"), graph.shortestPath("Wishka", "Larti").pathSteps());
+		assertEquals(2, cache.missCount());
+		
+		graph.setPathCache(null);
+		graph.shortestPath("Wishka", "Larti");
+		assertEquals(4, cache.hitCount() + cache.missCount());
+		
+		// the versions of another graph start at 0 too : the cache stays with the graph it was set on 
+		MapGraph other = new MapGraph(yamlFileString);
+		assertThrows(IllegalArgumentException.class, () -> other.setPathCache(cache));
+		assertNull(other.getPathCache());
+		new MapGraph(graph.concreteGraphMap).setPathCache(cache);
+		graph.setPathCache(cache);
+	}
+	
+	@Test 
+	void testPathCacheStaysWithinCapacity() {	
+		MapGraph.MapPath path = new MapGraph.MapPath();
+		path.addEdge(new MapGraph.MapEdge("a", "b", 1.));
+		PathCache single = new PathCache(1);
+		single.put("a", "b", 0, path);
+		single.put("b", "c", 0, path);
+		assertNull(single.get("a", "b", 0));
+		assertEquals(path.pathSteps(), single.get("b", "c", 0).pathSteps());
+		assertNull(single.get("b", "c", 1));
+		assertEquals(0, single.size());
+		
+		PathCache cache = new PathCache(50);
+		for (int i = 0; i < 1000; i++) {
+			cache.put("a" + i, "b", 0, path);
+			assertTrue(cache.size() <= 50);
+		}
+		assertThrows(IllegalArgumentException.class, () -> new PathCache(0));
+	}
+	
+	@Test 
+	void testPathCacheFromManyThreads() throws InterruptedException {	
+		MapGraph graph = new MapGraph(randomGraph(4, 60, 240));
+		List<String> nodes = new ArrayList<String>(graph.concreteGraphMap.listNodes());
+		double[][] expected = graph.distanceMatrix(nodes, nodes);
+		graph.setPathCache(new PathCache(200));
+		List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			Random random = new Random(t);
+			threads[t] = new Thread(() -> {
+				try {
+					for (int k = 0; k < 5000; k++) {
+						int i = random.nextInt(nodes.size());
+						int j = random.nextInt(nodes.size());
+						MapGraph.MapPath path = graph.shortestPath(nodes.get(i), nodes.get(j));
+						assertEquals(expected[i][j], path.isEmpty() ? (i == j ? 0. : Double.POSITIVE_INFINITY) : path.totalDistance(), 1e-9);
+					}
+				} catch (Throwable failure) {
+					failures.add(failure);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(Collections.emptyList(), failures);
+		assertTrue(graph.getPathCache().hitCount() > 0);
+	}
+	
+	@Test 
+	void testSearchesFollowMutationsBetweenThem() throws IOException {	
+		File file = File.createTempFile("map", ".sgrf");
+		file.deleteOnExit();
+		for (long seed = 0; seed < 5; seed++) {
+			MapGraph graph = new MapGraph(randomGraph(seed, 60, 240));
+			graph.compile();
+			Random random = new Random(seed);
+			for (int i = 0; i < 60; i++) {
+				List<String> nodes = new ArrayList<String>(graph.concreteGraphMap.listNodes());
+				String parent = nodes.get(random.nextInt(nodes.size()));
+				String child = nodes.get(random.nextInt(nodes.size()));
+				if (i % 20 == 19) {
+					graph.concreteGraphMap.removeNode(parent);
+				} else if (i % 5 == 0) {
+					graph.concreteGraphMap.addNode("new" + i);
+					graph.concreteGraphMap.addEdge("new" + i, parent, (double) random.nextInt(100) / 10.);
+					graph.concreteGraphMap.addEdge(child, "new" + i, (double) random.nextInt(100) / 10.);
+				} else if (graph.concreteGraphMap.listChildren(parent).containsKey(child)) {
+					for (Double label : graph.concreteGraphMap.getEdgeLabels(child, parent)) {
+						graph.concreteGraphMap.removeEdge(child, parent, label);
+					}
+				} else {
+					graph.concreteGraphMap.addEdge(child, parent, (double) random.nextInt(100) / 10.);
+				}
+				String start = nodes.get(random.nextInt(nodes.size()));
+				if (graph.concreteGraphMap.containsNode(start)) {
+					Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, start);
+					for (String end : graph.concreteGraphMap.listNodes()) {
+						assertPathMatches(graph, start, end, expected.get(end), graph.shortestPath(start, end));
+					}
+				}
+			}
+			graph.exportSnapshot(file);
+			ConcreteGraph<String, Double> copy = MappedGraph.open(file).toConcreteGraph();
+			assertEquals(graph.concreteGraphMap.listNodes(), copy.listNodes());
+			for (String node : copy.listNodes()) {
+				assertEquals(graph.concreteGraphMap.listChildren(node).keySet(), copy.listChildren(node).keySet());
+			}
+		}
+	}
+	
+	@Test 
+	void testConcurrentSearchesAfterMutations() throws InterruptedException {	
+		MapGraph graph = new MapGraph(randomGraph(11, 60, 240));
+		List<String> nodes = new ArrayList<String>(graph.concreteGraphMap.listNodes());
+		Random random = new Random(11);
+		for (int round = 0; round < 20; round++) {
+			String parent = nodes.get(random.nextInt(nodes.size()));
+			String child = nodes.get(random.nextInt(nodes.size()));
+			graph.concreteGraphMap.addEdge(child, parent, round + .5);
+			if (round % 7 == 0) {
+				graph.setCoordinates(parent, round, round);
+			}
+			String start = nodes.get(random.nextInt(nodes.size()));
+			Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, start);
+			List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++) {
+				threads[t] = new Thread(() -> {
+					try {
+						for (String end : nodes) {
+							assertPathMatches(graph, start, end, expected.get(end), graph.shortestPath(start, end));
+						}
+					} catch (Throwable failure) {
+						failures.add(failure);
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(Collections.emptyList(), failures);
+		}
+	}
+	
+	@Test 
+	void testConstructorFromReader() {	
+		MapGraph graph = new MapGraph(new StringReader("Arbon:\n  coordinates: [0., 1.]\n  Bellac: 1.5\n  Cassis: 2\nBellac:\nDinan: ~\n"));
+		assertEquals(new HashSet<String>(Arrays.asList("Arbon", "Bellac", "Cassis", "Dinan")), graph.concreteGraphMap.listNodes());
+		assertEquals(Collections.singleton(2.), graph.concreteGraphMap.getEdgeLabels("Cassis", "Arbon"));
+		assertArrayEquals(new double[] {0., 1.}, graph.getCoordinates("Arbon"));
+		assertTrue(new MapGraph(new StringReader("")).concreteGraphMap.listNodes().isEmpty());
+		MapGraph numbers = new MapGraph(new StringReader("Arbon:\n  Bellac: 1_000.5\n  Cassis: -.5e1\n  Dinan: 0.25\n  Evian: 0\n"));
+		assertEquals(Collections.singleton(1000.5), numbers.concreteGraphMap.getEdgeLabels("Bellac", "Arbon"));
+		assertEquals(Collections.singleton(-5.), numbers.concreteGraphMap.getEdgeLabels("Cassis", "Arbon"));
+		assertEquals(Collections.singleton(.25), numbers.concreteGraphMap.getEdgeLabels("Dinan", "Arbon"));
+		assertEquals(Collections.singleton(0.), numbers.concreteGraphMap.getEdgeLabels("Evian", "Arbon"));
+	}
+	
+	@Test 
+	void testConstructorReportsLoadErrors() {	
+		assertThrows(UncheckedIOException.class, () -> new MapGraph("/no/such/map.yaml"));
+		assertThrows(IllegalArgumentException.class, () -> new MapGraph(new StringReader("Arbon:\n  Bellac: far\n")));
+		assertThrows(IllegalArgumentException.class, () -> new MapGraph(new StringReader("Arbon:\n  Bellac: [1.5\n")));
+		assertThrows(IllegalArgumentException.class, () -> new MapGraph(new StringReader("- Arbon\n- Bellac\n")));
+		assertThrows(IllegalArgumentException.class, () -> new MapGraph(new StringReader("Arbon: 1.5\n")));
+		// a sequence is only coordinates under their own key
+		assertThrows(IllegalArgumentException.class, () -> new MapGraph(new StringReader("Arbon:\n  Bellac: [1, 2]\n")));
+		// numerals of Java that aren't YAML decimals, and YAML numerals that aren't decimals
+		for (String distance : Arrays.asList("0x1p3", "1d", "NaN", "Infinity", ".inf", "0x10", "012", "'1.5'", "!!str 2")) {
+			assertThrows(IllegalArgumentException.class, () -> new MapGraph(new StringReader("Arbon:\n  Bellac: " + distance + "\n")), distance);
+		}
+	}
+	
+	@Test 
+	void testSnapshotExportAndOpen() throws IOException {	
+		File file = File.createTempFile("map", ".sgrf");
+		file.deleteOnExit();
+		this.thisGraph.exportSnapshot(file);
+		MapGraph snapshot = MapGraph.openSnapshot(file);
+		assertNull(snapshot.concreteGraphMap);
+		MapGraph.MapPath path = snapshot.shortestPath("Wishka", "Larti");
+		assertEquals(this.expectedShortestPathSteps, path.pathSteps());
+		assertEquals(this.expectedShortestPathCost, path.totalDistance());
+		assertTrue(snapshot.shortestPath("Wishka", "Nowhere").isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> snapshot.shortestPath("Nowhere", "Larti"));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.compile());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.setCoordinates("Wishka", 0., 0.));
+		
+		MapGraph withCoordinates = new MapGraph(yamlFileStringCoordinates);
+		withCoordinates.exportSnapshot(file);
+		MapGraph snapshotWithCoordinates = MapGraph.openSnapshot(file);
+		assertArrayEquals(new double[] {1., 0.}, snapshotWithCoordinates.getCoordinates("Bellac"));
+		assertEquals(Arrays.asList("Arbon", "Bellac", "Dinan"), snapshotWithCoordinates.shortestPath("Arbon", "Dinan", CoordinateHeuristic.EUCLIDEAN).pathSteps());
+		
+		ConcreteGraph<String, Double> copy = MappedGraph.open(file).toConcreteGraph();
+		assertEquals(withCoordinates.concreteGraphMap.listNodes(), copy.listNodes());
+		assertEquals(Collections.singleton(5.), copy.getEdgeLabels("Cassis", "Arbon"));
+		MappedGraph.open(file, false).verifyChecksum();
+		// only the smallest label of a pair is kept
+		MapGraph labels = new MapGraph(new ConcreteGraph<String, Double>());
+		labels.concreteGraphMap.addEdge("Bellac", "Arbon", 3.);
+		labels.concreteGraphMap.addEdge("Bellac", "Arbon", 2.);
+		labels.exportSnapshot(file);
+		assertEquals(Collections.singleton(2.), MappedGraph.open(file).toConcreteGraph().getEdgeLabels("Bellac", "Arbon"));
+	}
+	
+	@Test 
+	void testOffHeapGraphFollowsTheSameMutationsAsConcreteGraph() {	
+		for (long seed = 0; seed < 5; seed++) {
+			MapGraph graph = new MapGraph(randomGraph(seed, 60, 240));
+			OffHeapGraph offHeap = new OffHeapGraph();
+			for (String node : graph.concreteGraphMap.listNodes()) {
+				offHeap.addNode(node);
+			}
+			for (String node : graph.concreteGraphMap.listNodes()) {
+				for (Map.Entry<String, Set<Double>> children : graph.concreteGraphMap.listChildren(node).entrySet()) {
+					for (Double label : children.getValue()) {
+						offHeap.addEdge(children.getKey(), node, label);
+					}
+				}
+			}
+			Random random = new Random(seed);
+			for (int i = 0; i < 40; i++) {
+				List<String> nodes = new ArrayList<String>(graph.concreteGraphMap.listNodes());
+				String parent = nodes.get(random.nextInt(nodes.size()));
+				if (i % 4 == 0) {
+					graph.concreteGraphMap.removeNode(parent);
+					offHeap.removeNode(parent);
+					continue;
+				}
+				List<String> children = new ArrayList<String>(graph.concreteGraphMap.listChildren(parent).keySet());
+				if (!children.isEmpty()) {
+					String child = children.get(random.nextInt(children.size()));
+					Double label = graph.concreteGraphMap.getEdgeLabels(child, parent).iterator().next();
+					graph.concreteGraphMap.removeEdge(child, parent, label);
+					offHeap.removeEdge(child, parent, label);
+				}
+			}
+			assertEquals(graph.concreteGraphMap.listNodes(), offHeap.listNodes());
+			MapGraph search = new MapGraph(offHeap);
+			for (String start : graph.concreteGraphMap.listNodes()) {
+				assertEquals(graph.concreteGraphMap.listChildren(start), offHeap.listChildren(start));
+				assertEquals(graph.concreteGraphMap.listParents(start), offHeap.listParents(start));
+				Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, start);
+				for (String end : graph.concreteGraphMap.listNodes()) {
+					assertPathMatches(graph, start, end, expected.get(end), search.shortestPath(start, end));
+				}
+			}
+		}
+	}
+	
+	@Test 
+	void testOffHeapGraph() {	
+		OffHeapGraph graph = new OffHeapGraph();
+		graph.addEdge("Marman", "Wishka", 5.);
+		graph.addEdge("Marman", "Wishka", 3.);
+		graph.addEdge("\u00c5land", "Marman", 1.);
+		assertThrows(IllegalArgumentException.class, () -> graph.addEdge("Marman", "Wishka", 3.));
+		assertThrows(IllegalArgumentException.class, () -> graph.addNode("\u00c5land"));
+		assertThrows(IllegalArgumentException.class, () -> graph.removeEdge("Wishka", "Marman", 5.));
+		assertEquals(new HashSet<Double>(Arrays.asList(3., 5.)), graph.getEdgeLabels("Marman", "Wishka"));
+		
+		MapGraph map = new MapGraph(graph);
+		assertEquals(Arrays.asList("Wishka", "Marman", "\u00c5land"), map.shortestPath("Wishka", "\u00c5land").pathSteps());
+		assertEquals(4., map.shortestPath("Wishka", "\u00c5land").totalDistance());
+		assertThrows(UnsupportedOperationException.class, () -> map.compile());
+		
+		graph.removeEdge("Marman", "Wishka", 3.);
+		assertEquals(6., map.shortestPath("Wishka", "\u00c5land").totalDistance());
+		graph.removeNode("Marman");
+		assertFalse(graph.containsNode("Marman"));
+		assertTrue(map.shortestPath("Wishka", "\u00c5land").isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> graph.listChildren("Marman"));
+		graph.addEdge("\u00c5land", "Marman", 2.);
+		assertEquals(new HashSet<String>(Arrays.asList("Wishka", "Marman", "\u00c5land")), graph.listNodes());
+		assertEquals(Collections.singletonMap("Marman", Collections.singleton(2.)), graph.listParents("\u00c5land"));
+		assertTrue(graph.listParents("Marman").isEmpty());
+	}
+	
+	@Test 
+	void testOffHeapGraphStaysOutOfTheDirectMemory() {	
+		BufferPoolMXBean direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+				.filter(pool -> pool.getName().equals("direct")).findFirst().get();
+		long directBefore = direct.getMemoryUsed();
+		OffHeapGraph graph = new OffHeapGraph();
+		// the edges take several chunks
+		for (int i = 0; i < 1 << 20; i++) {
+			graph.addEdge("n" + (i + 1), "n" + i, 1.);
+		}
+		assertTrue(graph.offHeapBytes() > 1 << 25);
+		assertTrue(direct.getMemoryUsed() - directBefore < 1 << 20);
+		assertEquals(1. * (1 << 19), new MapGraph(graph).shortestPath("n0", "n" + (1 << 19)).totalDistance());
+	}
+	
+	@Test 
+	void testSnapshotRejectsCorruptedFiles() throws IOException {	
+		File file = File.createTempFile("map", ".sgrf");
+		file.deleteOnExit();
+		this.thisGraph.exportSnapshot(file);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		bytes[bytes.length - 1] ^= 1;
+		Files.write(file.toPath(), bytes);
+		// a corrupted name is noticed by default, and only when the checksum is asked for once skipped
+		assertThrows(IOException.class, () -> MapGraph.openSnapshot(file));
+		assertThrows(IOException.class, () -> MappedGraph.open(file));
+		MappedGraph corrupted = MappedGraph.open(file, false);
+		assertThrows(IOException.class, () -> corrupted.verifyChecksum());
+		// so is a corrupted version in the header
+		bytes[bytes.length - 1] ^= 1;
+		bytes[24] ^= 1;
+		Files.write(file.toPath(), bytes);
+		assertThrows(IOException.class, () -> MapGraph.openSnapshot(file));
+		assertNotNull(MapGraph.openSnapshot(file, false));
+		// a header whose sections don't add up is noticed even when the checksum is skipped
+		bytes[24] ^= 1;
+		bytes[12]++;
+		Files.write(file.toPath(), bytes);
+		assertThrows(IOException.class, () -> MapGraph.openSnapshot(file, false));
+		Files.write(file.toPath(), "Wishka:\n  Marman: 5.\n".getBytes());
+		assertThrows(IOException.class, () -> MapGraph.openSnapshot(file));
+	}
+	
+	@Test 
+	void testContractionHierarchyShortestPath() {	
+		ContractionHierarchy hierarchy = this.thisGraph.contractionHierarchy();
+		MapGraph.MapPath exampleShortestPath = hierarchy.shortestPath(
+				expectedShortestPathSteps.get(0),
+				expectedShortestPathSteps.get(expectedShortestPathSteps.size()-1)
+				);
+		assertEquals(expectedShortestPathSteps, exampleShortestPath.pathSteps());
+		assertEquals(expectedShortestPathCost, exampleShortestPath.totalDistance());		
+		assertTrue(this.brokenGraph.contractionHierarchy().shortestPath("Wishka", "Larti").isEmpty());
+	}
+	
 	@Test 
 	void testShortestPathNoSolutionGivesEmptyPath() {	
 		MapGraph.MapPath exampleShortestPath = this.brokenGraph.shortestPath(
@@ -119,5 +1106,234 @@ class MapGraphTest {
 		assertTrue(exampleShortestPath.isEmpty());		
 	}
 
+
+	@Test 
+	void testShortestPathTreeFollowsRandomUpdates() {	
+		Random random = new Random(11);
+		MapGraph graph = new MapGraph(randomGraph(5, 40, 120));
+		try (DynamicShortestPathTree tree = graph.shortestPathTree("0")) {
+			for (int update = 0; update < 150; update++) {
+				String parent = String.valueOf(random.nextInt(40));
+				String child = String.valueOf(random.nextInt(40));
+				int kind = random.nextInt(10);
+				if (kind == 0 && !parent.equals("0") && graph.concreteGraphMap.containsNode(parent)) {
+					graph.concreteGraphMap.removeNode(parent);
+				} else if (kind < 5 && graph.concreteGraphMap.containsNode(parent) && !graph.concreteGraphMap.listChildren(parent).isEmpty()) {
+					Map.Entry<String, Set<Double>> edge = graph.concreteGraphMap.listChildren(parent).entrySet().iterator().next();
+					graph.concreteGraphMap.removeEdge(edge.getKey(), parent, edge.getValue().iterator().next());
+				} else if (!graph.concreteGraphMap.listNodes().contains(child) || !graph.concreteGraphMap.listNodes().contains(parent) 
+						|| !graph.concreteGraphMap.listChildren(parent).containsKey(child)) {
+					graph.concreteGraphMap.addEdge(child, parent, (double) random.nextInt(100) / 10.);
+				}
+				Map<String, Double> expected = bellmanFord(graph.concreteGraphMap, "0");
+				for (String node : graph.concreteGraphMap.listNodes()) {
+					assertEquals(expected.getOrDefault(node, Double.POSITIVE_INFINITY), tree.distance(node), 1e-9, node);
+					assertPathMatches(graph, "0", node, expected.get(node), tree.path(node));
+				}
+			}
+		}
+	}
 	
+	@Test 
+	void testShortestPathTreeRepairsOnlyTheAffectedRegion() {	
+		ConcreteGraph<String, Double> line = new ConcreteGraph<String, Double>();
+		for (int node = 0; node + 1 < 1000; node++) {
+			line.addEdge(String.valueOf(node + 1), String.valueOf(node), 1.);
+			line.addEdge(String.valueOf(node), String.valueOf(node + 1), 1.);
+		}
+		DynamicShortestPathTree tree = new DynamicShortestPathTree(line, "0");
+		assertEquals(999, tree.lastUpdateStats().settledNodes());
+		
+		line.removeEdge("998", "997", 1.);
+		assertEquals(Double.POSITIVE_INFINITY, tree.distance("999"));
+		assertTrue(tree.path("998").isEmpty());
+		assertEquals(0, tree.lastUpdateStats().settledNodes());
+		line.addEdge("998", "997", 2.);
+		assertEquals(1000., tree.distance("999"));
+		assertEquals(2, tree.lastUpdateStats().settledNodes());
+		line.addEdge("10", "0", 20.); // longer than the path it doubles
+		assertEquals(0, tree.lastUpdateStats().settledNodes());
+		assertEquals(10., tree.distance("10"));
+		
+		line.removeNode("0");
+		assertEquals(Double.POSITIVE_INFINITY, tree.distance("1"));
+		assertThrows(IllegalArgumentException.class, () -> tree.distance("0"));
+		line.addEdge("1", "0", 5.);
+		assertEquals(1004., tree.distance("999"));
+		
+		tree.close();
+		line.removeEdge("1", "0", 5.);
+		assertEquals(5., tree.distance("1"));
+		assertThrows(IllegalArgumentException.class, () -> new DynamicShortestPathTree(line, "nowhere"));
+	}
+	
+	@Test 
+	void testShortestPathRecordsFlightRecorderEvents() throws IOException {	
+		File file = File.createTempFile("queries", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("shinygraph.ShortestPath");
+			recording.start();
+			this.thisGraph.shortestPath("Wishka", "Larti");
+			recording.stop();
+			recording.dump(file.toPath());
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+			assertEquals(1, events.size());
+			RecordedEvent event = events.get(0);
+			assertEquals("Wishka", event.getString("startPoint"));
+			assertEquals("Larti", event.getString("endPoint"));
+			assertTrue(event.getBoolean("found"));
+			assertFalse(event.getBoolean("cacheHit"));
+			assertEquals(this.thisGraph.lastSearchStats().settledNodes(), event.getLong("settledNodes"));
+			assertEquals(this.thisGraph.lastSearchStats().heapPops(), event.getLong("heapPops"));
+			assertTrue(event.getLong("heapPushes") >= event.getLong("heapPops"));
+			assertTrue(event.getLong("peakQueueSize") > 0);
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test 
+	void testLatencyHistogramQuantiles() {	
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.quantile(0.5));
+		for (long nanos = 1; nanos <= 1000; nanos++) {
+			histogram.record(nanos * 1000);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(500500., histogram.mean());
+		assertEquals(1000000, histogram.max());
+		// within a factor 2 above the true quantiles
+		assertTrue(histogram.quantile(0.5) >= 500000 && histogram.quantile(0.5) < 1000000);
+		assertTrue(histogram.quantile(0.99) >= 990000 && histogram.quantile(0.99) <= 1000000);
+		assertEquals(1000000, histogram.quantile(1.));
+		assertThrows(IllegalArgumentException.class, () -> histogram.quantile(2.));
+		histogram.reset();
+		assertEquals(0, histogram.count());
+	}
+	
+	/*
+	 * @return a graph with nodeCount nodes named "0", "1", ... and edgeCount random edges, some of them 
+	 * sharing the same parent and child, with distances between 0 and 10.
+	 */
+	static ConcreteGraph<String, Double> randomGraph(long seed, int nodeCount, int edgeCount) {
+		Random random = new Random(seed);
+		ConcreteGraph<String, Double> graph = new ConcreteGraph<String, Double>();
+		for (int node = 0; node < nodeCount; node++) {
+			graph.addNode(String.valueOf(node));
+		}
+		for (int edge = 0; edge < edgeCount; edge++) {
+			String parent = String.valueOf(random.nextInt(nodeCount));
+			String child = String.valueOf(random.nextInt(nodeCount));
+			Double label = (double) random.nextInt(100) / 10.;
+			if (!graph.listChildren(parent).getOrDefault(child, Collections.emptySet()).contains(label)) {
+				graph.addEdge(child, parent, label);
+			}
+		}
+		return graph;
+	}
+	
+	/*
+	 * @return the distances from start to every node reachable from it, computed by Bellman-Ford.
+	 */
+	static Map<String, Double> bellmanFord(ConcreteGraph<String, Double> graph, String start) {
+		Map<String, Double> distances = new HashMap<String, Double>();
+		distances.put(start, 0.);
+		for (int round = 0; round < graph.listNodes().size(); round++) {
+			for (String parent : graph.listNodes()) {
+				if (!distances.containsKey(parent)) {
+					continue;
+				}
+				for (Map.Entry<String, Set<Double>> children : graph.listChildren(parent).entrySet()) {
+					double distance = distances.get(parent) + Collections.min(children.getValue());
+					if (distance < distances.getOrDefault(children.getKey(), Double.POSITIVE_INFINITY)) {
+						distances.put(children.getKey(), distance);
+					}
+				}
+			}
+		}
+		return distances;
+	}
+	
+	/*
+	 * @spec.effects adds to lengths the length of every loopless path from node to end that doesn't go through 
+	 * visited, node being reached at distance, following the smallest label of each edge. 
+	 */
+	static void simplePathLengths(ConcreteGraph<String, Double> graph, String node, String end, Set<String> visited, double distance, List<Double> lengths) {
+		if (node.equals(end)) {
+			lengths.add(distance);
+			return;
+		}
+		for (Map.Entry<String, Set<Double>> child : graph.listChildren(node).entrySet()) {
+			if (visited.add(child.getKey())) {
+				simplePathLengths(graph, child.getKey(), end, visited, distance + Collections.min(child.getValue()), lengths);
+				visited.remove(child.getKey());
+			}
+		}
+	}
+	
+	/*
+	 * @return the nodes that can be reached from start in graph, start included.
+	 */
+	static Set<String> reachableFrom(ConcreteGraph<String, Double> graph, String start) {
+		Set<String> reached = new HashSet<String>(Arrays.asList(start));
+		List<String> queue = new ArrayList<String>(reached);
+		for (int i = 0; i < queue.size(); i++) {
+			for (String child : graph.listChildren(queue.get(i)).keySet()) {
+				if (reached.add(child)) {
+					queue.add(child);
+				}
+			}
+		}
+		return reached;
+	}
+	
+	/*
+	 * @return true if graph has an edge from parent to child labelled label, even while other threads change 
+	 * the other edges between them. 
+	 */
+	static boolean hasEdge(ConcreteGraph<String, Double> graph, String child, String parent, double label) {
+		try {
+			return graph.getEdgeLabels(child, parent).contains(label);
+		} catch (IllegalArgumentException missing) {
+			return false;
+		}
+	}
+	
+	/*
+	 * checks that index finds a path between every two nodes of graph between which there is one, and no other 
+	 * if exact. 
+	 */
+	static void assertReachabilityMatches(ConcreteGraph<String, Double> graph, ReachabilityIndex index, boolean exact) {
+		for (String from : graph.listNodes()) {
+			Set<String> reached = reachableFrom(graph, from);
+			for (String to : graph.listNodes()) {
+				if (exact) {
+					assertEquals(reached.contains(to), index.canReach(from, to), from + " -> " + to);
+				} else if (reached.contains(to)) {
+					assertTrue(index.canReach(from, to), from + " -> " + to);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * checks that path is a valid path from start to end in graph, with the expected length, or that it 
+	 * is empty when expected is null or start is end. 
+	 */
+	static void assertPathMatches(MapGraph graph, String start, String end, Double expected, MapGraph.MapPath path) {
+		if (expected == null || start.equals(end)) {
+			assertTrue(path.isEmpty(), start + " -> " + end);
+			return;
+		}
+		assertEquals(expected, path.totalDistance(), 1e-9, start + " -> " + end);
+		List<String> steps = path.pathSteps();
+		assertEquals(start, steps.get(0));
+		assertEquals(end, steps.get(steps.size() - 1));
+		double length = 0.;
+		for (int i = 0; i + 1 < steps.size(); i++) {
+			length += Collections.min(graph.concreteGraphMap.getEdgeLabels(steps.get(i + 1), steps.get(i)));
+		}
+		assertEquals(expected, length, 1e-9, start + " -> " + end);
+	}
+
 }